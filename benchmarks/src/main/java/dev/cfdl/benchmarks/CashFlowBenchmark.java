@@ -0,0 +1,91 @@
+package dev.cfdl.benchmarks;
+
+import dev.cfdl.CashFlowExecutor;
+import dev.cfdl.CashFlowResult;
+import dev.cfdl.CompileResult;
+import dev.cfdl.IRBuildResult;
+import dev.cfdl.Parser;
+import dev.cfdl.SchemaRegistry;
+import dev.cfdl.SchemaValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic cash-flow execution over compiled IR
+ *
+ * Inputs are synthetic deals of 1k and 10k streams on a monthly grid of 5 or 10 years
+ * (61 or 121 periods), compiled once per trial. Measures CashFlowExecutor.execute:
+ * grid generation, stream compilation and the per-period run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CashFlowBenchmark {
+
+    @Param({"1000", "10000"})
+    public int streams;
+
+    @Param({"5", "10"})
+    public int years;
+
+    private PrintStream stdout;
+    private Path syntheticDir;
+    private IRBuildResult ir;
+    private final CashFlowExecutor executor = new CashFlowExecutor();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        syntheticDir = Files.createTempDirectory("cfdl-bench");
+        Path file = SyntheticDeals.write(syntheticDir, streams, years);
+        SchemaValidator schemaValidator = new SchemaValidator(
+            SchemaRegistry.load(PipelineBenchmark.projectRoot().resolve("spec.yaml")));
+        CompileResult compiled = new Parser(schemaValidator).compile(file);
+        schemaValidator.shutdown();
+        if (!compiled.isSuccessful()) {
+            throw new IllegalStateException(compiled.summary());
+        }
+        ir = compiled.getIrResult();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        try (Stream<Path> paths = Files.walk(syntheticDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * IR to per-period cash flows of streams, assets and the deal
+     */
+    @Benchmark
+    public CashFlowResult execute() {
+        return executor.execute(ir);
+    }
+}
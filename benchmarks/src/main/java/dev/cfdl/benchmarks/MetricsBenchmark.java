@@ -0,0 +1,94 @@
+package dev.cfdl.benchmarks;
+
+import dev.cfdl.Metrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched metric kernels over a trials x periods matrix
+ *
+ * Trials are noisy monthly flows around a fixed level against one initial
+ * investment, so roughly a third of them never repay it and have no IRR. Compares
+ * warm-started batched IRR with solving every trial from the Julia starting guess.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MetricsBenchmark {
+
+    private static final double INITIAL_INVESTMENT = 125_000;
+    private static final double DISCOUNT_RATE = 0.008;
+
+    @Param({"100000"})
+    public int trials;
+
+    @Param({"60"})
+    public int periods;
+
+    private double[] flows;
+    private double[] out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        flows = new double[trials * periods];
+        for (int i = 0; i < flows.length; i++) {
+            flows[i] = 2500 + 1500 * (random.nextDouble() + random.nextDouble() - 1);
+        }
+        out = new double[trials];
+    }
+
+    /**
+     * IRR of every trial, each Newton run starting at the previous root
+     */
+    @Benchmark
+    public double[] irr() {
+        Metrics.irr(flows, trials, periods, INITIAL_INVESTMENT, out);
+        return out;
+    }
+
+    /**
+     * IRR of every trial from the Julia starting guess
+     */
+    @Benchmark
+    public double[] irrCold() {
+        for (int trial = 0; trial < trials; trial++) {
+            out[trial] = Metrics.irr(flows, trial * periods, periods, INITIAL_INVESTMENT, Double.NaN);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] npv() {
+        Metrics.npv(flows, trials, periods, DISCOUNT_RATE, INITIAL_INVESTMENT, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] moic() {
+        Metrics.moic(flows, trials, periods, INITIAL_INVESTMENT, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] payback() {
+        Metrics.payback(flows, trials, periods, INITIAL_INVESTMENT, out);
+        return out;
+    }
+}
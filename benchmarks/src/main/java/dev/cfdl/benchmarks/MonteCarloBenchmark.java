@@ -0,0 +1,97 @@
+package dev.cfdl.benchmarks;
+
+import dev.cfdl.CompileResult;
+import dev.cfdl.MonteCarloResult;
+import dev.cfdl.MonteCarloRunner;
+import dev.cfdl.Parser;
+import dev.cfdl.SchemaRegistry;
+import dev.cfdl.SchemaValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Monte Carlo trials over compiled IR
+ *
+ * The input is a synthetic deal whose streams all have normal distribution growth,
+ * on a 5-year monthly grid. Measures MonteCarloRunner.run for a fixed number of
+ * trials on pools of 1, 2 and 4 threads; trials/s scaling across the threads
+ * parameter shows how close the runner gets to linear on the machine's cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MonteCarloBenchmark {
+
+    @Param({"1000"})
+    public int streams;
+
+    @Param({"1024"})
+    public int trials;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private PrintStream stdout;
+    private Path syntheticDir;
+    private MonteCarloRunner runner;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        syntheticDir = Files.createTempDirectory("cfdl-bench");
+        Path file = SyntheticDeals.write(syntheticDir, streams, 5, true);
+        SchemaValidator schemaValidator = new SchemaValidator(
+            SchemaRegistry.load(PipelineBenchmark.projectRoot().resolve("spec.yaml")));
+        CompileResult compiled = new Parser(schemaValidator).compile(file);
+        schemaValidator.shutdown();
+        if (!compiled.isSuccessful()) {
+            throw new IllegalStateException(compiled.summary());
+        }
+        runner = new MonteCarloRunner(compiled.getIrResult());
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        System.setOut(stdout);
+        try (Stream<Path> paths = Files.walk(syntheticDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * All trials of one seed, reduced to per-deal statistics
+     */
+    @Benchmark
+    public MonteCarloResult run() {
+        return runner.run(trials, 42, pool);
+    }
+}
@@ -0,0 +1,99 @@
+package dev.cfdl.benchmarks;
+
+import dev.cfdl.CashFlowExecutor;
+import dev.cfdl.CashFlowResult;
+import dev.cfdl.CompileResult;
+import dev.cfdl.IRBuildResult;
+import dev.cfdl.Parser;
+import dev.cfdl.SchemaRegistry;
+import dev.cfdl.SchemaValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic cash-flow execution over compiled IR on a ForkJoin pool
+ *
+ * The input is a synthetic 50-asset portfolio (5,000 streams) on a 10-year monthly grid,
+ * compiled once per trial. Measures CashFlowExecutor.execute(ir, pool) on pools of 1, 2
+ * and 4 threads; flows are identical across the threads parameter, so scaling against
+ * it shows how close the scheduler gets to linear on the machine's cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ParallelExecutionBenchmark {
+
+    @Param({"5000"})
+    public int streams;
+
+    @Param({"10"})
+    public int years;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private PrintStream stdout;
+    private Path syntheticDir;
+    private IRBuildResult ir;
+    private final CashFlowExecutor executor = new CashFlowExecutor();
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        syntheticDir = Files.createTempDirectory("cfdl-bench");
+        Path file = SyntheticDeals.write(syntheticDir, streams, years);
+        SchemaValidator schemaValidator = new SchemaValidator(
+            SchemaRegistry.load(PipelineBenchmark.projectRoot().resolve("spec.yaml")));
+        CompileResult compiled = new Parser(schemaValidator).compile(file);
+        schemaValidator.shutdown();
+        if (!compiled.isSuccessful()) {
+            throw new IllegalStateException(compiled.summary());
+        }
+        ir = compiled.getIrResult();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        System.setOut(stdout);
+        try (Stream<Path> paths = Files.walk(syntheticDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * IR to per-period cash flows of streams, assets and the deal, with fork/join tasks
+     */
+    @Benchmark
+    public CashFlowResult execute() {
+        return executor.execute(ir, pool);
+    }
+}
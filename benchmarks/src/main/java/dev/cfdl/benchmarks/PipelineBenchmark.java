@@ -0,0 +1,171 @@
+package dev.cfdl.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import dev.cfdl.ASTNode;
+import dev.cfdl.CompileResult;
+import dev.cfdl.ComprehensiveSchemaChecker;
+import dev.cfdl.IRBuildResult;
+import dev.cfdl.IRBuilder;
+import dev.cfdl.Parser;
+import dev.cfdl.SchemaRegistry;
+import dev.cfdl.SchemaValidator;
+import dev.cfdl.ValidationError;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Parse → validate → IR pipeline benchmarks
+ *
+ * Each stage is measured on its own, against inputs prepared once per trial, and the
+ * whole pipeline end to end through Parser.compile. Inputs are the files in examples/
+ * and synthetic deals of 1k, 10k and 100k streams. Add -prof gc for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PipelineBenchmark {
+
+    @Param({
+        "atomic-cash-flows-commercial-real-estate.cfdl",
+        "multi-asset-portfolio.cfdl",
+        "office-building-deal.cfdl",
+        "renewable-energy-project.cfdl",
+        "synthetic-1000",
+        "synthetic-10000",
+        "synthetic-100000"
+    })
+    public String input;
+
+    private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+
+    private PrintStream stdout;
+    private Path syntheticDir;
+    private Path file;
+    private Parser parser;
+    private SchemaValidator schemaValidator;
+    private List<ASTNode> astNodes;
+    private Parser.ParseResult parseResult;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // The pipeline reports progress on stdout; keep it out of the results
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Path root = projectRoot();
+        int streams = SyntheticDeals.streamCount(input);
+        if (streams >= 0) {
+            syntheticDir = Files.createTempDirectory("cfdl-bench");
+            file = SyntheticDeals.write(syntheticDir, streams);
+        } else {
+            file = root.resolve("examples").resolve(input);
+        }
+
+        schemaValidator = new SchemaValidator(SchemaRegistry.load(root.resolve("spec.yaml")));
+        parser = new Parser(schemaValidator);
+
+        // Stage inputs
+        JsonNode document = yamlMapper.readTree(file.toFile());
+        parseResult = parser.parseTree(document);
+        astNodes = parseResult.getAstNodes();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        if (syntheticDir != null) {
+            try (Stream<Path> paths = Files.walk(syntheticDir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * YAML read, AST build and per-node schema validation
+     */
+    @Benchmark
+    public Parser.ParseResult parseFile() throws IOException {
+        return parser.parseFile(file.toString());
+    }
+
+    /**
+     * JSON Schema validation of every node's YAML subtree
+     */
+    @Benchmark
+    public void validateYamlNode(Blackhole bh) {
+        for (ASTNode node : astNodes) {
+            List<ValidationError> errors = schemaValidator.validateYamlNode(node.getSource(), node.getSchemaType());
+            bh.consume(errors);
+        }
+    }
+
+    /**
+     * Required-property and ontology checks over the built AST
+     */
+    @Benchmark
+    public ComprehensiveSchemaChecker.ValidationReport validateNodes() {
+        return new ComprehensiveSchemaChecker().validateNodes(astNodes);
+    }
+
+    /**
+     * IR tables from the built AST, including relationship checks
+     */
+    @Benchmark
+    public IRBuildResult irBuild() {
+        return new IRBuilder().build(astNodes, parseResult.getSymbolTable());
+    }
+
+    /**
+     * Whole pipeline from file to IR
+     */
+    @Benchmark
+    public CompileResult endToEnd() {
+        return parser.compile(file);
+    }
+
+    // Helper methods
+
+    /**
+     * The repository root: -Dcfdl.root, else the working directory or its parent,
+     * whichever holds spec.yaml
+     */
+    static Path projectRoot() {
+        String configured = System.getProperty("cfdl.root");
+        if (configured != null) {
+            return Paths.get(configured).toAbsolutePath();
+        }
+        Path cwd = Paths.get("").toAbsolutePath();
+        if (Files.exists(cwd.resolve("spec.yaml"))) {
+            return cwd;
+        }
+        return cwd.getParent();
+    }
+}
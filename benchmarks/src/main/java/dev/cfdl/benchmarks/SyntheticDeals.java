@@ -0,0 +1,130 @@
+package dev.cfdl.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes synthetic CFDL deals of a given stream count for the benchmarks
+ *
+ * The deal has one asset per 100 streams; every asset holds one component and its
+ * streams, shaped like the streams in examples/office-building-deal.cfdl. Output is
+ * deterministic so runs are comparable. Stochastic deals give every stream normal
+ * distribution growth instead of a fixed rate, for the Monte Carlo benchmark.
+ */
+final class SyntheticDeals {
+
+    static final String PREFIX = "synthetic-";
+    static final int STREAMS_PER_ASSET = 100;
+
+    private static final String[] CATEGORIES = {"Revenue", "Expense"};
+    private static final String[] SUB_TYPES = {"Operating", "Financing", "CapEx"};
+
+    private SyntheticDeals() {
+    }
+
+    /**
+     * Stream count of a benchmark input name like synthetic-10000, or -1 for a file name
+     */
+    static int streamCount(String input) {
+        return input.startsWith(PREFIX) ? Integer.parseInt(input.substring(PREFIX.length())) : -1;
+    }
+
+    /**
+     * Write a deal with the given number of streams to a new file in the directory
+     */
+    static Path write(Path directory, int streams) throws IOException {
+        return write(directory, streams, 5);
+    }
+
+    /**
+     * Write a deal with the given number of streams held for the given years of monthly periods
+     */
+    static Path write(Path directory, int streams, int years) throws IOException {
+        return write(directory, streams, years, false);
+    }
+
+    /**
+     * Write a deal with the given number of streams and years, with distribution growth if stochastic
+     */
+    static Path write(Path directory, int streams, int years, boolean stochastic) throws IOException {
+        Path file = directory.resolve(PREFIX + streams + "-" + years + "y" + (stochastic ? "-mc" : "") + ".cfdl");
+        int assets = Math.max(1, (streams + STREAMS_PER_ASSET - 1) / STREAMS_PER_ASSET);
+
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("deal:\n");
+            out.write("  SyntheticDeal:\n");
+            out.write("    id: \"https://example.com/deals/synthetic-" + streams + "\"\n");
+            out.write("    name: \"Synthetic Deal " + streams + "\"\n");
+            out.write("    dealType: commercial_real_estate\n");
+            out.write("    currency: \"USD\"\n");
+            out.write("    entryDate: 2024-01-15\n");
+            out.write("    exitDate: " + (2024 + years) + "-01-15\n");
+            out.write("    analysisStart: 2024-01-01\n");
+            out.write("    holdingPeriodYears: " + years + "\n");
+            out.write("    calendar:\n");
+            out.write("      frequency: monthly\n");
+            out.write("      businessDayConvention: following\n");
+            out.write("      dayCount: actual/365\n");
+            out.write("    assets:\n");
+
+            int written = 0;
+            for (int a = 0; a < assets; a++) {
+                String asset = "Asset_" + a;
+                out.write("      - asset:\n");
+                out.write("          " + asset + ":\n");
+                out.write("            id: \"https://example.com/assets/" + a + "\"\n");
+                out.write("            name: \"Synthetic Asset " + a + "\"\n");
+                out.write("            dealId: \"SyntheticDeal\"\n");
+                out.write("            category: real_estate\n");
+                out.write("            attributes:\n");
+                out.write("              totalSqFt: " + (20000 + 100 * a) + "\n");
+                out.write("            components:\n");
+                out.write("              - component:\n");
+                out.write("                  " + asset + "_Unit:\n");
+                out.write("                    id: \"https://example.com/components/" + a + "\"\n");
+                out.write("                    name: \"Unit " + a + "\"\n");
+                out.write("                    assetId: \"" + asset + "\"\n");
+                out.write("                    componentType: \"office_unit\"\n");
+                out.write("            streams:\n");
+
+                int end = Math.min(streams, written + STREAMS_PER_ASSET);
+                for (; written < end; written++) {
+                    writeStream(out, written, stochastic);
+                }
+            }
+        }
+        return file;
+    }
+
+    private static void writeStream(BufferedWriter out, int s, boolean stochastic) throws IOException {
+        out.write("              - stream:\n");
+        out.write("                  Stream_" + s + ":\n");
+        out.write("                    id: \"https://example.com/streams/" + s + "\"\n");
+        out.write("                    name: \"Synthetic Stream " + s + "\"\n");
+        out.write("                    scope: asset\n");
+        out.write("                    category: " + CATEGORIES[s % CATEGORIES.length] + "\n");
+        out.write("                    subType: " + SUB_TYPES[s % SUB_TYPES.length] + "\n");
+        out.write("                    schedule:\n");
+        out.write("                      type: recurring\n");
+        out.write("                      startDate: 2024-01-01\n");
+        out.write("                      recurrenceRule:\n");
+        out.write("                        freq: monthly\n");
+        out.write("                        interval: 1\n");
+        out.write("                    amount: " + (1000 + (s * 37) % 9000) + "\n");
+        out.write("                    growth:\n");
+        if (stochastic) {
+            out.write("                      type: distribution\n");
+            out.write("                      distribution:\n");
+            out.write("                        type: normal\n");
+            out.write("                        mean: 0.002\n");
+            out.write("                        std: 0.001\n");
+        } else {
+            out.write("                      type: fixed\n");
+            out.write("                      rate: 0.025\n");
+        }
+        out.write("                    tags: [\"Forecast\"]\n");
+    }
+}
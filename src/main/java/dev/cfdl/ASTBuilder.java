@@ -1,19 +1,119 @@
 package dev.cfdl;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
 
 /**
  * YAML-Based AST Builder
  * 
  * Builds AST nodes from Jackson JsonNode tree using universal buildNode approach.
+ * buildAll keeps no state between calls and may be used from several threads,
+ * unless the builder fills a SymbolTable; buildASTNode/getAllNodes remember the
+ * last build and are single-threaded only.
  */
 public class ASTBuilder {
     
-    private List<ASTNode> allNodes; // Collects all nodes including nested ones
+    private static final Logger log = LoggerFactory.getLogger(ASTBuilder.class);
+    
+    // Schema URL for each definition type (keys are lower-cased definition types)
+    private static final Map<String, String> SCHEMA_URLS = new HashMap<>();
+    
+    static {
+        // Entity schemas
+        SCHEMA_URLS.put("deal", "https://cfdl.dev/ontology/entity/deal.schema.yaml");
+        SCHEMA_URLS.put("asset", "https://cfdl.dev/ontology/entity/asset.schema.yaml");
+        SCHEMA_URLS.put("component", "https://cfdl.dev/ontology/entity/component.schema.yaml");
+        SCHEMA_URLS.put("template", "https://cfdl.dev/ontology/entity/template.schema.yaml");
+        SCHEMA_URLS.put("contract", "https://cfdl.dev/ontology/entity/contract.schema.yaml");
+        SCHEMA_URLS.put("party", "https://cfdl.dev/ontology/entity/party.schema.yaml");
+        SCHEMA_URLS.put("fund", "https://cfdl.dev/ontology/entity/fund.schema.yaml");
+        SCHEMA_URLS.put("portfolio", "https://cfdl.dev/ontology/entity/portfolio.schema.yaml");
+        SCHEMA_URLS.put("capitalstack", "https://cfdl.dev/ontology/entity/capital-stack.schema.yaml");
+        
+        // Behavior schemas
+        SCHEMA_URLS.put("stream", "https://cfdl.dev/ontology/behavior/stream.schema.yaml");
+        SCHEMA_URLS.put("assumption", "https://cfdl.dev/ontology/behavior/assumption.schema.yaml");
+        SCHEMA_URLS.put("logicblock", "https://cfdl.dev/ontology/behavior/logic-block.schema.yaml");
+        SCHEMA_URLS.put("ruleblock", "https://cfdl.dev/ontology/behavior/rule_block.schema.yaml");
+        SCHEMA_URLS.put("marketdata", "https://cfdl.dev/ontology/behavior/market-data.schema.yaml");
+        SCHEMA_URLS.put("calculator", "https://cfdl.dev/ontology/behavior/calculators.schema.yaml");
+        
+        // Temporal schemas
+        SCHEMA_URLS.put("schedule", "https://cfdl.dev/ontology/temporal/schedule.schema.yaml");
+        SCHEMA_URLS.put("eventtrigger", "https://cfdl.dev/ontology/temporal/event_trigger.schema.yaml");
+        SCHEMA_URLS.put("recurrencerule", "https://cfdl.dev/ontology/temporal/recurrence_rule.schema.yaml");
+        
+        // Result schemas
+        SCHEMA_URLS.put("waterfall", "https://cfdl.dev/ontology/result/waterfall.schema.yaml");
+        SCHEMA_URLS.put("cashflow", "https://cfdl.dev/ontology/result/cash-flow.schema.yaml");
+        SCHEMA_URLS.put("tagdefinition", "https://cfdl.dev/ontology/result/tag-definition.schema.yaml");
+        
+        // Metric schemas
+        SCHEMA_URLS.put("dscr", "https://cfdl.dev/ontology/result/metrics/dscr.schema.yaml");
+        SCHEMA_URLS.put("eirr", "https://cfdl.dev/ontology/result/metrics/eirr.schema.yaml");
+        SCHEMA_URLS.put("enpv", "https://cfdl.dev/ontology/result/metrics/enpv.schema.yaml");
+        SCHEMA_URLS.put("irr", "https://cfdl.dev/ontology/result/metrics/irr.schema.yaml");
+        SCHEMA_URLS.put("moic", "https://cfdl.dev/ontology/result/metrics/moic.schema.yaml");
+        SCHEMA_URLS.put("npv", "https://cfdl.dev/ontology/result/metrics/npv.schema.yaml");
+        SCHEMA_URLS.put("payback", "https://cfdl.dev/ontology/result/metrics/payback.schema.yaml");
+    }
+    
+    /**
+     * Per-build content hash state: every entity subtree hashed so far, by identity
+     */
+    private static class Hashes {
+        final Map<JsonNode, Long> content = new IdentityHashMap<>();
+        final Map<JsonNode, Long> ids = new IdentityHashMap<>();
+    }
+    
+    private final SymbolTable symbols; // Filled while building, may be null
+    private final boolean contentHashes;
+    private final PropertyShape shapes = PropertyShape.root(); // Property keys interned for this builder
+    private List<ASTNode> allNodes; // Nodes collected by the last buildASTNode call
+    
+    public ASTBuilder() {
+        this(null);
+    }
+    
+    /**
+     * Create a builder that registers every node and nesting edge in the given symbol table
+     */
+    public ASTBuilder(SymbolTable symbols) {
+        this(symbols, false);
+    }
+    
+    /**
+     * Create a builder that optionally fingerprints every entity it builds,
+     * see ASTNode.getContentHash and ASTNode.getLocalHash
+     */
+    public ASTBuilder(SymbolTable symbols, boolean contentHashes) {
+        this.symbols = symbols;
+        this.contentHashes = contentHashes;
+    }
+    
+    /**
+     * Resolve the schema URL for a definition type, or null if the type is unknown
+     */
+    static String schemaUrlFor(String definitionType) {
+        return SCHEMA_URLS.get(definitionType.toLowerCase());
+    }
+    
+    /**
+     * All schema URLs a definition can be built against
+     */
+    static Collection<String> schemaUrls() {
+        return Collections.unmodifiableCollection(SCHEMA_URLS.values());
+    }
     
     /**
      * Get all AST nodes created during the last build, including nested ones
@@ -26,7 +126,72 @@ public class ASTBuilder {
      * Build an AST node from a JsonNode based on the definition type
      */
     public ASTNode buildASTNode(String definitionType, JsonNode definitionNode) {
-        this.allNodes = new ArrayList<>(); // Initialize for each top-level build
+        List<ASTNode> collected = new ArrayList<>();
+        ASTNode mainNode = build(definitionType, definitionNode, collected);
+        this.allNodes = collected;
+        return mainNode;
+    }
+    
+    /**
+     * Build every top-level definition of a parsed CFDL document, main nodes followed
+     * by their nested nodes. Definitions that fail to build are reported in errors.
+     */
+    public List<ASTNode> buildDocument(JsonNode rootNode, List<ValidationError> errors) {
+        List<ASTNode> nodes = new ArrayList<>();
+        
+        Iterator<String> fieldNames = rootNode.fieldNames();
+        while (fieldNames.hasNext()) {
+            String definitionType = fieldNames.next();
+            JsonNode definitionNode = rootNode.get(definitionType);
+            
+            // Handle both single definitions and arrays
+            if (definitionNode.isArray()) {
+                for (JsonNode item : definitionNode) {
+                    buildDefinition(definitionType, item, nodes, errors);
+                }
+            } else if (definitionNode.isObject()) {
+                buildDefinition(definitionType, definitionNode, nodes, errors);
+            }
+        }
+        
+        return nodes;
+    }
+    
+    private void buildDefinition(String definitionType, JsonNode definitionNode,
+                                 List<ASTNode> nodes, List<ValidationError> errors) {
+        try {
+            nodes.addAll(buildAll(definitionType, definitionNode));
+        } catch (Exception e) {
+            errors.add(new ValidationError(
+                ValidationError.Severity.ERROR,
+                "Failed to build AST for " + definitionType + ": " + e.getMessage()
+            ));
+        }
+    }
+    
+    /**
+     * Build a definition and return the main node followed by all nested nodes.
+     * All per-build state is local to the call.
+     */
+    public List<ASTNode> buildAll(String definitionType, JsonNode definitionNode) {
+        CompilerEvents.AstBuild event = new CompilerEvents.AstBuild();
+        event.begin();
+        
+        List<ASTNode> collected = new ArrayList<>();
+        ASTNode mainNode = build(definitionType, definitionNode, collected);
+        if (mainNode == null) {
+            return Collections.emptyList();
+        }
+        
+        List<ASTNode> nodes = new ArrayList<>(collected.size());
+        nodes.add(mainNode);
+        nodes.addAll(collected.subList(0, collected.size() - 1)); // main node is collected last
+        
+        CompilerEvents.commit(event, mainNode.getId(), mainNode.getSchemaType(), nodes.size(), mainNode.getSource());
+        return nodes;
+    }
+    
+    private ASTNode build(String definitionType, JsonNode definitionNode, List<ASTNode> collected) {
         if (!definitionNode.isObject()) {
             return null;
         }
@@ -41,101 +206,14 @@ public class ASTBuilder {
         JsonNode entityData = definitionNode.get(entityId);
         
         // Build appropriate AST node based on definition type using YAML approach
-        ASTNode mainNode = null;
-        switch (definitionType.toLowerCase()) {
-            case "deal":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/deal.schema.yaml");
-                break;
-            case "asset":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/asset.schema.yaml");
-                break;
-            case "component":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/component.schema.yaml");
-                break;
-            case "stream":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/behavior/stream.schema.yaml");
-                break;
-            // All other schema types use the universal buildNode method
-            case "assumption":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/behavior/assumption.schema.yaml");
-                break;
-            case "logicblock":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/behavior/logic-block.schema.yaml");
-                break;
-            case "ruleblock":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/behavior/rule_block.schema.yaml");
-                break;
-            case "schedule":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/temporal/schedule.schema.yaml");
-                break;
-            case "eventtrigger":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/temporal/event_trigger.schema.yaml");
-                break;
-            case "template":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/template.schema.yaml");
-                break;
-            case "contract":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/contract.schema.yaml");
-                break;
-            case "party":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/party.schema.yaml");
-                break;
-            case "fund":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/fund.schema.yaml");
-                break;
-            case "portfolio":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/portfolio.schema.yaml");
-                break;
-            case "capitalstack":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/entity/capital-stack.schema.yaml");
-                break;
-            case "waterfall":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/waterfall.schema.yaml");
-                break;
-            case "marketdata":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/behavior/market-data.schema.yaml");
-                break;
-            case "recurrencerule":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/temporal/recurrence_rule.schema.yaml");  
-                break;
-            case "calculator":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/behavior/calculators.schema.yaml");
-                break;
-            case "cashflow":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/cash-flow.schema.yaml");
-                break;
-            case "tagdefinition":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/tag-definition.schema.yaml");
-                break;
-            case "dscr":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/metrics/dscr.schema.yaml");
-                break;
-            case "eirr":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/metrics/eirr.schema.yaml");
-                break;
-            case "enpv":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/metrics/enpv.schema.yaml");
-                break;
-            case "irr":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/metrics/irr.schema.yaml");
-                break;
-            case "moic":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/metrics/moic.schema.yaml");
-                break;
-            case "npv":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/metrics/npv.schema.yaml");
-                break;
-            case "payback":
-                mainNode = buildNode(entityId, entityData, "https://cfdl.dev/ontology/result/metrics/payback.schema.yaml");
-                break;
-            default:
-                System.out.println("Warning: Unknown definition type: " + definitionType);
-                return null;
-        }
-        
-        if (mainNode != null) {
-            allNodes.add(mainNode);
+        // All schema types use the universal buildNode method
+        String schemaUrl = schemaUrlFor(definitionType);
+        if (schemaUrl == null) {
+            log.warn("Unknown definition type: {}", definitionType);
+            return null;
         }
+        ASTNode mainNode = buildNode(entityId, entityData, schemaUrl, collected, contentHashes ? new Hashes() : null);
+        collected.add(mainNode);
         
         return mainNode;
     }
@@ -144,9 +222,11 @@ public class ASTBuilder {
      * Universal node builder for ALL schema types
      * Uses properties Map approach - no specific fields
      */
-    private ASTNode buildNode(String id, JsonNode data, String schemaUrl) {
+    private ASTNode buildNode(String id, JsonNode data, String schemaUrl, List<ASTNode> collected, Hashes hashes) {
         String name = getStringValue(data, "name", id);
-        ASTNode node = new ASTNode(id, name, schemaUrl);
+        ASTNode node = new ASTNode(id, name, schemaUrl, shapes);
+        CompilerMetrics.global().nodeBuilt(schemaUrl);
+        node.setSource(data);
         
         // Store ALL JSON properties in the properties Map
         data.fields().forEachRemaining(field -> {
@@ -154,23 +234,25 @@ public class ASTBuilder {
             JsonNode value = field.getValue();
             
             if (!key.equals("name")) { // name is already set
-                if (value.isTextual()) {
-                    node.setProperty(key, value.asText());
-                } else if (value.isNumber()) {
-                    node.setProperty(key, value.asDouble());
-                } else if (value.isBoolean()) {
-                    node.setProperty(key, value.asBoolean());
-                } else if (value.isNull()) {
-                    node.setProperty(key, null);
-                } else {
-                    // Complex objects (arrays, nested objects)
-                    node.setProperty(key, convertJsonNodeToObject(value));
-                }
+                node.setProperty(key, toPropertyValue(value));
             }
         });
         
+        if (symbols != null) {
+            symbols.define(node);
+        }
+        
         // Handle nested entities (assets, components, streams)
-        handleNestedEntities(node, data);
+        handleNestedEntities(node, data, collected, hashes);
+        
+        // Nested entities are hashed by now and are folded in without walking them again
+        if (hashes != null) {
+            long contentHash = ContentHash.of(data, hashes.content);
+            long localHash = ContentHash.of(data, hashes.ids);
+            hashes.content.put(data, contentHash);
+            hashes.ids.put(data, ContentHash.of(id));
+            node.setContentHashes(contentHash, localHash);
+        }
         
         return node;
     }
@@ -178,7 +260,7 @@ public class ASTBuilder {
     /**
      * Handle nested entity definitions within a parent node
      */
-    private void handleNestedEntities(ASTNode parentNode, JsonNode data) {
+    private void handleNestedEntities(ASTNode parentNode, JsonNode data, List<ASTNode> collected, Hashes hashes) {
         // Handle nested assets
         if (data.has("assets") && data.get("assets").isArray()) {
             List<String> assetIds = new ArrayList<>();
@@ -189,12 +271,14 @@ public class ASTBuilder {
                     if (fields.hasNext()) {
                         String assetId = fields.next();
                         JsonNode assetData = assetDef.get(assetId);
-                        ASTNode asset = buildNode(assetId, assetData, "https://cfdl.dev/ontology/entity/asset.schema.yaml");
-                        allNodes.add(asset);
+                        ASTNode asset = buildNode(assetId, assetData, "https://cfdl.dev/ontology/entity/asset.schema.yaml", collected, hashes);
+                        collected.add(asset);
                         assetIds.add(assetId);
+                        link(parentNode, "assets", assetId, null);
                     }
                 } else if (assetNode.isTextual()) {
                     assetIds.add(assetNode.asText());
+                    link(parentNode, "assets", assetNode.asText(), SchemaTypes.ASSET);
                 }
             }
             parentNode.setProperty("assetIds", assetIds);
@@ -210,12 +294,14 @@ public class ASTBuilder {
                     if (fields.hasNext()) {
                         String componentId = fields.next();
                         JsonNode componentData = componentDef.get(componentId);
-                        ASTNode component = buildNode(componentId, componentData, "https://cfdl.dev/ontology/entity/component.schema.yaml");
-                        allNodes.add(component);
+                        ASTNode component = buildNode(componentId, componentData, "https://cfdl.dev/ontology/entity/component.schema.yaml", collected, hashes);
+                        collected.add(component);
                         componentIds.add(componentId);
+                        link(parentNode, "components", componentId, null);
                     }
                 } else if (componentNode.isTextual()) {
                     componentIds.add(componentNode.asText());
+                    link(parentNode, "components", componentNode.asText(), SchemaTypes.COMPONENT);
                 }
             }
             parentNode.setProperty("componentIds", componentIds);
@@ -231,18 +317,33 @@ public class ASTBuilder {
                     if (fields.hasNext()) {
                         String streamId = fields.next();
                         JsonNode streamData = streamDef.get(streamId);
-                        ASTNode stream = buildNode(streamId, streamData, "https://cfdl.dev/ontology/behavior/stream.schema.yaml");
-                        allNodes.add(stream);
+                        ASTNode stream = buildNode(streamId, streamData, "https://cfdl.dev/ontology/behavior/stream.schema.yaml", collected, hashes);
+                        collected.add(stream);
                         streamIds.add(streamId);
+                        link(parentNode, "streams", streamId, null);
                     }
                 } else if (streamNode.isTextual()) {
                     streamIds.add(streamNode.asText());
+                    link(parentNode, "streams", streamNode.asText(), SchemaTypes.STREAM);
                 }
             }
             parentNode.setProperty("streamIds", streamIds);
         }
     }
     
+    /**
+     * Record a nesting edge; entities listed by id are also references to resolve
+     */
+    private void link(ASTNode parentNode, String field, String childId, String referencedSchemaType) {
+        if (symbols == null) {
+            return;
+        }
+        symbols.addChild(parentNode.getId(), childId);
+        if (referencedSchemaType != null) {
+            symbols.addReference(parentNode.getId(), field, childId, referencedSchemaType);
+        }
+    }
+    
     // Helper methods
     private String getStringValue(JsonNode data, String fieldName, String defaultValue) {
         if (data.has(fieldName) && data.get(fieldName).isTextual()) {
@@ -251,10 +352,27 @@ public class ASTBuilder {
         return defaultValue;
     }
     
+    /**
+     * Convert a top-level property value; scalar numbers are always stored as Double
+     */
+    static Object toPropertyValue(JsonNode value) {
+        if (value.isTextual()) {
+            return value.asText();
+        } else if (value.isNumber()) {
+            return value.asDouble();
+        } else if (value.isBoolean()) {
+            return value.asBoolean();
+        } else if (value.isNull()) {
+            return null;
+        }
+        // Complex objects (arrays, nested objects)
+        return convertJsonNodeToObject(value);
+    }
+    
     /**
      * Convert a JsonNode to a Java Object for storage in AST properties
      */
-    private Object convertJsonNodeToObject(JsonNode node) {
+    static Object convertJsonNodeToObject(JsonNode node) {
         if (node.isNull()) {
             return null;
         } else if (node.isBoolean()) {
@@ -4,31 +4,52 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * YAML-Based AST Node
  * 
  * Designed specifically for YAML parsing approach where ALL data
  * is stored in the properties Map, not individual fields.
+ * 
+ * Properties are kept as a shared PropertyShape (the key layout) plus a compact
+ * array of values; getProperties() is a live Map view over them.
  */
 public class ASTNode {
+    private static final Object[] NO_VALUES = new Object[0];
+    
     protected String id;
     protected String name;
     protected String schemaType;
-    protected Map<String, Object> properties;
+    private PropertyShape shape;
+    private Object[] values = NO_VALUES;
     protected List<ValidationError> validationErrors;
+    protected JsonNode source; // Original YAML subtree, null for programmatically built nodes
+    protected long contentHash; // Whole subtree including nested entities, 0 unless requested
+    protected long localHash;   // Own fields, nested entities counted by id only
     
     private static final ObjectMapper objectMapper = new ObjectMapper();
     
     public ASTNode(String id, String name, String schemaType) {
+        this(id, name, schemaType, PropertyShape.SHARED_ROOT);
+    }
+    
+    /**
+     * Node whose shapes come from the given shape tree, normally one per parse
+     */
+    ASTNode(String id, String name, String schemaType, PropertyShape rootShape) {
         this.id = id;
         this.name = name;
         this.schemaType = schemaType;
-        this.properties = new HashMap<>();
+        this.shape = rootShape;
         this.validationErrors = new ArrayList<>();
     }
     
@@ -36,15 +57,59 @@ public class ASTNode {
     public String getId() { return id; }
     public String getName() { return name; }
     public String getSchemaType() { return schemaType; }
-    public Map<String, Object> getProperties() { return properties; }
+    public Map<String, Object> getProperties() { return new PropertyView(); }
+
+    // Key layout, shared with every node of the same tree that has the same keys
+    PropertyShape getShape() { return shape; }
+
+    // Streaming readers only learn the name once its field is reached
+    void setName(String name) { this.name = name; }
+    
+    /**
+     * The YAML subtree this node was built from, validated directly without copying
+     */
+    public JsonNode getSource() { return source; }
+    void setSource(JsonNode source) { this.source = source; }
     
+    /**
+     * Content hashes, filled by an ASTBuilder created with content hashing enabled
+     */
+    public long getContentHash() { return contentHash; }
+    public long getLocalHash() { return localHash; }
+    void setContentHashes(long contentHash, long localHash) {
+        this.contentHash = contentHash;
+        this.localHash = localHash;
+    }
+
     // Property management
     public void setProperty(String key, Object value) {
-        this.properties.put(key, value);
+        int slot = shape.indexOf(key);
+        if (slot < 0) {
+            shape = shape.with(key);
+            slot = shape.size() - 1;
+            if (slot >= values.length) {
+                values = Arrays.copyOf(values, Math.max(4, values.length * 2));
+            }
+        }
+        values[slot] = value;
     }
     
     public Object getProperty(String key) {
-        return this.properties.get(key);
+        int slot = shape.indexOf(key);
+        return slot >= 0 ? values[slot] : null;
+    }
+    
+    public boolean hasProperty(String key) {
+        return shape.indexOf(key) >= 0;
+    }
+    
+    private Object removeProperty(int slot) {
+        Object previous = values[slot];
+        int size = shape.size();
+        System.arraycopy(values, slot + 1, values, slot, size - slot - 1);
+        values[size - 1] = null;
+        shape = shape.without(slot);
+        return previous;
     }
     
     public String getStringProperty(String key) {
@@ -69,7 +134,8 @@ public class ASTNode {
      * YAML-Compatible JSON Serialization
      * 
      * Serializes ALL properties from the properties Map,
-     * which is where YAML parser stores data.
+     * which is where YAML parser stores data. This copies every value, so
+     * validation only uses it for nodes without a source subtree.
      */
     public JsonNode toJson() {
         ObjectNode json = objectMapper.createObjectNode();
@@ -78,8 +144,10 @@ public class ASTNode {
         if (id != null) json.put("id", id);
         if (name != null) json.put("name", name);
         
-        // Serialize ALL properties from properties Map
-        properties.forEach((key, value) -> {
+        // Serialize ALL properties
+        for (int slot = 0; slot < shape.size(); slot++) {
+            String key = shape.key(slot);
+            Object value = values[slot];
             if (!key.equals("lineNumber") && !key.equals("columnNumber")) {
                 if (value instanceof Number) {
                     json.put(key, ((Number) value).doubleValue());
@@ -90,11 +158,11 @@ public class ASTNode {
                 } else if (value == null) {
                     json.putNull(key);
                 } else {
-                    // Complex objects (schedules, etc.)
-                    json.putPOJO(key, value);
+                    // Complex objects (schedules, etc.) become real subtrees, not embedded POJOs
+                    json.set(key, objectMapper.valueToTree(value));
                 }
             }
-        });
+        }
         
         return json;
     }
@@ -104,4 +172,81 @@ public class ASTNode {
         return String.format("ASTNode{id='%s', name='%s', schema='%s'}", 
             id, name, schemaType);
     }
+    
+    /**
+     * Map view of the properties in shape order
+     */
+    private class PropertyView extends AbstractMap<String, Object> {
+        
+        @Override
+        public int size() {
+            return shape.size();
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return shape.indexOf(key) >= 0;
+        }
+        
+        @Override
+        public Object get(Object key) {
+            int slot = shape.indexOf(key);
+            return slot >= 0 ? values[slot] : null;
+        }
+        
+        @Override
+        public Object put(String key, Object value) {
+            Object previous = getProperty(key);
+            setProperty(key, value);
+            return previous;
+        }
+        
+        @Override
+        public Object remove(Object key) {
+            int slot = shape.indexOf(key);
+            return slot >= 0 ? removeProperty(slot) : null;
+        }
+        
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public int size() {
+                    return shape.size();
+                }
+                
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private int next;
+                        private int last = -1;
+                        
+                        @Override
+                        public boolean hasNext() {
+                            return next < shape.size();
+                        }
+                        
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            last = next++;
+                            return new SimpleImmutableEntry<>(shape.key(last), values[last]);
+                        }
+                        
+                        @Override
+                        public void remove() {
+                            if (last < 0) {
+                                throw new IllegalStateException();
+                            }
+                            removeProperty(last);
+                            next = last;
+                            last = -1;
+                        }
+                    };
+                }
+            };
+        }
+    }
 }
\ No newline at end of file
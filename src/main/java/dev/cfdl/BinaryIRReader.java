@@ -0,0 +1,246 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped reader for binary IR written by BinaryIRWriter
+ *
+ * Opening a file only maps it and checks the header. Entity and stream fields are
+ * read from their fixed-width records on access and strings are decoded on demand;
+ * only getExtras() and toBuildResult() parse JSON.
+ */
+public final class BinaryIRReader {
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final ByteBuffer buffer;
+    private final int entityCount;
+    private final int streamCount;
+    private final int stringCount;
+    private final int entitiesOffset;
+    private final int streamsOffset;
+    private final int stringsOffset;
+    private final int stringBytesOffset;
+    private final int extrasOffset;
+    private final int extrasBytesOffset;
+
+    private BinaryIRReader(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        byte[] magic = new byte[BinaryIRWriter.MAGIC.length];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = buffer.get(i);
+        }
+        if (!Arrays.equals(magic, BinaryIRWriter.MAGIC)) {
+            throw new IOException("Not a binary CFDL IR file");
+        }
+        if (buffer.getInt(8) != BinaryIRWriter.VERSION) {
+            throw new IOException("Unsupported binary IR version " + buffer.getInt(8));
+        }
+
+        entityCount = buffer.getInt(12);
+        entitiesOffset = (int) buffer.getLong(16);
+        streamCount = buffer.getInt(24);
+        stringCount = buffer.getInt(28);
+        streamsOffset = (int) buffer.getLong(32);
+        stringsOffset = (int) buffer.getLong(40);
+        extrasOffset = (int) buffer.getLong(48);
+        stringBytesOffset = stringsOffset + 4 * (stringCount + 1);
+        extrasBytesOffset = extrasOffset + 8 * (entityCount + 1);
+    }
+
+    /**
+     * Map a binary IR file read-only
+     */
+    public static BinaryIRReader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary IR file too large to map: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryIRReader(mapped);
+        }
+    }
+
+    // Strings
+
+    public int getStringCount() { return stringCount; }
+
+    /**
+     * Decode a dictionary string, null for index -1
+     */
+    public String getString(int index) {
+        if (index < 0) {
+            return null;
+        }
+        int start = buffer.getInt(stringsOffset + 4 * index);
+        int end = buffer.getInt(stringsOffset + 4 * (index + 1));
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(stringBytesOffset + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Entities
+
+    public int getEntityCount() { return entityCount; }
+
+    public String getSchemaType(int entity) { return getString(entityInt(entity, 0)); }
+    public String getId(int entity) { return getString(entityInt(entity, 1)); }
+    public String getName(int entity) { return getString(entityInt(entity, 2)); }
+    public String getUri(int entity) { return getString(entityInt(entity, 3)); }
+
+    /**
+     * Index of the entity this one is nested in, or -1
+     */
+    public int getParent(int entity) { return entityInt(entity, 4); }
+
+    /**
+     * Properties not held in fixed fields, parsed from the entity's JSON blob
+     */
+    public Map<String, Object> getExtras(int entity) throws IOException {
+        int extras = entityInt(entity, 5);
+        long start = buffer.getLong(extrasOffset + 8 * extras);
+        long end = buffer.getLong(extrasOffset + 8 * (extras + 1));
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(extrasBytesOffset + (int) start + i);
+        }
+
+        // Same number typing as the AST: JSON decimals are Double, integers Integer or Long
+        JsonNode json = jsonMapper.readTree(bytes);
+        Map<String, Object> properties = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = json.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            properties.put(field.getKey(), ASTBuilder.convertJsonNodeToObject(field.getValue()));
+        }
+        return properties;
+    }
+
+    // Streams
+
+    public int getStreamCount() { return streamCount; }
+
+    public int getStreamEntity(int stream) { return streamInt(stream, 0); }
+    public String getStreamScope(int stream) { return getString(streamInt(stream, 1)); }
+    public String getStreamCategory(int stream) { return getString(streamInt(stream, 2)); }
+    public String getStreamSubType(int stream) { return getString(streamInt(stream, 3)); }
+    public String getStreamGrowthType(int stream) { return getString(streamInt(stream, 4)); }
+    public int getStreamFlags(int stream) { return streamInt(stream, 6); }
+
+    /**
+     * Numeric amount, NaN when the stream has none or it is a formula
+     */
+    public double getStreamAmount(int stream) {
+        return buffer.getDouble(streamsOffset + stream * BinaryIRWriter.STREAM_RECORD_SIZE + 32);
+    }
+
+    /**
+     * Growth rate copied from the growth spec, NaN when absent
+     */
+    public double getStreamGrowthRate(int stream) {
+        return buffer.getDouble(streamsOffset + stream * BinaryIRWriter.STREAM_RECORD_SIZE + 40);
+    }
+
+    public int getStreamExecutionOrder(int stream) { return streamInt(stream, 5); }
+
+    // Reconstruction
+
+    /**
+     * Rebuild an IRBuildResult holding every entity with all its properties
+     */
+    public IRBuildResult toBuildResult() throws IOException {
+        List<IRNode> nodes = new ArrayList<>(entityCount);
+        for (int entity = 0; entity < entityCount; entity++) {
+            IRNode node = new IRNode(getId(entity), getName(entity), getSchemaType(entity));
+            if (getUri(entity) != null) {
+                node.setProperty("id", getUri(entity));
+            }
+            getExtras(entity).forEach(node::setProperty);
+            nodes.add(node);
+        }
+
+        for (int stream = 0; stream < streamCount; stream++) {
+            IRNode node = nodes.get(getStreamEntity(stream));
+            int flags = getStreamFlags(stream);
+            setIfPresent(node, "scope", getStreamScope(stream));
+            setIfPresent(node, "category", getStreamCategory(stream));
+            setIfPresent(node, "subType", getStreamSubType(stream));
+            if ((flags & BinaryIRWriter.HAS_AMOUNT) != 0) {
+                node.setProperty("amount", getStreamAmount(stream));
+            }
+            if ((flags & BinaryIRWriter.HAS_EXECUTION_ORDER) != 0) {
+                node.setProperty("executionOrder", getStreamExecutionOrder(stream));
+            }
+            if ((flags & BinaryIRWriter.HAS_EXECUTABLE) != 0) {
+                node.setProperty("isExecutable", (flags & BinaryIRWriter.EXECUTABLE) != 0);
+            }
+        }
+
+        return new IRBuildResult(nodes, new ArrayList<>());
+    }
+
+    // Helper methods
+
+    private int entityInt(int entity, int field) {
+        if (entity < 0 || entity >= entityCount) {
+            throw new IndexOutOfBoundsException("Entity " + entity + " of " + entityCount);
+        }
+        return buffer.getInt(entitiesOffset + entity * BinaryIRWriter.ENTITY_RECORD_SIZE + 4 * field);
+    }
+
+    private int streamInt(int stream, int field) {
+        if (stream < 0 || stream >= streamCount) {
+            throw new IndexOutOfBoundsException("Stream " + stream + " of " + streamCount);
+        }
+        return buffer.getInt(streamsOffset + stream * BinaryIRWriter.STREAM_RECORD_SIZE + 4 * field);
+    }
+
+    private static void setIfPresent(IRNode node, String key, String value) {
+        if (value != null) {
+            node.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Print the header counts of a binary IR file
+     *
+     * java dev.cfdl.BinaryIRReader <ir.cfdlir>
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java dev.cfdl.BinaryIRReader <ir.cfdlir>");
+            System.exit(1);
+        }
+
+        try {
+            long start = System.nanoTime();
+            BinaryIRReader reader = open(Paths.get(args[0]));
+            long opened = System.nanoTime() - start;
+            System.out.println(String.format("📦 %s: %d entities, %d streams, %d strings (opened in %.1f µs)",
+                args[0], reader.getEntityCount(), reader.getStreamCount(), reader.getStringCount(), opened / 1000.0));
+        } catch (IOException e) {
+            System.err.println("❌ Error reading binary IR: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary IR writer
+ *
+ * Writes an IRBuildResult in a compact little-endian format that BinaryIRReader can
+ * memory-map and read record by record without deserializing the file:
+ *
+ *   header     64 bytes: magic, version, counts and section offsets
+ *   entities   fixed 24-byte records: schema type, id, name, uri (string indexes),
+ *              parent entity index, extras index
+ *   streams    fixed 48-byte records: entity index, scope, category, subType,
+ *              growth type (string indexes), executionOrder, flags, amount, growth rate
+ *   strings    dictionary: int offsets[count + 1], then UTF-8 bytes
+ *   extras     per entity, the properties not held in fixed fields as a JSON object:
+ *              long offsets[count + 1], then the bytes
+ *
+ * Missing string fields are -1, missing numbers NaN; the stream flags record which
+ * typed fields are present. Sections start on 8-byte boundaries.
+ */
+public class BinaryIRWriter {
+
+    static final byte[] MAGIC = "CFDLIR01".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int ENTITY_RECORD_SIZE = 24;
+    static final int STREAM_RECORD_SIZE = 48;
+
+    // Stream flags
+    static final int HAS_AMOUNT = 1;
+    static final int HAS_EXECUTION_ORDER = 1 << 1;
+    static final int HAS_EXECUTABLE = 1 << 2;
+    static final int EXECUTABLE = 1 << 3;
+    static final int HAS_GROWTH_RATE = 1 << 4;
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+    /**
+     * Write the IR of a build result to a file
+     */
+    public void write(IRBuildResult result, Path file) throws IOException {
+        strings.clear();
+        List<IRNode> nodes = result.getIrNodes();
+        int entityCount = nodes.size();
+
+        // Parent links come from the nested id lists
+        Map<String, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < entityCount; i++) {
+            indexById.putIfAbsent(nodes.get(i).getId(), i);
+        }
+        int[] parents = new int[entityCount];
+        Arrays.fill(parents, -1);
+        for (int i = 0; i < entityCount; i++) {
+            for (String idsKey : new String[]{"assetIds", "componentIds", "streamIds"}) {
+                Object ids = nodes.get(i).getProperty(idsKey);
+                if (ids instanceof List) {
+                    for (Object childId : (List<?>) ids) {
+                        Integer child = indexById.get(String.valueOf(childId));
+                        if (child != null) {
+                            parents[child] = i;
+                        }
+                    }
+                }
+            }
+        }
+
+        ByteBuffer entities = allocate((long) entityCount * ENTITY_RECORD_SIZE);
+        ByteArrayOutputStream streamRecords = new ByteArrayOutputStream();
+        ByteBuffer streamRecord = ByteBuffer.allocate(STREAM_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteArrayOutputStream extras = new ByteArrayOutputStream();
+        long[] extrasOffsets = new long[entityCount + 1];
+        int streamCount = 0;
+
+        for (int i = 0; i < entityCount; i++) {
+            IRNode node = nodes.get(i);
+            Map<String, Object> rest = new LinkedHashMap<>(node.getProperties());
+
+            Object uri = rest.get("id");
+            int uriIndex = -1;
+            if (uri instanceof String) {
+                uriIndex = intern((String) uri);
+                rest.remove("id");
+            }
+
+            entities.putInt(intern(node.getSchemaType()));
+            entities.putInt(intern(node.getId()));
+            entities.putInt(intern(node.getName()));
+            entities.putInt(uriIndex);
+            entities.putInt(parents[i]);
+            entities.putInt(i);
+
+            if (SchemaTypes.STREAM.equals(node.getSchemaType())) {
+                writeStreamRecord(streamRecord, i, rest);
+                streamRecords.write(streamRecord.array(), 0, STREAM_RECORD_SIZE);
+                streamCount++;
+            }
+
+            extrasOffsets[i] = extras.size();
+            extras.write(jsonMapper.writeValueAsBytes(rest));
+        }
+        extrasOffsets[entityCount] = extras.size();
+
+        // String dictionary
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        ByteBuffer stringOffsets = allocate(4L * (strings.size() + 1));
+        for (String value : strings.keySet()) {
+            stringOffsets.putInt(stringBytes.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            stringBytes.write(bytes, 0, bytes.length);
+        }
+        stringOffsets.putInt(stringBytes.size());
+
+        ByteBuffer extrasIndex = allocate(8L * (entityCount + 1));
+        for (long offset : extrasOffsets) {
+            extrasIndex.putLong(offset);
+        }
+
+        // Section layout
+        long entitiesOffset = HEADER_SIZE;
+        long streamsOffset = align(entitiesOffset + entities.capacity());
+        long stringsOffset = align(streamsOffset + streamRecords.size());
+        long extrasOffset = align(stringsOffset + stringOffsets.capacity() + stringBytes.size());
+
+        ByteBuffer header = allocate(HEADER_SIZE);
+        header.put(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(entityCount);
+        header.putLong(entitiesOffset);
+        header.putInt(streamCount);
+        header.putInt(strings.size());
+        header.putLong(streamsOffset);
+        header.putLong(stringsOffset);
+        header.putLong(extrasOffset);
+        header.putInt(entityCount);
+        header.putInt(0);
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeAt(channel, header, 0);
+            writeAt(channel, entities, entitiesOffset);
+            writeAt(channel, ByteBuffer.wrap(streamRecords.toByteArray()), streamsOffset);
+            writeAt(channel, stringOffsets, stringsOffset);
+            writeAt(channel, ByteBuffer.wrap(stringBytes.toByteArray()), stringsOffset + stringOffsets.capacity());
+            writeAt(channel, extrasIndex, extrasOffset);
+            writeAt(channel, ByteBuffer.wrap(extras.toByteArray()), extrasOffset + extrasIndex.capacity());
+        }
+    }
+
+    /**
+     * Move the typed stream fields out of the remaining properties into a fixed record
+     */
+    private void writeStreamRecord(ByteBuffer record, int entity, Map<String, Object> rest) {
+        record.clear();
+        int flags = 0;
+
+        int scope = takeString(rest, "scope");
+        int category = takeString(rest, "category");
+        int subType = takeString(rest, "subType");
+
+        double amount = Double.NaN;
+        if (rest.get("amount") instanceof Double) {
+            amount = (Double) rest.remove("amount");
+            flags |= HAS_AMOUNT;
+        }
+
+        int executionOrder = 0;
+        if (rest.get("executionOrder") instanceof Integer) {
+            executionOrder = (Integer) rest.remove("executionOrder");
+            flags |= HAS_EXECUTION_ORDER;
+        }
+
+        if (rest.get("isExecutable") instanceof Boolean) {
+            flags |= HAS_EXECUTABLE;
+            if ((Boolean) rest.remove("isExecutable")) {
+                flags |= EXECUTABLE;
+            }
+        }
+
+        // Growth stays in the extras; its type and rate are copied out for typed access
+        int growthType = -1;
+        double growthRate = Double.NaN;
+        Object growth = rest.get("growth");
+        if (growth instanceof Map) {
+            Object type = ((Map<?, ?>) growth).get("type");
+            if (type instanceof String) {
+                growthType = intern((String) type);
+            }
+            Object rate = ((Map<?, ?>) growth).get("rate");
+            if (rate instanceof Number) {
+                growthRate = ((Number) rate).doubleValue();
+                flags |= HAS_GROWTH_RATE;
+            }
+        }
+
+        record.putInt(entity);
+        record.putInt(scope);
+        record.putInt(category);
+        record.putInt(subType);
+        record.putInt(growthType);
+        record.putInt(executionOrder);
+        record.putInt(flags);
+        record.putInt(0);
+        record.putDouble(amount);
+        record.putDouble(growthRate);
+    }
+
+    // Helper methods
+
+    private int takeString(Map<String, Object> rest, String key) {
+        Object value = rest.get(key);
+        if (value instanceof String) {
+            rest.remove(key);
+            return intern((String) value);
+        }
+        return -1;
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = strings.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.put(value, index);
+        }
+        return index;
+    }
+
+    private static ByteBuffer allocate(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("IR section too large: " + size + " bytes");
+        }
+        return ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static void writeAt(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        if (buffer.position() > 0) {
+            buffer.flip();
+        }
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package dev.cfdl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Business days of a holiday calendar, precomputed over a horizon of epoch days
+ *
+ * A calendar is built once per holiday rule set and shared: "US" and "united_states"
+ * are the same calendar, and "none", "target" and unknown names all have weekends only.
+ * Over its horizon it keeps, indexed by epoch day minus the first day:
+ *
+ *   closed              bitset of weekend days and holidays
+ *   following           first business day on or after the day
+ *   preceding           last business day on or before the day
+ *   modifiedFollowing   following, or preceding when following leaves the month
+ *   businessBefore      business days before the day, so any range counts in O(1)
+ *
+ * Days are ints (epoch days fit until the year 5 879 611). The horizon defaults to
+ * 1990-01-01..2100-12-31 and can be set with -Dcfdl.calendarHorizon=from..to; days
+ * outside it fall back to checking the rules date by date.
+ */
+public final class BusinessCalendar {
+
+    private static final Logger log = LoggerFactory.getLogger(BusinessCalendar.class);
+
+    // Business day conventions
+    static final int UNADJUSTED = 0;
+    static final int FOLLOWING = 1;
+    static final int PRECEDING = 2;
+    static final int MODIFIED_FOLLOWING = 3;
+
+    // Holiday rule sets
+    private static final int WEEKENDS = 0;
+    private static final int US = 1;
+    private static final int UK = 2;
+    private static final String[] RULE_NAMES = {"weekends", "US", "UK"};
+
+    private static final LocalDate[] HORIZON = horizon(System.getProperty("cfdl.calendarHorizon"));
+    private static final ConcurrentMap<Integer, BusinessCalendar> SHARED = new ConcurrentHashMap<>();
+
+    private final int rules;
+    private final int firstDay;
+    private final int days;
+    private final long[] closed;
+    private final int[] following;
+    private final int[] preceding;
+    private final int[] modifiedFollowing;
+    private final int[] businessBefore;
+
+    private BusinessCalendar(int rules, LocalDate from, LocalDate to) {
+        this.rules = rules;
+        this.firstDay = Math.toIntExact(from.toEpochDay());
+        this.days = Math.max(0, Math.toIntExact(to.toEpochDay() - from.toEpochDay() + 1));
+        this.closed = new long[(days + 63) >>> 6];
+        this.following = new int[days];
+        this.preceding = new int[days];
+        this.modifiedFollowing = new int[days];
+        this.businessBefore = new int[days + 1];
+
+        LocalDate date = from;
+        for (int i = 0; i < days; i++, date = date.plusDays(1)) {
+            boolean open = isBusinessDay(date, rules);
+            if (!open) {
+                closed[i >>> 6] |= 1L << i;
+            }
+            businessBefore[i + 1] = businessBefore[i] + (open ? 1 : 0);
+        }
+
+        // Backward pass for following, forward pass for preceding; past the horizon the rules decide
+        int next = days > 0 ? (int) scan(firstDay + days, 1) : 0;
+        for (int i = days - 1; i >= 0; i--) {
+            next = isOpen(i) ? firstDay + i : next;
+            following[i] = next;
+        }
+        int last = days > 0 ? (int) scan(firstDay - 1, -1) : 0;
+        for (int i = 0; i < days; i++) {
+            last = isOpen(i) ? firstDay + i : last;
+            preceding[i] = last;
+        }
+        for (int i = 0; i < days; i++) {
+            boolean sameMonth = LocalDate.ofEpochDay(following[i]).getMonth() == LocalDate.ofEpochDay(firstDay + i).getMonth();
+            modifiedFollowing[i] = sameMonth ? following[i] : preceding[i];
+        }
+
+        log.debug("📅 Business calendar {} over {}..{}: {} business days", RULE_NAMES[rules], from, to, businessBefore[days]);
+    }
+
+    /**
+     * The shared calendar of a holidayCalendar name over the configured horizon
+     */
+    public static BusinessCalendar of(String holidayCalendar) {
+        return SHARED.computeIfAbsent(rulesOf(holidayCalendar), rules -> new BusinessCalendar(rules, HORIZON[0], HORIZON[1]));
+    }
+
+    /**
+     * A calendar of a holidayCalendar name over its own horizon, not shared
+     */
+    public static BusinessCalendar build(String holidayCalendar, LocalDate from, LocalDate to) {
+        return new BusinessCalendar(rulesOf(holidayCalendar), from, to);
+    }
+
+    public String getName() { return RULE_NAMES[rules]; }
+    public LocalDate getFrom() { return LocalDate.ofEpochDay(firstDay); }
+    public LocalDate getTo() { return LocalDate.ofEpochDay(firstDay + (long) days - 1); }
+
+    public boolean isBusinessDay(long epochDay) {
+        long i = epochDay - firstDay;
+        return i >= 0 && i < days ? isOpen((int) i) : isBusinessDay(LocalDate.ofEpochDay(epochDay), rules);
+    }
+
+    /**
+     * A day moved to a business day by a convention code
+     */
+    public long adjust(long epochDay, int convention) {
+        long i = epochDay - firstDay;
+        boolean inside = i >= 0 && i < days;
+        switch (convention) {
+            case FOLLOWING:
+                return inside ? following[(int) i] : scan(epochDay, 1);
+            case PRECEDING:
+                return inside ? preceding[(int) i] : scan(epochDay, -1);
+            case MODIFIED_FOLLOWING:
+                if (inside) {
+                    return modifiedFollowing[(int) i];
+                }
+                long adjusted = scan(epochDay, 1);
+                return LocalDate.ofEpochDay(adjusted).getMonth() != LocalDate.ofEpochDay(epochDay).getMonth()
+                    ? scan(epochDay, -1) : adjusted;
+            default:
+                return epochDay;
+        }
+    }
+
+    /**
+     * Business days from one day to another, both included
+     */
+    public int countBusinessDays(long fromDay, long toDay) {
+        if (toDay < fromDay) {
+            return 0;
+        }
+        long from = fromDay - firstDay;
+        long to = toDay - firstDay;
+        if (from >= 0 && to < days) {
+            return businessBefore[(int) to + 1] - businessBefore[(int) from];
+        }
+        int count = 0;
+        for (long day = fromDay; day <= toDay; day++) {
+            count += isBusinessDay(day) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Code of a business day convention name; unknown names warn and follow
+     */
+    static int conventionOf(String convention) {
+        switch (convention.toLowerCase()) {
+            case "none":
+            case "unadjusted":
+                return UNADJUSTED;
+            case "following":
+                return FOLLOWING;
+            case "preceding":
+            case "previous":
+                return PRECEDING;
+            case "modified_following":
+            case "modifiedfollowing":
+                return MODIFIED_FOLLOWING;
+            default:
+                log.warn("Unknown business day convention '{}', using 'following'", convention);
+                return FOLLOWING;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BusinessCalendar{%s, %s..%s}", getName(), getFrom(), getTo());
+    }
+
+    // Helper methods
+
+    private boolean isOpen(int i) {
+        return (closed[i >>> 6] & (1L << i)) == 0;
+    }
+
+    /**
+     * First business day from a day in a direction, by the rules
+     */
+    private long scan(long epochDay, int direction) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        while (!isBusinessDay(date, rules)) {
+            date = date.plusDays(direction);
+        }
+        return date.toEpochDay();
+    }
+
+    private static int rulesOf(String calendar) {
+        switch (calendar.toLowerCase()) {
+            case "us":
+            case "united_states":
+                return US;
+            case "uk":
+            case "united_kingdom":
+                return UK;
+            default:
+                return WEEKENDS; // none, target and unknown calendars have no holidays
+        }
+    }
+
+    private static boolean isBusinessDay(LocalDate date, int rules) {
+        DayOfWeek day = date.getDayOfWeek();
+        if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY) {
+            return false;
+        }
+        switch (rules) {
+            case US:
+                return !isUsHoliday(date);
+            case UK:
+                return !isUkHoliday(date);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * US federal holidays on their calendar dates, without observance shifts
+     */
+    private static boolean isUsHoliday(LocalDate date) {
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        boolean monday = date.getDayOfWeek() == DayOfWeek.MONDAY;
+
+        return (month == 1 && day == 1)                                   // New Year's Day
+            || (month == 7 && day == 4)                                   // Independence Day
+            || (month == 12 && day == 25)                                 // Christmas Day
+            || (month == 1 && monday && day >= 15 && day <= 21)           // Martin Luther King Jr. Day
+            || (month == 2 && monday && day >= 15 && day <= 21)           // Presidents Day
+            || (month == 5 && monday && day >= 25)                        // Memorial Day
+            || (month == 9 && monday && day <= 7)                         // Labor Day
+            || (month == 10 && monday && day >= 8 && day <= 14)           // Columbus Day
+            || (month == 11 && date.getDayOfWeek() == DayOfWeek.THURSDAY
+                && day >= 22 && day <= 28);                               // Thanksgiving
+    }
+
+    /**
+     * UK bank holidays with fixed dates only
+     */
+    private static boolean isUkHoliday(LocalDate date) {
+        int month = date.getMonthValue();
+        int day = date.getDayOfMonth();
+        return (month == 1 && day == 1) || (month == 12 && (day == 25 || day == 26));
+    }
+
+    /**
+     * Horizon from a from..to property, the default when absent or invalid
+     */
+    private static LocalDate[] horizon(String property) {
+        LocalDate[] horizon = {LocalDate.of(1990, 1, 1), LocalDate.of(2100, 12, 31)};
+        if (property != null) {
+            String[] bounds = property.split("\\.\\.");
+            try {
+                LocalDate from = TemporalGrid.parseDate(bounds[0]);
+                LocalDate to = TemporalGrid.parseDate(bounds[bounds.length - 1]);
+                if (bounds.length == 2 && !to.isBefore(from)) {
+                    horizon[0] = from;
+                    horizon[1] = to;
+                } else {
+                    log.warn("Invalid calendar horizon '{}', using {}..{}", property, horizon[0], horizon[1]);
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid calendar horizon '{}', using {}..{}", property, horizon[0], horizon[1]);
+            }
+        }
+        return horizon;
+    }
+}
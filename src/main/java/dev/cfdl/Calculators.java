@@ -0,0 +1,195 @@
+package dev.cfdl;
+
+import java.nio.DoubleBuffer;
+import java.util.Map;
+
+/**
+ * The built-in calculators of ontology/behavior/calculators.schema.yaml that produce schedules
+ *
+ * A calculator is compiled to a kind, up to three parameters and a schedule length, so
+ * that schedules can be keyed and cached by primitives (see ScheduleCache). A schedule
+ * is one or more rows of length values:
+ *
+ *   LOAN_PAYMENT        principal, rate, termMonths   payment, interest, principal per month
+ *   STRAIGHT_LINE       cost, salvage, lifePeriods    depreciation, bookValue per period
+ *   DECLINING_BALANCE   cost, rate                    depreciation, bookValue per period
+ *   PRESENT_VALUE       amount, rate, periods         value, a single entry
+ *
+ * Declining balance runs for as many periods as the caller's horizon. npv and irr take
+ * cash-flow series rather than parameters and are left to Metrics.
+ */
+final class Calculators {
+
+    static final int LOAN_PAYMENT = 0;
+    static final int STRAIGHT_LINE = 1;
+    static final int DECLINING_BALANCE = 2;
+    static final int PRESENT_VALUE = 3;
+
+    // Longest schedule: the months of the longest annual grid
+    static final int MAX_LENGTH = 12 * TemporalGrid.MAX_PERIODS;
+
+    private static final String[][] OUTPUTS = {
+        {"payment", "interest", "principal"},
+        {"depreciation", "bookValue"},
+        {"depreciation", "bookValue"},
+        {"value"}
+    };
+
+    private Calculators() {
+    }
+
+    /**
+     * Kind of a calculatorType, -1 if it does not produce a schedule
+     */
+    static int kindOf(Object calculatorType) {
+        switch (String.valueOf(calculatorType)) {
+            case "loanPayment":
+                return LOAN_PAYMENT;
+            case "straightLineDepreciation":
+                return STRAIGHT_LINE;
+            case "decliningBalanceDepreciation":
+                return DECLINING_BALANCE;
+            case "presentValue":
+                return PRESENT_VALUE;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Output rows of a kind, in schedule order
+     */
+    static String[] outputs(int kind) {
+        return OUTPUTS[kind];
+    }
+
+    /**
+     * Row index of a named output, the first row when output is null, -1 if unknown
+     */
+    static int outputRow(int kind, Object output) {
+        if (output == null) {
+            return 0;
+        }
+        for (int row = 0; row < OUTPUTS[kind].length; row++) {
+            if (OUTPUTS[kind][row].equals(output)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * True for schedules with one entry per month rather than per period
+     */
+    static boolean isMonthly(int kind) {
+        return kind == LOAN_PAYMENT;
+    }
+
+    /**
+     * True for calculators with a single value rather than a series
+     */
+    static boolean isScalar(int kind) {
+        return kind == PRESENT_VALUE;
+    }
+
+    /**
+     * Compile parameters, flat or under a parameters key, into params (three slots) and
+     * return the schedule length, -1 if a required parameter is missing
+     */
+    static int compile(int kind, Map<?, ?> definition, int horizon, double[] params) {
+        Map<?, ?> values = definition.get("parameters") instanceof Map ? (Map<?, ?>) definition.get("parameters") : definition;
+        double length;
+        switch (kind) {
+            case LOAN_PAYMENT:
+                params[0] = Distributions.number(values.get("principal"), Double.NaN);
+                params[1] = Distributions.number(values.get("rate"), Double.NaN);
+                params[2] = Distributions.number(values.get("termMonths"), Double.NaN);
+                length = Math.ceil(params[2]);
+                break;
+            case STRAIGHT_LINE:
+                params[0] = Distributions.number(values.get("cost"), Double.NaN);
+                params[1] = Distributions.number(values.get("salvage"), Double.NaN);
+                params[2] = Distributions.number(values.get("lifePeriods"), Double.NaN);
+                length = Math.ceil(params[2]);
+                break;
+            case DECLINING_BALANCE:
+                params[0] = Distributions.number(values.get("cost"), Double.NaN);
+                params[1] = Distributions.number(values.get("rate"), Double.NaN);
+                params[2] = 0;
+                length = horizon;
+                break;
+            case PRESENT_VALUE:
+                params[0] = Distributions.number(values.get("amount"), Double.NaN);
+                params[1] = Distributions.number(values.get("rate"), Double.NaN);
+                params[2] = Distributions.number(values.get("periods"), Double.NaN);
+                length = 1;
+                break;
+            default:
+                return -1;
+        }
+        if (Double.isNaN(params[0]) || Double.isNaN(params[1]) || Double.isNaN(params[2])) {
+            return -1;
+        }
+        return (int) Math.max(0, Math.min(length, MAX_LENGTH));
+    }
+
+    /**
+     * Write the rows of a schedule one after the other from offset
+     */
+    static void fill(int kind, double p1, double p2, double p3, int length, DoubleBuffer out, int offset) {
+        switch (kind) {
+            case LOAN_PAYMENT: {
+                double payment = monthlyLoanPayment(p1, p2, p3);
+                double monthlyRate = p2 / 12;
+                double balance = p1;
+                for (int m = 0; m < length; m++) {
+                    double interest = balance * monthlyRate;
+                    out.put(offset + m, payment);
+                    out.put(offset + length + m, interest);
+                    out.put(offset + 2 * length + m, payment - interest);
+                    balance -= payment - interest;
+                }
+                break;
+            }
+            case STRAIGHT_LINE: {
+                double depreciation = p3 > 0 ? (p1 - p2) / p3 : 0;
+                for (int p = 0; p < length; p++) {
+                    out.put(offset + p, depreciation);
+                    out.put(offset + length + p, p1 - (p + 1) * depreciation);
+                }
+                break;
+            }
+            case DECLINING_BALANCE: {
+                double book = p1;
+                for (int p = 0; p < length; p++) {
+                    double depreciation = book * p2;
+                    book -= depreciation;
+                    out.put(offset + p, depreciation);
+                    out.put(offset + length + p, book);
+                }
+                break;
+            }
+            case PRESENT_VALUE:
+                if (length > 0) {
+                    out.put(offset, p1 / Math.pow(1 + p2, p3));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown calculator kind: " + kind);
+        }
+    }
+
+    /**
+     * Level monthly payment of an amortizing loan with an annual rate
+     */
+    static double monthlyLoanPayment(double principal, double annualRate, double termMonths) {
+        if (termMonths <= 0) {
+            return 0;
+        }
+        double monthlyRate = annualRate / 12;
+        if (monthlyRate == 0) {
+            return principal / termMonths;
+        }
+        return principal * monthlyRate / (1 - Math.pow(1 + monthlyRate, -termMonths));
+    }
+}
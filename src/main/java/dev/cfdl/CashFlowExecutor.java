@@ -0,0 +1,1048 @@
+package dev.cfdl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Deterministic cash-flow executor over IR
+ *
+ * Runs in the JVM what engine/src/temporal_grid.jl and stream_allocator.jl do for a
+ * single deterministic trial. Each deal is executed in two steps:
+ *
+ *   1. compile: build the deal's TemporalGrid and turn every stream owned by the deal,
+ *      its assets or their components into a few primitives - amount per occurrence,
+ *      growth factor per occurrence, first and last period and period step
+ *   2. run: fill flat double[] rows for streams, assets and the deal in one pass
+ *
+ * The run step only reads and writes primitive arrays and does not allocate per period.
+ *
+ * Semantics follow the Julia engine: occurrence k of a stream (from 1) is
+ * amount * (1 + rate)^(k - 1) for fixed growth, distribution growth uses the mean
+ * of its distribution (0.03 if none) and randomWalk growth is flat.
+ * Unlike the engine, schedules are honoured:
+ *
+ *   - oneTime          one occurrence in the period holding date
+ *   - recurring        from startDate (or the grid start) to endDate, until or the grid end
+ *   - dateBounded      from startDate to endDate
+ *   - recurrenceRule   a rule coarser than the grid fires every n-th period (yearly on a
+ *                      monthly grid: every 12th); a finer one scales the amount by its
+ *                      occurrences per period (monthly on a quarterly grid: 3x)
+ *   - count            caps the number of occurrences
+ *
+ * For Monte Carlo trials a program can also run with a random generator: distribution
+ * growth then draws its rate once per trial from the distribution, and randomWalk
+ * growth ({initial, drift, volatility}) moves its rate by drift + volatility * N(0, 1)
+ * after every occurrence.
+ *
+ * execute(ir, pool) compiles each deal's streams in ranges of GRAIN_STREAMS and runs the
+ * programs as fork/join tasks: deals concurrently, then within a deal the streams of each
+ * dependency level in ranges of about GRAIN_CELLS stream x period cells, then the
+ * roll-up into asset and deal rows by period ranges.
+ * Each task writes its own rows or periods of the shared arrays, so no locks are taken
+ * and the flows do not depend on the parallelism.
+ *
+ * A deal with a waterfall, through its capital stack or directly, also distributes its
+ * net cash over the waterfall's tiers and recipients with a compiled WaterfallProgram.
+ *
+ * A loanPayment amount, bare or under a loanPayment key, pays its amortization schedule:
+ * each occurrence pays the months it spans, for termMonths. A {calculator, output}
+ * amount reads one row (payment, interest, principal, depreciation, ...) of a calculator
+ * entity's schedule the same way, with one entry per occurrence for per-period
+ * schedules; a presentValue calculator is a plain amount. A definition under its
+ * calculator type ({straightLineDepreciation: {...}}) pays its first row. Schedules
+ * come from a ScheduleCache.
+ *
+ * A string amount is a Formula over assumptions, other streams of the deal (their
+ * amount in the same period) and the variables period, occurrence (both from 1) and
+ * years (elapsed at the period start), evaluated for every occurrence and then grown
+ * like a number. Expression growth ({type: expression, expr}) evaluates its rate the
+ * same way after every occurrence. Formulas are bound to slot and row indices at compile
+ * time; streams run in the order of the IR's DependencyGraph, after the streams their
+ * formulas read. Assumptions are their value, or the mean of their distribution; trials
+ * pass sampled values. Amounts that are neither numbers, formulas nor calculators
+ * allocate nothing and are reported as warnings.
+ */
+public class CashFlowExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(CashFlowExecutor.class);
+
+    // Growth model of a stream besides the Distributions kinds
+    static final int RANDOM_WALK = 8;
+    static final int EXPRESSION = 9;
+
+    // Formula variables the executor provides, in slot order; assumptions follow them
+    static final List<String> FORMULA_VARIABLES = Collections.unmodifiableList(Arrays.asList("period", "occurrence", "years"));
+    static final int ASSUMPTION_SLOTS = 3;
+
+    // Fork/join grain: a task stops splitting at this many stream x period cells, and a
+    // roll-up task keeps at least GRAIN_PERIODS periods since each one walks every stream
+    static final int GRAIN_CELLS = 1 << 14;
+    static final int GRAIN_PERIODS = 16;
+    static final int GRAIN_STREAMS = 256; // Streams compiled per task
+
+    private final ScheduleCache schedules;
+
+    /**
+     * An executor compiling calculator schedules through the global cache
+     */
+    public CashFlowExecutor() {
+        this(ScheduleCache.global());
+    }
+
+    /**
+     * An executor compiling calculator schedules through the given cache
+     */
+    public CashFlowExecutor(ScheduleCache schedules) {
+        this.schedules = schedules;
+    }
+
+    /**
+     * A deal compiled for execution: one slot per stream, all in primitive arrays
+     */
+    static final class DealProgram {
+        final String dealId;
+        final TemporalGrid grid;
+        final String[] streamIds;
+        final String[] assetIds;
+        final int[] streamAsset;  // Asset slot of each stream, -1 for deal-level streams
+        final double[] amounts;   // First occurrence
+        final double[] growth;    // Factor between occurrences
+        final int[] growthModel;  // Distributions.FIXED, a Distributions kind or RANDOM_WALK
+        final double[] growthParams; // Three per stream, used by trials only
+        final double[] signs;     // +1 for inflows, -1 for expenses
+        final int[] first;
+        final int[] last;         // Inclusive; last < first for streams without occurrences
+        final int[] step;
+        final Formula.Node[] amountFormulas; // Per-occurrence multiplier of amounts, null for plain amounts
+        final Formula.Node[] growthFormulas; // EXPRESSION growth rate
+        final double[][] schedules;  // Per-occurrence multiplier of amounts from a calculator schedule, null otherwise
+        final int[] order;        // Streams in execution order: formula streams after what they read
+        int[] levelStarts;        // Start in order of each dependency level, then the stream count
+        final double[] slotDefaults; // Formula variables and deterministic assumption values
+        final double[] elapsedYears;
+        WaterfallProgram waterfall; // Distribution of net cash, null without a waterfall
+
+        DealProgram(String dealId, TemporalGrid grid, String[] assetIds, int streams, double[] slotDefaults) {
+            this.dealId = dealId;
+            this.grid = grid;
+            this.slotDefaults = slotDefaults;
+            this.assetIds = assetIds;
+            this.streamIds = new String[streams];
+            this.streamAsset = new int[streams];
+            this.amounts = new double[streams];
+            this.growth = new double[streams];
+            this.growthModel = new int[streams];
+            this.growthParams = new double[3 * streams];
+            this.signs = new double[streams];
+            this.first = new int[streams];
+            this.last = new int[streams];
+            this.step = new int[streams];
+            this.amountFormulas = new Formula.Node[streams];
+            this.growthFormulas = new Formula.Node[streams];
+            this.schedules = new double[streams][];
+            this.order = new int[streams];
+            this.levelStarts = new int[] {0, streams};
+            this.elapsedYears = new double[grid.size()];
+            for (int p = 1; p < elapsedYears.length; p++) {
+                elapsedYears[p] = elapsedYears[p - 1] + grid.getYearFraction(p - 1);
+            }
+        }
+
+        int streamCount() {
+            return streamIds.length;
+        }
+
+        boolean isStochastic() {
+            for (int model : growthModel) {
+                if (model != Distributions.FIXED && model != EXPRESSION) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Execute into fresh arrays
+         */
+        CashFlowResult.DealFlows run() {
+            return run(false);
+        }
+
+        /**
+         * Execute into fresh arrays, with fork/join tasks when parallel
+         */
+        CashFlowResult.DealFlows run(boolean parallel) {
+            int periods = grid.size();
+            double[] streamFlows = new double[streamIds.length * periods];
+            double[] assetFlows = new double[assetIds.length * periods];
+            double[] dealFlows = new double[periods];
+            if (parallel) {
+                runParallel(streamFlows, assetFlows, dealFlows);
+            } else {
+                run(streamFlows, assetFlows, dealFlows);
+            }
+            CashFlowResult.DealFlows flows = new CashFlowResult.DealFlows(dealId, grid, streamIds, assetIds,
+                streamFlows, assetFlows, dealFlows);
+            if (waterfall != null) {
+                double[] recipientFlows = new double[waterfall.recipientCount() * periods];
+                double[] tierFlows = new double[waterfall.tierCount() * periods];
+                double[] undistributed = new double[periods];
+                waterfall.run(dealFlows, recipientFlows, tierFlows, undistributed, new double[waterfall.scratchSize()]);
+                flows.setDistributions(waterfall.waterfallId, waterfall.recipientIds, waterfall.tierIds,
+                    recipientFlows, tierFlows, undistributed);
+            }
+            return flows;
+        }
+
+        /**
+         * Execute into caller-owned arrays sized streams x periods, assets x periods and periods
+         */
+        void run(double[] streamFlows, double[] assetFlows, double[] dealFlows) {
+            run(streamFlows, assetFlows, dealFlows, null);
+        }
+
+        /**
+         * Execute one trial, drawing stochastic growth from the generator; deterministic when it is null
+         */
+        void run(double[] streamFlows, double[] assetFlows, double[] dealFlows, SplittableRandom random) {
+            run(streamFlows, assetFlows, dealFlows, random, slotDefaults.clone());
+        }
+
+        /**
+         * Execute one trial with formula slots holding the trial's assumption values from
+         * ASSUMPTION_SLOTS on; the variables before them are overwritten
+         */
+        void run(double[] streamFlows, double[] assetFlows, double[] dealFlows, SplittableRandom random, double[] slots) {
+            runStreams(0, order.length, streamFlows, random, slots);
+            rollUp(0, grid.size(), streamFlows, assetFlows, dealFlows);
+        }
+
+        /**
+         * Execute deterministically with fork/join tasks: the streams of one dependency level
+         * at a time, split into StreamTasks, then the roll-up split by periods into RollUpTasks.
+         * Every task writes its own rows or periods, so the result equals run's bit for bit.
+         */
+        void runParallel(double[] streamFlows, double[] assetFlows, double[] dealFlows) {
+            for (int level = 0; level + 1 < levelStarts.length; level++) {
+                new StreamTask(this, streamFlows, levelStarts[level], levelStarts[level + 1]).invoke();
+            }
+            new RollUpTask(this, streamFlows, assetFlows, dealFlows, 0, grid.size()).invoke();
+        }
+
+        /**
+         * Fill the rows of the streams order[from] to order[to - 1], and only those rows.
+         * Formulas may read rows of streams earlier in the order, which must be filled already.
+         */
+        void runStreams(int from, int to, double[] streamFlows, SplittableRandom random, double[] slots) {
+            int periods = grid.size();
+            for (int i = from; i < to; i++) {
+                int s = order[i];
+                int streamRow = s * periods;
+                double factor = growth[s];
+                double amount = amounts[s];
+                int stride = step[s];
+                Formula.Node formula = amountFormulas[s];
+                Formula.Node growthFormula = growthFormulas[s];
+                double[] schedule = schedules[s];
+                int occurrence = 0;
+                Arrays.fill(streamFlows, streamRow, streamRow + periods, 0);
+
+                // Random walk state: rate, drift and volatility per occurrence
+                boolean walk = false;
+                double rate = 0;
+                double drift = 0;
+                double volatility = 0;
+                int model = growthModel[s];
+                if (random != null && model != Distributions.FIXED && model != EXPRESSION) {
+                    int g = 3 * s;
+                    if (model == RANDOM_WALK) {
+                        walk = true;
+                        rate = growthParams[g];
+                        drift = growthParams[g + 1];
+                        volatility = growthParams[g + 2];
+                    } else {
+                        factor = 1 + Distributions.sample(model, growthParams[g], growthParams[g + 1], growthParams[g + 2], random);
+                    }
+                }
+
+                for (int p = first[s]; p <= last[s]; p += stride) {
+                    double value = schedule != null ? amount * schedule[occurrence] : amount;
+                    occurrence++;
+                    if (formula != null || growthFormula != null) {
+                        slots[0] = p + 1;
+                        slots[1] = occurrence;
+                        slots[2] = elapsedYears[p];
+                        if (formula != null) {
+                            value *= formula.evaluate(slots, streamFlows, p);
+                        }
+                    }
+                    streamFlows[streamRow + p] = value;
+                    if (walk) {
+                        amount *= 1 + rate;
+                        rate += drift + volatility * Distributions.gaussian(random);
+                    } else if (growthFormula != null) {
+                        amount *= 1 + growthFormula.evaluate(slots, streamFlows, p);
+                    } else {
+                        amount *= factor;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Roll filled stream rows up into the asset and deal rows for periods from to to - 1,
+         * and only those periods. Streams are added in execution order whatever the period
+         * range, so splitting the periods gives the same sums bit for bit.
+         */
+        void rollUp(int from, int to, double[] streamFlows, double[] assetFlows, double[] dealFlows) {
+            int periods = grid.size();
+            for (int a = 0; a < assetIds.length; a++) {
+                Arrays.fill(assetFlows, a * periods + from, a * periods + to, 0);
+            }
+            Arrays.fill(dealFlows, from, to, 0);
+
+            for (int s : order) {
+                int streamRow = s * periods;
+                int asset = streamAsset[s];
+                int assetRow = asset * periods;
+                double sign = signs[s];
+                int stride = step[s];
+                int p = first[s];
+                if (p < from) {
+                    p += (from - p + stride - 1) / stride * stride;
+                }
+                int end = Math.min(last[s], to - 1);
+                for (; p <= end; p += stride) {
+                    double net = sign * streamFlows[streamRow + p];
+                    dealFlows[p] += net;
+                    if (asset >= 0) {
+                        assetFlows[assetRow + p] += net;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill the rows of the streams order[from] to order[to - 1] of one dependency level,
+     * split in halves down to GRAIN_CELLS; each leaf has its own formula slots
+     */
+    private static final class StreamTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DealProgram program;
+        private final double[] streamFlows;
+        private final int from;
+        private final int to;
+
+        StreamTask(DealProgram program, double[] streamFlows, int from, int to) {
+            this.program = program;
+            this.streamFlows = streamFlows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && (long) (to - from) * program.grid.size() > GRAIN_CELLS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new StreamTask(program, streamFlows, from, middle), new StreamTask(program, streamFlows, middle, to));
+                return;
+            }
+            program.runStreams(from, to, streamFlows, null, program.slotDefaults.clone());
+        }
+    }
+
+    /**
+     * Roll periods [from, to) of filled stream rows up, split in halves down to GRAIN_CELLS
+     * or GRAIN_PERIODS
+     */
+    private static final class RollUpTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DealProgram program;
+        private final double[] streamFlows;
+        private final double[] assetFlows;
+        private final double[] dealFlows;
+        private final int from;
+        private final int to;
+
+        RollUpTask(DealProgram program, double[] streamFlows, double[] assetFlows, double[] dealFlows, int from, int to) {
+            this.program = program;
+            this.streamFlows = streamFlows;
+            this.assetFlows = assetFlows;
+            this.dealFlows = dealFlows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from >= 2 * GRAIN_PERIODS && (long) (to - from) * program.streamCount() > GRAIN_CELLS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RollUpTask(program, streamFlows, assetFlows, dealFlows, from, middle),
+                    new RollUpTask(program, streamFlows, assetFlows, dealFlows, middle, to));
+                return;
+            }
+            program.rollUp(from, to, streamFlows, assetFlows, dealFlows);
+        }
+    }
+
+    /**
+     * Run deals [from, to) in parallel, split in halves down to single deals
+     */
+    private static final class DealTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<DealProgram> programs;
+        private final CashFlowResult.DealFlows[] deals;
+        private final int from;
+        private final int to;
+
+        DealTask(List<DealProgram> programs, CashFlowResult.DealFlows[] deals, int from, int to) {
+            this.programs = programs;
+            this.deals = deals;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    deals[from] = programs.get(from).run(true);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DealTask(programs, deals, from, middle), new DealTask(programs, deals, middle, to));
+        }
+    }
+
+    /**
+     * Execute every deal in the IR
+     */
+    public CashFlowResult execute(IRBuildResult ir) {
+        long start = System.nanoTime();
+        List<String> warnings = new ArrayList<>();
+        List<CashFlowResult.DealFlows> deals = new ArrayList<>();
+
+        for (DealProgram program : compile(ir, warnings)) {
+            deals.add(program.run());
+        }
+        return new CashFlowResult(deals, warnings, System.nanoTime() - start);
+    }
+
+    /**
+     * Execute every deal in the IR on a work-stealing pool: deals, the independent streams
+     * of each dependency level and the roll-up periods run as fork/join tasks. The flows
+     * equal execute(ir)'s bit for bit, whatever the pool's parallelism.
+     */
+    public CashFlowResult execute(IRBuildResult ir, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        List<String> warnings = new ArrayList<>();
+        List<DealProgram> programs = compile(ir, warnings, pool);
+        CashFlowResult.DealFlows[] deals = new CashFlowResult.DealFlows[programs.size()];
+
+        pool.invoke(new DealTask(programs, deals, 0, programs.size()));
+        return new CashFlowResult(new ArrayList<>(Arrays.asList(deals)), warnings, System.nanoTime() - start);
+    }
+
+    /**
+     * Compile every deal in the IR; problems that do not stop execution go to warnings
+     */
+    List<DealProgram> compile(IRBuildResult ir, List<String> warnings) {
+        return compile(ir, warnings, null);
+    }
+
+    /**
+     * Compile every deal in the IR, compiling the streams of each deal on the pool if not null;
+     * programs and warnings are the same either way
+     */
+    List<DealProgram> compile(IRBuildResult ir, List<String> warnings, ForkJoinPool pool) {
+        List<DealProgram> programs = new ArrayList<>();
+        IRTable deals = ir.getTable(SchemaTypes.DEAL);
+        IRTable streams = ir.getTable(SchemaTypes.STREAM);
+        BitSet executed = new BitSet();
+
+        // Assumption slots by IR id and by id, with their deterministic values
+        IRTable assumptions = ir.getTable(SchemaTypes.ASSUMPTION);
+        int assumptionCount = assumptions != null ? assumptions.size() : 0;
+        Map<String, Integer> slots = new HashMap<>();
+        double[] slotDefaults = new double[ASSUMPTION_SLOTS + assumptionCount];
+        for (int v = 0; v < ASSUMPTION_SLOTS; v++) {
+            slots.put(FORMULA_VARIABLES.get(v), v);
+        }
+        for (int row = 0; row < assumptionCount; row++) {
+            slots.put(assumptions.getId(row), ASSUMPTION_SLOTS + row);
+            if (assumptions.get(row, "id") != null) {
+                slots.putIfAbsent(assumptions.get(row, "id").toString(), ASSUMPTION_SLOTS + row);
+            }
+            slotDefaults[ASSUMPTION_SLOTS + row] = assumptionValue(assumptions, row);
+        }
+
+        // Calculator definitions by IR id and by id
+        IRTable calculatorTable = ir.getTable(SchemaTypes.CALCULATOR);
+        Map<String, Map<String, Object>> calculators = new HashMap<>();
+        for (int row = 0; calculatorTable != null && row < calculatorTable.size(); row++) {
+            Map<String, Object> definition = calculatorTable.row(row).getProperties();
+            calculators.put(calculatorTable.getId(row), definition);
+            if (definition.get("id") != null) {
+                calculators.putIfAbsent(definition.get("id").toString(), definition);
+            }
+        }
+
+        if (deals != null) {
+            for (int row = 0; row < deals.size(); row++) {
+                programs.add(compileDeal(ir, deals, row, executed, slots, slotDefaults, calculators, pool, warnings));
+            }
+        }
+
+        int streamCount = streams != null ? streams.size() : 0;
+        int orphans = streamCount - executed.cardinality();
+        if (orphans > 0) {
+            warnings.add(orphans + " streams are not part of any deal and were not executed");
+        }
+        return programs;
+    }
+
+    // Helper methods
+
+    private DealProgram compileDeal(IRBuildResult ir, IRTable deals, int dealRow, BitSet executed,
+                                    Map<String, Integer> slots, double[] slotDefaults,
+                                    Map<String, Map<String, Object>> calculators, ForkJoinPool pool,
+                                    List<String> warnings) {
+        IRTable assets = ir.getTable(SchemaTypes.ASSET);
+        IRTable components = ir.getTable(SchemaTypes.COMPONENT);
+        IRTable streams = ir.getTable(SchemaTypes.STREAM);
+
+        // Collect stream rows with the asset slot they roll up into, each stream once per deal
+        List<String> assetIds = new ArrayList<>();
+        List<int[]> owned = new ArrayList<>();
+        BitSet seen = new BitSet();
+        collectStreams(streams, deals.get(dealRow, "streamIds"), -1, seen, owned);
+        for (String assetId : ids(deals.get(dealRow, "assetIds"))) {
+            int assetRow = assets != null ? assets.indexOf(assetId) : -1;
+            if (assetRow < 0) {
+                continue;
+            }
+            int slot = assetIds.size();
+            assetIds.add(assetId);
+            collectStreams(streams, assets.get(assetRow, "streamIds"), slot, seen, owned);
+            for (String componentId : ids(assets.get(assetRow, "componentIds"))) {
+                int componentRow = components != null ? components.indexOf(componentId) : -1;
+                if (componentRow >= 0) {
+                    collectStreams(streams, components.get(componentRow, "streamIds"), slot, seen, owned);
+                }
+            }
+        }
+        executed.or(seen);
+
+        TemporalGrid grid = TemporalGrid.forDeal(deals.row(dealRow));
+        DealProgram program = new DealProgram(deals.getId(dealRow), grid, assetIds.toArray(new String[0]),
+            owned.size(), slotDefaults);
+        Map<String, Integer> rows = new HashMap<>();
+        for (int s = 0; s < owned.size(); s++) {
+            int streamRow = owned.get(s)[0];
+            program.streamIds[s] = streams.getId(streamRow);
+            program.streamAsset[s] = owned.get(s)[1];
+            rows.put(program.streamIds[s], s);
+        }
+        if (pool != null && owned.size() > GRAIN_STREAMS) {
+            pool.invoke(new CompileTask(streams, owned, program, slots, rows, calculators, warnings, 0, owned.size()));
+        } else {
+            for (int s = 0; s < owned.size(); s++) {
+                compileStream(streams, owned.get(s)[0], program, s, slots, rows, calculators, warnings);
+            }
+        }
+        orderStreams(program, ir.getDependencyGraph(), warnings);
+        program.waterfall = compileWaterfall(ir, deals, dealRow, grid, warnings);
+        return program;
+    }
+
+    /**
+     * Compile streams [from, to) of a deal, split in halves down to GRAIN_STREAMS. Each slot
+     * is written by one task; leaves collect warnings apart and append them in stream order.
+     */
+    private class CompileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IRTable streams;
+        private final List<int[]> owned;
+        private final DealProgram program;
+        private final Map<String, Integer> slots;
+        private final Map<String, Integer> rows;
+        private final Map<String, Map<String, Object>> calculators;
+        private final List<String> warnings;
+        private final int from;
+        private final int to;
+
+        CompileTask(IRTable streams, List<int[]> owned, DealProgram program, Map<String, Integer> slots,
+                    Map<String, Integer> rows, Map<String, Map<String, Object>> calculators, List<String> warnings,
+                    int from, int to) {
+            this.streams = streams;
+            this.owned = owned;
+            this.program = program;
+            this.slots = slots;
+            this.rows = rows;
+            this.calculators = calculators;
+            this.warnings = warnings;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN_STREAMS) {
+                for (int s = from; s < to; s++) {
+                    compileStream(streams, owned.get(s)[0], program, s, slots, rows, calculators, warnings);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            List<String> right = new ArrayList<>();
+            invokeAll(new CompileTask(streams, owned, program, slots, rows, calculators, warnings, from, middle),
+                new CompileTask(streams, owned, program, slots, rows, calculators, right, middle, to));
+            warnings.addAll(right);
+        }
+    }
+
+    /**
+     * The deal's waterfall: the one of its capital stack (capitalStackId), else a waterfall
+     * entity whose metadata.dealId names the deal, or the only waterfall of a single-deal
+     * file paid against the deal's participants; null if there is none
+     */
+    private static WaterfallProgram compileWaterfall(IRBuildResult ir, IRTable deals, int dealRow,
+                                                     TemporalGrid grid, List<String> warnings) {
+        IRTable stacks = ir.getTable(SchemaTypes.CAPITAL_STACK);
+        IRTable waterfalls = ir.getTable(SchemaTypes.WATERFALL);
+        String dealId = deals.getId(dealRow);
+        Object participants = deals.get(dealRow, "participants");
+        Object waterfall = null;
+
+        Object stackId = deals.get(dealRow, "capitalStackId");
+        if (stackId != null) {
+            int stackRow = entityRow(stacks, stackId.toString());
+            if (stackRow < 0) {
+                warnings.add("Deal " + dealId + " refers to unknown capital stack " + stackId + ", no waterfall executed");
+                return null;
+            }
+            participants = stacks.get(stackRow, "participants");
+            waterfall = stacks.get(stackRow, "waterfall");
+            if (!(waterfall instanceof Map)) {
+                int waterfallRow = waterfall != null ? entityRow(waterfalls, waterfall.toString()) : -1;
+                waterfall = waterfallRow >= 0 ? waterfalls.row(waterfallRow) : null;
+            }
+        } else if (waterfalls != null) {
+            Object uri = deals.get(dealRow, "id");
+            for (int row = 0; row < waterfalls.size() && waterfall == null; row++) {
+                Object metadata = waterfalls.get(row, "metadata");
+                Object owner = metadata instanceof Map ? ((Map<?, ?>) metadata).get("dealId") : null;
+                if (owner != null ? owner.equals(dealId) || owner.equals(uri) : deals.size() == 1 && waterfalls.size() == 1) {
+                    waterfall = waterfalls.row(row);
+                }
+            }
+        }
+
+        if (!(waterfall instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> definition = (Map<?, ?>) waterfall;
+        Object id = definition.get("id") != null ? definition.get("id") : dealId + "/waterfall";
+        if (!(definition.get("tiers") instanceof List) || ((List<?>) definition.get("tiers")).isEmpty()) {
+            warnings.add("Waterfall " + id + " of deal " + dealId + " has no tiers, nothing distributed");
+            return null;
+        }
+        return WaterfallProgram.compile(id.toString(), (List<?>) definition.get("tiers"),
+            participants instanceof List ? (List<?>) participants : Collections.emptyList(), grid, warnings);
+    }
+
+    /**
+     * Row of an entity by IR id or by its id URI, -1 if absent
+     */
+    private static int entityRow(IRTable table, String id) {
+        if (table == null) {
+            return -1;
+        }
+        int row = table.indexOf(id);
+        for (int r = 0; r < table.size() && row < 0; r++) {
+            if (id.equals(table.get(r, "id"))) {
+                row = r;
+            }
+        }
+        return row;
+    }
+
+    private static void collectStreams(IRTable streams, Object streamIds, int assetSlot, BitSet seen, List<int[]> owned) {
+        if (streams == null) {
+            return;
+        }
+        for (String streamId : ids(streamIds)) {
+            int row = streams.indexOf(streamId);
+            if (row >= 0 && !seen.get(row)) {
+                seen.set(row);
+                owned.add(new int[]{row, assetSlot});
+            }
+        }
+    }
+
+    /**
+     * Fill one stream slot from its amount, growth, category and schedule
+     */
+    private void compileStream(IRTable streams, int row, DealProgram program, int s, Map<String, Integer> slots,
+                               Map<String, Integer> rows, Map<String, Map<String, Object>> calculators,
+                               List<String> warnings) {
+        TemporalGrid grid = program.grid;
+        String streamId = streams.getId(row);
+        double gridPerYear = TemporalGrid.periodsPerYear(grid.getFrequency());
+        int maxOccurrences = Integer.MAX_VALUE;
+
+        // Amount per occurrence
+        Object amount = streams.get(row, "amount");
+        double base = 0;
+        int calculator = -1;
+        Map<?, ?> calculatorDefinition = null;
+        Object output = null;
+        String calculatorType = calculatorTypeOf(amount);
+        if (calculatorType != null) {
+            calculator = Calculators.kindOf(calculatorType);
+            calculatorDefinition = (Map<?, ?>) ((Map<?, ?>) amount).get(calculatorType);
+        } else if (amount instanceof Number) {
+            base = ((Number) amount).doubleValue();
+        } else if (amount instanceof String) {
+            program.amountFormulas[s] = compileFormula(amount.toString(), streamId, program, slots, rows, warnings);
+            base = program.amountFormulas[s] != null ? 1 : 0;
+        } else if (amount instanceof Map && ((Map<?, ?>) amount).containsKey("principal")) {
+            calculator = Calculators.LOAN_PAYMENT;
+            calculatorDefinition = (Map<?, ?>) amount;
+        } else if (amount instanceof Map && ((Map<?, ?>) amount).get("calculator") != null) {
+            Object reference = ((Map<?, ?>) amount).get("calculator");
+            calculatorDefinition = calculators.get(reference.toString());
+            output = ((Map<?, ?>) amount).get("output");
+            if (calculatorDefinition == null) {
+                warnings.add("Stream " + streamId + " refers to unknown calculator " + reference + ", allocating nothing");
+            } else {
+                calculator = Calculators.kindOf(calculatorDefinition.get("calculatorType"));
+                if (calculator < 0) {
+                    warnings.add("Stream " + streamId + " refers to calculator " + reference + " of type "
+                        + calculatorDefinition.get("calculatorType") + " which has no schedule, allocating nothing");
+                }
+            }
+        } else {
+            warnings.add("Stream " + streamId + " has no numeric amount (" + amount + "), allocating nothing");
+        }
+
+        // Period range and stride from the schedule
+        int first = 0;
+        int last = grid.size() - 1;
+        int stride = 1;
+        Object scheduleValue = streams.get(row, "schedule");
+        if (scheduleValue instanceof Map) {
+            Map<?, ?> schedule = (Map<?, ?>) scheduleValue;
+            Object type = schedule.get("type");
+            if ("oneTime".equals(type)) {
+                first = schedule.get("date") != null ? periodOf(grid, schedule.get("date"), -1) : -1;
+                last = first;
+                if (first < 0) {
+                    first = 0;
+                    last = -1;
+                }
+            } else {
+                if (schedule.get("startDate") != null) {
+                    LocalDate startDate = TemporalGrid.parseDate(schedule.get("startDate").toString());
+                    first = startDate.isAfter(grid.getEndDate()) ? grid.size() : Math.max(0, grid.periodOf(startDate));
+                }
+                Map<?, ?> rule = schedule.get("recurrenceRule") instanceof Map
+                    ? (Map<?, ?>) schedule.get("recurrenceRule") : null;
+                Object end = schedule.get("endDate");
+                if (end != null) {
+                    last = Math.min(last, periodOf(grid, end, last));
+                }
+                if (rule != null && rule.get("until") != null) {
+                    LocalDate until = TemporalGrid.parseDate(rule.get("until").toString()).minusDays(1); // exclusive
+                    last = Math.min(last, until.isBefore(grid.getStartDate()) ? -1 : periodOf(grid, until, last));
+                }
+
+                String frequency = rule != null && rule.get("freq") != null ? rule.get("freq").toString()
+                    : schedule.get("frequency") != null ? schedule.get("frequency").toString() : grid.getFrequency();
+                double interval = rule != null && rule.get("interval") instanceof Number
+                    ? Math.max(1, ((Number) rule.get("interval")).doubleValue()) : 1;
+                double occurrencesPerPeriod = TemporalGrid.periodsPerYear(frequency) / interval / gridPerYear;
+                if (occurrencesPerPeriod > 1) {
+                    base *= occurrencesPerPeriod;
+                } else {
+                    stride = Math.max(1, (int) Math.round(1 / occurrencesPerPeriod));
+                }
+
+                Object count = rule != null && rule.get("count") != null ? rule.get("count") : schedule.get("count");
+                if (count instanceof Number) {
+                    maxOccurrences = Math.min(maxOccurrences, ((Number) count).intValue());
+                }
+            }
+        }
+
+        // Calculator amounts: a scalar, or a schedule row with one multiplier per occurrence
+        if (calculator >= 0) {
+            double[] values = scheduleRow(calculator, calculatorDefinition, output, streamId, program, warnings);
+            if (values == null) {
+                base = 0;
+            } else if (Calculators.isScalar(calculator)) {
+                base = values.length > 0 ? values[0] : 0;
+            } else {
+                program.schedules[s] = Calculators.isMonthly(calculator) ? sumMonths(values, 12 * stride / gridPerYear) : values;
+                base = 1;
+                maxOccurrences = Math.min(maxOccurrences, program.schedules[s].length);
+            }
+        }
+        if (maxOccurrences != Integer.MAX_VALUE && last >= first) {
+            last = (int) Math.min(last, first + ((long) maxOccurrences - 1) * stride);
+        }
+
+        program.amounts[s] = base;
+        compileGrowth(streams.get(row, "growth"), program, s);
+        Object growth = streams.get(row, "growth");
+        if (program.growthModel[s] == EXPRESSION) {
+            Object expr = ((Map<?, ?>) growth).get("expr");
+            program.growthFormulas[s] = compileFormula(expr.toString(), streamId, program, slots, rows, warnings);
+            if (program.growthFormulas[s] == null) {
+                program.growthModel[s] = Distributions.FIXED;
+            }
+        }
+        program.signs[s] = "Expense".equals(streams.get(row, "category")) ? -1 : 1;
+        program.first[s] = first;
+        program.last[s] = last;
+        program.step[s] = stride;
+    }
+
+    /**
+     * Calculator type of an amount holding one definition under its type, e.g.
+     * {loanPayment: {...}}, or null
+     */
+    private static String calculatorTypeOf(Object amount) {
+        if (!(amount instanceof Map) || ((Map<?, ?>) amount).size() != 1) {
+            return null;
+        }
+        Map.Entry<?, ?> entry = ((Map<?, ?>) amount).entrySet().iterator().next();
+        return entry.getValue() instanceof Map && Calculators.kindOf(entry.getKey()) >= 0
+            ? entry.getKey().toString() : null;
+    }
+
+    /**
+     * Parse and bind a stream's formula; null with a warning if it does not parse or reads
+     * something outside the deal
+     */
+    private static Formula.Node compileFormula(String text, String streamId, DealProgram program, Map<String, Integer> slots,
+                                               Map<String, Integer> rows, List<String> warnings) {
+        try {
+            Formula formula = Formula.parse(text);
+            Formula.Node node = formula.bind(slots, rows, program.grid.size());
+            for (String name : formula.getReferences()) {
+                Integer slot = slots.get(name);
+                if (slot != null && Double.isNaN(program.slotDefaults[slot])) {
+                    warnings.add("Stream " + streamId + " reads assumption " + name + " which has no numeric value");
+                }
+            }
+            return node;
+        } catch (IllegalArgumentException e) {
+            warnings.add("Stream " + streamId + " formula is not executed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Order streams by their position in the IR dependency graph, so each runs after the
+     * streams its formulas read; a stream on or behind a cycle is reported and allocates nothing
+     */
+    private static void orderStreams(DealProgram program, DependencyGraph graph, List<String> warnings) {
+        int count = program.streamCount();
+        long[] keyed = new long[count];
+        int[] levels = new int[count];
+        for (int s = 0; s < count; s++) {
+            int node = graph.indexOf(program.streamIds[s]);
+            int position = node >= 0 ? graph.getPosition(node) : -1;
+            if (node >= 0 && position < 0) {
+                warnings.add("Stream " + program.streamIds[s] + " is part of a dependency cycle, allocating nothing");
+                program.amounts[s] = 0;
+                program.growthModel[s] = Distributions.FIXED;
+                program.amountFormulas[s] = null;
+                program.growthFormulas[s] = null;
+            }
+            keyed[s] = ((long) (position < 0 ? Integer.MAX_VALUE : position) << 32) | s;
+            levels[s] = position < 0 ? Integer.MAX_VALUE : graph.getLevel(node);
+        }
+        Arrays.sort(keyed);
+
+        // Positions run level by level, so each level is one range of the order;
+        // streams outside the graph or in cycles close it as one more range
+        int[] starts = new int[count + 1];
+        int ranges = 0;
+        for (int i = 0; i < count; i++) {
+            program.order[i] = (int) keyed[i];
+            if (i == 0 || levels[program.order[i]] != levels[program.order[i - 1]]) {
+                starts[ranges++] = i;
+            }
+        }
+        starts[ranges++] = count;
+        program.levelStarts = Arrays.copyOf(starts, ranges);
+    }
+
+    /**
+     * Deterministic value of an assumption: its value, the mean of its distribution or NaN
+     */
+    private static double assumptionValue(IRTable assumptions, int row) {
+        Object value = assumptions.get(row, "value");
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (assumptions.get(row, "distribution") instanceof Map) {
+            double[] params = new double[3];
+            int kind = Distributions.compile((Map<?, ?>) assumptions.get(row, "distribution"), params);
+            if (kind >= 0) {
+                return Distributions.mean(kind, params[0], params[1], params[2]);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Growth of a stream slot. The deterministic factor uses the rate for fixed growth and
+     * the distribution mean for distribution growth; trials sample distribution and randomWalk growth.
+     */
+    private static void compileGrowth(Object growthValue, DealProgram program, int s) {
+        program.growth[s] = 1;
+        program.growthModel[s] = Distributions.FIXED;
+        if (!(growthValue instanceof Map)) {
+            return;
+        }
+        Map<?, ?> growth = (Map<?, ?>) growthValue;
+        Object type = growth.get("type");
+        if (type == null || "fixed".equals(type)) {
+            program.growth[s] = 1 + Distributions.number(growth.get("rate"), 0);
+        } else if ("distribution".equals(type)) {
+            Map<?, ?> distribution = growth.get("distribution") instanceof Map
+                ? (Map<?, ?>) growth.get("distribution") : Collections.emptyMap();
+            program.growth[s] = 1 + Distributions.number(distribution.get("mean"), 0.03);
+
+            double[] params = new double[3];
+            int kind = Distributions.compile(distribution, params);
+            if (kind > 0) {
+                program.growthModel[s] = kind;
+                System.arraycopy(params, 0, program.growthParams, 3 * s, 3);
+            }
+        } else if ("expression".equals(type) && growth.get("expr") != null) {
+            program.growthModel[s] = EXPRESSION;
+        } else if ("randomWalk".equals(type)) {
+            Map<?, ?> walk = growth.get("randomWalk") instanceof Map
+                ? (Map<?, ?>) growth.get("randomWalk") : Collections.emptyMap();
+            Object initial = walk.containsKey("initial") ? walk.get("initial") : walk.get("initialValue");
+            program.growthModel[s] = RANDOM_WALK;
+            program.growthParams[3 * s] = Distributions.number(initial, Distributions.number(growth.get("rate"), 0));
+            program.growthParams[3 * s + 1] = Distributions.number(walk.get("drift"), 0);
+            program.growthParams[3 * s + 2] = Distributions.number(walk.get("volatility"), 0);
+        } else {
+            log.debug("Growth type {} is not executed yet, treating it as flat", type);
+        }
+    }
+
+    /**
+     * One row of a calculator's schedule from the cache; null with a warning if the
+     * calculator misses parameters or has no such output
+     */
+    private double[] scheduleRow(int kind, Map<?, ?> definition, Object output, String streamId,
+                                 DealProgram program, List<String> warnings) {
+        double[] params = new double[3];
+        int length = Calculators.compile(kind, definition, program.grid.size(), params);
+        if (length < 0) {
+            warnings.add("Stream " + streamId + " calculator is missing parameters, allocating nothing");
+            return null;
+        }
+        int outputRow = Calculators.outputRow(kind, output);
+        if (outputRow < 0) {
+            warnings.add("Stream " + streamId + " calculator has no output " + output + ", allocating nothing");
+            return null;
+        }
+        return schedules.row(kind, params[0], params[1], params[2], length, outputRow);
+    }
+
+    /**
+     * Sum a monthly schedule over occurrences spanning monthsPerOccurrence months each;
+     * occurrences shorter than a month take their share of it
+     */
+    private static double[] sumMonths(double[] monthly, double monthsPerOccurrence) {
+        int count = (int) Math.ceil(monthly.length / monthsPerOccurrence - 1e-9);
+        double[] sums = new double[count];
+        for (int k = 0; k < count; k++) {
+            double from = k * monthsPerOccurrence;
+            double to = Math.min(monthly.length, from + monthsPerOccurrence);
+            for (int m = (int) from; m < to; m++) {
+                sums[k] += monthly[m] * (Math.min(to, m + 1) - Math.max(from, m));
+            }
+        }
+        return sums;
+    }
+
+    private static int periodOf(TemporalGrid grid, Object date, int outside) {
+        int period = grid.periodOf(TemporalGrid.parseDate(date.toString()));
+        return period >= 0 ? period : outside;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> ids(Object value) {
+        return value instanceof List ? (List<String>) value : new ArrayList<>();
+    }
+
+    private static double sum(double[] values) {
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java dev.cfdl.CashFlowExecutor <cfdl-file>");
+            System.exit(1);
+        }
+
+        SchemaValidator schemaValidator = new SchemaValidator();
+        CompileResult compiled = new Parser(schemaValidator).compile(Paths.get(args[0]));
+        schemaValidator.shutdown();
+        if (!compiled.isSuccessful()) {
+            log.error(compiled.summary());
+            System.exit(1);
+        }
+
+        CashFlowResult result = new CashFlowExecutor().execute(compiled.getIrResult());
+        result.printResults();
+        log.info("🧮 {}", ScheduleCache.global());
+
+        // The per-period table is the program's output; the summary above goes to the log
+        for (CashFlowResult.DealFlows deal : result.getDeals()) {
+            System.out.println(deal.getDealId());
+            double[] flows = deal.getDealFlows();
+            for (int p = 0; p < flows.length; p++) {
+                System.out.println(String.format("  %3d  %s  %,16.2f", p + 1, deal.getGrid().getPeriodStart(p), flows[p]));
+            }
+            for (String recipientId : deal.getRecipientIds()) {
+                System.out.println(String.format("  %s: %,.2f", recipientId, sum(deal.getRecipientFlows(recipientId))));
+            }
+            if (deal.getWaterfallId() != null) {
+                System.out.println(String.format("  undistributed: %,.2f", sum(deal.getUndistributedFlows())));
+            }
+        }
+    }
+}
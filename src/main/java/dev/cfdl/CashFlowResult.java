@@ -0,0 +1,195 @@
+package dev.cfdl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of executing IR: per-period cash flows of every deal
+ */
+public class CashFlowResult {
+
+    private static final Logger log = LoggerFactory.getLogger(CashFlowResult.class);
+
+    /**
+     * Cash flows of one deal on its temporal grid
+     *
+     * Stream rows hold the amounts allocated to each period as written in the CFDL
+     * (expenses positive, like the engine's stream allocations). Asset and deal rows
+     * are net cash flows: revenue and other income add, expenses subtract. Streams of
+     * an asset's components count towards the asset; deal-level streams only towards the deal.
+     * Rows are stored flat, row-major: value (row, period) is at row * periods + period.
+     *
+     * Deals with a waterfall also hold its distributions: what each recipient and each
+     * tier received per period, and the net cash no tier took (including negative periods).
+     */
+    public static class DealFlows {
+        private final String dealId;
+        private final TemporalGrid grid;
+        private final String[] streamIds;
+        private final String[] assetIds;
+        private final double[] streamFlows;
+        private final double[] assetFlows;
+        private final double[] dealFlows;
+
+        // Waterfall distributions, absent without a waterfall
+        private String waterfallId;
+        private String[] recipientIds = new String[0];
+        private String[] tierIds = new String[0];
+        private double[] recipientFlows = new double[0];
+        private double[] tierFlows = new double[0];
+        private double[] undistributed;
+
+        DealFlows(String dealId, TemporalGrid grid, String[] streamIds, String[] assetIds,
+                  double[] streamFlows, double[] assetFlows, double[] dealFlows) {
+            this.dealId = dealId;
+            this.grid = grid;
+            this.streamIds = streamIds;
+            this.assetIds = assetIds;
+            this.streamFlows = streamFlows;
+            this.assetFlows = assetFlows;
+            this.dealFlows = dealFlows;
+        }
+
+        void setDistributions(String waterfallId, String[] recipientIds, String[] tierIds,
+                              double[] recipientFlows, double[] tierFlows, double[] undistributed) {
+            this.waterfallId = waterfallId;
+            this.recipientIds = recipientIds;
+            this.tierIds = tierIds;
+            this.recipientFlows = recipientFlows;
+            this.tierFlows = tierFlows;
+            this.undistributed = undistributed;
+        }
+
+        public String getDealId() { return dealId; }
+        public TemporalGrid getGrid() { return grid; }
+        public int getPeriodCount() { return grid.size(); }
+        public List<String> getStreamIds() { return Collections.unmodifiableList(Arrays.asList(streamIds)); }
+        public List<String> getAssetIds() { return Collections.unmodifiableList(Arrays.asList(assetIds)); }
+
+        public double getStreamFlow(int stream, int period) {
+            return streamFlows[stream * grid.size() + period];
+        }
+
+        /**
+         * Per-period amounts of a stream, or null if the stream is not part of this deal
+         */
+        public double[] getStreamFlows(String streamId) {
+            return row(streamFlows, indexOf(streamIds, streamId));
+        }
+
+        /**
+         * Per-period net cash flow of an asset, or null if the asset is not part of this deal
+         */
+        public double[] getAssetFlows(String assetId) {
+            return row(assetFlows, indexOf(assetIds, assetId));
+        }
+
+        /**
+         * Per-period net cash flow of the deal
+         */
+        public double[] getDealFlows() {
+            return dealFlows.clone();
+        }
+
+        /**
+         * Id of the waterfall distributing the deal's cash, or null
+         */
+        public String getWaterfallId() { return waterfallId; }
+        public List<String> getRecipientIds() { return Collections.unmodifiableList(Arrays.asList(recipientIds)); }
+        public List<String> getTierIds() { return Collections.unmodifiableList(Arrays.asList(tierIds)); }
+
+        /**
+         * Per-period distributions to a recipient, or null if the waterfall does not pay it
+         */
+        public double[] getRecipientFlows(String recipientId) {
+            return row(recipientFlows, indexOf(recipientIds, recipientId));
+        }
+
+        /**
+         * Per-period cash paid by a waterfall tier, or null if there is no such tier
+         */
+        public double[] getTierFlows(String tierId) {
+            return row(tierFlows, indexOf(tierIds, tierId));
+        }
+
+        /**
+         * Per-period net cash left after the waterfall, or null without one
+         */
+        public double[] getUndistributedFlows() {
+            return undistributed != null ? undistributed.clone() : null;
+        }
+
+        public double getNetTotal() {
+            double total = 0;
+            for (double flow : dealFlows) {
+                total += flow;
+            }
+            return total;
+        }
+
+        private double[] row(double[] rows, int index) {
+            if (index < 0) {
+                return null;
+            }
+            int periods = grid.size();
+            return Arrays.copyOfRange(rows, index * periods, (index + 1) * periods);
+        }
+
+        private static int indexOf(String[] ids, String id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i].equals(id)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final List<DealFlows> deals;
+    private final List<String> warnings;
+    private final long elapsedNanos;
+
+    public CashFlowResult(List<DealFlows> deals, List<String> warnings, long elapsedNanos) {
+        this.deals = deals;
+        this.warnings = warnings;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<DealFlows> getDeals() { return deals; }
+    public List<String> getWarnings() { return warnings; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /**
+     * The cash flows of a deal by entity id, or null
+     */
+    public DealFlows getDeal(String dealId) {
+        for (DealFlows deal : deals) {
+            if (deal.getDealId().equals(dealId)) {
+                return deal;
+            }
+        }
+        return null;
+    }
+
+    public void printResults() {
+        for (String warning : warnings) {
+            log.warn("⚠️ {}", warning);
+        }
+        if (!log.isInfoEnabled()) {
+            return; // Net totals are formatted before logging
+        }
+        log.info("💰 Executed {} deals in {} ms", deals.size(), Math.round(elapsedNanos / 10_000.0) / 100.0);
+        for (DealFlows deal : deals) {
+            log.info("  • {}: {} streams, {} assets over {}, net {}", deal.getDealId(), deal.streamIds.length,
+                deal.assetIds.length, deal.getGrid(), String.format("%,.2f", deal.getNetTotal()));
+            if (deal.waterfallId != null) {
+                log.info("    waterfall {}: {} tiers to {} recipients",
+                    deal.waterfallId, deal.tierIds.length, deal.recipientIds.length);
+            }
+        }
+    }
+}
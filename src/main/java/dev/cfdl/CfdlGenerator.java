@@ -0,0 +1,417 @@
+package dev.cfdl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Seeded generator of synthetic CFDL documents for scale testing
+ *
+ * Writes deals with a configurable number of assets, components and streams, plus
+ * top-level logic blocks and waterfalls, all shaped to the ontology/ schemas. Several
+ * deals make a portfolio: they are written as one deal list with a shared
+ * metadata.portfolioId, since portfolio.schema.yaml embeds whole deal bodies.
+ *
+ * Output is written line by line as it is generated, so document size is bounded
+ * only by the disk. Each deal draws from its own random stream derived from the
+ * seed, so deal N is the same whatever the number of deals generated around it.
+ */
+public class CfdlGenerator {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final LocalDate ANALYSIS_START = LocalDate.of(2024, 1, 1);
+
+    private static final String[] DEAL_TYPES = {
+        "commercial_real_estate", "residential_real_estate", "infrastructure_project",
+        "renewable_energy_project", "private_credit", "equipment_leasing"
+    };
+    private static final String[] ASSET_CATEGORIES = {"real_estate", "physical_asset", "operating_entity", "mixed"};
+    private static final String[] COMPONENT_TYPES = {"office_unit", "retail_unit", "residential_unit", "machine", "tenant_space"};
+    private static final String[] SUB_TYPES = {"Operating", "Tax", "CapEx", "Fee", "Other"};
+    private static final String[] FREQUENCIES = {"monthly", "quarterly", "annual"};
+    private static final String[] DAY_COUNTS = {"actual/360", "actual/365", "30/360", "actual/actual"};
+    private static final String[] LOGIC_TYPES = {"calculation", "aggregation", "validation", "trigger"};
+
+    /**
+     * Size and shape of the generated document
+     */
+    public static class Options {
+        private long seed = 42;
+        private int deals = 1;
+        private int assetsPerDeal = 10;
+        private int componentsPerAsset = 4;
+        private int streamsPerEntity = 3;
+        private int logicBlocks = 2;
+        private int waterfalls = 1;
+
+        public Options seed(long seed) { this.seed = seed; return this; }
+        public Options deals(int deals) { this.deals = positive("deals", deals); return this; }
+        public Options assetsPerDeal(int count) { this.assetsPerDeal = nonNegative("assets", count); return this; }
+        public Options componentsPerAsset(int count) { this.componentsPerAsset = nonNegative("components", count); return this; }
+        public Options streamsPerEntity(int count) { this.streamsPerEntity = nonNegative("streams", count); return this; }
+        public Options logicBlocks(int count) { this.logicBlocks = nonNegative("logic blocks", count); return this; }
+        public Options waterfalls(int count) { this.waterfalls = nonNegative("waterfalls", count); return this; }
+
+        public long getSeed() { return seed; }
+        public int getDeals() { return deals; }
+        public int getAssetsPerDeal() { return assetsPerDeal; }
+        public int getComponentsPerAsset() { return componentsPerAsset; }
+        public int getStreamsPerEntity() { return streamsPerEntity; }
+        public int getLogicBlocks() { return logicBlocks; }
+        public int getWaterfalls() { return waterfalls; }
+
+        /**
+         * Streams in the whole document: on every component, asset and deal
+         */
+        public long totalStreams() {
+            long entitiesPerDeal = 1 + assetsPerDeal + (long) assetsPerDeal * componentsPerAsset;
+            return deals * entitiesPerDeal * streamsPerEntity;
+        }
+
+        private static int positive(String what, int value) {
+            if (value < 1) {
+                throw new IllegalArgumentException("Number of " + what + " must be at least 1: " + value);
+            }
+            return value;
+        }
+
+        private static int nonNegative(String what, int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Number of " + what + " must not be negative: " + value);
+            }
+            return value;
+        }
+    }
+
+    private final Options options;
+    private Writer out;
+    private long entities;
+
+    public CfdlGenerator(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Write the document to a file, gzip-compressed when the name ends in .gz
+     */
+    public long generate(Path file) throws IOException {
+        OutputStream stream = Files.newOutputStream(file);
+        if (file.toString().endsWith(".gz")) {
+            stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+        }
+        try (OutputStream target = stream) {
+            return generate(target);
+        }
+    }
+
+    /**
+     * Write the document to a stream; the stream is flushed but not closed.
+     * Returns the number of entities written.
+     */
+    public long generate(OutputStream target) throws IOException {
+        out = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+        entities = 0;
+        try {
+            line(0, "# Synthetic CFDL document");
+            line(0, "# seed=" + options.seed + " deals=" + options.deals + " assetsPerDeal=" + options.assetsPerDeal
+                + " componentsPerAsset=" + options.componentsPerAsset + " streamsPerEntity=" + options.streamsPerEntity);
+            line(0, "");
+
+            line(0, "deal:");
+            for (int d = 0; d < options.deals; d++) {
+                writeDeal(d, randomFor(d));
+            }
+
+            if (options.logicBlocks > 0) {
+                line(0, "");
+                line(0, "logicBlock:");
+                SplittableRandom random = randomFor(-1);
+                for (int b = 0; b < options.logicBlocks; b++) {
+                    writeLogicBlock(b, random);
+                }
+            }
+
+            if (options.waterfalls > 0) {
+                line(0, "");
+                line(0, "waterfall:");
+                SplittableRandom random = randomFor(-2);
+                for (int w = 0; w < options.waterfalls; w++) {
+                    writeWaterfall(w, random);
+                }
+            }
+            out.flush();
+        } finally {
+            out = null;
+        }
+        return entities;
+    }
+
+    // Entities
+
+    private void writeDeal(int d, SplittableRandom random) throws IOException {
+        String key = "Deal_" + d;
+        int years = random.nextInt(3, 11);
+        LocalDate entry = ANALYSIS_START.plusDays(random.nextInt(0, 28));
+
+        line(2, "- " + key + ":");
+        line(6, "id: \"" + uri("deals", key) + "\"");
+        line(6, "name: \"Synthetic Deal " + d + "\"");
+        line(6, "dealType: " + pick(random, DEAL_TYPES));
+        line(6, "currency: \"USD\"");
+        line(6, "entryDate: " + entry);
+        line(6, "exitDate: " + entry.plusYears(years));
+        line(6, "analysisStart: " + ANALYSIS_START);
+        line(6, "holdingPeriodYears: " + years);
+        line(6, "calendar:");
+        line(8, "frequency: " + pick(random, FREQUENCIES));
+        line(8, "businessDayConvention: following");
+        line(8, "dayCount: " + pick(random, DAY_COUNTS));
+        line(8, "holidayCalendar: \"US\"");
+        line(6, "participants:");
+        line(8, "- partyId: \"" + uri("parties", key + "_sponsor") + "\"");
+        line(10, "role: sponsor");
+        line(10, "amount: " + random.nextInt(1, 50) * 100000);
+        line(8, "- partyId: \"" + uri("parties", key + "_lender") + "\"");
+        line(10, "role: lender");
+        line(10, "amount: " + random.nextInt(1, 150) * 100000);
+        if (options.deals > 1) {
+            line(6, "metadata:");
+            line(8, "portfolioId: \"" + uri("portfolios", "Portfolio_" + options.seed) + "\"");
+        }
+        entities++;
+
+        if (options.assetsPerDeal > 0) {
+            line(6, "assets:");
+            for (int a = 0; a < options.assetsPerDeal; a++) {
+                writeAsset(key, key + "_A" + a, random);
+            }
+        }
+        writeStreams(6, "deal", key, random);
+    }
+
+    private void writeAsset(String dealKey, String key, SplittableRandom random) throws IOException {
+        line(8, "- asset:");
+        line(12, key + ":");
+        line(14, "id: \"" + uri("assets", key) + "\"");
+        line(14, "name: \"Asset " + key + "\"");
+        line(14, "dealId: \"" + uri("deals", dealKey) + "\"");
+        line(14, "category: " + pick(random, ASSET_CATEGORIES));
+        line(14, "attributes:");
+        line(16, "totalSqFt: " + random.nextInt(5000, 500000));
+        line(16, "yearBuilt: " + random.nextInt(1960, 2024));
+        line(14, "stateConfig:");
+        line(16, "allowedStates: [\"pre_operational\", \"operational\", \"non_operational\"]");
+        line(16, "initialState: \"operational\"");
+        entities++;
+
+        if (options.componentsPerAsset > 0) {
+            line(14, "components:");
+            for (int c = 0; c < options.componentsPerAsset; c++) {
+                writeComponent(key, key + "_C" + c, random);
+            }
+        }
+        writeStreams(14, "asset", key, random);
+    }
+
+    private void writeComponent(String assetKey, String key, SplittableRandom random) throws IOException {
+        line(16, "- component:");
+        line(20, key + ":");
+        line(22, "id: \"" + uri("components", key) + "\"");
+        line(22, "name: \"Component " + key + "\"");
+        line(22, "assetId: \"" + uri("assets", assetKey) + "\"");
+        line(22, "componentType: \"" + pick(random, COMPONENT_TYPES) + "\"");
+        line(22, "attributes:");
+        line(24, "sqFt: " + random.nextInt(500, 20000));
+        line(24, "floor: " + random.nextInt(1, 40));
+        entities++;
+
+        writeStreams(22, "component", key, random);
+    }
+
+    /**
+     * The owner's streams: revenue first, then alternating expenses, with a
+     * loan payment calculator on deal-level financing streams
+     */
+    private void writeStreams(int indent, String scope, String ownerKey, SplittableRandom random) throws IOException {
+        if (options.streamsPerEntity == 0) {
+            return;
+        }
+        line(indent, "streams:");
+        for (int s = 0; s < options.streamsPerEntity; s++) {
+            String key = ownerKey + "_S" + s;
+            boolean revenue = s % 2 == 0;
+            boolean financing = scope.equals("deal") && s == 1;
+            String subType = financing ? "Financing" : revenue ? "Operating" : pick(random, SUB_TYPES);
+            int body = indent + 6;
+
+            line(indent + 2, "- stream:");
+            line(body, key + ":");
+            line(body + 2, "id: \"" + uri("streams", key) + "\"");
+            line(body + 2, "name: \"Stream " + key + "\"");
+            line(body + 2, "scope: " + scope);
+            line(body + 2, "category: " + (revenue ? "Revenue" : "Expense"));
+            line(body + 2, "subType: " + subType);
+            line(body + 2, "schedule:");
+            line(body + 4, "type: recurring");
+            line(body + 4, "startDate: " + ANALYSIS_START);
+            line(body + 4, "recurrenceRule:");
+            line(body + 6, "freq: monthly");
+            line(body + 6, "interval: 1");
+            if (financing) {
+                line(body + 2, "amount:");
+                line(body + 4, "principal: " + random.nextInt(10, 500) * 100000);
+                line(body + 4, "rate: " + rate(random, 300, 900));
+                line(body + 4, "termMonths: " + 12 * random.nextInt(5, 31));
+            } else {
+                line(body + 2, "amount: " + random.nextInt(1000, revenue ? 1000000 : 200000));
+                line(body + 2, "growth:");
+                line(body + 4, "type: fixed");
+                line(body + 4, "rate: " + rate(random, 0, 500));
+            }
+            line(body + 2, "tags: [\"Forecast\"]");
+            entities++;
+        }
+    }
+
+    private void writeLogicBlock(int b, SplittableRandom random) throws IOException {
+        String key = "LogicBlock_" + b;
+        String deal = "Deal_" + random.nextInt(options.deals);
+
+        line(2, "- " + key + ":");
+        line(6, "id: \"" + uri("logic", key) + "\"");
+        line(6, "name: \"Logic Block " + b + "\"");
+        line(6, "scope: deal");
+        line(6, "type: " + pick(random, LOGIC_TYPES));
+        if (options.streamsPerEntity > 0) {
+            line(6, "inputs:");
+            line(8, "- \"" + uri("streams", deal + "_S0") + "\"");
+        }
+        line(6, "outputs:");
+        line(8, "- \"" + uri("logic", key + "_out") + "\"");
+        line(6, "executionOrder: " + b);
+        line(6, "language: \"julia\"");
+        line(6, "code: \"" + key.toLowerCase() + "_out = input * " + rate(random, 5000, 15000) + "\"");
+        entities++;
+    }
+
+    /**
+     * Preferred return, catch-up and residual split tiers
+     */
+    private void writeWaterfall(int w, SplittableRandom random) throws IOException {
+        String key = "Waterfall_" + w;
+        int lpShare = random.nextInt(60, 91);
+
+        line(2, "- " + key + ":");
+        line(6, "id: \"" + uri("waterfalls", key) + "\"");
+        line(6, "description: \"Synthetic waterfall " + w + "\"");
+        line(6, "tiers:");
+        line(8, "- id: \"preferred_return\"");
+        line(10, "prefRate: " + rate(random, 600, 1000));
+        line(10, "distribute:");
+        line(12, "- fromCapitalStack: true");
+        line(14, "layerName: \"equity\"");
+        line(8, "- id: \"catch_up\"");
+        line(10, "until: \"gpShare >= 0.2\"");
+        line(10, "distribute:");
+        line(12, "- recipient: \"sponsor\"");
+        line(14, "percentage: 1.0");
+        line(8, "- id: \"residual\"");
+        line(10, "condition: \"remainingCash > 0\"");
+        line(10, "distribute:");
+        line(12, "- recipient: \"equity\"");
+        line(14, "percentage: " + lpShare / 100.0);
+        line(12, "- recipient: \"sponsor\"");
+        line(14, "percentage: " + (100 - lpShare) / 100.0);
+        entities++;
+    }
+
+    // Helper methods
+
+    /**
+     * Random stream of one deal (index >= 0) or of a top-level section (index < 0)
+     */
+    private SplittableRandom randomFor(long index) {
+        return new SplittableRandom(options.seed * 0x9E3779B97F4A7C15L + index);
+    }
+
+    private void line(int indent, String text) throws IOException {
+        for (int i = 0; i < indent; i++) {
+            out.write(' ');
+        }
+        out.write(text);
+        out.write('\n');
+    }
+
+    private static String uri(String kind, String key) {
+        return "https://example.com/" + kind + "/" + key.toLowerCase();
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * A rate between the given basis points, as a decimal
+     */
+    private static double rate(SplittableRandom random, int minBps, int maxBps) {
+        return random.nextInt(minBps, maxBps + 1) / 10000.0;
+    }
+
+    /**
+     * java dev.cfdl.CfdlGenerator [--seed N] [--deals N] [--assets N] [--components N]
+     *                             [--streams N] [--logic-blocks N] [--waterfalls N] [-o out.cfdl[.gz]]
+     *
+     * Without -o the document goes to stdout and the summary to stderr.
+     */
+    public static void main(String[] args) {
+        Options options = new Options();
+        Path output = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--seed": options.seed(Long.parseLong(value)); break;
+                    case "--deals": options.deals(Integer.parseInt(value)); break;
+                    case "--assets": options.assetsPerDeal(Integer.parseInt(value)); break;
+                    case "--components": options.componentsPerAsset(Integer.parseInt(value)); break;
+                    case "--streams": options.streamsPerEntity(Integer.parseInt(value)); break;
+                    case "--logic-blocks": options.logicBlocks(Integer.parseInt(value)); break;
+                    case "--waterfalls": options.waterfalls(Integer.parseInt(value)); break;
+                    case "-o": output = Paths.get(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.err.println("Usage: java dev.cfdl.CfdlGenerator [--seed N] [--deals N] [--assets N] [--components N]");
+            System.err.println("                                   [--streams N] [--logic-blocks N] [--waterfalls N] [-o out.cfdl[.gz]]");
+            System.exit(1);
+        }
+
+        CfdlGenerator generator = new CfdlGenerator(options);
+        long start = System.nanoTime();
+        try {
+            long written = output != null ? generator.generate(output) : generator.generate(System.out);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            String size = output != null ? String.format(", %.1f MB", Files.size(output) / 1e6) : "";
+            System.err.println(String.format("✅ Generated %d entities (%d streams)%s in %.2f s",
+                written, options.totalStreams(), size, seconds));
+        } catch (IOException e) {
+            System.err.println("❌ Error writing CFDL: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package dev.cfdl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thin client for CompileDaemon
+ *
+ * Sends one request per argument over the loopback socket and prints each JSON
+ * response line. File arguments become compile requests; status, metrics and shutdown are
+ * passed through as commands.
+ */
+public class CompileClient {
+
+    private final int port;
+
+    public CompileClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Send requests over one connection and return the response lines in order
+     */
+    public List<String> send(List<String> requests) throws IOException {
+        List<String> responses = new ArrayList<>();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String request : requests) {
+                out.println(request);
+                String response = in.readLine();
+                if (response == null) {
+                    break;
+                }
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    public List<String> compile(List<String> files) throws IOException {
+        List<String> requests = new ArrayList<>();
+        for (String file : files) {
+            requests.add("compile " + Paths.get(file).toAbsolutePath().normalize());
+        }
+        return send(requests);
+    }
+
+    public static void main(String[] args) {
+        int port = CompileDaemon.DEFAULT_PORT;
+        List<String> requests = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("status".equals(args[i]) || "metrics".equals(args[i]) || "shutdown".equals(args[i])) {
+                requests.add(args[i]);
+            } else {
+                requests.add("compile " + Paths.get(args[i]).toAbsolutePath().normalize());
+            }
+        }
+
+        if (requests.isEmpty()) {
+            System.err.println("Usage: java dev.cfdl.CompileClient [--port <port>] <cfdl-file>... | status | metrics | shutdown");
+            System.exit(1);
+        }
+
+        try {
+            for (String response : new CompileClient(port).send(requests)) {
+                System.out.println(response);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Could not reach compile daemon on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resident CFDL compile daemon
+ *
+ * Keeps one IncrementalCompiler - and with it the schema cache and JIT-compiled
+ * code - alive between compiles. A watcher thread follows a directory tree of
+ * .cfdl files through WatchService, waits until a burst of changes has settled
+ * and recompiles the changed files, writing their engine IR (see IRWriter) when
+ * an output directory is configured. Clients submit compile jobs over a loopback
+ * socket, see CompileClient.
+ *
+ * Protocol: one request per line, one JSON response per line.
+ *   compile <path>   compile a file, response holds the summary and IR
+ *   status           compile counters
+ *   metrics          stage latency histograms and counters, see CompilerMetrics
+ *   shutdown         stop the daemon
+ */
+public class CompileDaemon {
+
+    private static final Logger log = LoggerFactory.getLogger(CompileDaemon.class);
+
+    public static final int DEFAULT_PORT = 7341;
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    private final Path root;
+    private final Path outputDir; // May be null
+    private final int port;
+    private final IncrementalCompiler compiler;
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final IRWriter irWriter = new IRWriter(false, true);
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "cfdl-daemon-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong compiles = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile boolean running = true;
+    private WatchService watchService;
+    private ServerSocket serverSocket;
+
+    public CompileDaemon(Path root, Path outputDir, int port) {
+        this(root, outputDir, port, new IncrementalCompiler());
+    }
+
+    public CompileDaemon(Path root, Path outputDir, int port, IncrementalCompiler compiler) {
+        this.root = root.toAbsolutePath().normalize();
+        this.outputDir = outputDir != null ? outputDir.toAbsolutePath().normalize() : null;
+        this.port = port;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Compile everything once to warm the caches, then watch and serve until shutdown
+     */
+    public void run() throws IOException {
+        compiler.getSchemaValidator().preload(ASTBuilder.schemaUrls());
+        List<Path> files = listCfdlFiles(root);
+        for (Path file : files) {
+            emit(compileFile(file));
+        }
+        log.info("✅ Warmed up on {} files under {}", files.size(), root);
+
+        watchService = FileSystems.getDefault().newWatchService();
+        registerTree(root);
+        Thread watcher = new Thread(this::watchLoop, "cfdl-daemon-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        log.info("🔧 CFDL compile daemon listening on {}", serverSocket.getLocalSocketAddress());
+        try {
+            while (running) {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            }
+        } catch (IOException e) {
+            if (running) {
+                throw e;
+            }
+        } finally {
+            stop();
+        }
+    }
+
+    /**
+     * Stop watching and serving; safe to call more than once
+     */
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            log.warn("Error stopping compile daemon: {}", e.getMessage());
+        }
+        connections.shutdownNow();
+        compiler.getSchemaValidator().shutdown();
+    }
+
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    // File watching
+
+    /**
+     * Collect change events until no new ones arrive for the debounce interval, then compile the batch
+     */
+    private void watchLoop() {
+        Set<Path> pending = new LinkedHashSet<>();
+        try {
+            while (running) {
+                WatchKey key = pending.isEmpty()
+                    ? watchService.take()
+                    : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (key == null) {
+                    // Quiet for a full interval - the burst is over
+                    for (Path file : pending) {
+                        recompileChanged(file);
+                    }
+                    pending.clear();
+                    continue;
+                }
+
+                Path dir = watchedDirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                        pending.addAll(listCfdlFiles(root));
+                        continue;
+                    }
+                    Path changed = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        registerTree(changed);
+                        pending.addAll(listCfdlFiles(changed));
+                    } else if (isCfdlFile(changed)) {
+                        pending.add(changed);
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirs.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        } catch (IOException e) {
+            log.error("❌ File watching stopped: {}", e.getMessage());
+        }
+    }
+
+    private void recompileChanged(Path file) {
+        if (!Files.exists(file)) {
+            synchronized (compiler) {
+                compiler.invalidate(file);
+            }
+            log.info("🗑️ Removed {}", root.relativize(file));
+            return;
+        }
+        emit(compileFile(file));
+    }
+
+    private void registerTree(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path subdir : walk.filter(Files::isDirectory).collect(Collectors.toList())) {
+                WatchKey key = subdir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, subdir);
+            }
+        }
+    }
+
+    // Compiling
+
+    private CompileResult compileFile(Path file) {
+        compiles.incrementAndGet();
+        synchronized (compiler) {
+            return compiler.compile(file);
+        }
+    }
+
+    /**
+     * Report a watched compile and write its IR if an output directory is configured
+     */
+    private void emit(CompileResult result) {
+        log.info(result.summary());
+        if (outputDir == null || result.getIrResult() == null) {
+            return;
+        }
+
+        Path file = result.getFile().toAbsolutePath().normalize();
+        Path relative = file.startsWith(root) ? root.relativize(file) : file.getFileName();
+        Path target = outputDir.resolve(relative.toString().replaceAll("\\.cfdl$", "") + ".ir.json");
+        try {
+            Files.createDirectories(target.getParent());
+            irWriter.write(result.getIrResult(), target);
+        } catch (IOException e) {
+            log.error("❌ Could not write IR for {}: {}", relative, e.getMessage());
+        }
+    }
+
+    /**
+     * JSON form of a compile result as sent to clients
+     */
+    ObjectNode toJson(CompileResult result) {
+        ObjectNode json = jsonMapper.createObjectNode();
+        json.put("file", result.getFile().toString());
+        json.put("successful", result.isSuccessful());
+        json.put("summary", result.summary());
+        json.put("elapsedMillis", result.getElapsedNanos() / 1_000_000.0);
+        if (result.getFailure() != null) {
+            json.put("error", String.valueOf(result.getFailure().getMessage()));
+            return json;
+        }
+
+        json.put("astNodes", result.getParseResult().getAstNodes().size());
+        json.put("schemaMessages", result.getParseResult().getValidationErrors().size());
+        ArrayNode errors = json.putArray("errors");
+        ComprehensiveSchemaChecker.ValidationReport report = result.getValidationReport();
+        if (report.hasErrors()) {
+            report.getMissingProperties().forEach(errors::add);
+        }
+        result.getIrResult().getErrors().forEach(errors::add);
+
+        ArrayNode irNodes = json.putArray("irNodes");
+        for (IRNode irNode : result.getIrResult().getIrNodes()) {
+            ObjectNode node = irNodes.addObject();
+            node.put("id", irNode.getId());
+            node.put("name", irNode.getName());
+            node.put("schemaType", irNode.getSchemaType());
+            node.set("properties", jsonMapper.valueToTree(irNode.getProperties()));
+        }
+        return json;
+    }
+
+    // Client connections
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                requests.incrementAndGet();
+                out.println(jsonMapper.writeValueAsString(handle(line)));
+                if (line.equals("shutdown")) {
+                    stop();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private ObjectNode handle(String request) {
+        int space = request.indexOf(' ');
+        String command = space < 0 ? request : request.substring(0, space);
+        String argument = space < 0 ? "" : request.substring(space + 1).trim();
+
+        switch (command) {
+            case "compile": {
+                if (argument.isEmpty()) {
+                    return error("compile needs a file path");
+                }
+                return toJson(compileFile(Paths.get(argument)));
+            }
+            case "status": {
+                ObjectNode json = jsonMapper.createObjectNode();
+                json.put("root", root.toString());
+                json.put("compiles", compiles.get());
+                json.put("requests", requests.get());
+                synchronized (compiler) {
+                    json.put("lastReused", compiler.getLastReused());
+                    json.put("lastRecompiled", compiler.getLastRecompiled());
+                }
+                return json;
+            }
+            case "metrics":
+                return CompilerMetrics.global().toJson();
+            case "shutdown": {
+                ObjectNode json = jsonMapper.createObjectNode();
+                json.put("shutdown", true);
+                return json;
+            }
+            default:
+                return error("unknown command: " + command);
+        }
+    }
+
+    private ObjectNode error(String message) {
+        ObjectNode json = jsonMapper.createObjectNode();
+        json.put("error", message);
+        return json;
+    }
+
+    // Helper methods
+
+    private static boolean isCfdlFile(Path path) {
+        return path.toString().endsWith(".cfdl");
+    }
+
+    private static List<Path> listCfdlFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(p -> isCfdlFile(p) && Files.isRegularFile(p)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    public static void main(String[] args) {
+        Path root = null;
+        Path outputDir = null;
+        int port = DEFAULT_PORT;
+        int metricsPort = -1;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--metrics-port".equals(args[i]) && i + 1 < args.length) {
+                metricsPort = Integer.parseInt(args[++i]);
+            } else if ("--out".equals(args[i]) && i + 1 < args.length) {
+                outputDir = Paths.get(args[++i]);
+            } else if (root == null) {
+                root = Paths.get(args[i]);
+            } else {
+                root = null;
+                break;
+            }
+        }
+
+        if (root == null || !Files.isDirectory(root)) {
+            System.err.println("Usage: java dev.cfdl.CompileDaemon <cfdl-directory> [--port <port>] [--out <ir-directory>]");
+            System.err.println("                                   [--metrics-port <port>]");
+            System.exit(1);
+        }
+
+        CompileDaemon daemon = new CompileDaemon(root, outputDir, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop));
+        try {
+            if (metricsPort >= 0) {
+                HttpServer metricsServer = CompilerMetrics.global().serve(metricsPort);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> metricsServer.stop(0)));
+                log.info("📊 Metrics on http://{}/metrics", metricsServer.getAddress());
+            }
+            daemon.run();
+        } catch (IOException e) {
+            log.error("❌ Compile daemon failed: {}", e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package dev.cfdl;
+
+import java.nio.file.Path;
+
+/**
+ * Result of compiling a single CFDL file through parse → validate → IR build
+ */
+public class CompileResult {
+    private final Path file;
+    private final Parser.ParseResult parseResult;
+    private final ComprehensiveSchemaChecker.ValidationReport validationReport;
+    private final IRBuildResult irResult;
+    private final Exception failure;
+    private final long elapsedNanos;
+
+    public CompileResult(Path file, Parser.ParseResult parseResult,
+                         ComprehensiveSchemaChecker.ValidationReport validationReport,
+                         IRBuildResult irResult, Exception failure, long elapsedNanos) {
+        this.file = file;
+        this.parseResult = parseResult;
+        this.validationReport = validationReport;
+        this.irResult = irResult;
+        this.failure = failure;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public static CompileResult failed(Path file, Exception failure, long elapsedNanos) {
+        return new CompileResult(file, null, null, null, failure, elapsedNanos);
+    }
+
+    public Path getFile() { return file; }
+    public Parser.ParseResult getParseResult() { return parseResult; }
+    public ComprehensiveSchemaChecker.ValidationReport getValidationReport() { return validationReport; }
+    public IRBuildResult getIrResult() { return irResult; }
+    public Exception getFailure() { return failure; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /**
+     * True when the file was read, passed the required-properties check and built IR without errors.
+     * Schema validation messages are reported but, as in the single-file pipeline, do not fail the build.
+     */
+    public boolean isSuccessful() {
+        return failure == null
+            && validationReport != null && !validationReport.hasErrors()
+            && irResult != null && irResult.isSuccessful();
+    }
+
+    /**
+     * One-line summary for batch output
+     */
+    public String summary() {
+        String millis = String.format("%.1f ms", elapsedNanos / 1_000_000.0);
+        if (failure != null) {
+            return "❌ " + file + ": " + failure.getMessage() + " (" + millis + ")";
+        }
+        int astCount = parseResult.getAstNodes().size();
+        int schemaErrors = parseResult.getValidationErrors().size();
+        if (validationReport.hasErrors()) {
+            return "❌ " + file + ": missing required properties, " + astCount + " AST nodes (" + millis + ")";
+        }
+        if (irResult.hasErrors()) {
+            return "❌ " + file + ": " + irResult.getErrors().size() + " IR build errors (" + millis + ")";
+        }
+        return "✅ " + file + ": " + astCount + " AST nodes, " + irResult.getIrNodes().size() + " IR nodes, "
+            + schemaErrors + " schema messages (" + millis + ")";
+    }
+}
@@ -0,0 +1,155 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JFR events for the compiler pipeline
+ *
+ * One event type per stage: YAML parse, AST build per definition, schema load,
+ * schema validation per node, required-property check per node and IR transform
+ * per node. Each carries the entity id, schema type, node count and byte size.
+ *
+ * Events cost next to nothing unless a recording enables them:
+ *
+ *   java -XX:StartFlightRecording=settings=profile,filename=cfdl.jfr dev.cfdl.Parser deal.cfdl
+ *   jfr print --events dev.cfdl.SchemaValidation cfdl.jfr
+ *
+ * Byte sizes are the compact JSON size of the YAML subtree. They are only computed
+ * for events that will be committed, i.e. when the event is enabled and over its threshold.
+ */
+final class CompilerEvents {
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private CompilerEvents() {
+    }
+
+    @Category({"CFDL", "Compiler"})
+    @StackTrace(false)
+    abstract static class PipelineEvent extends Event {
+        @Label("Entity Id")
+        String entityId;
+
+        @Label("Schema Type")
+        String schemaType;
+
+        @Label("Node Count")
+        int nodeCount;
+
+        @Label("Byte Size")
+        @DataAmount
+        long byteSize;
+    }
+
+    @Name("dev.cfdl.YamlParse")
+    @Label("YAML Parse")
+    @Description("Reading a CFDL file into a YAML tree; the entity id is the file")
+    static final class YamlParse extends PipelineEvent {
+    }
+
+    @Name("dev.cfdl.AstBuild")
+    @Label("AST Build")
+    @Description("Building the AST nodes of one top-level definition, nested entities included")
+    static final class AstBuild extends PipelineEvent {
+    }
+
+    @Name("dev.cfdl.SchemaLoad")
+    @Label("Schema Load")
+    @Description("Loading and compiling one JSON schema; the entity id is the schema URL")
+    static final class SchemaLoad extends PipelineEvent {
+    }
+
+    @Name("dev.cfdl.SchemaValidation")
+    @Label("Schema Validation")
+    @Description("Validating one node's YAML subtree against its JSON schema")
+    static final class SchemaValidation extends PipelineEvent {
+        @Label("Error Count")
+        int errorCount;
+    }
+
+    @Name("dev.cfdl.RequiredPropertyCheck")
+    @Label("Required Property Check")
+    @Description("Checking one AST node for the properties its schema type requires")
+    static final class RequiredPropertyCheck extends PipelineEvent {
+        @Label("Valid")
+        boolean valid;
+    }
+
+    @Name("dev.cfdl.IRTransform")
+    @Label("IR Transform")
+    @Description("Transforming one AST node into its IR row")
+    static final class IRTransform extends PipelineEvent {
+    }
+
+    // Helper methods
+
+    /**
+     * End an event and commit it if the recording wants it, sizing the source tree only then
+     */
+    static void commit(PipelineEvent event, String entityId, String schemaType, int nodeCount, JsonNode source) {
+        event.end();
+        if (event.shouldCommit()) {
+            fill(event, entityId, schemaType, nodeCount, sizeOf(source));
+            event.commit();
+        }
+    }
+
+    /**
+     * End an event of known byte size and commit it if the recording wants it
+     */
+    static void commit(PipelineEvent event, String entityId, String schemaType, int nodeCount, long byteSize) {
+        event.end();
+        if (event.shouldCommit()) {
+            fill(event, entityId, schemaType, nodeCount, byteSize);
+            event.commit();
+        }
+    }
+
+    private static void fill(PipelineEvent event, String entityId, String schemaType, int nodeCount, long byteSize) {
+        event.entityId = entityId;
+        event.schemaType = schemaType;
+        event.nodeCount = nodeCount;
+        event.byteSize = byteSize;
+    }
+
+    /**
+     * Compact JSON size of a tree, counted without buffering it; 0 for null
+     */
+    static long sizeOf(JsonNode node) {
+        if (node == null) {
+            return 0;
+        }
+        CountingStream counter = new CountingStream();
+        try {
+            jsonMapper.writeValue(counter, node);
+        } catch (IOException e) {
+            // Nothing to count against; report what was written
+        }
+        return counter.count;
+    }
+
+    private static final class CountingStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
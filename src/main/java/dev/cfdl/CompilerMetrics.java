@@ -0,0 +1,246 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process metrics of the compiler
+ *
+ * Always on and cheap: latencies go into lock-free LatencyHistograms, counts into
+ * LongAdders, both looked up in concurrent maps. Metrics are keyed by stage and
+ * schema type:
+ *
+ *   cfdl_stage_latency_seconds{stage, schema}  parse_file, compile, schema_validation, ir_transform
+ *   cfdl_nodes_built_total{schema}             AST nodes built
+ *   cfdl_validation_errors_total{severity}     schema validation messages
+ *   cfdl_schema_cache_total{result}            schema lookups: hit or miss
+ *   cfdl_calculator_cache_total{result}        calculator schedule lookups: hit, miss or eviction
+ *
+ * The registry can be dumped as Prometheus text or JSON to a file, or served over
+ * HTTP on /metrics and /metrics.json.
+ */
+public final class CompilerMetrics {
+
+    // Stages
+    public static final String PARSE_FILE = "parse_file";
+    public static final String COMPILE = "compile";
+    public static final String SCHEMA_VALIDATION = "schema_validation";
+    public static final String IR_TRANSFORM = "ir_transform";
+
+    private static final String LATENCY = "cfdl_stage_latency_seconds";
+    private static final String NODES_BUILT = "cfdl_nodes_built_total";
+    private static final String VALIDATION_ERRORS = "cfdl_validation_errors_total";
+    private static final String SCHEMA_CACHE = "cfdl_schema_cache_total";
+    private static final String CALCULATOR_CACHE = "cfdl_calculator_cache_total";
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private static final CompilerMetrics GLOBAL = new CompilerMetrics();
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    // Keyed by "stage\0schemaType" and "name\0label"; an absent schema type is ""
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * The registry the compiler records into
+     */
+    public static CompilerMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Latency histogram of a stage, per schema type (null for the whole stage)
+     */
+    public LatencyHistogram latency(String stage, String schemaType) {
+        String key = stage + '\0' + (schemaType != null ? schemaType : "");
+        LatencyHistogram histogram = latencies.get(key);
+        return histogram != null ? histogram : latencies.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Record the time since a System.nanoTime() start
+     */
+    public void recordSince(String stage, String schemaType, long startNanos) {
+        latency(stage, schemaType).record(System.nanoTime() - startNanos);
+    }
+
+    public void nodeBuilt(String schemaType) {
+        counter(NODES_BUILT, schemaType).increment();
+    }
+
+    public void validationError(ValidationError.Severity severity) {
+        counter(VALIDATION_ERRORS, severity.name().toLowerCase()).increment();
+    }
+
+    public void schemaCacheHit() {
+        counter(SCHEMA_CACHE, "hit").increment();
+    }
+
+    public void schemaCacheMiss() {
+        counter(SCHEMA_CACHE, "miss").increment();
+    }
+
+    public void calculatorCacheHit() {
+        counter(CALCULATOR_CACHE, "hit").increment();
+    }
+
+    public void calculatorCacheMiss() {
+        counter(CALCULATOR_CACHE, "miss").increment();
+    }
+
+    public void calculatorCacheEviction() {
+        counter(CALCULATOR_CACHE, "eviction").increment();
+    }
+
+    private LongAdder counter(String name, String label) {
+        String key = name + '\0' + label;
+        LongAdder adder = counters.get(key);
+        return adder != null ? adder : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    public void reset() {
+        latencies.clear();
+        counters.clear();
+    }
+
+    // Exposition
+
+    /**
+     * Prometheus text format: latencies as summaries with p50, p99 and p999
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+
+        out.append("# HELP ").append(LATENCY).append(" Compiler stage latency\n");
+        out.append("# TYPE ").append(LATENCY).append(" summary\n");
+        for (Map.Entry<String, LatencyHistogram> entry : sorted(latencies).entrySet()) {
+            String[] key = entry.getKey().split("\0", -1);
+            String labels = "stage=\"" + key[0] + "\",schema=\"" + schemaLabel(key[1]) + "\"";
+            LatencyHistogram histogram = entry.getValue();
+            for (double quantile : QUANTILES) {
+                out.append(LATENCY).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.percentile(quantile))).append('\n');
+            }
+            out.append(LATENCY).append("_sum{").append(labels).append("} ").append(seconds(histogram.getSum())).append('\n');
+            out.append(LATENCY).append("_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+        }
+
+        appendCounters(out, NODES_BUILT, "schema", "AST nodes built");
+        appendCounters(out, VALIDATION_ERRORS, "severity", "Schema validation messages");
+        appendCounters(out, SCHEMA_CACHE, "result", "Schema lookups");
+        appendCounters(out, CALCULATOR_CACHE, "result", "Calculator schedule lookups");
+        return out.toString();
+    }
+
+    private void appendCounters(StringBuilder out, String name, String labelName, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, LongAdder> entry : sorted(counters).entrySet()) {
+            String[] key = entry.getKey().split("\0", -1);
+            if (key[0].equals(name)) {
+                String label = name.equals(NODES_BUILT) ? schemaLabel(key[1]) : key[1];
+                out.append(name).append('{').append(labelName).append("=\"").append(label).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+            }
+        }
+    }
+
+    /**
+     * JSON snapshot: latencies in nanoseconds with count, sum, max and percentiles, then counters
+     */
+    public ObjectNode toJson() {
+        ObjectNode root = jsonMapper.createObjectNode();
+        ArrayNode latencyArray = root.putArray("latencies");
+        for (Map.Entry<String, LatencyHistogram> entry : sorted(latencies).entrySet()) {
+            String[] key = entry.getKey().split("\0", -1);
+            LatencyHistogram histogram = entry.getValue();
+            ObjectNode item = latencyArray.addObject();
+            item.put("stage", key[0]);
+            item.put("schema", schemaLabel(key[1]));
+            item.put("count", histogram.getCount());
+            item.put("sumNanos", histogram.getSum());
+            item.put("maxNanos", histogram.getMax());
+            item.put("p50Nanos", histogram.percentile(0.5));
+            item.put("p99Nanos", histogram.percentile(0.99));
+            item.put("p999Nanos", histogram.percentile(0.999));
+        }
+
+        ObjectNode counterObject = root.putObject("counters");
+        for (Map.Entry<String, LongAdder> entry : sorted(counters).entrySet()) {
+            String[] key = entry.getKey().split("\0", -1);
+            String label = key[0].equals(NODES_BUILT) ? schemaLabel(key[1]) : key[1];
+            ObjectNode metric = counterObject.has(key[0]) ? (ObjectNode) counterObject.get(key[0]) : counterObject.putObject(key[0]);
+            metric.put(label, entry.getValue().sum());
+        }
+        return root;
+    }
+
+    /**
+     * Write a snapshot to a file: JSON for .json files, Prometheus text otherwise
+     */
+    public void writeTo(Path file) throws IOException {
+        String text = file.toString().endsWith(".json")
+            ? jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsString(toJson())
+            : toPrometheus();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Serve /metrics (Prometheus) and /metrics.json on a loopback port; stop the returned server when done
+     */
+    public HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics.json", exchange ->
+            respond(exchange, "application/json", jsonMapper.writeValueAsString(toJson())));
+        server.createContext("/metrics", exchange ->
+            respond(exchange, "text/plain; version=0.0.4", toPrometheus()));
+        server.start();
+        return server;
+    }
+
+    // Helper methods
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static <V> Map<String, V> sorted(Map<String, V> metrics) {
+        return new TreeMap<>(metrics);
+    }
+
+    /**
+     * Short schema name for labels: deal for .../entity/deal.schema.yaml, all when absent
+     */
+    static String schemaLabel(String schemaType) {
+        if (schemaType == null || schemaType.isEmpty()) {
+            return "all";
+        }
+        String name = schemaType.substring(schemaType.lastIndexOf('/') + 1);
+        return name.endsWith(".schema.yaml") ? name.substring(0, name.length() - ".schema.yaml".length()) : name;
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -1,5 +1,8 @@
 package dev.cfdl;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +15,8 @@ import java.util.HashMap;
  */
 public class ComprehensiveSchemaChecker {
 
+    private static final Logger log = LoggerFactory.getLogger(ComprehensiveSchemaChecker.class);
+
     public static class ValidationReport {
         private final List<String> missingProperties;
         private final List<String> validEntities;
@@ -26,6 +31,11 @@ public class ComprehensiveSchemaChecker {
             this.validEntitiesCount = validEntitiesCount;
         }
 
+        public List<String> getMissingProperties() { return missingProperties; }
+        public List<String> getValidEntities() { return validEntities; }
+        public int getTotalEntities() { return totalEntities; }
+        public int getValidEntitiesCount() { return validEntitiesCount; }
+
         public boolean hasErrors() {
             return !missingProperties.isEmpty();
         }
@@ -35,25 +45,25 @@ public class ComprehensiveSchemaChecker {
         }
 
         public void printReport() {
-            System.out.println("\n================================================================================");
-            System.out.println("📋 COMPREHENSIVE SCHEMA VALIDATION REPORT");
-            System.out.println("================================================================================");
-            System.out.println("📊 Summary: " + validEntitiesCount + "/" + totalEntities + " entities valid");
+            log.info("================================================================================");
+            log.info("📋 COMPREHENSIVE SCHEMA VALIDATION REPORT");
+            log.info("================================================================================");
+            log.info("📊 Summary: {}/{} entities valid", validEntitiesCount, totalEntities);
 
             if (!missingProperties.isEmpty()) {
-                System.out.println("\n❌ MISSING REQUIRED PROPERTIES:");
+                log.error("❌ MISSING REQUIRED PROPERTIES:");
                 for (String missing : missingProperties) {
-                    System.out.println("  " + missing);
+                    log.error("  {}", missing);
                 }
             }
 
             if (!validEntities.isEmpty()) {
-                System.out.println("\n✅ ENTITIES CHECKED:");
+                log.info("✅ ENTITIES CHECKED:");
                 for (String valid : validEntities) {
-                    System.out.println("  " + valid);
+                    log.info("  {}", valid);
                 }
             }
-            System.out.println("================================================================================");
+            log.info("================================================================================");
         }
     }
 
@@ -87,7 +97,7 @@ public class ComprehensiveSchemaChecker {
         REQUIRED_PROPERTIES.put("https://cfdl.dev/ontology/behavior/assumption.schema.yaml", 
             new String[]{"name", "value"});
         REQUIRED_PROPERTIES.put("https://cfdl.dev/ontology/behavior/logic-block.schema.yaml", 
-            new String[]{"name", "logic"});
+            new String[]{"name", "scope", "type", "code"});
         REQUIRED_PROPERTIES.put("https://cfdl.dev/ontology/behavior/rule_block.schema.yaml", 
             new String[]{"name", "rules"});
         REQUIRED_PROPERTIES.put("https://cfdl.dev/ontology/behavior/market-data.schema.yaml", 
@@ -107,7 +117,7 @@ public class ComprehensiveSchemaChecker {
         REQUIRED_PROPERTIES.put("https://cfdl.dev/ontology/result/cash-flow.schema.yaml", 
             new String[]{"name", "amount"});
         REQUIRED_PROPERTIES.put("https://cfdl.dev/ontology/result/waterfall.schema.yaml", 
-            new String[]{"name", "distributionOrder"});
+            new String[]{"name", "tiers"});
         REQUIRED_PROPERTIES.put("https://cfdl.dev/ontology/result/tag-definition.schema.yaml", 
             new String[]{"name", "tagType"});
             
@@ -147,7 +157,16 @@ public class ComprehensiveSchemaChecker {
     /**
      * Validates a single node for required properties
      */
-    private boolean validateNode(ASTNode node, List<String> missingProperties) {
+    boolean validateNode(ASTNode node, List<String> missingProperties) {
+        CompilerEvents.RequiredPropertyCheck event = new CompilerEvents.RequiredPropertyCheck();
+        event.begin();
+        boolean valid = checkRequired(node, missingProperties);
+        event.valid = valid;
+        CompilerEvents.commit(event, node.getId(), node.getSchemaType(), 1, node.getSource());
+        return valid;
+    }
+
+    private boolean checkRequired(ASTNode node, List<String> missingProperties) {
         String schemaType = node.getSchemaType();
         String[] requiredProps = REQUIRED_PROPERTIES.get(schemaType);
         
@@ -184,7 +203,7 @@ public class ComprehensiveSchemaChecker {
     /**
      * Extract readable schema type name from URL
      */
-    private String getSchemaTypeName(String schemaUrl) {
+    String getSchemaTypeName(String schemaUrl) {
         if (schemaUrl == null) return "Unknown";
         
         // Extract from URLs like "https://cfdl.dev/ontology/entity/deal.schema.yaml"
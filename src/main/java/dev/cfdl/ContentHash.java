@@ -0,0 +1,73 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 64-bit FNV-1a content hashes of YAML subtrees
+ *
+ * Object fields are hashed in document order. Subtrees whose hash is already known
+ * (nested entities are hashed before their parent) are folded in by value instead
+ * of being walked again, so every YAML node is hashed once - a Merkle tree over the
+ * entity nesting.
+ */
+final class ContentHash {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Hash a subtree; known maps subtrees (by identity) to hashes to use in place of walking them
+     */
+    static long of(JsonNode node, Map<JsonNode, Long> known) {
+        if (known != null) {
+            Long hash = known.get(node);
+            if (hash != null) {
+                return hash;
+            }
+        }
+
+        long hash = combine(OFFSET_BASIS, node.getNodeType().ordinal());
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                hash = combine(hash, of(field.getKey()));
+                hash = combine(hash, of(field.getValue(), known));
+            }
+        } else if (node.isArray()) {
+            for (JsonNode item : node) {
+                hash = combine(hash, of(item, known));
+            }
+        } else if (!node.isNull()) {
+            hash = combine(hash, of(node.asText()));
+        }
+        return hash;
+    }
+
+    static long of(String text) {
+        long hash = OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return combine(hash, text.length());
+    }
+
+    /**
+     * Fold a value into a running hash, one byte at a time
+     */
+    static long combine(long hash, long value) {
+        for (int i = 0; i < 8; i++) {
+            hash = (hash ^ (value & 0xff)) * PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,352 @@
+package dev.cfdl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Data dependencies between streams, assumptions, logic blocks and rule blocks
+ *
+ * An edge u → v means v reads what u produces:
+ *
+ *   stream        the names its amount and growth formulas read (amountReferences, growthReferences)
+ *   assumption    the names an expression assumption's value reads (valueReferences)
+ *   logic block   its inputs; it precedes its outputs and peers of its scope with a
+ *                 higher executionOrder
+ *   rule block    entity names appearing in its condition and action
+ *
+ * Names resolve by IR id or by id property. Kahn's algorithm orders the nodes level by
+ * level: level 0 reads nothing, level n reads only levels below n, so the nodes of a
+ * level can run concurrently once the earlier levels are done. Nodes on or behind a
+ * cycle never reach in-degree 0; they get level -1 and each cycle is reported once.
+ * Adjacency is stored as flat int arrays (compressed rows).
+ */
+public class DependencyGraph {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+    private final String[] ids;
+    private final String[] schemaTypes;
+    private final Map<String, Integer> index;
+    private final int[] dependentStart;   // Dependents of node n: dependents[dependentStart[n] .. dependentStart[n + 1])
+    private final int[] dependents;
+    private final int[] order;            // Nodes by level, then by node index; cycle nodes excluded
+    private final int[] levelStart;       // Level l is order[levelStart[l] .. levelStart[l + 1])
+    private final int[] levels;
+    private final int[] positions;        // Index into order, -1 on or behind a cycle
+    private final List<List<String>> cycles;
+
+    private DependencyGraph(String[] ids, String[] schemaTypes, Map<String, Integer> index,
+                            int[] dependentStart, int[] dependents) {
+        this.ids = ids;
+        this.schemaTypes = schemaTypes;
+        this.index = index;
+        this.dependentStart = dependentStart;
+        this.dependents = dependents;
+
+        int size = ids.length;
+        int[] inDegree = new int[size];
+        for (int dependent : dependents) {
+            inDegree[dependent]++;
+        }
+
+        // Kahn's algorithm, one frontier per level
+        order = new int[size];
+        levels = new int[size];
+        positions = new int[size];
+        Arrays.fill(levels, -1);
+        Arrays.fill(positions, -1);
+        List<Integer> starts = new ArrayList<>();
+        int placed = 0;
+        for (int n = 0; n < size; n++) {
+            if (inDegree[n] == 0) {
+                order[placed++] = n;
+            }
+        }
+        int levelBegin = 0;
+        while (levelBegin < placed) {
+            int levelEnd = placed;
+            starts.add(levelBegin);
+            for (int i = levelBegin; i < levelEnd; i++) {
+                int node = order[i];
+                levels[node] = starts.size() - 1;
+                positions[node] = i;
+                for (int e = dependentStart[node]; e < dependentStart[node + 1]; e++) {
+                    if (--inDegree[dependents[e]] == 0) {
+                        order[placed++] = dependents[e];
+                    }
+                }
+            }
+            Arrays.sort(order, levelEnd, placed);
+            levelBegin = levelEnd;
+        }
+        starts.add(placed);
+        levelStart = new int[starts.size()];
+        for (int l = 0; l < levelStart.length; l++) {
+            levelStart[l] = starts.get(l);
+        }
+        cycles = placed < size ? findCycles() : Collections.emptyList();
+    }
+
+    /**
+     * Graph over the streams, assumptions, logic blocks and rule blocks among the nodes
+     */
+    public static DependencyGraph of(Collection<IRNode> irNodes) {
+        List<IRNode> nodes = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        for (IRNode node : irNodes) {
+            String schemaType = node.getSchemaType();
+            if (SchemaTypes.STREAM.equals(schemaType) || SchemaTypes.ASSUMPTION.equals(schemaType)
+                || SchemaTypes.LOGIC_BLOCK.equals(schemaType) || SchemaTypes.RULE_BLOCK.equals(schemaType)) {
+                index.put(node.getId(), nodes.size());
+                nodes.add(node);
+            }
+        }
+        for (int n = 0; n < nodes.size(); n++) {
+            Object uri = nodes.get(n).getProperty("id");
+            if (uri != null) {
+                index.putIfAbsent(uri.toString(), n);
+            }
+        }
+
+        // Edges as (from, to) pairs, then compressed rows
+        List<int[]> edges = new ArrayList<>();
+        for (int n = 0; n < nodes.size(); n++) {
+            IRNode node = nodes.get(n);
+            String schemaType = node.getSchemaType();
+            if (SchemaTypes.STREAM.equals(schemaType)) {
+                addInputs(edges, index, n, node.getProperty("amountReferences"));
+                addInputs(edges, index, n, node.getProperty("growthReferences"));
+            } else if (SchemaTypes.ASSUMPTION.equals(schemaType)) {
+                addInputs(edges, index, n, node.getProperty("valueReferences"));
+            } else if (SchemaTypes.LOGIC_BLOCK.equals(schemaType)) {
+                addInputs(edges, index, n, node.getProperty("inputs"));
+                Object outputs = node.getProperty("outputs");
+                for (Object output : outputs instanceof List ? (List<?>) outputs : Collections.emptyList()) {
+                    Integer target = output != null ? index.get(output.toString()) : null;
+                    if (target != null && target != n) {
+                        edges.add(new int[]{n, target});
+                    }
+                }
+            } else {
+                List<String> names = new ArrayList<>();
+                collectIdentifiers(node.getProperty("condition"), names);
+                collectIdentifiers(node.getProperty("action"), names);
+                names.removeIf(node.getId()::equals);
+                addInputs(edges, index, n, names);
+            }
+        }
+        addPeerOrder(nodes, edges);
+
+        int size = nodes.size();
+        int[] dependentStart = new int[size + 1];
+        for (int[] edge : edges) {
+            dependentStart[edge[0] + 1]++;
+        }
+        for (int n = 0; n < size; n++) {
+            dependentStart[n + 1] += dependentStart[n];
+        }
+        int[] dependents = new int[edges.size()];
+        int[] fill = Arrays.copyOf(dependentStart, size);
+        for (int[] edge : edges) {
+            dependents[fill[edge[0]]++] = edge[1];
+        }
+
+        String[] ids = new String[size];
+        String[] schemaTypes = new String[size];
+        for (int n = 0; n < size; n++) {
+            ids[n] = nodes.get(n).getId();
+            schemaTypes[n] = nodes.get(n).getSchemaType();
+        }
+        return new DependencyGraph(ids, schemaTypes, index, dependentStart, dependents);
+    }
+
+    public int size() { return ids.length; }
+    public String getId(int node) { return ids[node]; }
+    public String getSchemaType(int node) { return schemaTypes[node]; }
+
+    /**
+     * Node of an IR id or id property, -1 if it is not in the graph
+     */
+    public int indexOf(String id) {
+        Integer node = index.get(id);
+        return node != null ? node : -1;
+    }
+
+    /**
+     * Nodes that read node directly
+     */
+    public int[] getDependents(int node) {
+        return Arrays.copyOfRange(dependents, dependentStart[node], dependentStart[node + 1]);
+    }
+
+    public int getEdgeCount() { return dependents.length; }
+
+    /**
+     * Level of a node, -1 if it is on or behind a cycle
+     */
+    public int getLevel(int node) { return levels[node]; }
+
+    /**
+     * Position of a node in the topological order, -1 if it is on or behind a cycle
+     */
+    public int getPosition(int node) { return positions[node]; }
+
+    public int getLevelCount() { return levelStart.length - 1; }
+
+    /**
+     * Nodes of one level, which do not depend on each other
+     */
+    public int[] getLevelNodes(int level) {
+        return Arrays.copyOfRange(order, levelStart[level], levelStart[level + 1]);
+    }
+
+    /**
+     * Ids in topological order, level by level; nodes on or behind cycles are left out
+     */
+    public List<String> getOrder() {
+        List<String> ordered = new ArrayList<>();
+        for (int i = 0; i < levelStart[levelStart.length - 1]; i++) {
+            ordered.add(ids[order[i]]);
+        }
+        return ordered;
+    }
+
+    public boolean hasCycles() { return !cycles.isEmpty(); }
+
+    /**
+     * Each cycle once, as ids in dependency order with the first id repeated at the end
+     */
+    public List<List<String>> getCycles() { return cycles; }
+
+    @Override
+    public String toString() {
+        return "DependencyGraph{" + ids.length + " nodes, " + dependents.length + " edges, "
+            + getLevelCount() + " levels, " + cycles.size() + " cycles}";
+    }
+
+    // Helper methods
+
+    private static void addInputs(List<int[]> edges, Map<String, Integer> index, int node, Object names) {
+        for (Object name : names instanceof List ? (List<?>) names : Collections.emptyList()) {
+            Integer input = name != null ? index.get(name.toString()) : null;
+            if (input != null) {
+                edges.add(new int[]{input, node});
+            }
+        }
+    }
+
+    private static void collectIdentifiers(Object text, List<String> names) {
+        for (Object statement : text instanceof List ? (List<?>) text : Collections.singletonList(text)) {
+            if (statement != null) {
+                Matcher matcher = IDENTIFIER.matcher(statement.toString());
+                while (matcher.find()) {
+                    names.add(matcher.group());
+                }
+            }
+        }
+    }
+
+    /**
+     * Logic blocks with an executionOrder run after the peers of their scope with the next lower one
+     */
+    private static void addPeerOrder(List<IRNode> nodes, List<int[]> edges) {
+        Map<String, List<Integer>> byScope = new HashMap<>();
+        for (int n = 0; n < nodes.size(); n++) {
+            IRNode node = nodes.get(n);
+            if (SchemaTypes.LOGIC_BLOCK.equals(node.getSchemaType()) && node.getProperty("executionOrder") instanceof Number) {
+                byScope.computeIfAbsent(String.valueOf(node.getProperty("scope")), k -> new ArrayList<>()).add(n);
+            }
+        }
+        for (List<Integer> peers : byScope.values()) {
+            peers.sort((a, b) -> Double.compare(executionOrder(nodes.get(a)), executionOrder(nodes.get(b))));
+            int groupStart = 0;
+            int previousStart = -1;
+            for (int i = 1; i <= peers.size(); i++) {
+                if (i == peers.size() || executionOrder(nodes.get(peers.get(i))) != executionOrder(nodes.get(peers.get(groupStart)))) {
+                    for (int p = previousStart; p >= 0 && p < groupStart; p++) {
+                        for (int q = groupStart; q < i; q++) {
+                            edges.add(new int[]{peers.get(p), peers.get(q)});
+                        }
+                    }
+                    previousStart = groupStart;
+                    groupStart = i;
+                }
+            }
+        }
+    }
+
+    private static double executionOrder(IRNode node) {
+        return ((Number) node.getProperty("executionOrder")).doubleValue();
+    }
+
+    /**
+     * Walk back through unplaced inputs from every unplaced node until a node repeats.
+     * Every unplaced node has an unplaced input, so each walk ends on its own path or on
+     * a node an earlier walk passed, which already leads into a reported cycle; each node
+     * is walked once.
+     */
+    private List<List<String>> findCycles() {
+        int size = ids.length;
+        int[] inputStart = new int[size + 1];
+        for (int dependent : dependents) {
+            inputStart[dependent + 1]++;
+        }
+        for (int n = 0; n < size; n++) {
+            inputStart[n + 1] += inputStart[n];
+        }
+        int[] inputs = new int[dependents.length];
+        int[] fill = Arrays.copyOf(inputStart, size);
+        for (int n = 0; n < size; n++) {
+            for (int e = dependentStart[n]; e < dependentStart[n + 1]; e++) {
+                inputs[fill[dependents[e]]++] = n;
+            }
+        }
+
+        List<List<String>> found = new ArrayList<>();
+        boolean[] walked = new boolean[size];
+        int[] seenAt = new int[size]; // Position on the current path, -1 off it
+        Arrays.fill(seenAt, -1);
+        List<Integer> path = new ArrayList<>();
+        for (int start = 0; start < size; start++) {
+            if (levels[start] >= 0 || walked[start]) {
+                continue;
+            }
+            int node = start;
+            while (seenAt[node] < 0 && !walked[node]) {
+                seenAt[node] = path.size();
+                path.add(node);
+                int next = -1;
+                for (int e = inputStart[node]; e < inputStart[node + 1] && next < 0; e++) {
+                    if (levels[inputs[e]] < 0) {
+                        next = inputs[e];
+                    }
+                }
+                node = next;
+            }
+
+            if (seenAt[node] >= 0) {
+                List<Integer> cycle = path.subList(seenAt[node], path.size());
+                List<String> named = new ArrayList<>();
+                for (int i = cycle.size() - 1; i >= 0; i--) {
+                    named.add(ids[cycle.get(i)]);
+                }
+                named.add(named.get(0));
+                found.add(Collections.unmodifiableList(named));
+            }
+            // Reset only the nodes this walk visited
+            for (int member : path) {
+                seenAt[member] = -1;
+                walked[member] = true;
+            }
+            path.clear();
+        }
+        return Collections.unmodifiableList(found);
+    }
+}
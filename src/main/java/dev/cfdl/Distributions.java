@@ -0,0 +1,137 @@
+package dev.cfdl;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Samplers for the distributions used by stochastic assumptions and stream growth
+ *
+ * A distribution is compiled to a kind and up to three parameters so that sampling
+ * reads primitives only:
+ *
+ *   FIXED       value
+ *   NORMAL      mean, std
+ *   UNIFORM     min, max
+ *   LOGNORMAL   meanlog, stdlog
+ *   TRIANGULAR  min, mode, max
+ *
+ * Definitions may be written in the engine's flat form {type: Normal, mean, std} or
+ * in the ontology form {type: normal, parameters: {mean, std}}; type names are case-insensitive
+ * and std may also be spelled std_dev.
+ * Every draw consumes a fixed number of values from the generator, so a given seed
+ * always yields the same sequence.
+ */
+final class Distributions {
+
+    static final int FIXED = 0;
+    static final int NORMAL = 1;
+    static final int UNIFORM = 2;
+    static final int LOGNORMAL = 3;
+    static final int TRIANGULAR = 4;
+
+    private Distributions() {
+    }
+
+    /**
+     * Kind of a distribution type name, -1 if not supported
+     */
+    static int kindOf(Object type) {
+        switch (String.valueOf(type).toLowerCase()) {
+            case "normal":
+                return NORMAL;
+            case "uniform":
+                return UNIFORM;
+            case "lognormal":
+                return LOGNORMAL;
+            case "triangular":
+                return TRIANGULAR;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Compile a definition into params (three slots) and return its kind, -1 if not supported
+     */
+    static int compile(Map<?, ?> definition, double[] params) {
+        int kind = definition.containsKey("type") ? kindOf(definition.get("type")) : NORMAL;
+        Map<?, ?> values = definition.get("parameters") instanceof Map ? (Map<?, ?>) definition.get("parameters") : definition;
+        switch (kind) {
+            case NORMAL:
+                params[0] = number(values.get("mean"), 0.0);
+                params[1] = number(values.get("std"), number(values.get("std_dev"), 1.0));
+                break;
+            case UNIFORM:
+                params[0] = number(values.get("min"), 0.0);
+                params[1] = number(values.get("max"), 1.0);
+                break;
+            case LOGNORMAL:
+                params[0] = number(values.get("meanlog"), 0.0);
+                params[1] = number(values.get("stdlog"), 1.0);
+                break;
+            case TRIANGULAR:
+                params[0] = number(values.get("min"), 0.0);
+                params[2] = number(values.get("max"), 1.0);
+                params[1] = number(values.get("mode"), (params[0] + params[2]) / 2);
+                break;
+            default:
+                break;
+        }
+        return kind;
+    }
+
+    static double sample(int kind, double p1, double p2, double p3, SplittableRandom random) {
+        switch (kind) {
+            case NORMAL:
+                return p1 + p2 * gaussian(random);
+            case UNIFORM:
+                return p1 + (p2 - p1) * random.nextDouble();
+            case LOGNORMAL:
+                return Math.exp(p1 + p2 * gaussian(random));
+            case TRIANGULAR:
+                return triangular(p1, p2, p3, random.nextDouble());
+            default:
+                return p1;
+        }
+    }
+
+    /**
+     * Mean of a compiled distribution
+     */
+    static double mean(int kind, double p1, double p2, double p3) {
+        switch (kind) {
+            case UNIFORM:
+                return (p1 + p2) / 2;
+            case LOGNORMAL:
+                return Math.exp(p1 + p2 * p2 / 2);
+            case TRIANGULAR:
+                return (p1 + p2 + p3) / 3;
+            default:
+                return p1;
+        }
+    }
+
+    /**
+     * Standard normal draw by Box-Muller from two uniforms
+     */
+    static double gaussian(SplittableRandom random) {
+        double u1 = 1.0 - random.nextDouble(); // (0, 1], keeps log finite
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+    }
+
+    private static double triangular(double min, double mode, double max, double u) {
+        double range = max - min;
+        if (range <= 0) {
+            return min;
+        }
+        double split = (mode - min) / range;
+        return u < split
+            ? min + Math.sqrt(u * range * (mode - min))
+            : max - Math.sqrt((1 - u) * range * (max - mode));
+    }
+
+    static double number(Object value, double fallback) {
+        return value instanceof Number ? ((Number) value).doubleValue() : fallback;
+    }
+}
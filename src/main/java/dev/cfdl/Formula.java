@@ -0,0 +1,479 @@
+package dev.cfdl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Arithmetic formula of a stream amount or expression growth, parsed once
+ *
+ * Grammar, loosest binding first:
+ *
+ *   comparison   < <= > >= == !=        1 when true, 0 when false
+ *   additive     + -
+ *   product      * / %
+ *   unary        -x +x
+ *   power        x ^ y                  right-associative, binds tighter than unary minus
+ *   primary      number, name, name(args...), (expr)
+ *
+ * Names are entity ids (assumptions, streams) or variables the executor provides;
+ * functions are min, max, abs, sqrt, exp, log, pow, round, floor, ceil and if(c, a, b).
+ *
+ * parse tokenizes and builds the tree with a Pratt parser, folding every subtree
+ * without names into a constant. bind then resolves each name to a slot index or to a
+ * row of a flat rows x periods array and returns a Node tree of plain closures:
+ * evaluation reads primitives only and does not allocate.
+ */
+final class Formula {
+
+    private static final String[] FUNCTIONS = {"min", "max", "abs", "sqrt", "exp", "log", "pow", "round", "floor", "ceil", "if"};
+
+    // Binary operators and their binding power; the power operator is right-associative
+    private static final String OPERATORS = "<>LGEN+-*/%^"; // L <=, G >=, E ==, N !=
+    private static final int[] BINDING = {1, 1, 1, 1, 1, 1, 2, 2, 3, 3, 3, 5};
+    private static final int UNARY = 4;
+
+    /**
+     * A compiled formula node
+     */
+    abstract static class Node {
+        /**
+         * Value given the slot values and the current period of a rows x periods array
+         */
+        abstract double evaluate(double[] slots, double[] rows, int period);
+    }
+
+    private final String text;
+    private final Expr root;
+    private final List<String> references;
+
+    private Formula(String text, Expr root, List<String> references) {
+        this.text = text;
+        this.root = root;
+        this.references = references;
+    }
+
+    /**
+     * Parse a formula; syntax errors throw IllegalArgumentException with the position
+     */
+    static Formula parse(String text) {
+        List<String> references = new ArrayList<>();
+        Parser parser = new Parser(text, references);
+        Expr root = parser.expression(0);
+        if (parser.token != END) {
+            throw parser.error("Unexpected " + parser.describe());
+        }
+        return new Formula(text, root, Collections.unmodifiableList(references));
+    }
+
+    String getText() { return text; }
+
+    /**
+     * Distinct names the formula refers to, in order of first use
+     */
+    List<String> getReferences() { return references; }
+
+    boolean isConstant() {
+        return root.kind == CONSTANT;
+    }
+
+    /**
+     * Resolve names to slots (slots[index]) or rows (rows[row * periods + period]) and
+     * compile; unknown names throw IllegalArgumentException
+     */
+    Node bind(Map<String, Integer> slots, Map<String, Integer> rows, int periods) {
+        return root.bind(slots, rows, periods, text);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    // Parse tree
+
+    private static final int CONSTANT = 0;
+    private static final int NAME = 1;
+    private static final int NEGATE = 2;
+    private static final int BINARY = 3;
+    private static final int CALL = 4;
+
+    /**
+     * Unbound parse tree node: a constant, a name, a negation, a binary operator or a call
+     */
+    private static final class Expr {
+        final int kind;
+        final double value;
+        final String name;      // NAME and CALL
+        final char operator;    // BINARY
+        final Expr[] operands;
+
+        Expr(int kind, double value, String name, char operator, Expr... operands) {
+            this.kind = kind;
+            this.value = value;
+            this.name = name;
+            this.operator = operator;
+            this.operands = operands;
+        }
+
+        static Expr constant(double value) {
+            return new Expr(CONSTANT, value, null, ' ');
+        }
+
+        Node bind(Map<String, Integer> slots, Map<String, Integer> rows, int periods, String text) {
+            switch (kind) {
+                case CONSTANT:
+                    return new Constant(value);
+                case NAME:
+                    if (slots.containsKey(name)) {
+                        return new Slot(slots.get(name));
+                    }
+                    if (rows.containsKey(name)) {
+                        return new Row(rows.get(name) * periods);
+                    }
+                    throw new IllegalArgumentException("Unknown name '" + name + "' in formula: " + text);
+                case NEGATE:
+                    return new Negate(operands[0].bind(slots, rows, periods, text));
+                case BINARY:
+                    return new Binary(operator, operands[0].bind(slots, rows, periods, text),
+                        operands[1].bind(slots, rows, periods, text));
+                default:
+                    Node[] arguments = new Node[operands.length];
+                    for (int i = 0; i < operands.length; i++) {
+                        arguments[i] = operands[i].bind(slots, rows, periods, text);
+                    }
+                    return new Call(Parser.function(name), arguments);
+            }
+        }
+    }
+
+    // Tokens
+    private static final int END = 0;
+    private static final int NUMBER = 1;
+    private static final int IDENTIFIER = 2;
+    private static final int OPERATOR = 3;
+    private static final int OPEN = 4;
+    private static final int CLOSE = 5;
+    private static final int COMMA = 6;
+
+    /**
+     * Tokenizer and Pratt parser over the formula text
+     */
+    private static final class Parser {
+        private final String text;
+        private final List<String> references;
+        private int position;
+        private int tokenStart;
+        int token;
+        private double number;
+        private String identifier;
+        private char operator;
+
+        Parser(String text, List<String> references) {
+            this.text = text;
+            this.references = references;
+            next();
+        }
+
+        Expr expression(int minBinding) {
+            Expr left = prefix();
+            while (token == OPERATOR) {
+                char op = operator;
+                int binding = BINDING[OPERATORS.indexOf(op)];
+                if (binding <= minBinding) {
+                    break;
+                }
+                next();
+                // Right-associative power parses its right side at its own binding power
+                Expr right = expression(op == '^' ? binding - 1 : binding);
+                left = fold(new Expr(BINARY, 0, null, op, left, right));
+            }
+            return left;
+        }
+
+        private Expr prefix() {
+            int start = tokenStart;
+            switch (token) {
+                case NUMBER: {
+                    double value = number;
+                    next();
+                    return Expr.constant(value);
+                }
+                case IDENTIFIER: {
+                    String name = identifier;
+                    next();
+                    if (token == OPEN) {
+                        return call(name, start);
+                    }
+                    if (!references.contains(name)) {
+                        references.add(name);
+                    }
+                    return new Expr(NAME, 0, name, ' ');
+                }
+                case OPEN: {
+                    next();
+                    Expr inner = expression(0);
+                    expect(CLOSE, "')'");
+                    return inner;
+                }
+                case OPERATOR:
+                    if (operator == '-' || operator == '+') {
+                        boolean negate = operator == '-';
+                        next();
+                        Expr operand = expression(UNARY);
+                        return negate ? fold(new Expr(NEGATE, 0, null, '-', operand)) : operand;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            throw error("Unexpected " + describe());
+        }
+
+        private Expr call(String name, int start) {
+            next();
+            List<Expr> arguments = new ArrayList<>();
+            if (token != CLOSE) {
+                arguments.add(expression(0));
+                while (token == COMMA) {
+                    next();
+                    arguments.add(expression(0));
+                }
+            }
+            expect(CLOSE, "')'");
+
+            int count = arguments.size();
+            if (function(name) < 0) {
+                throw new IllegalArgumentException("Unknown function '" + name + "' at " + start + " in formula: " + text);
+            }
+            int expected = "if".equals(name) ? 3 : "pow".equals(name) ? 2 : "min".equals(name) || "max".equals(name) ? -1 : 1;
+            if (expected >= 0 ? count != expected : count == 0) {
+                throw new IllegalArgumentException("Function '" + name + "' takes "
+                    + (expected >= 0 ? expected : "at least 1") + " arguments, got " + count + " in formula: " + text);
+            }
+            return fold(new Expr(CALL, 0, name, ' ', arguments.toArray(new Expr[0])));
+        }
+
+        /**
+         * Replace a node whose operands are all constants by its value
+         */
+        private Expr fold(Expr expr) {
+            for (Expr operand : expr.operands) {
+                if (operand.kind != CONSTANT) {
+                    return expr;
+                }
+            }
+            return Expr.constant(expr.bind(Collections.emptyMap(), Collections.emptyMap(), 0, text).evaluate(null, null, 0));
+        }
+
+        private static int function(String name) {
+            for (int f = 0; f < FUNCTIONS.length; f++) {
+                if (FUNCTIONS[f].equals(name)) {
+                    return f;
+                }
+            }
+            return -1;
+        }
+
+        private void expect(int expected, String description) {
+            if (token != expected) {
+                throw error("Expected " + description + " but found " + describe());
+            }
+            next();
+        }
+
+        private void next() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            tokenStart = position;
+            if (position == text.length()) {
+                token = END;
+                return;
+            }
+
+            char c = text.charAt(position);
+            if (Character.isDigit(c) || (c == '.' && position + 1 < text.length() && Character.isDigit(text.charAt(position + 1)))) {
+                int end = position;
+                while (end < text.length() && (Character.isDigit(text.charAt(end)) || text.charAt(end) == '.')) {
+                    end++;
+                }
+                if (end < text.length() && (text.charAt(end) == 'e' || text.charAt(end) == 'E')) {
+                    int exponent = end + 1;
+                    if (exponent < text.length() && (text.charAt(exponent) == '+' || text.charAt(exponent) == '-')) {
+                        exponent++;
+                    }
+                    if (exponent < text.length() && Character.isDigit(text.charAt(exponent))) {
+                        end = exponent;
+                        while (end < text.length() && Character.isDigit(text.charAt(end))) {
+                            end++;
+                        }
+                    }
+                }
+                try {
+                    number = Double.parseDouble(text.substring(position, end));
+                } catch (NumberFormatException e) {
+                    throw error("Malformed number '" + text.substring(position, end) + "'");
+                }
+                position = end;
+                token = NUMBER;
+            } else if (Character.isLetter(c) || c == '_') {
+                int end = position + 1;
+                while (end < text.length() && (Character.isLetterOrDigit(text.charAt(end))
+                    || text.charAt(end) == '_' || text.charAt(end) == '.')) {
+                    end++;
+                }
+                identifier = text.substring(position, end);
+                position = end;
+                token = IDENTIFIER;
+            } else if (c == '(' || c == ')' || c == ',') {
+                position++;
+                token = c == '(' ? OPEN : c == ')' ? CLOSE : COMMA;
+            } else {
+                String two = position + 1 < text.length() ? text.substring(position, position + 2) : "";
+                if ("<=".equals(two) || ">=".equals(two) || "==".equals(two) || "!=".equals(two)) {
+                    operator = two.charAt(0) == '<' ? 'L' : two.charAt(0) == '>' ? 'G' : two.charAt(0) == '=' ? 'E' : 'N';
+                    position += 2;
+                } else if (OPERATORS.indexOf(c) >= 0) {
+                    operator = c;
+                    position++;
+                } else {
+                    throw error("Unexpected character '" + c + "'");
+                }
+                token = OPERATOR;
+            }
+        }
+
+        String describe() {
+            return token == END ? "end of formula" : "'" + text.substring(tokenStart, position) + "'";
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + tokenStart + " in formula: " + text);
+        }
+    }
+
+    // Compiled nodes
+
+    private static final class Constant extends Node {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double evaluate(double[] slots, double[] rows, int period) {
+            return value;
+        }
+    }
+
+    private static final class Slot extends Node {
+        private final int index;
+
+        Slot(int index) {
+            this.index = index;
+        }
+
+        @Override
+        double evaluate(double[] slots, double[] rows, int period) {
+            return slots[index];
+        }
+    }
+
+    private static final class Row extends Node {
+        private final int offset;
+
+        Row(int offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        double evaluate(double[] slots, double[] rows, int period) {
+            return rows[offset + period];
+        }
+    }
+
+    private static final class Negate extends Node {
+        private final Node operand;
+
+        Negate(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        double evaluate(double[] slots, double[] rows, int period) {
+            return -operand.evaluate(slots, rows, period);
+        }
+    }
+
+    private static final class Binary extends Node {
+        private final char operator;
+        private final Node left;
+        private final Node right;
+
+        Binary(char operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double evaluate(double[] slots, double[] rows, int period) {
+            double a = left.evaluate(slots, rows, period);
+            double b = right.evaluate(slots, rows, period);
+            switch (operator) {
+                case '+': return a + b;
+                case '-': return a - b;
+                case '*': return a * b;
+                case '/': return a / b;
+                case '%': return a % b;
+                case '^': return Math.pow(a, b);
+                case '<': return a < b ? 1 : 0;
+                case '>': return a > b ? 1 : 0;
+                case 'L': return a <= b ? 1 : 0;
+                case 'G': return a >= b ? 1 : 0;
+                case 'E': return a == b ? 1 : 0;
+                default: return a != b ? 1 : 0;
+            }
+        }
+    }
+
+    private static final class Call extends Node {
+        private final int function; // Index into FUNCTIONS
+        private final Node[] arguments;
+
+        Call(int function, Node[] arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        double evaluate(double[] slots, double[] rows, int period) {
+            double a = arguments[0].evaluate(slots, rows, period);
+            switch (function) {
+                case 0: // min
+                    for (int i = 1; i < arguments.length; i++) {
+                        a = Math.min(a, arguments[i].evaluate(slots, rows, period));
+                    }
+                    return a;
+                case 1: // max
+                    for (int i = 1; i < arguments.length; i++) {
+                        a = Math.max(a, arguments[i].evaluate(slots, rows, period));
+                    }
+                    return a;
+                case 2: return Math.abs(a);
+                case 3: return Math.sqrt(a);
+                case 4: return Math.exp(a);
+                case 5: return Math.log(a);
+                case 6: return Math.pow(a, arguments[1].evaluate(slots, rows, period));
+                case 7: return Math.rint(a);
+                case 8: return Math.floor(a);
+                case 9: return Math.ceil(a);
+                default: // if
+                    return a != 0 ? arguments[1].evaluate(slots, rows, period) : arguments[2].evaluate(slots, rows, period);
+            }
+        }
+    }
+}
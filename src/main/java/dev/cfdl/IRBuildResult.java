@@ -1,16 +1,43 @@
 package dev.cfdl;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 
 /**
  * Result of IR building process
  */
 public class IRBuildResult {
+
+    private static final Logger log = LoggerFactory.getLogger(IRBuildResult.class);
+
     private final List<IRNode> irNodes;
     private final List<String> errors;
+    private Map<String, IRTable> tables; // Built from irNodes on demand when not given
+    private DependencyGraph dependencyGraph; // Likewise
     
     public IRBuildResult(List<IRNode> irNodes, List<String> errors) {
+        this(null, irNodes, errors);
+    }
+    
+    /**
+     * Result holding columnar tables per schema type, with irNodes as row views in build order
+     */
+    public IRBuildResult(Map<String, IRTable> tables, List<IRNode> irNodes, List<String> errors) {
+        this(tables, irNodes, errors, null);
+    }
+    
+    /**
+     * Result with the dependency graph computed while building
+     */
+    public IRBuildResult(Map<String, IRTable> tables, List<IRNode> irNodes, List<String> errors,
+                         DependencyGraph dependencyGraph) {
+        this.dependencyGraph = dependencyGraph;
+        this.tables = tables;
         this.irNodes = irNodes != null ? irNodes : new ArrayList<>();
         this.errors = errors != null ? errors : new ArrayList<>();
     }
@@ -18,20 +45,46 @@ public class IRBuildResult {
     public List<IRNode> getIrNodes() { return irNodes; }
     public List<String> getErrors() { return errors; }
     
+    /**
+     * IR tables keyed by schema type URL
+     */
+    public Map<String, IRTable> getTables() {
+        if (tables == null) {
+            tables = IRTable.of(irNodes);
+        }
+        return Collections.unmodifiableMap(tables);
+    }
+    
+    /**
+     * The table of one schema type, or null if no node of that type was built
+     */
+    public IRTable getTable(String schemaType) {
+        return getTables().get(schemaType);
+    }
+    
+    /**
+     * Data dependencies between streams, assumptions, logic and rule blocks
+     */
+    public DependencyGraph getDependencyGraph() {
+        if (dependencyGraph == null) {
+            dependencyGraph = DependencyGraph.of(irNodes);
+        }
+        return dependencyGraph;
+    }
+    
     public boolean hasErrors() { return !errors.isEmpty(); }
     public boolean isSuccessful() { return errors.isEmpty(); }
     
     public void printResults() {
         if (hasErrors()) {
-            System.out.println("❌ IR build errors found:");
+            log.error("❌ IR build errors found:");
             for (String error : errors) {
-                System.out.println("IR Build Error: " + error);
+                log.error("IR Build Error: {}", error);
             }
         } else {
-            System.out.println("✅ Successfully built " + irNodes.size() + " IR nodes:");
+            log.info("✅ Successfully built {} IR nodes:", irNodes.size());
             for (IRNode irNode : irNodes) {
-                System.out.println("  • " + irNode.getClass().getSimpleName() + 
-                    ": " + irNode.getId() + " (" + irNode.getName() + ")");
+                log.info("  • {}: {} ({})", irNode.getClass().getSimpleName(), irNode.getId(), irNode.getName());
             }
         }
     }
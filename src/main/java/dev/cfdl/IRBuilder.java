@@ -1,49 +1,83 @@
 package dev.cfdl;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * IR Builder - Transforms validated AST nodes into Intermediate Representation
  * 
- * The IR is ready for execution by the CFDL execution engine.
+ * The IR is ready for execution by the CFDL execution engine. It is built as one
+ * columnar IRTable per schema type; IRNodes handed out are row views of those tables.
  */
 public class IRBuilder {
     
+    private static final Logger log = LoggerFactory.getLogger(IRBuilder.class);
+    
     /**
      * Build IR from validated AST nodes
      */
     public IRBuildResult build(List<ASTNode> astNodes) {
+        return build(astNodes, SymbolTable.of(astNodes));
+    }
+    
+    /**
+     * Build IR from validated AST nodes, resolving references through the symbol table
+     * filled during AST construction
+     */
+    public IRBuildResult build(List<ASTNode> astNodes, SymbolTable symbols) {
+        CompilerMetrics metrics = CompilerMetrics.global();
+        Map<String, IRTable> tables = new LinkedHashMap<>();
         List<IRNode> irNodes = new ArrayList<>();
         List<String> errors = new ArrayList<>();
         
-        System.out.println("🔧 Building IR from " + astNodes.size() + " AST nodes...");
+        log.info("🔧 Building IR from {} AST nodes...", astNodes.size());
         
-        // Transform each AST node to IR node
+        // Transform each AST node straight into a row of its schema type's table
         for (ASTNode astNode : astNodes) {
+            IRTable table = tables.computeIfAbsent(astNode.getSchemaType(), IRTable::new);
+            int rowsBefore = table.size();
+            CompilerEvents.IRTransform event = new CompilerEvents.IRTransform();
+            event.begin();
+            long start = System.nanoTime();
             try {
-                IRNode irNode = transformToIR(astNode);
-                if (irNode != null) {
-                    irNodes.add(irNode);
-                }
+                IRNode irNode = table.addRow(astNode.getId(), astNode.getName());
+                transformToIR(astNode, irNode);
+                irNodes.add(irNode);
             } catch (Exception e) {
+                table.truncate(rowsBefore);
                 errors.add("Failed to transform " + astNode.getId() + " to IR: " + e.getMessage());
             }
+            metrics.recordSince(CompilerMetrics.IR_TRANSFORM, astNode.getSchemaType(), start);
+            CompilerEvents.commit(event, astNode.getId(), astNode.getSchemaType(), 1, astNode.getSource());
         }
         
         // Validate relationships and dependencies
-        validateIRRelationships(irNodes, errors);
+        validateIRRelationships(irNodes, symbols, errors);
+        DependencyGraph graph = orderDependencies(irNodes, errors);
         
-        return new IRBuildResult(irNodes, errors);
+        return new IRBuildResult(tables, irNodes, errors, graph);
     }
     
     /**
-     * Transform a single AST node to IR node
+     * Transform a single AST node to a standalone IR node
      */
-    private IRNode transformToIR(ASTNode astNode) {
-        IRNode irNode = new IRNode(astNode.getId(), astNode.getName(), astNode.getSchemaType());
-        
+    IRNode transformToIR(ASTNode astNode) {
+        long start = System.nanoTime();
+        IRNode irNode = transformToIR(astNode, new IRNode(astNode.getId(), astNode.getName(), astNode.getSchemaType()));
+        CompilerMetrics.global().recordSince(CompilerMetrics.IR_TRANSFORM, astNode.getSchemaType(), start);
+        return irNode;
+    }
+    
+    /**
+     * Fill an IR node, standalone or a table row, from an AST node
+     */
+    private IRNode transformToIR(ASTNode astNode, IRNode irNode) {
         // Copy all properties from AST to IR
         for (Map.Entry<String, Object> entry : astNode.getProperties().entrySet()) {
             irNode.setProperty(entry.getKey(), entry.getValue());
@@ -62,20 +96,43 @@ public class IRBuilder {
         String schemaType = irNode.getSchemaType();
         
         if (schemaType != null) {
-            if (schemaType.contains("stream.schema.yaml")) {
-                // Transform stream-specific properties
-                transformStreamNode(irNode);
-            } else if (schemaType.contains("deal.schema.yaml")) {
-                // Transform deal-specific properties
-                transformDealNode(irNode);
-            } else if (schemaType.contains("asset.schema.yaml")) {
-                // Transform asset-specific properties
-                transformAssetNode(irNode);
-            } else if (schemaType.contains("component.schema.yaml")) {
-                // Transform component-specific properties
-                transformComponentNode(irNode);
+            switch (schemaType) {
+                case SchemaTypes.STREAM:
+                    // Transform stream-specific properties
+                    transformStreamNode(irNode);
+                    break;
+                case SchemaTypes.DEAL:
+                    // Transform deal-specific properties
+                    transformDealNode(irNode);
+                    break;
+                case SchemaTypes.ASSET:
+                    // Transform asset-specific properties
+                    transformAssetNode(irNode);
+                    break;
+                case SchemaTypes.COMPONENT:
+                    // Transform component-specific properties
+                    transformComponentNode(irNode);
+                    break;
+                case SchemaTypes.ASSUMPTION:
+                    // Transform assumption-specific properties
+                    transformAssumptionNode(irNode);
+                    break;
+                case SchemaTypes.WATERFALL:
+                    // Transform waterfall-specific properties
+                    transformWaterfallNode(irNode);
+                    break;
+                case SchemaTypes.CAPITAL_STACK:
+                    // Transform capital stack-specific properties
+                    transformCapitalStackNode(irNode);
+                    break;
+                case SchemaTypes.CALCULATOR:
+                    // Transform calculator-specific properties
+                    transformCalculatorNode(irNode);
+                    break;
+                default:
+                    // Add more transformations as needed for other schema types
+                    break;
             }
-            // Add more transformations as needed for other schema types
         }
     }
     
@@ -90,13 +147,20 @@ public class IRBuilder {
                 Double amountValue = Double.parseDouble((String) amount);
                 streamNode.setProperty("amount", amountValue);
             } catch (NumberFormatException e) {
-                // Keep as string if not numeric (might be a formula)
+                // Not numeric: a formula, parsed now so syntax errors surface at build time
+                streamNode.setProperty("amountReferences", Formula.parse((String) amount).getReferences());
             }
         }
         
-        // Add execution flags
+        // Expression growth is a formula too
+        Object growth = streamNode.getProperty("growth");
+        if (growth instanceof Map && "expression".equals(((Map<?, ?>) growth).get("type"))
+            && ((Map<?, ?>) growth).get("expr") != null) {
+            streamNode.setProperty("growthReferences", Formula.parse(((Map<?, ?>) growth).get("expr").toString()).getReferences());
+        }
+        
+        // Add execution flags; executionOrder comes from the dependency graph
         streamNode.setProperty("isExecutable", true);
-        streamNode.setProperty("executionOrder", determineExecutionOrder(streamNode));
     }
     
     /**
@@ -137,65 +201,98 @@ public class IRBuilder {
     }
     
     /**
-     * Determine execution order for streams based on dependencies
+     * Transform waterfall nodes; tiers are compiled by WaterfallProgram at execution
      */
-    private int determineExecutionOrder(IRNode streamNode) {
-        String scope = streamNode.getStringProperty("scope");
-        String category = streamNode.getStringProperty("category");
+    private void transformWaterfallNode(IRNode waterfallNode) {
+        // Add distribution execution context
+        waterfallNode.setProperty("executionContext", "distribution");
         
-        // Simple execution order logic
-        if ("deal".equals(scope)) {
-            return 1; // Deal-level streams execute first
-        } else if ("asset".equals(scope)) {
-            return 2; // Asset-level streams execute second
-        } else if ("component".equals(scope)) {
-            return 3; // Component-level streams execute last
+        Object tiers = waterfallNode.getProperty("tiers");
+        int tierCount = tiers instanceof List ? ((List<?>) tiers).size() : 0;
+        waterfallNode.setProperty("tierCount", tierCount);
+        waterfallNode.setProperty("isExecutable", tierCount > 0);
+    }
+    
+    /**
+     * Transform capital stack nodes
+     */
+    private void transformCapitalStackNode(IRNode capitalStackNode) {
+        // Add distribution execution context
+        capitalStackNode.setProperty("executionContext", "distribution");
+        capitalStackNode.setProperty("hasWaterfall", capitalStackNode.getProperty("waterfall") != null);
+    }
+    
+    /**
+     * Transform calculator nodes; schedules are computed through ScheduleCache at execution
+     */
+    private void transformCalculatorNode(IRNode calculatorNode) {
+        calculatorNode.setProperty("executionContext", "calculator");
+        int kind = Calculators.kindOf(calculatorNode.getProperty("calculatorType"));
+        calculatorNode.setProperty("isExecutable", kind >= 0);
+        if (kind >= 0) {
+            calculatorNode.setProperty("outputs", new ArrayList<>(Arrays.asList(Calculators.outputs(kind))));
         }
-        
-        return 999; // Default order for unknown scopes
     }
     
     /**
-     * Validate relationships and dependencies between IR nodes
+     * Transform assumption nodes
      */
-    private void validateIRRelationships(List<IRNode> irNodes, List<String> errors) {
-        // Create lookup maps for validation
-        java.util.Set<String> dealIds = new java.util.HashSet<>();
-        java.util.Set<String> assetIds = new java.util.HashSet<>();
-        java.util.Set<String> componentIds = new java.util.HashSet<>();
-        
-        // Collect all entity IDs
+    private void transformAssumptionNode(IRNode assumptionNode) {
+        // Expression assumptions are formulas over other assumptions and streams
+        Object value = assumptionNode.getProperty("value");
+        if ("expression".equals(assumptionNode.getProperty("type")) && value instanceof String) {
+            assumptionNode.setProperty("valueReferences", Formula.parse((String) value).getReferences());
+        }
+    }
+    
+    /**
+     * Build the dependency graph, report its cycles and set each stream's executionOrder
+     * to its level: streams of one level do not depend on each other
+     */
+    DependencyGraph orderDependencies(List<IRNode> irNodes, List<String> errors) {
+        DependencyGraph graph = DependencyGraph.of(irNodes);
+        for (List<String> cycle : graph.getCycles()) {
+            errors.add("Dependency cycle: " + String.join(" -> ", cycle));
+        }
         for (IRNode node : irNodes) {
-            String schemaType = node.getSchemaType();
-            if (schemaType != null) {
-                if (schemaType.contains("deal.schema.yaml")) {
-                    dealIds.add(node.getId());
-                } else if (schemaType.contains("asset.schema.yaml")) {
-                    assetIds.add(node.getId());
-                } else if (schemaType.contains("component.schema.yaml")) {
-                    componentIds.add(node.getId());
-                }
+            if (SchemaTypes.STREAM.equals(node.getSchemaType())) {
+                node.setProperty("executionOrder", graph.getLevel(graph.indexOf(node.getId())));
             }
         }
         
-        // Validate references
+        log.info("🔗 Dependency graph: {} nodes, {} edges, {} levels, {} cycles",
+            graph.size(), graph.getEdgeCount(), graph.getLevelCount(), graph.getCycles().size());
+        return graph;
+    }
+    
+    /**
+     * Validate relationships and dependencies between IR nodes
+     * 
+     * Every reference is an O(1) symbol table lookup, so the check is linear in the node count.
+     */
+    private void validateIRRelationships(List<IRNode> irNodes, SymbolTable symbols, List<String> errors) {
         for (IRNode node : irNodes) {
-            String schemaType = node.getSchemaType();
-            if (schemaType != null) {
-                if (schemaType.contains("asset.schema.yaml")) {
-                    String dealId = node.getStringProperty("dealId");
-                    if (dealId != null && !dealIds.contains(dealId)) {
-                        errors.add("Asset '" + node.getId() + "' references non-existent deal: " + dealId);
-                    }
-                } else if (schemaType.contains("component.schema.yaml")) {
-                    String assetId = node.getStringProperty("assetId");
-                    if (assetId != null && !assetIds.contains(assetId)) {
-                        errors.add("Component '" + node.getId() + "' references non-existent asset: " + assetId);
-                    }
-                }
-            }
+            validateRelationships(node, symbols, errors);
         }
         
-        System.out.println("📊 IR Validation: " + irNodes.size() + " nodes, " + errors.size() + " errors");
+        log.info("📊 IR Validation: {} nodes, {} errors", irNodes.size(), errors.size());
+    }
+    
+    /**
+     * Check the references of a single IR node
+     */
+    void validateRelationships(IRNode node, SymbolTable symbols, List<String> errors) {
+        String schemaType = node.getSchemaType();
+        if (SchemaTypes.ASSET.equals(schemaType)) {
+            String dealId = node.getStringProperty("dealId");
+            if (dealId != null && !symbols.contains(dealId, SchemaTypes.DEAL)) {
+                errors.add("Asset '" + node.getId() + "' references non-existent deal: " + dealId);
+            }
+        } else if (SchemaTypes.COMPONENT.equals(schemaType)) {
+            String assetId = node.getStringProperty("assetId");
+            if (assetId != null && !symbols.contains(assetId, SchemaTypes.ASSET)) {
+                errors.add("Component '" + node.getId() + "' references non-existent asset: " + assetId);
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -15,10 +15,26 @@ public class IRNode {
     private final Map<String, Object> properties;
     
     public IRNode(String id, String name, String schemaType) {
+        this(id, name, schemaType, new HashMap<>());
+    }
+    
+    /**
+     * Node over an existing property map, e.g. a row view of an IRTable
+     */
+    IRNode(String id, String name, String schemaType, Map<String, Object> properties) {
         this.id = id;
         this.name = name;
         this.schemaType = schemaType;
-        this.properties = new HashMap<>();
+        this.properties = properties;
+    }
+    
+    /**
+     * Copy with its own top-level property map; nested values are shared
+     */
+    IRNode copy() {
+        IRNode copy = new IRNode(id, name, schemaType);
+        copy.properties.putAll(properties);
+        return copy;
     }
     
     // Core getters
@@ -0,0 +1,420 @@
+package dev.cfdl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Columnar IR table for one schema type
+ *
+ * Every property key is one column. Double and int values live in primitive arrays,
+ * booleans in a bit set and strings are dictionary-encoded, so repeated values such as
+ * scope, category or executionContext are stored once per table. A column that meets a
+ * value of another type is promoted to a plain object column.
+ *
+ * Rows are exposed to existing consumers as IRNodes whose property map is a live view
+ * of the table, see row(int).
+ */
+public class IRTable {
+
+    /**
+     * A single property across all rows. Each row is either absent, null or holds a value.
+     */
+    public abstract static class Column {
+        private final BitSet present = new BitSet();
+        private final BitSet nulls = new BitSet();
+
+        public boolean isPresent(int row) {
+            return present.get(row);
+        }
+
+        public boolean isNull(int row) {
+            return nulls.get(row);
+        }
+
+        /**
+         * Boxed value of a row, null when absent or null
+         */
+        public Object get(int row) {
+            return present.get(row) && !nulls.get(row) ? getValue(row) : null;
+        }
+
+        void set(int row, Object value) {
+            present.set(row);
+            if (value == null) {
+                nulls.set(row);
+            } else {
+                nulls.clear(row);
+                setValue(row, value);
+            }
+        }
+
+        void remove(int row) {
+            present.clear(row);
+            nulls.clear(row);
+        }
+
+        void truncate(int rows) {
+            present.clear(rows, Math.max(rows, present.length()));
+            nulls.clear(rows, Math.max(rows, nulls.length()));
+        }
+
+        abstract boolean accepts(Object value);
+        abstract Object getValue(int row);
+        abstract void setValue(int row, Object value);
+
+        /**
+         * Copy into an object column, keeping presence and nulls
+         */
+        ObjectColumn toObjectColumn(int rows) {
+            ObjectColumn column = new ObjectColumn();
+            for (int row = present.nextSetBit(0); row >= 0 && row < rows; row = present.nextSetBit(row + 1)) {
+                column.set(row, nulls.get(row) ? null : getValue(row));
+            }
+            return column;
+        }
+    }
+
+    public static class DoubleColumn extends Column {
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        public double getDouble(int row) { return values[row]; }
+
+        /**
+         * Backing array; only rows below the table size that are present hold values
+         */
+        public double[] values() { return values; }
+
+        @Override boolean accepts(Object value) { return value instanceof Double; }
+        @Override Object getValue(int row) { return values[row]; }
+        @Override void setValue(int row, Object value) {
+            values = grow(values, row);
+            values[row] = (Double) value;
+        }
+    }
+
+    public static class IntColumn extends Column {
+        private int[] values = new int[INITIAL_CAPACITY];
+
+        public int getInt(int row) { return values[row]; }
+
+        /**
+         * Backing array; only rows below the table size that are present hold values
+         */
+        public int[] values() { return values; }
+
+        @Override boolean accepts(Object value) { return value instanceof Integer; }
+        @Override Object getValue(int row) { return values[row]; }
+        @Override void setValue(int row, Object value) {
+            values = grow(values, row);
+            values[row] = (Integer) value;
+        }
+    }
+
+    public static class BooleanColumn extends Column {
+        private final BitSet values = new BitSet();
+
+        public boolean getBoolean(int row) { return values.get(row); }
+
+        @Override boolean accepts(Object value) { return value instanceof Boolean; }
+        @Override Object getValue(int row) { return values.get(row); }
+        @Override void setValue(int row, Object value) { values.set(row, (Boolean) value); }
+    }
+
+    /**
+     * Strings stored as codes into a per-column dictionary
+     */
+    public static class DictionaryColumn extends Column {
+        private int[] codes = new int[INITIAL_CAPACITY];
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+
+        public int getCode(int row) { return codes[row]; }
+        public String decode(int code) { return dictionary.get(code); }
+        public List<String> getDictionary() { return Collections.unmodifiableList(dictionary); }
+
+        @Override boolean accepts(Object value) { return value instanceof String; }
+        @Override Object getValue(int row) { return dictionary.get(codes[row]); }
+        @Override void setValue(int row, Object value) {
+            Integer code = index.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add((String) value);
+                index.put((String) value, code);
+            }
+            codes = grow(codes, row);
+            codes[row] = code;
+        }
+    }
+
+    public static class ObjectColumn extends Column {
+        private Object[] values = new Object[INITIAL_CAPACITY];
+
+        @Override boolean accepts(Object value) { return true; }
+        @Override Object getValue(int row) { return values[row]; }
+        @Override void setValue(int row, Object value) {
+            if (row >= values.length) {
+                values = Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+            }
+            values[row] = value;
+        }
+        @Override void remove(int row) {
+            super.remove(row);
+            if (row < values.length) {
+                values[row] = null;
+            }
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String schemaType;
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int size;
+    private Map<String, Integer> rowsById; // Built on first lookup
+
+    public IRTable(String schemaType) {
+        this.schemaType = schemaType;
+    }
+
+    /**
+     * Group IR nodes into one table per schema type, in first-seen order
+     */
+    public static Map<String, IRTable> of(Collection<IRNode> nodes) {
+        Map<String, IRTable> tables = new LinkedHashMap<>();
+        for (IRNode node : nodes) {
+            IRTable table = tables.computeIfAbsent(node.getSchemaType(), IRTable::new);
+            IRNode row = table.addRow(node.getId(), node.getName());
+            node.getProperties().forEach(row::setProperty);
+        }
+        return tables;
+    }
+
+    /**
+     * Append a row and return its IRNode view
+     */
+    public IRNode addRow(String id, String name) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        ids[size] = id;
+        names[size] = name;
+        if (rowsById != null) {
+            rowsById.put(id, size);
+        }
+        return row(size++);
+    }
+
+    /**
+     * Drop every row from the given index on, e.g. after a failed transform
+     */
+    void truncate(int rows) {
+        if (rows >= size) {
+            return;
+        }
+        for (Column column : columns.values()) {
+            column.truncate(rows);
+        }
+        Arrays.fill(ids, rows, size, null);
+        Arrays.fill(names, rows, size, null);
+        size = rows;
+        rowsById = null;
+    }
+
+    /**
+     * An IRNode backed by this table; reads and writes go straight to the columns
+     */
+    public IRNode row(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return new IRNode(ids[row], names[row], schemaType, new RowView(row));
+    }
+
+    /**
+     * Row index of an entity id, or -1
+     */
+    public int indexOf(String id) {
+        if (rowsById == null) {
+            rowsById = new HashMap<>();
+            for (int row = 0; row < size; row++) {
+                rowsById.put(ids[row], row);
+            }
+        }
+        Integer row = rowsById.get(id);
+        return row != null ? row : -1;
+    }
+
+    public String getSchemaType() { return schemaType; }
+    public int size() { return size; }
+    public String getId(int row) { return ids[row]; }
+    public String getName(int row) { return names[row]; }
+    public Set<String> getColumnNames() { return Collections.unmodifiableSet(columns.keySet()); }
+
+    /**
+     * A column by property key, or null if no row has the property
+     */
+    public Column getColumn(String key) {
+        return columns.get(key);
+    }
+
+    public Object get(int row, String key) {
+        Column column = columns.get(key);
+        return column != null ? column.get(row) : null;
+    }
+
+    public void set(int row, String key, Object value) {
+        Column column = columns.get(key);
+        if (column == null) {
+            column = newColumn(value);
+            columns.put(key, column);
+        } else if (value != null && !column.accepts(value)) {
+            column = column.toObjectColumn(size);
+            columns.put(key, column);
+        }
+        column.set(row, value);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IRTable{schema='%s', rows=%d, columns=%s}", schemaType, size, columns.keySet());
+    }
+
+    // Helper methods
+
+    private static Column newColumn(Object value) {
+        if (value instanceof Double) {
+            return new DoubleColumn();
+        } else if (value instanceof Integer) {
+            return new IntColumn();
+        } else if (value instanceof Boolean) {
+            return new BooleanColumn();
+        } else if (value instanceof String) {
+            return new DictionaryColumn();
+        }
+        return new ObjectColumn();
+    }
+
+    private static double[] grow(double[] values, int row) {
+        return row < values.length ? values : Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+    }
+
+    private static int[] grow(int[] values, int row) {
+        return row < values.length ? values : Arrays.copyOf(values, Math.max(row + 1, values.length * 2));
+    }
+
+    /**
+     * Map view of one row, as seen through IRNode.getProperties()
+     */
+    private class RowView extends AbstractMap<String, Object> {
+        private final int row;
+
+        RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Column column = columns.get(key);
+            return column != null ? column.get(row) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Column column = columns.get(key);
+            return column != null && column.isPresent(row);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Object previous = get(key);
+            set(row, key, value);
+            return previous;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            Column column = columns.get(key);
+            if (column == null || !column.isPresent(row)) {
+                return null;
+            }
+            Object previous = column.get(row);
+            column.remove(row);
+            return previous;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    Iterator<Map.Entry<String, Column>> it = columns.entrySet().iterator();
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private Map.Entry<String, Column> next = advance();
+                        private String last;
+
+                        private Map.Entry<String, Column> advance() {
+                            while (it.hasNext()) {
+                                Map.Entry<String, Column> entry = it.next();
+                                if (entry.getValue().isPresent(row)) {
+                                    return entry;
+                                }
+                            }
+                            return null;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next != null;
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (next == null) {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<String, Column> current = next;
+                            next = advance();
+                            last = current.getKey();
+                            return new SimpleImmutableEntry<>(current.getKey(), current.getValue().get(row));
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) {
+                                throw new IllegalStateException();
+                            }
+                            columns.get(last).remove(row);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int count = 0;
+                    for (Column column : columns.values()) {
+                        if (column.isPresent(row)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming IR JSON writer for the Julia engine
+ *
+ * Writes an IRBuildResult in the layout engine/src/ir_loader.jl load_ir expects:
+ * deal, calendar, assets, components, streams, assumptions, logic_blocks, waterfall.
+ * Rows are read straight from the columnar IR tables and written token by token
+ * with a JsonGenerator, so no output tree is ever built in memory.
+ *
+ * Mapping:
+ *   - every entity is written with its entity key as "id"; an "id" property that
+ *     differs (usually a URI) is written as "uri"
+ *   - raw nested assets/components/streams bodies are skipped, the entities are
+ *     written in their own sections and referenced through assetIds etc.
+ *   - deal and waterfall are the first entity of their type, calendar is the deal's calendar
+ *   - assumptions map each assumption key to its value, or to its distribution in
+ *     the engine's {type: Normal, mean, std} form when its type is distribution
+ */
+public class IRWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Ontology distribution names -> engine distribution types
+    private static final Map<String, String> DISTRIBUTION_TYPES = new HashMap<>();
+
+    static {
+        DISTRIBUTION_TYPES.put("normal", "Normal");
+        DISTRIBUTION_TYPES.put("uniform", "Uniform");
+        DISTRIBUTION_TYPES.put("lognormal", "LogNormal");
+        DISTRIBUTION_TYPES.put("triangular", "Triangular");
+        DISTRIBUTION_TYPES.put("beta", "Beta");
+    }
+
+    // Raw nested entity bodies already written as entities of their own
+    private static final String[] NESTED_FIELDS = {"assets", "components", "streams"};
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final boolean gzip;
+    private final boolean pretty;
+
+    public IRWriter() {
+        this(false, false);
+    }
+
+    /**
+     * @param gzip   compress the output; files ending in .gz are always compressed
+     * @param pretty indent the output for reading
+     */
+    public IRWriter(boolean gzip, boolean pretty) {
+        this.gzip = gzip;
+        this.pretty = pretty;
+    }
+
+    /**
+     * Write IR to a file through a buffered file channel
+     */
+    public void write(IRBuildResult result, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        if (gzip || file.toString().endsWith(".gz")) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        try (OutputStream stream = out) {
+            write(result, stream);
+        }
+    }
+
+    /**
+     * Write IR to a stream; the stream is flushed but not closed
+     */
+    public void write(IRBuildResult result, OutputStream out) throws IOException {
+        Map<String, IRTable> tables = result.getTables();
+        try (JsonGenerator gen = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (pretty) {
+                gen.useDefaultPrettyPrinter();
+            }
+
+            IRTable deals = tables.get(SchemaTypes.DEAL);
+            gen.writeStartObject();
+
+            gen.writeFieldName("deal");
+            if (deals != null && deals.size() > 0) {
+                writeEntity(gen, deals, 0);
+            } else {
+                gen.writeStartObject();
+                gen.writeEndObject();
+            }
+
+            gen.writeFieldName("calendar");
+            Object calendar = deals != null && deals.size() > 0 ? deals.get(0, "calendar") : null;
+            writeValue(gen, calendar instanceof Map ? calendar : new HashMap<>());
+
+            writeEntities(gen, "assets", tables.get(SchemaTypes.ASSET));
+            writeEntities(gen, "components", tables.get(SchemaTypes.COMPONENT));
+            writeEntities(gen, "streams", tables.get(SchemaTypes.STREAM));
+            writeAssumptions(gen, tables.get(SchemaTypes.ASSUMPTION));
+            writeEntities(gen, "logic_blocks", tables.get(SchemaTypes.LOGIC_BLOCK));
+
+            gen.writeFieldName("waterfall");
+            IRTable waterfalls = tables.get(SchemaTypes.WATERFALL);
+            if (waterfalls != null && waterfalls.size() > 0) {
+                writeEntity(gen, waterfalls, 0);
+            } else {
+                gen.writeNull();
+            }
+
+            gen.writeEndObject();
+        }
+        out.flush();
+    }
+
+    // Sections
+
+    private void writeEntities(JsonGenerator gen, String field, IRTable table) throws IOException {
+        gen.writeArrayFieldStart(field);
+        if (table != null) {
+            for (int row = 0; row < table.size(); row++) {
+                writeEntity(gen, table, row);
+            }
+        }
+        gen.writeEndArray();
+    }
+
+    private void writeEntity(JsonGenerator gen, IRTable table, int row) throws IOException {
+        String id = table.getId(row);
+        gen.writeStartObject();
+        gen.writeStringField("id", id);
+        if (table.getName(row) != null) {
+            gen.writeStringField("name", table.getName(row));
+        }
+
+        for (String key : table.getColumnNames()) {
+            IRTable.Column column = table.getColumn(key);
+            if (!column.isPresent(row) || isNestedField(key)) {
+                continue;
+            }
+            if (key.equals("id")) {
+                Object uri = column.get(row);
+                if (uri != null && !uri.equals(id)) {
+                    gen.writeFieldName("uri");
+                    writeValue(gen, uri);
+                }
+                continue;
+            }
+            gen.writeFieldName(key);
+            writeCell(gen, column, row);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeAssumptions(JsonGenerator gen, IRTable table) throws IOException {
+        gen.writeObjectFieldStart("assumptions");
+        if (table != null) {
+            for (int row = 0; row < table.size(); row++) {
+                gen.writeFieldName(table.getId(row));
+                Object distribution = table.get(row, "distribution");
+                if ("distribution".equals(table.get(row, "type")) && distribution instanceof Map) {
+                    writeDistribution(gen, (Map<?, ?>) distribution);
+                } else {
+                    writeValue(gen, table.get(row, "value"));
+                }
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Ontology {type: normal, parameters: {mean, std}} -> engine {type: Normal, mean, std}
+     */
+    private void writeDistribution(JsonGenerator gen, Map<?, ?> distribution) throws IOException {
+        String type = String.valueOf(distribution.get("type"));
+        gen.writeStartObject();
+        gen.writeStringField("type", DISTRIBUTION_TYPES.getOrDefault(type.toLowerCase(), type));
+        Object parameters = distribution.get("parameters");
+        if (parameters instanceof Map) {
+            for (Map.Entry<?, ?> parameter : ((Map<?, ?>) parameters).entrySet()) {
+                gen.writeFieldName(String.valueOf(parameter.getKey()));
+                writeValue(gen, parameter.getValue());
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    // Values
+
+    /**
+     * Write one cell using the column's primitive storage where there is one
+     */
+    private void writeCell(JsonGenerator gen, IRTable.Column column, int row) throws IOException {
+        if (column.isNull(row)) {
+            gen.writeNull();
+        } else if (column instanceof IRTable.DoubleColumn) {
+            gen.writeNumber(((IRTable.DoubleColumn) column).getDouble(row));
+        } else if (column instanceof IRTable.IntColumn) {
+            gen.writeNumber(((IRTable.IntColumn) column).getInt(row));
+        } else if (column instanceof IRTable.BooleanColumn) {
+            gen.writeBoolean(((IRTable.BooleanColumn) column).getBoolean(row));
+        } else {
+            writeValue(gen, column.get(row));
+        }
+    }
+
+    private void writeValue(JsonGenerator gen, Object value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof String) {
+            gen.writeString((String) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            gen.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Integer) {
+            gen.writeNumber((Integer) value);
+        } else if (value instanceof Long) {
+            gen.writeNumber((Long) value);
+        } else if (value instanceof Number) {
+            gen.writeNumber(value.toString());
+        } else if (value instanceof Boolean) {
+            gen.writeBoolean((Boolean) value);
+        } else if (value instanceof Map) {
+            gen.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                gen.writeFieldName(String.valueOf(entry.getKey()));
+                writeValue(gen, entry.getValue());
+            }
+            gen.writeEndObject();
+        } else if (value instanceof List) {
+            gen.writeStartArray();
+            for (Object item : (List<?>) value) {
+                writeValue(gen, item);
+            }
+            gen.writeEndArray();
+        } else {
+            gen.writeString(value.toString());
+        }
+    }
+
+    // Helper methods
+
+    private static boolean isNestedField(String key) {
+        for (String nested : NESTED_FIELDS) {
+            if (nested.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,217 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental CFDL compiler
+ *
+ * Remembers the per-entity results of the last compile of each file. Every entity is
+ * keyed by the content hash of its subtree plus the local hashes of the entities it
+ * references; on recompile only entities whose key changed are re-run through schema
+ * validation, the required-properties check and the IR transform, everything else is
+ * reused from the cache.
+ *
+ * Entities are validated against their own fields only, nested entities being
+ * validated on their own, so a one-line edit to a stream re-runs that stream and the
+ * few parents above it rather than the whole deal.
+ *
+ * Not thread-safe. Cached IRNodes are never handed out: every result gets its own
+ * copies, so ordering one compile does not change the IR of an earlier one.
+ */
+public class IncrementalCompiler {
+
+    // Key contribution of a reference whose target is not defined
+    private static final long MISSING_TARGET = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Everything computed for one entity, valid for as long as its key is unchanged
+     */
+    private static class EntityResult {
+        final long key;
+        final List<ValidationError> schemaErrors;
+        final List<String> missingProperties;
+        final IRNode irNode; // null if the transform failed
+        final List<String> irErrors;
+
+        EntityResult(long key, List<ValidationError> schemaErrors, List<String> missingProperties,
+                     IRNode irNode, List<String> irErrors) {
+            this.key = key;
+            this.schemaErrors = schemaErrors;
+            this.missingProperties = missingProperties;
+            this.irNode = irNode;
+            this.irErrors = irErrors;
+        }
+    }
+
+    private final ObjectMapper yamlMapper = Parser.newYamlMapper();
+    private final SchemaValidator schemaValidator;
+    private final ComprehensiveSchemaChecker checker = new ComprehensiveSchemaChecker();
+    private final IRBuilder irBuilder = new IRBuilder();
+    private final Map<Path, Map<String, EntityResult>> cache = new HashMap<>();
+
+    private int lastReused;
+    private int lastRecompiled;
+
+    public IncrementalCompiler() {
+        this(new SchemaValidator());
+    }
+
+    public IncrementalCompiler(SchemaValidator schemaValidator) {
+        this.schemaValidator = schemaValidator;
+    }
+
+    /**
+     * Compile a file, reusing cached results for every unchanged entity.
+     * A file that cannot be read or parsed keeps its cache from the last good compile.
+     */
+    public CompileResult compile(Path file) {
+        long start = System.nanoTime();
+        try {
+            JsonNode rootNode = Parser.readDocument(yamlMapper, file.toFile());
+            return compile(file, rootNode, start);
+        } catch (Exception e) {
+            return CompileResult.failed(file, e, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Compile an already parsed document, cached under the given file
+     */
+    public CompileResult compile(Path file, JsonNode rootNode) {
+        return compile(file, rootNode, System.nanoTime());
+    }
+
+    private CompileResult compile(Path file, JsonNode rootNode, long start) {
+        Path cacheKey = file.toAbsolutePath().normalize();
+        List<ValidationError> schemaErrors = new ArrayList<>();
+        SymbolTable symbols = new SymbolTable();
+
+        List<ASTNode> astNodes = new ASTBuilder(symbols, true).buildDocument(rootNode, schemaErrors);
+        Map<String, List<SymbolTable.Reference>> referencesBySource = groupBySource(symbols.getReferences());
+
+        Map<String, EntityResult> previous = cache.getOrDefault(cacheKey, Collections.emptyMap());
+        Map<String, EntityResult> current = new HashMap<>();
+        int reused = 0;
+
+        List<String> missingProperties = new ArrayList<>();
+        List<String> checkedEntities = new ArrayList<>();
+        List<IRNode> irNodes = new ArrayList<>();
+        List<String> irErrors = new ArrayList<>();
+        int validCount = 0;
+
+        for (ASTNode node : astNodes) {
+            long key = entityKey(node, referencesBySource.get(node.getId()), symbols);
+            EntityResult result = previous.get(node.getId());
+            if (result != null && result.key == key) {
+                reused++;
+            } else {
+                result = evaluate(node, key, symbols);
+            }
+            current.put(node.getId(), result);
+
+            schemaErrors.addAll(result.schemaErrors);
+            missingProperties.addAll(result.missingProperties);
+            checkedEntities.add("✅ " + checker.getSchemaTypeName(node.getSchemaType()) + " '" + node.getId() + "'");
+            if (result.missingProperties.isEmpty()) {
+                validCount++;
+            }
+            if (result.irNode != null) {
+                // Ordering sets executionOrder, so each result orders its own copies
+                irNodes.add(result.irNode.copy());
+            }
+            irErrors.addAll(result.irErrors);
+        }
+
+        cache.put(cacheKey, current);
+        lastReused = reused;
+        lastRecompiled = astNodes.size() - reused;
+
+        Parser.ParseResult parseResult = new Parser.ParseResult(astNodes, schemaErrors, symbols);
+        ComprehensiveSchemaChecker.ValidationReport report = new ComprehensiveSchemaChecker.ValidationReport(
+            missingProperties, checkedEntities, astNodes.size(), validCount);
+
+        // Same gate as the full pipeline: no IR for files missing required properties.
+        // Dependencies span entities, so the graph is rebuilt on every compile.
+        IRBuildResult irResult = report.hasErrors()
+            ? new IRBuildResult(null, null)
+            : new IRBuildResult(null, irNodes, irErrors, irBuilder.orderDependencies(irNodes, irErrors));
+
+        CompilerMetrics.global().recordSince(CompilerMetrics.COMPILE, null, start);
+        return new CompileResult(file, parseResult, report, irResult, null, System.nanoTime() - start);
+    }
+
+    /**
+     * Drop the cached results of a file, e.g. after it was deleted
+     */
+    public void invalidate(Path file) {
+        cache.remove(file.toAbsolutePath().normalize());
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Entities reused from the cache by the last compile
+     */
+    public int getLastReused() { return lastReused; }
+
+    /**
+     * Entities re-validated and re-transformed by the last compile
+     */
+    public int getLastRecompiled() { return lastRecompiled; }
+
+    public SchemaValidator getSchemaValidator() { return schemaValidator; }
+
+    // Helper methods
+
+    private EntityResult evaluate(ASTNode node, long key, SymbolTable symbols) {
+        List<ValidationError> schemaErrors = schemaValidator.validateNode(node);
+
+        List<String> missingProperties = new ArrayList<>();
+        checker.validateNode(node, missingProperties);
+
+        IRNode irNode = null;
+        List<String> irErrors = new ArrayList<>();
+        try {
+            irNode = irBuilder.transformToIR(node);
+            irBuilder.validateRelationships(irNode, symbols, irErrors);
+        } catch (Exception e) {
+            irErrors.add("Failed to transform " + node.getId() + " to IR: " + e.getMessage());
+        }
+
+        return new EntityResult(key, schemaErrors, missingProperties, irNode, irErrors);
+    }
+
+    /**
+     * The node's own subtree hash combined with the local hash of every entity it references.
+     * Local hashes leave out nested entities, so editing one asset does not invalidate
+     * every sibling that references the deal above it.
+     */
+    private static long entityKey(ASTNode node, List<SymbolTable.Reference> references, SymbolTable symbols) {
+        long key = ContentHash.combine(node.getContentHash(), ContentHash.of(node.getSchemaType()));
+        if (references != null) {
+            for (SymbolTable.Reference reference : references) {
+                ASTNode target = symbols.lookup(reference.getTargetId(), reference.getExpectedSchemaType());
+                key = ContentHash.combine(key, target != null ? target.getLocalHash() : MISSING_TARGET);
+            }
+        }
+        return key;
+    }
+
+    private static Map<String, List<SymbolTable.Reference>> groupBySource(List<SymbolTable.Reference> references) {
+        Map<String, List<SymbolTable.Reference>> bySource = new HashMap<>();
+        for (SymbolTable.Reference reference : references) {
+            bySource.computeIfAbsent(reference.getSourceId(), k -> new ArrayList<>()).add(reference);
+        }
+        return bySource;
+    }
+}
@@ -0,0 +1,312 @@
+package dev.cfdl;
+
+/**
+ * Investment metrics over primitive cash-flow arrays
+ *
+ * Kernels follow engine/src/metrics.jl: flows exclude the initial investment, which
+ * is a positive outlay at t = 0, and the flow at offset + i is discounted over i + 1
+ * periods. Non-finite flows are skipped and later flows move up a period, as the Julia
+ * functions filter them before enumerating. Rates are per period.
+ *
+ * Batched kernels take a row-major matrix of trials x periods, the layout of
+ * CashFlowResult and MonteCarloRunner buffers, and write one value per trial into a
+ * caller-owned array; nothing is allocated per call. Batched IRR warm-starts Newton
+ * from the previous trial's root, which neighbouring trials usually share closely.
+ *
+ * Metric schemas: ontology/result/metrics/{npv,irr,moic,dscr,payback,eirr,enpv}.schema.yaml
+ */
+public final class Metrics {
+
+    static final int MAX_ITERATIONS = 100;
+    static final double TOLERANCE = 1e-6;
+
+    // IRR search bounds, -99% to 1000% per period
+    static final double MIN_RATE = -0.99;
+    static final double MAX_RATE = 10.0;
+
+    private Metrics() {
+    }
+
+    /**
+     * Net present value at a per-period discount rate
+     */
+    public static double npv(double[] flows, double rate, double initialInvestment) {
+        return npv(flows, 0, flows.length, rate, initialInvestment);
+    }
+
+    public static double npv(double[] flows, int offset, int length, double rate, double initialInvestment) {
+        double present = 0;
+        double base = 1 + rate;
+        double discount = 1;
+        for (int i = offset; i < offset + length; i++) {
+            double flow = flows[i];
+            if (Double.isFinite(flow)) {
+                discount *= base;
+                present += flow / discount;
+            }
+        }
+        return present - initialInvestment;
+    }
+
+    /**
+     * Internal rate of return per period, NaN if the flows never repay the investment or no root is found
+     */
+    public static double irr(double[] flows, double initialInvestment) {
+        return irr(flows, 0, flows.length, initialInvestment, Double.NaN);
+    }
+
+    /**
+     * IRR by Newton from the guess (or the Julia payback guess if it is not finite),
+     * falling back to bisection over [MIN_RATE, MAX_RATE] when Newton leaves the bounds,
+     * hits a flat derivative or does not converge
+     */
+    public static double irr(double[] flows, int offset, int length, double initialInvestment, double guess) {
+        double total = 0;
+        int count = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (Double.isFinite(flows[i])) {
+                total += flows[i];
+                count++;
+            }
+        }
+        if (count == 0 || total <= initialInvestment) {
+            return Double.NaN;
+        }
+
+        double rate = Double.isFinite(guess) && guess > MIN_RATE && guess < MAX_RATE
+            ? guess : Math.max((total / initialInvestment - 1) / count, 0.01);
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            // NPV and its derivative in one pass, discounting incrementally
+            double value = -initialInvestment;
+            double derivative = 0;
+            double base = 1 + rate;
+            double discount = 1;
+            int t = 0;
+            for (int i = offset; i < offset + length; i++) {
+                double flow = flows[i];
+                if (Double.isFinite(flow)) {
+                    discount *= base;
+                    t++;
+                    value += flow / discount;
+                    derivative -= t * flow / (discount * base);
+                }
+            }
+
+            if (Math.abs(value) < TOLERANCE) {
+                return rate;
+            }
+            if (Math.abs(derivative) < 1e-10) {
+                break;
+            }
+            double next = rate - value / derivative;
+            if (next < MIN_RATE || next > MAX_RATE) {
+                break;
+            }
+            if (Math.abs(next - rate) < TOLERANCE) {
+                return next;
+            }
+            rate = next;
+        }
+        return irrBisection(flows, offset, length, initialInvestment);
+    }
+
+    /**
+     * Multiple on invested capital, NaN for no investment
+     */
+    public static double moic(double totalDistributions, double initialInvestment) {
+        return initialInvestment == 0 ? Double.NaN : totalDistributions / initialInvestment;
+    }
+
+    /**
+     * MOIC of a series: its total over the investment, skipping non-finite flows
+     */
+    public static double moic(double[] flows, int offset, int length, double initialInvestment) {
+        double total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (Double.isFinite(flows[i])) {
+                total += flows[i];
+            }
+        }
+        return moic(total, initialInvestment);
+    }
+
+    /**
+     * Per-period DSCR into out; periods without debt service are +Infinity
+     */
+    public static void dscr(double[] operatingFlows, double[] debtService, double[] out) {
+        if (operatingFlows.length != debtService.length) {
+            throw new IllegalArgumentException("Operating cash flows and debt service must have the same length");
+        }
+        if (out.length < operatingFlows.length) {
+            throw new IllegalArgumentException("Output holds fewer than " + operatingFlows.length + " periods");
+        }
+        for (int p = 0; p < operatingFlows.length; p++) {
+            out[p] = debtService[p] == 0 ? Double.POSITIVE_INFINITY : operatingFlows[p] / debtService[p];
+        }
+    }
+
+    /**
+     * Mean DSCR over periods with debt service, NaN if there are none
+     */
+    public static double averageDscr(double[] operatingFlows, double[] debtService) {
+        if (operatingFlows.length != debtService.length) {
+            throw new IllegalArgumentException("Operating cash flows and debt service must have the same length");
+        }
+        return averageDscr(operatingFlows, 0, debtService, 0, operatingFlows.length);
+    }
+
+    public static double averageDscr(double[] operatingFlows, int operatingOffset,
+                                     double[] debtService, int debtOffset, int length) {
+        double sum = 0;
+        int count = 0;
+        for (int p = 0; p < length; p++) {
+            double debt = debtService[debtOffset + p];
+            double ratio = operatingFlows[operatingOffset + p] / debt;
+            if (debt != 0 && Double.isFinite(ratio)) {
+                sum += ratio;
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    /**
+     * Periods until cumulative flows recover the investment, fractional within the
+     * recovering period; +Infinity if never recovered
+     */
+    public static double payback(double[] flows, double initialInvestment) {
+        return payback(flows, 0, flows.length, initialInvestment);
+    }
+
+    public static double payback(double[] flows, int offset, int length, double initialInvestment) {
+        if (length == 0 || initialInvestment <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double cumulative = 0;
+        for (int period = 1; period <= length; period++) {
+            double flow = flows[offset + period - 1];
+            cumulative += flow;
+            if (cumulative >= initialInvestment) {
+                if (flow == 0) {
+                    return period;
+                }
+                double excess = cumulative - initialInvestment;
+                return period - 1 + (1 - excess / flow);
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // Batched kernels over trials x periods
+
+    public static void npv(double[] flows, int trials, int periods, double rate, double initialInvestment, double[] out) {
+        checkMatrix(flows, trials, periods, out);
+        for (int trial = 0; trial < trials; trial++) {
+            out[trial] = npv(flows, trial * periods, periods, rate, initialInvestment);
+        }
+    }
+
+    /**
+     * IRR of every trial, warm-started from the last finite root; returns the number of NaN results
+     */
+    public static int irr(double[] flows, int trials, int periods, double initialInvestment, double[] out) {
+        checkMatrix(flows, trials, periods, out);
+        double guess = Double.NaN;
+        int failed = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            double root = irr(flows, trial * periods, periods, initialInvestment, guess);
+            out[trial] = root;
+            if (Double.isNaN(root)) {
+                failed++;
+            } else {
+                guess = root;
+            }
+        }
+        return failed;
+    }
+
+    public static void moic(double[] flows, int trials, int periods, double initialInvestment, double[] out) {
+        checkMatrix(flows, trials, periods, out);
+        for (int trial = 0; trial < trials; trial++) {
+            out[trial] = moic(flows, trial * periods, periods, initialInvestment);
+        }
+    }
+
+    public static void payback(double[] flows, int trials, int periods, double initialInvestment, double[] out) {
+        checkMatrix(flows, trials, periods, out);
+        for (int trial = 0; trial < trials; trial++) {
+            out[trial] = payback(flows, trial * periods, periods, initialInvestment);
+        }
+    }
+
+    /**
+     * Expected NPV: the mean NPV over trials
+     */
+    public static double enpv(double[] flows, int trials, int periods, double rate, double initialInvestment) {
+        checkMatrix(flows, trials, periods, null);
+        double sum = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            sum += npv(flows, trial * periods, periods, rate, initialInvestment);
+        }
+        return trials > 0 ? sum / trials : Double.NaN;
+    }
+
+    /**
+     * Expected IRR: the mean over trials with a finite IRR, NaN if none has one
+     */
+    public static double eirr(double[] flows, int trials, int periods, double initialInvestment) {
+        checkMatrix(flows, trials, periods, null);
+        double guess = Double.NaN;
+        double sum = 0;
+        int count = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            double root = irr(flows, trial * periods, periods, initialInvestment, guess);
+            if (!Double.isNaN(root)) {
+                sum += root;
+                count++;
+                guess = root;
+            }
+        }
+        return count > 0 ? sum / count : Double.NaN;
+    }
+
+    // Helper methods
+
+    private static double irrBisection(double[] flows, int offset, int length, double initialInvestment) {
+        double low = MIN_RATE;
+        double high = MAX_RATE;
+        double npvLow = npv(flows, offset, length, low, initialInvestment);
+        double npvHigh = npv(flows, offset, length, high, initialInvestment);
+        if (npvLow * npvHigh > 0) {
+            return Double.NaN;
+        }
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double middle = (low + high) / 2;
+            double npvMiddle = npv(flows, offset, length, middle, initialInvestment);
+            if (Math.abs(npvMiddle) < TOLERANCE) {
+                return middle;
+            }
+            if (npvLow * npvMiddle < 0) {
+                high = middle;
+            } else {
+                low = middle;
+                npvLow = npvMiddle;
+            }
+            if (high - low < TOLERANCE) {
+                return (low + high) / 2;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static void checkMatrix(double[] flows, int trials, int periods, double[] out) {
+        if (trials < 0 || periods < 0 || (long) trials * periods > flows.length) {
+            throw new IllegalArgumentException("Flows hold fewer than " + trials + " x " + periods + " values");
+        }
+        if (out != null && out.length < trials) {
+            throw new IllegalArgumentException("Output holds fewer than " + trials + " trials");
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package dev.cfdl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a Monte Carlo run: per-deal, per-assumption and per-metric statistics over all trials
+ */
+public class MonteCarloResult {
+
+    private static final Logger log = LoggerFactory.getLogger(MonteCarloResult.class);
+
+    /**
+     * Streaming summary of a sampled quantity: count, mean, variance, min, max and a
+     * quantile sketch. Memory does not grow with the number of values; summaries merge,
+     * and serialize with toBytes so runs made apart can be combined.
+     * Welford updates and Chan's pairwise merge keep the variance exact for constant samples.
+     */
+    public static class Summary {
+        private long count;
+        private long undefined;
+        private double mean;
+        private double m2;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final QuantileSketch sketch;
+
+        public Summary() {
+            this(new QuantileSketch());
+        }
+
+        private Summary(QuantileSketch sketch) {
+            this.sketch = sketch;
+        }
+
+        /**
+         * Add one value. Non-finite values (an IRR without a root, a payback never reached)
+         * are only counted as undefined and stay out of the statistics.
+         */
+        public void add(double value) {
+            if (!Double.isFinite(value)) {
+                undefined++;
+                return;
+            }
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sketch.add(value);
+        }
+
+        public void merge(Summary other) {
+            sketch.merge(other.sketch);
+            undefined += other.undefined;
+            if (other.count == 0) {
+                return;
+            }
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+            count = total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        public long getCount() { return count; }
+        public long getUndefinedCount() { return undefined; }
+        public double getMin() { return count > 0 ? min : Double.NaN; }
+        public double getMax() { return count > 0 ? max : Double.NaN; }
+
+        public double getMean() {
+            return count > 0 ? mean : Double.NaN;
+        }
+
+        /**
+         * Sample standard deviation, 0 for fewer than two values
+         */
+        public double getStd() {
+            return count < 2 ? 0 : Math.sqrt(m2 / (count - 1));
+        }
+
+        /**
+         * Estimated value at quantile q, e.g. 0.05 for P5
+         */
+        public double quantile(double q) {
+            return sketch.quantile(q);
+        }
+
+        /**
+         * Value at risk at a confidence level such as 0.95: the outcome that only the
+         * worst 1 - confidence of trials fall below. Outcomes are values where higher is
+         * better (net totals, NPV, IRR), so VaR is a low quantile, not a loss.
+         */
+        public double getValueAtRisk(double confidence) {
+            return sketch.quantile(1 - confidence);
+        }
+
+        /**
+         * Conditional value at risk (expected shortfall): the mean outcome of the worst
+         * 1 - confidence of trials
+         */
+        public double getConditionalValueAtRisk(double confidence) {
+            return sketch.lowerTailMean(1 - confidence);
+        }
+
+        /**
+         * Little-endian encoding of the summary, read back by fromBytes
+         */
+        public byte[] toBytes() {
+            ByteBuffer out = ByteBuffer.allocate(2 * 8 + 4 * 8 + sketch.serializedSize()).order(ByteOrder.LITTLE_ENDIAN);
+            out.putLong(count);
+            out.putLong(undefined);
+            out.putDouble(mean);
+            out.putDouble(m2);
+            out.putDouble(min);
+            out.putDouble(max);
+            sketch.writeTo(out);
+            return out.array();
+        }
+
+        public static Summary fromBytes(byte[] bytes) {
+            ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            long count = in.getLong();
+            long undefined = in.getLong();
+            double mean = in.getDouble();
+            double m2 = in.getDouble();
+            double min = in.getDouble();
+            double max = in.getDouble();
+            Summary summary = new Summary(QuantileSketch.readFrom(in));
+            summary.count = count;
+            summary.undefined = undefined;
+            summary.mean = mean;
+            summary.m2 = m2;
+            summary.min = min;
+            summary.max = max;
+            return summary;
+        }
+
+        @Override
+        public String toString() {
+            String text = "mean " + format(getMean()) + ", std " + format(getStd())
+                + ", P5 " + format(quantile(0.05)) + ", P50 " + format(quantile(0.5)) + ", P95 " + format(quantile(0.95))
+                + ", min " + format(getMin()) + ", max " + format(getMax());
+            return undefined > 0 ? text + ", " + undefined + " undefined" : text;
+        }
+
+        /**
+         * Two decimals for amounts, more for rates and ratios
+         */
+        static String format(double value) {
+            return String.format(Math.abs(value) >= 100 ? "%,.2f" : "%.4f", value);
+        }
+    }
+
+    /**
+     * Statistics of one deal: its net total per trial and its mean net cash flow per period
+     */
+    public static class DealSummary {
+        private final String dealId;
+        private final TemporalGrid grid;
+        private final Summary netTotal;
+        private final double[] meanFlows;
+
+        DealSummary(String dealId, TemporalGrid grid, Summary netTotal, double[] meanFlows) {
+            this.dealId = dealId;
+            this.grid = grid;
+            this.netTotal = netTotal;
+            this.meanFlows = meanFlows;
+        }
+
+        public String getDealId() { return dealId; }
+        public TemporalGrid getGrid() { return grid; }
+        public Summary getNetTotal() { return netTotal; }
+        public double[] getMeanFlows() { return meanFlows.clone(); }
+    }
+
+    private final int trials;
+    private final long seed;
+    private final int parallelism;
+    private final List<DealSummary> deals;
+    private final Map<String, Summary> assumptions;
+    private final Map<String, Summary> metrics;
+    private final List<String> warnings;
+    private final long elapsedNanos;
+
+    public MonteCarloResult(int trials, long seed, int parallelism, List<DealSummary> deals,
+                            Map<String, Summary> assumptions, Map<String, Summary> metrics,
+                            List<String> warnings, long elapsedNanos) {
+        this.trials = trials;
+        this.seed = seed;
+        this.parallelism = parallelism;
+        this.deals = deals;
+        this.assumptions = assumptions;
+        this.metrics = metrics;
+        this.warnings = warnings;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getTrials() { return trials; }
+    public long getSeed() { return seed; }
+    public int getParallelism() { return parallelism; }
+    public List<DealSummary> getDeals() { return deals; }
+    public Map<String, Summary> getAssumptions() { return Collections.unmodifiableMap(assumptions); }
+    public Map<String, Summary> getMetrics() { return Collections.unmodifiableMap(metrics); }
+    public List<String> getWarnings() { return warnings; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /**
+     * The summary of a deal by entity id, or null
+     */
+    public DealSummary getDeal(String dealId) {
+        for (DealSummary deal : deals) {
+            if (deal.getDealId().equals(dealId)) {
+                return deal;
+            }
+        }
+        return null;
+    }
+
+    public double getTrialsPerSecond() {
+        return elapsedNanos > 0 ? trials * 1e9 / elapsedNanos : 0;
+    }
+
+    public void printResults() {
+        for (String warning : warnings) {
+            log.warn("⚠️ {}", warning);
+        }
+        log.info("🎲 {} trials (seed {}) in {} ms on {} workers, {} trials/s", trials, seed,
+            Math.round(elapsedNanos / 100_000.0) / 10.0, parallelism, Math.round(getTrialsPerSecond()));
+        for (DealSummary deal : deals) {
+            Summary net = deal.getNetTotal();
+            log.info("  • {} net total: {}", deal.getDealId(), net);
+            log.info("    VaR95 {}, CVaR95 {}", Summary.format(net.getValueAtRisk(0.95)),
+                Summary.format(net.getConditionalValueAtRisk(0.95)));
+        }
+        for (Map.Entry<String, Summary> assumption : assumptions.entrySet()) {
+            log.info("  • assumption {}: {}", assumption.getKey(), assumption.getValue());
+        }
+        for (Map.Entry<String, Summary> metric : metrics.entrySet()) {
+            Summary summary = metric.getValue();
+            log.info("  • metric {}: {}", metric.getKey(), summary);
+            log.info("    VaR95 {}, CVaR95 {}", Summary.format(summary.getValueAtRisk(0.95)),
+                Summary.format(summary.getConditionalValueAtRisk(0.95)));
+        }
+    }
+}
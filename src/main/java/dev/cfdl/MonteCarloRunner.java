@@ -0,0 +1,526 @@
+package dev.cfdl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel Monte Carlo runner over compiled IR
+ *
+ * Every trial samples the stochastic assumptions and then executes every deal with
+ * CashFlowExecutor's programs, drawing distribution and randomWalk stream growth.
+ * Formula amounts and expression growth read the trial's sampled assumption values.
+ *
+ * Reproducibility: trial t draws from its own SplittableRandom seeded from (seed, t),
+ * so a trial's numbers do not depend on which thread runs it. Trials are cut into
+ * fixed chunks of TRIALS_PER_TASK, each reduced in trial order, and chunk results are
+ * merged along a split tree that depends only on the trial count. The result is
+ * therefore bit-identical for a given seed whatever the pool's parallelism.
+ *
+ * Each chunk allocates one set of period buffers and reuses it for its trials, so
+ * trials allocate nothing but their generator and no buffers outlive a run.
+ *
+ * Metric entities declared in the IR (irr, npv, moic, dscr, payback, eirr, enpv) are
+ * evaluated on every trial over the deal, asset or stream their cashFlowSeriesId names.
+ * Every result quantity is a streaming Summary with a quantile sketch, so memory stays
+ * bounded however many trials run. IRR, MOIC and payback read the investment from
+ * metadata.initialInvestment; NPV defaults it to 0. eIRR and eNPV are the means of their
+ * per-trial IRR and NPV.
+ *
+ * Deals with a waterfall distribute every trial's net cash, so a metric can also name a
+ * waterfall recipient (a limited partner's IRR, say) as its cashFlowSeriesId.
+ */
+public class MonteCarloRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MonteCarloRunner.class);
+
+    static final int TRIALS_PER_TASK = 64;
+
+    // Metric kinds
+    private static final int IRR = 0;
+    private static final int NPV = 1;
+    private static final int MOIC = 2;
+    private static final int DSCR = 3;
+    private static final int PAYBACK = 4;
+
+    // Series kinds: which trial buffer a metric reads
+    private static final int DEAL_SERIES = 0;
+    private static final int ASSET_SERIES = 1;
+    private static final int STREAM_SERIES = 2;
+    private static final int RECIPIENT_SERIES = 3;
+
+    private final List<CashFlowExecutor.DealProgram> programs;
+    private final List<String> warnings = new ArrayList<>();
+
+    // Stochastic assumptions, three parameters each
+    private final String[] assumptionIds;
+    private final int[] assumptionKinds;
+    private final double[] assumptionParams;
+    private final int[] assumptionSlots; // Formula slot of each sampled assumption
+
+    private final String[] metricIds;
+    private final MetricProgram[] metrics;
+
+    /**
+     * A declared metric compiled against one deal's trial buffers
+     */
+    private static final class MetricProgram {
+        final int kind;
+        final int deal;
+        final int seriesKind;
+        final int seriesRow;
+        final int debtKind;     // DSCR only
+        final int debtRow;
+        final double rate;
+        final double investment;
+
+        MetricProgram(int kind, int[] series, int[] debt, double rate, double investment) {
+            this.kind = kind;
+            this.deal = series[0];
+            this.seriesKind = series[1];
+            this.seriesRow = series[2];
+            this.debtKind = debt != null ? debt[1] : -1;
+            this.debtRow = debt != null ? debt[2] : -1;
+            this.rate = rate;
+            this.investment = investment;
+        }
+    }
+
+    /**
+     * Scratch space for one trial of every deal, reused by the trials of a chunk
+     */
+    private static final class TrialBuffers {
+        final double[][] streamFlows;
+        final double[][] assetFlows;
+        final double[][] dealFlows;
+        final double[][] recipientFlows; // Waterfall buffers, null for deals without a waterfall
+        final double[][] tierFlows;
+        final double[][] undistributed;
+        final double[][] waterfallScratch;
+        final double[] slots;            // Formula slots: the trial's assumption values
+
+        TrialBuffers(List<CashFlowExecutor.DealProgram> programs) {
+            int deals = programs.size();
+            streamFlows = new double[deals][];
+            assetFlows = new double[deals][];
+            dealFlows = new double[deals][];
+            recipientFlows = new double[deals][];
+            tierFlows = new double[deals][];
+            undistributed = new double[deals][];
+            waterfallScratch = new double[deals][];
+            slots = deals > 0 ? programs.get(0).slotDefaults.clone() : new double[CashFlowExecutor.ASSUMPTION_SLOTS];
+            for (int d = 0; d < deals; d++) {
+                CashFlowExecutor.DealProgram program = programs.get(d);
+                int periods = program.grid.size();
+                streamFlows[d] = new double[program.streamCount() * periods];
+                assetFlows[d] = new double[program.assetIds.length * periods];
+                dealFlows[d] = new double[periods];
+                WaterfallProgram waterfall = program.waterfall;
+                if (waterfall != null) {
+                    recipientFlows[d] = new double[waterfall.recipientCount() * periods];
+                    tierFlows[d] = new double[waterfall.tierCount() * periods];
+                    undistributed[d] = new double[periods];
+                    waterfallScratch[d] = new double[waterfall.scratchSize()];
+                }
+            }
+        }
+    }
+
+    /**
+     * Mergeable statistics of a run of consecutive trials
+     */
+    private static final class Accumulator {
+        final MonteCarloResult.Summary[] netTotals;
+        final double[][] periodSums;
+        final MonteCarloResult.Summary[] assumptions;
+        final MonteCarloResult.Summary[] metrics;
+        final double[] irrGuesses; // Last IRR root per metric, warm-starting the next trial
+
+        Accumulator(List<CashFlowExecutor.DealProgram> programs, int assumptionCount, int metricCount) {
+            netTotals = new MonteCarloResult.Summary[programs.size()];
+            periodSums = new double[programs.size()][];
+            for (int d = 0; d < programs.size(); d++) {
+                netTotals[d] = new MonteCarloResult.Summary();
+                periodSums[d] = new double[programs.get(d).grid.size()];
+            }
+            assumptions = new MonteCarloResult.Summary[assumptionCount];
+            for (int a = 0; a < assumptionCount; a++) {
+                assumptions[a] = new MonteCarloResult.Summary();
+            }
+            metrics = new MonteCarloResult.Summary[metricCount];
+            for (int m = 0; m < metricCount; m++) {
+                metrics[m] = new MonteCarloResult.Summary();
+            }
+            irrGuesses = new double[metricCount];
+            Arrays.fill(irrGuesses, Double.NaN);
+        }
+
+        void merge(Accumulator other) {
+            for (int d = 0; d < netTotals.length; d++) {
+                netTotals[d].merge(other.netTotals[d]);
+                double[] sums = periodSums[d];
+                double[] otherSums = other.periodSums[d];
+                for (int p = 0; p < sums.length; p++) {
+                    sums[p] += otherSums[p];
+                }
+            }
+            for (int a = 0; a < assumptions.length; a++) {
+                assumptions[a].merge(other.assumptions[a]);
+            }
+            for (int m = 0; m < metrics.length; m++) {
+                metrics[m].merge(other.metrics[m]);
+            }
+        }
+    }
+
+    public MonteCarloRunner(IRBuildResult ir) {
+        this.programs = new CashFlowExecutor().compile(ir, warnings);
+
+        List<String> ids = new ArrayList<>();
+        List<Integer> kinds = new ArrayList<>();
+        List<double[]> params = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        IRTable assumptions = ir.getTable(SchemaTypes.ASSUMPTION);
+        for (int row = 0; assumptions != null && row < assumptions.size(); row++) {
+            double[] values = new double[3];
+            int kind = compileAssumption(assumptions, row, values);
+            if (kind >= 0) {
+                ids.add(assumptions.getId(row));
+                kinds.add(kind);
+                params.add(values);
+                slots.add(CashFlowExecutor.ASSUMPTION_SLOTS + row);
+            }
+        }
+        this.assumptionIds = ids.toArray(new String[0]);
+        this.assumptionKinds = new int[ids.size()];
+        this.assumptionParams = new double[3 * ids.size()];
+        this.assumptionSlots = new int[ids.size()];
+        for (int a = 0; a < ids.size(); a++) {
+            assumptionKinds[a] = kinds.get(a);
+            assumptionSlots[a] = slots.get(a);
+            System.arraycopy(params.get(a), 0, assumptionParams, 3 * a, 3);
+        }
+
+        List<String> declaredIds = new ArrayList<>();
+        List<MetricProgram> declared = new ArrayList<>();
+        compileMetrics(ir, declaredIds, declared);
+        this.metricIds = declaredIds.toArray(new String[0]);
+        this.metrics = declared.toArray(new MetricProgram[0]);
+    }
+
+    /**
+     * Run trials on the common pool
+     */
+    public MonteCarloResult run(int trials, long seed) {
+        return run(trials, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Run trials on the given pool; the result does not depend on its parallelism
+     */
+    public MonteCarloResult run(int trials, long seed, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        int chunks = (trials + TRIALS_PER_TASK - 1) / TRIALS_PER_TASK;
+        Accumulator total = chunks == 0
+            ? new Accumulator(programs, assumptionIds.length, metrics.length)
+            : pool.invoke(new TrialTask(trials, seed, 0, chunks));
+
+        List<MonteCarloResult.DealSummary> deals = new ArrayList<>();
+        for (int d = 0; d < programs.size(); d++) {
+            double[] means = total.periodSums[d].clone();
+            for (int p = 0; p < means.length; p++) {
+                means[p] = trials > 0 ? means[p] / trials : 0;
+            }
+            deals.add(new MonteCarloResult.DealSummary(programs.get(d).dealId, programs.get(d).grid, total.netTotals[d], means));
+        }
+        Map<String, MonteCarloResult.Summary> assumptions = new LinkedHashMap<>();
+        for (int a = 0; a < assumptionIds.length; a++) {
+            assumptions.put(assumptionIds[a], total.assumptions[a]);
+        }
+        Map<String, MonteCarloResult.Summary> metricSummaries = new LinkedHashMap<>();
+        for (int m = 0; m < metrics.length; m++) {
+            metricSummaries.put(metricIds[m], total.metrics[m]);
+        }
+        return new MonteCarloResult(trials, seed, pool.getParallelism(), deals, assumptions, metricSummaries,
+            new ArrayList<>(warnings), System.nanoTime() - start);
+    }
+
+    /**
+     * The generator of one trial; also used by callers replaying a single trial
+     */
+    static SplittableRandom trialRandom(long seed, int trial) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + trial);
+    }
+
+    /**
+     * Split chunks [from, to) in halves down to single chunks; the tree only depends on the chunk count
+     */
+    private final class TrialTask extends RecursiveTask<Accumulator> {
+        private static final long serialVersionUID = 1L;
+
+        private final int trials;
+        private final long seed;
+        private final int from;
+        private final int to;
+
+        TrialTask(int trials, long seed, int from, int to) {
+            this.trials = trials;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from == 1) {
+                return runChunk(from * TRIALS_PER_TASK, Math.min(trials, (from + 1) * TRIALS_PER_TASK), seed);
+            }
+            int middle = (from + to) >>> 1;
+            TrialTask left = new TrialTask(trials, seed, from, middle);
+            left.fork();
+            Accumulator right = new TrialTask(trials, seed, middle, to).compute();
+            Accumulator result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+
+    private Accumulator runChunk(int firstTrial, int endTrial, long seed) {
+        Accumulator accumulator = new Accumulator(programs, assumptionIds.length, metrics.length);
+        TrialBuffers scratch = new TrialBuffers(programs);
+
+        for (int trial = firstTrial; trial < endTrial; trial++) {
+            SplittableRandom random = trialRandom(seed, trial);
+
+            for (int a = 0; a < assumptionIds.length; a++) {
+                int p = 3 * a;
+                double value = Distributions.sample(assumptionKinds[a],
+                    assumptionParams[p], assumptionParams[p + 1], assumptionParams[p + 2], random);
+                scratch.slots[assumptionSlots[a]] = value;
+                accumulator.assumptions[a].add(value);
+            }
+
+            for (int d = 0; d < programs.size(); d++) {
+                double[] dealFlows = scratch.dealFlows[d];
+                CashFlowExecutor.DealProgram program = programs.get(d);
+                program.run(scratch.streamFlows[d], scratch.assetFlows[d], dealFlows, random, scratch.slots);
+                if (program.waterfall != null) {
+                    program.waterfall.run(dealFlows, scratch.recipientFlows[d], scratch.tierFlows[d],
+                        scratch.undistributed[d], scratch.waterfallScratch[d]);
+                }
+
+                double[] sums = accumulator.periodSums[d];
+                double net = 0;
+                for (int p = 0; p < dealFlows.length; p++) {
+                    sums[p] += dealFlows[p];
+                    net += dealFlows[p];
+                }
+                accumulator.netTotals[d].add(net);
+            }
+
+            for (int m = 0; m < metrics.length; m++) {
+                accumulator.metrics[m].add(evaluate(m, scratch, accumulator.irrGuesses));
+            }
+        }
+        return accumulator;
+    }
+
+    /**
+     * One trial's value of a declared metric, read from the trial buffers
+     */
+    private double evaluate(int m, TrialBuffers scratch, double[] irrGuesses) {
+        MetricProgram metric = metrics[m];
+        int periods = programs.get(metric.deal).grid.size();
+        double[] flows = series(scratch, metric.deal, metric.seriesKind);
+        int offset = metric.seriesRow * periods;
+        switch (metric.kind) {
+            case IRR:
+                double root = Metrics.irr(flows, offset, periods, metric.investment, irrGuesses[m]);
+                if (!Double.isNaN(root)) {
+                    irrGuesses[m] = root;
+                }
+                return root;
+            case NPV:
+                return Metrics.npv(flows, offset, periods, metric.rate, metric.investment);
+            case MOIC:
+                return Metrics.moic(flows, offset, periods, metric.investment);
+            case DSCR:
+                return Metrics.averageDscr(flows, offset, series(scratch, metric.deal, metric.debtKind),
+                    metric.debtRow * periods, periods);
+            default:
+                return Metrics.payback(flows, offset, periods, metric.investment);
+        }
+    }
+
+    private static double[] series(TrialBuffers scratch, int deal, int kind) {
+        switch (kind) {
+            case ASSET_SERIES:
+                return scratch.assetFlows[deal];
+            case STREAM_SERIES:
+                return scratch.streamFlows[deal];
+            case RECIPIENT_SERIES:
+                return scratch.recipientFlows[deal];
+            default:
+                return scratch.dealFlows[deal];
+        }
+    }
+
+    // Helper methods
+
+    /**
+     * Fixed numeric assumptions are FIXED, distribution assumptions a Distributions kind; -1 to skip
+     */
+    private int compileAssumption(IRTable assumptions, int row, double[] params) {
+        Object type = assumptions.get(row, "type");
+        if ("distribution".equals(type) && assumptions.get(row, "distribution") instanceof Map) {
+            Map<?, ?> distribution = (Map<?, ?>) assumptions.get(row, "distribution");
+            int kind = Distributions.compile(distribution, params);
+            if (kind < 0) {
+                warnings.add("Assumption " + assumptions.getId(row) + " has unsupported distribution "
+                    + distribution.get("type") + ", not sampled");
+            }
+            return kind;
+        }
+        Object value = assumptions.get(row, "value");
+        if (value instanceof Number) {
+            params[0] = ((Number) value).doubleValue();
+            return Distributions.FIXED;
+        }
+        return -1;
+    }
+
+    /**
+     * Compile the metric entities of every metric table; unresolvable ones are warned about and skipped
+     */
+    private void compileMetrics(IRBuildResult ir, List<String> ids, List<MetricProgram> compiled) {
+        String[] schemaTypes = {SchemaTypes.IRR, SchemaTypes.NPV, SchemaTypes.MOIC, SchemaTypes.DSCR,
+            SchemaTypes.PAYBACK, SchemaTypes.EIRR, SchemaTypes.ENPV};
+        int[] kinds = {IRR, NPV, MOIC, DSCR, PAYBACK, IRR, NPV};
+
+        Map<String, int[]> seriesById = seriesIndex(ir);
+        for (int t = 0; t < schemaTypes.length; t++) {
+            IRTable table = ir.getTable(schemaTypes[t]);
+            for (int row = 0; table != null && row < table.size(); row++) {
+                String id = table.getId(row);
+                int kind = kinds[t];
+                int[] series = seriesById.get(String.valueOf(table.get(row, "cashFlowSeriesId")));
+                if (series == null) {
+                    warnings.add("Metric " + id + " refers to unknown cash-flow series "
+                        + table.get(row, "cashFlowSeriesId") + ", not evaluated");
+                    continue;
+                }
+
+                int[] debt = null;
+                if (kind == DSCR) {
+                    debt = seriesById.get(String.valueOf(table.get(row, "debtServiceSeriesId")));
+                    if (debt == null || debt[0] != series[0]) {
+                        warnings.add("Metric " + id + " needs a debt-service series in the same deal, not evaluated");
+                        continue;
+                    }
+                }
+
+                Object metadata = table.get(row, "metadata");
+                Object investment = metadata instanceof Map ? ((Map<?, ?>) metadata).get("initialInvestment") : null;
+                if ((kind == IRR || kind == MOIC || kind == PAYBACK) && !(investment instanceof Number)) {
+                    warnings.add("Metric " + id + " has no numeric metadata.initialInvestment, not evaluated");
+                    continue;
+                }
+                Object rate = table.get(row, "discountRate");
+                if (kind == NPV && !(rate instanceof Number)) {
+                    warnings.add("Metric " + id + " has no numeric discountRate, not evaluated");
+                    continue;
+                }
+
+                ids.add(id);
+                compiled.add(new MetricProgram(kind, series, debt,
+                    Distributions.number(rate, 0), Distributions.number(investment, 0)));
+            }
+        }
+    }
+
+    /**
+     * Deal, asset, stream and waterfall recipient series of every program by entity id
+     * and by id URI: {deal, series kind, row}
+     */
+    private Map<String, int[]> seriesIndex(IRBuildResult ir) {
+        Map<String, int[]> index = new HashMap<>();
+        for (int d = 0; d < programs.size(); d++) {
+            CashFlowExecutor.DealProgram program = programs.get(d);
+            index.put(program.dealId, new int[]{d, DEAL_SERIES, 0});
+            for (int a = 0; a < program.assetIds.length; a++) {
+                index.put(program.assetIds[a], new int[]{d, ASSET_SERIES, a});
+            }
+            for (int s = 0; s < program.streamIds.length; s++) {
+                index.put(program.streamIds[s], new int[]{d, STREAM_SERIES, s});
+            }
+            for (int r = 0; program.waterfall != null && r < program.waterfall.recipientCount(); r++) {
+                index.putIfAbsent(program.waterfall.recipientIds[r], new int[]{d, RECIPIENT_SERIES, r});
+            }
+        }
+        for (String schemaType : new String[]{SchemaTypes.DEAL, SchemaTypes.ASSET, SchemaTypes.STREAM}) {
+            IRTable table = ir.getTable(schemaType);
+            for (int row = 0; table != null && row < table.size(); row++) {
+                Object uri = table.get(row, "id");
+                int[] series = index.get(table.getId(row));
+                if (uri != null && series != null) {
+                    index.putIfAbsent(uri.toString(), series);
+                }
+            }
+        }
+        return index;
+    }
+
+    public static void main(String[] args) {
+        String file = null;
+        int trials = 10_000;
+        long seed = 42;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--trials":
+                        trials = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        file = args[i];
+                        break;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            file = null;
+        }
+        if (file == null) {
+            System.err.println("Usage: java dev.cfdl.MonteCarloRunner <cfdl-file> [--trials N] [--seed N] [--threads N]");
+            System.exit(1);
+        }
+
+        SchemaValidator schemaValidator = new SchemaValidator();
+        CompileResult compiled = new Parser(schemaValidator).compile(Paths.get(file));
+        schemaValidator.shutdown();
+        if (!compiled.isSuccessful()) {
+            log.error(compiled.summary());
+            System.exit(1);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        MonteCarloResult result = new MonteCarloRunner(compiled.getIrResult()).run(trials, seed, pool);
+        pool.shutdown();
+        result.printResults();
+    }
+}
@@ -1,45 +1,82 @@
 package dev.cfdl;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.LoaderOptions;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * CFDL Parser - Processes .cfdl files using YAML syntax
  */
 public class Parser {
     
+    private static final Logger log = LoggerFactory.getLogger(Parser.class);
+    
     public static class ParseResult {
         private final List<ASTNode> astNodes;
         private final List<ValidationError> validationErrors;
+        private final SymbolTable symbolTable;
         
         public ParseResult(List<ASTNode> astNodes, List<ValidationError> validationErrors) {
+            this(astNodes, validationErrors, null);
+        }
+        
+        public ParseResult(List<ASTNode> astNodes, List<ValidationError> validationErrors, SymbolTable symbolTable) {
             this.astNodes = astNodes;
             this.validationErrors = validationErrors;
+            this.symbolTable = symbolTable;
         }
         
         public List<ASTNode> getAstNodes() { return astNodes; }
         public List<ValidationError> getValidationErrors() { return validationErrors; }
         
+        /**
+         * Symbol table filled during AST construction (built on demand for results created without one)
+         */
+        public SymbolTable getSymbolTable() {
+            return symbolTable != null ? symbolTable : SymbolTable.of(astNodes);
+        }
+        
+        public void printUnresolvedReferences() {
+            for (SymbolTable.Reference reference : getSymbolTable().unresolvedReferences()) {
+                log.warn("  ⚠️ Unresolved reference: {}", reference);
+            }
+        }
+        
         public void printResults() {
-            System.out.println("📄 STEP 1: CFDL → AST (Abstract Syntax Tree)");
-            System.out.println("Parsed " + astNodes.size() + " CFDL definitions:");
+            log.info("📄 STEP 1: CFDL → AST (Abstract Syntax Tree)");
+            log.info("Parsed {} CFDL definitions:", astNodes.size());
             for (ASTNode node : astNodes) {
-                System.out.println("  • " + node.getClass().getSimpleName() + 
-                    ": " + node.getId() + " (" + node.getName() + ")");
+                log.info("  • {}: {} ({})", node.getClass().getSimpleName(), node.getId(), node.getName());
             }
         }
         
         public void printErrors() {
             for (ValidationError error : validationErrors) {
-                System.out.println("AST Validation Error: " + error.getMessage() + 
-                    " (line " + error.getLineNumber() + ") [schema: " + error.getSchemaPath() + "]");
+                if (error.getSeverity() == ValidationError.Severity.ERROR) {
+                    log.error("AST Validation Error: {}{}", error.getMessage(), error.getLocation());
+                } else {
+                    log.warn("AST Validation Error: {}{}", error.getMessage(), error.getLocation());
+                }
             }
         }
     }
@@ -48,76 +85,275 @@ public class Parser {
     private final SchemaValidator schemaValidator;
     
     public Parser() {
-        this.yamlMapper = new ObjectMapper(new YAMLFactory());
-        this.schemaValidator = new SchemaValidator();
+        this(new SchemaValidator());
+    }
+    
+    /**
+     * Create a parser sharing the given validator and its schema cache
+     */
+    public Parser(SchemaValidator schemaValidator) {
+        this.yamlMapper = newYamlMapper();
+        this.schemaValidator = schemaValidator;
+    }
+    
+    /**
+     * YAML mapper for CFDL documents, without SnakeYAML's 3 MB document size limit
+     */
+    static ObjectMapper newYamlMapper() {
+        LoaderOptions loaderOptions = new LoaderOptions();
+        loaderOptions.setCodePointLimit(Integer.MAX_VALUE);
+        return new ObjectMapper(YAMLFactory.builder().loaderOptions(loaderOptions).build());
     }
     
     /**
      * Parse a CFDL file using YAML parsing
      */
     public ParseResult parseFile(String filePath) throws IOException {
-        System.out.println("CFDL v1.2 Demo - CFDL Pipeline Test");
-        System.out.println("Processing: " + filePath);
-        System.out.println("================================================================================");
+        long start = System.nanoTime();
+        log.info("CFDL v1.2 Demo - CFDL Pipeline Test");
+        log.info("Processing: {}", filePath);
+        log.info("================================================================================");
         
         // Step 1: Parse CFDL file (YAML syntax) to JsonNode tree
-        JsonNode rootNode = yamlMapper.readTree(new File(filePath));
+        JsonNode rootNode = readDocument(yamlMapper, new File(filePath));
         
         // Step 2: Build AST from JsonNode
-        List<ASTNode> astNodes = new ArrayList<>();
+        ParseResult result = parseTree(rootNode);
+        CompilerMetrics.global().recordSince(CompilerMetrics.PARSE_FILE, null, start);
+        return result;
+    }
+    
+    /**
+     * Read a CFDL file into a YAML tree, recorded as a YamlParse event
+     */
+    static JsonNode readDocument(ObjectMapper yamlMapper, File file) throws IOException {
+        CompilerEvents.YamlParse event = new CompilerEvents.YamlParse();
+        event.begin();
+        JsonNode rootNode = yamlMapper.readTree(file);
+        CompilerEvents.commit(event, file.getPath(), null, rootNode.size(), file.length());
+        return rootNode;
+    }
+    
+    /**
+     * Build and validate AST nodes from an already parsed CFDL document
+     */
+    public ParseResult parseTree(JsonNode rootNode) {
         List<ValidationError> validationErrors = new ArrayList<>();
+        SymbolTable symbolTable = new SymbolTable();
+        
+        // Build all top-level definitions with their nested nodes
+        ASTBuilder astBuilder = new ASTBuilder(symbolTable);
+        List<ASTNode> astNodes = astBuilder.buildDocument(rootNode, validationErrors);
         
-        ASTBuilder astBuilder = new ASTBuilder();
+        // Validate each node against the YAML subtree it was built from
+        for (ASTNode node : astNodes) {
+            validationErrors.addAll(schemaValidator.validateNode(node));
+        }
         
-        // Process all top-level definitions
-        Iterator<String> fieldNames = rootNode.fieldNames();
-        while (fieldNames.hasNext()) {
-            String definitionType = fieldNames.next();
-            JsonNode definitionNode = rootNode.get(definitionType);
+        return new ParseResult(astNodes, validationErrors, symbolTable);
+    }
+    
+    /**
+     * Open a streaming AST reader over a CFDL file.
+     * Nodes are emitted as soon as their subtree closes, nested entities before their parent.
+     */
+    public StreamingASTReader openStream(String filePath) throws IOException {
+        return openStream(filePath, null);
+    }
+    
+    /**
+     * Open a streaming AST reader that also fills the given symbol table
+     */
+    public StreamingASTReader openStream(String filePath, SymbolTable symbolTable) throws IOException {
+        JsonParser jsonParser = yamlMapper.getFactory().createParser(new File(filePath));
+        return new StreamingASTReader(jsonParser, yamlMapper, symbolTable);
+    }
+    
+    /**
+     * Parse a CFDL file in streaming mode
+     * 
+     * Each node is validated and handed to the consumer as soon as it is complete,
+     * so peak memory scales with the largest single entity instead of the whole file.
+     */
+    public List<ValidationError> parseFileStreaming(String filePath, Consumer<ASTNode> consumer) throws IOException {
+        List<ValidationError> validationErrors = new ArrayList<>();
+        
+        try (StreamingASTReader reader = openStream(filePath)) {
+            while (reader.hasNext()) {
+                ASTNode node = reader.next();
+                validationErrors.addAll(schemaValidator.validateNode(node));
+                node.setSource(null); // Keep only the properties once validated
+                consumer.accept(node);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        return validationErrors;
+    }
+    
+    /**
+     * Compile a single file through parse → validate → IR build without console output
+     */
+    public CompileResult compile(Path file) {
+        long start = System.nanoTime();
+        try {
+            JsonNode rootNode = readDocument(yamlMapper, file.toFile());
+            ParseResult parseResult = parseTree(rootNode);
+            
+            ComprehensiveSchemaChecker.ValidationReport report = 
+                new ComprehensiveSchemaChecker().validateNodes(parseResult.getAstNodes());
             
-            // Handle both single definitions and arrays
-            if (definitionNode.isArray()) {
-                for (JsonNode item : definitionNode) {
-                    processDefinition(definitionType, item, astBuilder, astNodes, validationErrors);
+            // Same gate as the single-file pipeline: no IR for files missing required properties
+            IRBuildResult irResult = report.hasErrors()
+                ? new IRBuildResult(null, null)
+                : new IRBuilder().build(parseResult.getAstNodes(), parseResult.getSymbolTable());
+            
+            CompilerMetrics.global().recordSince(CompilerMetrics.COMPILE, null, start);
+            return new CompileResult(file, parseResult, report, irResult, null, System.nanoTime() - start);
+        } catch (Exception e) {
+            return CompileResult.failed(file, e, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Compile many files in parallel
+     * 
+     * Files are spread over a work-stealing ForkJoinPool and all workers share this
+     * parser's schema cache, which is warmed once before the fan-out.
+     * Results are returned in the order of the input collection.
+     */
+    public List<CompileResult> parseFiles(Collection<Path> files, int parallelism) {
+        Path[] inputs = files.toArray(new Path[0]);
+        CompileResult[] results = new CompileResult[inputs.length];
+        
+        schemaValidator.preload(ASTBuilder.schemaUrls());
+        
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.invoke(new CompileTask(inputs, results, 0, inputs.length));
+        } finally {
+            pool.shutdown();
+        }
+        
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Splits the file range in halves until single files remain, so idle workers steal large ranges first
+     */
+    private class CompileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final Path[] inputs;
+        private final CompileResult[] results;
+        private final int from;
+        private final int to;
+        
+        CompileTask(Path[] inputs, CompileResult[] results, int from, int to) {
+            this.inputs = inputs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    results[from] = compile(inputs[from]);
                 }
-            } else if (definitionNode.isObject()) {
-                processDefinition(definitionType, definitionNode, astBuilder, astNodes, validationErrors);
+                return;
             }
+            int mid = (from + to) >>> 1;
+            invokeAll(new CompileTask(inputs, results, from, mid), new CompileTask(inputs, results, mid, to));
         }
-        
-        return new ParseResult(astNodes, validationErrors);
     }
     
-    private void processDefinition(String definitionType, JsonNode definitionNode, 
-                                 ASTBuilder astBuilder, List<ASTNode> astNodes, 
-                                 List<ValidationError> validationErrors) {
+    /**
+     * Expand command line arguments into .cfdl files, walking directories recursively
+     */
+    private static List<Path> collectFiles(String[] args, int from) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = from; i < args.length; i++) {
+            Path path = Paths.get(args[i]);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files.addAll(walk.filter(p -> p.toString().endsWith(".cfdl")).sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+    
+    private static void runBatch(String[] args) {
+        Parser parser = new Parser();
         try {
-            ASTNode astNode = astBuilder.buildASTNode(definitionType, definitionNode);
-            if (astNode != null) {
-                // Add the main node and all nested nodes
-                astNodes.add(astNode);
-                List<ASTNode> allNodes = astBuilder.getAllNodes();
-                for (ASTNode node : allNodes) {
-                    if (!astNodes.contains(node)) { // Avoid duplicates
-                        astNodes.add(node);
-                    }
-                    
-                    // Validate each node against schema
-                    List<ValidationError> nodeErrors = schemaValidator.validateYamlNode(node.toJson(), node.getSchemaType());
-                    validationErrors.addAll(nodeErrors);
+            List<Path> files = collectFiles(args, 1);
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            
+            long start = System.nanoTime();
+            List<CompileResult> results = parser.parseFiles(files, parallelism);
+            long elapsed = System.nanoTime() - start;
+            
+            int failed = 0;
+            SymbolTable allSymbols = new SymbolTable();
+            for (CompileResult result : results) {
+                log.info(result.summary());
+                if (!result.isSuccessful()) {
+                    failed++;
+                }
+                if (result.getParseResult() != null) {
+                    allSymbols.merge(result.getParseResult().getSymbolTable());
                 }
             }
-        } catch (Exception e) {
-            validationErrors.add(new ValidationError(
-                ValidationError.Severity.ERROR,
-                "Failed to build AST for " + definitionType + ": " + e.getMessage()
-            ));
+            
+            // References may legitimately point into other files of the batch
+            for (SymbolTable.Reference reference : allSymbols.unresolvedReferences()) {
+                log.warn("⚠️ Unresolved reference: {}", reference);
+            }
+            log.info("📊 Compiled {} files ({} failed) in {} ms on {} workers",
+                results.size(), failed, Math.round(elapsed / 100_000.0) / 10.0, parallelism);
+            
+            writeMetrics();
+            parser.schemaValidator.shutdown();
+            System.exit(failed == 0 ? 0 : 1);
+        } catch (IOException e) {
+            log.error("❌ Error listing CFDL files: {}", e.getMessage());
+            parser.schemaValidator.shutdown();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Dump the compiler metrics to the file named by the cfdl.metricsFile system property, if set
+     */
+    private static void writeMetrics() {
+        String metricsFile = System.getProperty("cfdl.metricsFile");
+        if (metricsFile == null) {
+            return;
+        }
+        try {
+            CompilerMetrics.global().writeTo(Paths.get(metricsFile));
+        } catch (IOException e) {
+            log.warn("Could not write metrics to {}: {}", metricsFile, e.getMessage());
         }
     }
 
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.err.println("Usage: java dev.cfdl.Parser <cfdl-file>");
+        if (args.length >= 2 && "--batch".equals(args[0])) {
+            runBatch(args);
+            return;
+        }
+        
+        String irOutput = null;
+        if (args.length == 3 && "-o".equals(args[1])) {
+            irOutput = args[2];
+        } else if (args.length != 1) {
+            System.err.println("Usage: java dev.cfdl.Parser <cfdl-file> [-o <ir.json[.gz]|ir.cfdlir>]");
+            System.err.println("       java dev.cfdl.Parser --batch <cfdl-file-or-directory>...");
             System.exit(1);
         }
 
@@ -130,64 +366,79 @@ public class Parser {
             result.printResults();
 
             // Step 2: Report Validation Results
-            System.out.println("\n🔍 STEP 2: AST Schema Validation");
+            log.info("🔍 STEP 2: AST Schema Validation");
             if (result.getValidationErrors().isEmpty()) {
-                System.out.println("✅ All AST nodes passed schema validation");
+                log.info("✅ All AST nodes passed schema validation");
             } else {
-                System.out.println("❌ Schema validation errors found:");
+                log.error("❌ Schema validation errors found:");
                 result.printErrors();
             }
 
             // Step 2b: Comprehensive Required Properties Check
-            System.out.println("\n🔍 STEP 2b: Comprehensive Required Properties Check");
+            log.info("🔍 STEP 2b: Comprehensive Required Properties Check");
             ComprehensiveSchemaChecker comprehensiveChecker = new ComprehensiveSchemaChecker();
             ComprehensiveSchemaChecker.ValidationReport comprehensiveReport = 
                 comprehensiveChecker.validateNodes(result.getAstNodes());
             comprehensiveReport.printReport();
+            
+            if (!result.getSymbolTable().unresolvedReferences().isEmpty()) {
+                log.warn("⚠️ Unresolved references (not defined in this file):");
+                result.printUnresolvedReferences();
+            }
 
             if (comprehensiveReport.hasErrors()) {
-                System.out.println("\n❌ Critical validation errors found. Cannot proceed to IR build.");
+                log.error("❌ Critical validation errors found. Cannot proceed to IR build.");
                 parser.schemaValidator.shutdown();
                 System.exit(1);
             }
 
             // Step 3: Build IR (Intermediate Representation)  
-            System.out.println("\n🔧 STEP 3: AST → IR (Intermediate Representation)");
+            log.info("🔧 STEP 3: AST → IR (Intermediate Representation)");
             IRBuilder irBuilder = new IRBuilder();
-            IRBuildResult irResult = irBuilder.build(result.getAstNodes());
+            IRBuildResult irResult = irBuilder.build(result.getAstNodes(), result.getSymbolTable());
 
             if (irResult.hasErrors()) {
-                System.out.println("❌ IR build errors found:");
+                log.error("❌ IR build errors found:");
                 irResult.printResults();
                 parser.schemaValidator.shutdown();
                 System.exit(1);
             }
 
             // Success! Print final results
-            System.out.println("\n🎉 COMPLETE CFDL Pipeline Success!");
-            System.out.println("📊 Pipeline Summary:");
-            System.out.println("  • Parsed " + result.getAstNodes().size() + " AST nodes");
-            System.out.println("  • Built " + irResult.getIrNodes().size() + " IR nodes");
-            System.out.println("  • All schemas validated successfully");
+            log.info("🎉 COMPLETE CFDL Pipeline Success!");
+            log.info("📊 Pipeline Summary:");
+            log.info("  • Parsed {} AST nodes", result.getAstNodes().size());
+            log.info("  • Built {} IR nodes", irResult.getIrNodes().size());
+            log.info("  • All schemas validated successfully");
             
-            System.out.println("\n📋 IR Nodes Ready for Execution:");
+            log.info("📋 IR Nodes Ready for Execution:");
             for (IRNode irNode : irResult.getIrNodes()) {
-                System.out.println("  • " + irNode.getClass().getSimpleName() + 
-                    ": " + irNode.getId() + " (" + irNode.getName() + ")");
-                System.out.println("    Schema: " + irNode.getSchemaType());
+                log.info("  • {}: {} ({})", irNode.getClass().getSimpleName(), irNode.getId(), irNode.getName());
+                log.info("    Schema: {}", irNode.getSchemaType());
+            }
+
+            // Step 4: Write IR for the execution engine
+            if (irOutput != null) {
+                if (irOutput.endsWith(".cfdlir")) {
+                    new BinaryIRWriter().write(irResult, Paths.get(irOutput));
+                    log.info("💾 Wrote binary IR to {}", irOutput);
+                } else {
+                    new IRWriter().write(irResult, Paths.get(irOutput));
+                    log.info("💾 Wrote engine IR to {}", irOutput);
+                }
             }
 
             // Clean up resources and exit cleanly to prevent thread pool warnings
+            writeMetrics();
             parser.schemaValidator.shutdown();
             System.exit(0);
 
         } catch (IOException e) {
-            System.err.println("❌ Error parsing CFDL file: " + e.getMessage());
+            log.error("❌ Error parsing CFDL file: {}", e.getMessage());
             parser.schemaValidator.shutdown();
             System.exit(1);
         } catch (Exception e) {
-            System.err.println("❌ Unexpected error: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ Unexpected error: {}", e.getMessage(), e);
             parser.schemaValidator.shutdown();
             System.exit(1);
         }
@@ -0,0 +1,106 @@
+package dev.cfdl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared property layout of AST nodes, in the style of hidden classes
+ *
+ * A shape is an ordered list of property keys. Nodes that gained the same keys in
+ * the same order share one shape and only keep an Object[] of values. Adding a key
+ * follows a transition to the child shape, created once and then shared, so every
+ * key string is held once per shape tree no matter how many nodes use it.
+ *
+ * Each parse starts its own tree (see root()), so keys are interned per parse and a
+ * long-running process does not accumulate the keys of every file it has seen.
+ * Transitions are thread-safe.
+ */
+final class PropertyShape {
+
+    // Shapes up to this size are searched linearly, larger ones through a hash index
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    // Root for nodes built in code rather than by a parse
+    static final PropertyShape SHARED_ROOT = root();
+
+    private final PropertyShape root;
+    private final String[] keys;
+    private final Map<String, Integer> index; // null for small shapes
+    private final ConcurrentMap<String, PropertyShape> transitions = new ConcurrentHashMap<>();
+
+    private PropertyShape(PropertyShape root, String[] keys) {
+        this.root = root != null ? root : this;
+        this.keys = keys;
+        if (keys.length > LINEAR_SCAN_LIMIT) {
+            index = new HashMap<>(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                index.put(keys[i], i);
+            }
+        } else {
+            index = null;
+        }
+    }
+
+    /**
+     * The empty shape at the top of a new shape tree
+     */
+    static PropertyShape root() {
+        return new PropertyShape(null, new String[0]);
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    String key(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Slot of a key, or -1 if this shape does not have it
+     */
+    int indexOf(Object key) {
+        if (index != null) {
+            Integer slot = index.get(key);
+            return slot != null ? slot : -1;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key || keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The shape with one more key, appended as the last slot
+     */
+    PropertyShape with(String key) {
+        PropertyShape next = transitions.get(key);
+        if (next != null) {
+            return next;
+        }
+        return transitions.computeIfAbsent(key, k -> {
+            String[] extended = Arrays.copyOf(keys, keys.length + 1);
+            extended[keys.length] = k;
+            return new PropertyShape(root, extended);
+        });
+    }
+
+    /**
+     * The shape without the key in the given slot, reached from the root so it is shared too.
+     * Later slots move down by one.
+     */
+    PropertyShape without(int slot) {
+        PropertyShape shape = root;
+        for (int i = 0; i < keys.length; i++) {
+            if (i != slot) {
+                shape = shape.with(keys[i]);
+            }
+        }
+        return shape;
+    }
+}
@@ -0,0 +1,206 @@
+package dev.cfdl;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bounded cache of calculator schedules, keyed by calculator kind, parameters and length
+ *
+ * Schedules live in one direct buffer of capacity doubles outside the Java heap, so a
+ * full cache adds no arrays for the collector to trace. Each entry is one contiguous
+ * range of the buffer holding all rows of its schedule; free ranges are kept by offset
+ * and merged with their neighbours. When a new schedule does not fit, least recently
+ * used entries are evicted until it does. Schedules larger than the whole buffer are
+ * computed and returned without being cached.
+ *
+ * Readers get copies, so an entry can be evicted at any time. All methods are
+ * synchronized: lookups happen when streams are compiled, not per period. Hits, misses
+ * and evictions are counted here and in CompilerMetrics.
+ */
+public final class ScheduleCache {
+
+    static final int DEFAULT_CAPACITY = 1 << 20; // Doubles: 8 MiB
+
+    private static final ScheduleCache GLOBAL = new ScheduleCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final DoubleBuffer pool;
+    private final LinkedHashMap<Key, int[]> entries = new LinkedHashMap<>(16, 0.75f, true); // Offset and size
+    private final TreeMap<Integer, Integer> free = new TreeMap<>(); // Offset to size
+    private int used;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * The cache the executor compiles through
+     */
+    public static ScheduleCache global() {
+        return GLOBAL;
+    }
+
+    /**
+     * A cache holding at most capacity doubles
+     */
+    public ScheduleCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.pool = ByteBuffer.allocateDirect(8 * capacity).asDoubleBuffer();
+        free.put(0, capacity);
+    }
+
+    /**
+     * Copy of one row of a schedule, computed and cached on a miss
+     */
+    synchronized double[] row(int kind, double p1, double p2, double p3, int length, int row) {
+        Key key = new Key(kind, p1, p2, p3, length);
+        int size = Calculators.outputs(kind).length * length;
+        int[] entry = entries.get(key);
+        double[] values = new double[length];
+
+        if (entry != null) {
+            hits++;
+            CompilerMetrics.global().calculatorCacheHit();
+        } else {
+            misses++;
+            CompilerMetrics.global().calculatorCacheMiss();
+            if (size > capacity) {
+                DoubleBuffer scratch = DoubleBuffer.allocate(size);
+                Calculators.fill(kind, p1, p2, p3, length, scratch, 0);
+                scratch.position(row * length);
+                scratch.get(values);
+                return values;
+            }
+            entry = new int[] {allocate(size), size};
+            Calculators.fill(kind, p1, p2, p3, length, pool, entry[0]);
+            entries.put(key, entry);
+            used += size;
+        }
+
+        DoubleBuffer view = pool.duplicate();
+        view.position(entry[0] + row * length);
+        view.get(values);
+        return values;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized int getEntryCount() { return entries.size(); }
+    public synchronized int getUsed() { return used; }
+    public int getCapacity() { return capacity; }
+
+    /**
+     * Share of lookups served from the cache, NaN before the first lookup
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups > 0 ? (double) hits / lookups : Double.NaN;
+    }
+
+    /**
+     * Drop every entry and reset the counts
+     */
+    public synchronized void clear() {
+        entries.clear();
+        free.clear();
+        free.put(0, capacity);
+        used = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ScheduleCache{entries=%d, used=%d/%d doubles, hits=%d, misses=%d, evictions=%d, hitRate=%.1f%%}",
+            entries.size(), used, capacity, hits, misses, evictions, 100 * getHitRate());
+    }
+
+    // Helper methods
+
+    /**
+     * Offset of a free range of size doubles, evicting least recently used entries until one fits
+     */
+    private int allocate(int size) {
+        while (true) {
+            for (Map.Entry<Integer, Integer> range : free.entrySet()) {
+                int offset = range.getKey();
+                int available = range.getValue();
+                if (available >= size) {
+                    free.remove(offset); // May reuse the entry, so read it first
+                    if (available > size) {
+                        free.put(offset + size, available - size);
+                    }
+                    return offset;
+                }
+            }
+            Iterator<int[]> eldest = entries.values().iterator();
+            int[] entry = eldest.next();
+            eldest.remove();
+            release(entry[0], entry[1]);
+            used -= entry[1];
+            evictions++;
+            CompilerMetrics.global().calculatorCacheEviction();
+        }
+    }
+
+    /**
+     * Return a range to the free list, merged with free neighbours
+     */
+    private void release(int offset, int size) {
+        Map.Entry<Integer, Integer> before = free.floorEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            offset = before.getKey();
+            size += before.getValue();
+            free.remove(offset);
+        }
+        Integer after = free.get(offset + size);
+        if (after != null) {
+            free.remove(offset + size);
+            size += after;
+        }
+        free.put(offset, size);
+    }
+
+    private static final class Key {
+        private final int kind;
+        private final int length;
+        private final long p1;
+        private final long p2;
+        private final long p3;
+
+        Key(int kind, double p1, double p2, double p3, int length) {
+            this.kind = kind;
+            this.length = length;
+            this.p1 = Double.doubleToLongBits(p1);
+            this.p2 = Double.doubleToLongBits(p2);
+            this.p3 = Double.doubleToLongBits(p3);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return kind == key.kind && length == key.length && p1 == key.p1 && p2 == key.p2 && p3 == key.p3;
+        }
+
+        @Override
+        public int hashCode() {
+            long hash = kind * 31L + length;
+            hash = hash * 31 + p1;
+            hash = hash * 31 + p2;
+            hash = hash * 31 + p3;
+            return Long.hashCode(hash);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pre-resolved ontology schema registry
+ *
+ * Reads the includes list of spec.yaml once, loads every ontology schema plus
+ * everything they $ref, and preloads all of them into the schema factory so
+ * cross-file references to https://cfdl.dev/... resolve offline. The resulting
+ * JsonSchema set is frozen in an immutable map that any number of threads may read.
+ *
+ * A snapshot of the loaded schema documents can be saved as plain JSON, letting
+ * cold starts skip YAML schema parsing entirely.
+ */
+public final class SchemaRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaRegistry.class);
+
+    static final String BASE_URL = "https://cfdl.dev/";
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private final Map<String, JsonNode> documents; // Canonical URL -> schema document
+    private final Map<String, String> aliases;     // $id or spec.yaml spelling -> canonical URL
+    private final Map<String, JsonSchema> schemas; // Every canonical URL and alias -> compiled schema
+
+    private SchemaRegistry(Map<String, JsonNode> documents, Map<String, String> aliases) throws ProcessingException {
+        this.documents = Collections.unmodifiableMap(new LinkedHashMap<>(documents));
+        this.aliases = Collections.unmodifiableMap(new LinkedHashMap<>(aliases));
+
+        // Preload every document under every URL it can be referenced by
+        LoadingConfigurationBuilder loading = LoadingConfiguration.newBuilder();
+        for (Map.Entry<String, JsonNode> document : documents.entrySet()) {
+            loading.preloadSchema(document.getKey(), document.getValue());
+        }
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            loading.preloadSchema(alias.getKey(), documents.get(alias.getValue()));
+        }
+        JsonSchemaFactory factory = JsonSchemaFactory.newBuilder()
+            .setLoadingConfiguration(loading.freeze())
+            .freeze();
+
+        Map<String, JsonSchema> compiled = new HashMap<>();
+        for (String url : documents.keySet()) {
+            compiled.put(url, factory.getJsonSchema(url));
+        }
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            compiled.put(alias.getKey(), compiled.get(alias.getValue()));
+        }
+        this.schemas = Collections.unmodifiableMap(compiled);
+    }
+
+    /**
+     * Load every schema listed under includes in the given spec.yaml, resolving
+     * schema paths and $refs relative to the spec file's directory
+     */
+    public static SchemaRegistry load(Path specFile) throws IOException {
+        Path baseDir = specFile.toAbsolutePath().getParent();
+        JsonNode spec = yamlMapper.readTree(specFile.toFile());
+
+        Map<String, JsonNode> documents = new LinkedHashMap<>();
+        Map<String, String> aliases = new LinkedHashMap<>();
+        Deque<String> pending = new ArrayDeque<>();
+
+        JsonNode includes = spec.path("includes");
+        for (JsonNode include : includes) {
+            if (include.isTextual()) {
+                pending.add(BASE_URL + include.asText());
+            }
+        }
+
+        // Load includes, then follow $refs until every referenced document is present
+        List<String> missing = new ArrayList<>();
+        while (!pending.isEmpty()) {
+            String url = pending.poll();
+            if (documents.containsKey(url) || aliases.containsKey(url)) {
+                continue;
+            }
+
+            Path file = locate(baseDir, url);
+            if (file == null) {
+                missing.add(url);
+                continue;
+            }
+
+            String canonical = BASE_URL + baseDir.relativize(file).toString().replace('\\', '/');
+            if (!canonical.equals(url)) {
+                aliases.put(url, canonical);
+            }
+            if (documents.containsKey(canonical)) {
+                continue;
+            }
+
+            CompilerEvents.SchemaLoad event = new CompilerEvents.SchemaLoad();
+            event.begin();
+            JsonNode document = yamlMapper.readTree(file.toFile());
+            documents.put(canonical, document);
+            CompilerEvents.commit(event, canonical, canonical, 1, document);
+
+            String declaredId = document.path("$id").asText(null);
+            if (declaredId != null && !declaredId.equals(canonical)) {
+                aliases.put(declaredId, canonical);
+            }
+            collectReferences(document, pending);
+        }
+
+        if (!missing.isEmpty()) {
+            throw new IOException("Could not resolve schema references offline: " + missing);
+        }
+        return freeze(documents, aliases);
+    }
+
+    /**
+     * Load a registry from spec.yaml in the working directory, or from the snapshot
+     * named by the cfdl.schemaSnapshot system property. Returns null if neither is available.
+     */
+    public static SchemaRegistry loadDefault() {
+        try {
+            String snapshot = System.getProperty("cfdl.schemaSnapshot");
+            if (snapshot != null) {
+                return loadSnapshot(Paths.get(snapshot));
+            }
+            Path spec = Paths.get("spec.yaml");
+            if (!Files.isRegularFile(spec)) {
+                log.warn("No spec.yaml in {}; schemas will be loaded lazily", spec.toAbsolutePath().getParent());
+                return null;
+            }
+            return load(spec);
+        } catch (IOException e) {
+            log.warn("Could not load schema registry: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Load a registry from a snapshot written by saveSnapshot; no YAML is parsed
+     */
+    public static SchemaRegistry loadSnapshot(Path snapshotFile) throws IOException {
+        JsonNode snapshot = jsonMapper.readTree(snapshotFile.toFile());
+        if (snapshot.path("version").asInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported schema snapshot version in " + snapshotFile);
+        }
+
+        Map<String, JsonNode> documents = new LinkedHashMap<>();
+        snapshot.path("documents").fields().forEachRemaining(e -> documents.put(e.getKey(), e.getValue()));
+        Map<String, String> aliases = new LinkedHashMap<>();
+        snapshot.path("aliases").fields().forEachRemaining(e -> aliases.put(e.getKey(), e.getValue().asText()));
+
+        return freeze(documents, aliases);
+    }
+
+    /**
+     * Save the loaded schema documents so later cold starts can use loadSnapshot
+     */
+    public void saveSnapshot(Path snapshotFile) throws IOException {
+        ObjectNode snapshot = jsonMapper.createObjectNode();
+        snapshot.put("version", SNAPSHOT_VERSION);
+        ObjectNode docs = snapshot.putObject("documents");
+        documents.forEach(docs::set);
+        ObjectNode aliasNode = snapshot.putObject("aliases");
+        aliases.forEach(aliasNode::put);
+        jsonMapper.writeValue(snapshotFile.toFile(), snapshot);
+    }
+
+    /**
+     * The compiled schema for a canonical URL or any of its aliases, or null if unknown
+     */
+    public JsonSchema get(String schemaUrl) {
+        return schemas.get(schemaUrl);
+    }
+
+    public Set<String> getSchemaUrls() {
+        return documents.keySet();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    // Helper methods
+
+    private static SchemaRegistry freeze(Map<String, JsonNode> documents, Map<String, String> aliases) throws IOException {
+        try {
+            return new SchemaRegistry(documents, aliases);
+        } catch (ProcessingException e) {
+            throw new IOException("Could not compile schemas: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Map a schema URL to a file below the base directory. Published $ids and
+     * spec.yaml use hyphens where some file names use underscores, so both are tried.
+     */
+    private static Path locate(Path baseDir, String url) {
+        if (!url.startsWith(BASE_URL)) {
+            return null;
+        }
+        String relative = url.substring(BASE_URL.length());
+        Path file = baseDir.resolve(relative);
+        if (Files.isRegularFile(file)) {
+            return file;
+        }
+
+        int slash = relative.lastIndexOf('/');
+        String underscored = relative.substring(0, slash + 1) + relative.substring(slash + 1).replace('-', '_');
+        file = baseDir.resolve(underscored);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Queue the document part of every absolute $ref found in a schema
+     */
+    private static void collectReferences(JsonNode node, Deque<String> pending) {
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if ("$ref".equals(field.getKey()) && field.getValue().isTextual()) {
+                    String ref = field.getValue().asText();
+                    int hash = ref.indexOf('#');
+                    String document = hash >= 0 ? ref.substring(0, hash) : ref;
+                    if (!document.isEmpty()) {
+                        pending.add(document);
+                    }
+                } else {
+                    collectReferences(field.getValue(), pending);
+                }
+            }
+        } else if (node.isArray()) {
+            for (JsonNode item : node) {
+                collectReferences(item, pending);
+            }
+        }
+    }
+
+    /**
+     * Write a pre-resolved snapshot: java dev.cfdl.SchemaRegistry [spec.yaml] <snapshot.json>
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java dev.cfdl.SchemaRegistry [spec.yaml] <snapshot.json>");
+            System.exit(1);
+        }
+
+        Path spec = Paths.get(args.length == 2 ? args[0] : "spec.yaml");
+        Path snapshot = Paths.get(args[args.length - 1]);
+        try {
+            SchemaRegistry registry = load(spec);
+            registry.saveSnapshot(snapshot);
+            System.out.println("✅ Saved " + registry.size() + " pre-resolved schemas to " + snapshot);
+        } catch (IOException e) {
+            System.err.println("❌ Error building schema snapshot: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
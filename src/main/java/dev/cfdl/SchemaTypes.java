@@ -0,0 +1,29 @@
+package dev.cfdl;
+
+/**
+ * Schema URLs of the entity kinds the compiler treats specially.
+ * Compare with equals (or switch) instead of scanning with contains().
+ */
+public final class SchemaTypes {
+    public static final String DEAL = "https://cfdl.dev/ontology/entity/deal.schema.yaml";
+    public static final String ASSET = "https://cfdl.dev/ontology/entity/asset.schema.yaml";
+    public static final String COMPONENT = "https://cfdl.dev/ontology/entity/component.schema.yaml";
+    public static final String PARTY = "https://cfdl.dev/ontology/entity/party.schema.yaml";
+    public static final String CAPITAL_STACK = "https://cfdl.dev/ontology/entity/capital-stack.schema.yaml";
+    public static final String STREAM = "https://cfdl.dev/ontology/behavior/stream.schema.yaml";
+    public static final String ASSUMPTION = "https://cfdl.dev/ontology/behavior/assumption.schema.yaml";
+    public static final String LOGIC_BLOCK = "https://cfdl.dev/ontology/behavior/logic-block.schema.yaml";
+    public static final String RULE_BLOCK = "https://cfdl.dev/ontology/behavior/rule_block.schema.yaml";
+    public static final String CALCULATOR = "https://cfdl.dev/ontology/behavior/calculators.schema.yaml";
+    public static final String WATERFALL = "https://cfdl.dev/ontology/result/waterfall.schema.yaml";
+    public static final String IRR = "https://cfdl.dev/ontology/result/metrics/irr.schema.yaml";
+    public static final String NPV = "https://cfdl.dev/ontology/result/metrics/npv.schema.yaml";
+    public static final String MOIC = "https://cfdl.dev/ontology/result/metrics/moic.schema.yaml";
+    public static final String DSCR = "https://cfdl.dev/ontology/result/metrics/dscr.schema.yaml";
+    public static final String PAYBACK = "https://cfdl.dev/ontology/result/metrics/payback.schema.yaml";
+    public static final String EIRR = "https://cfdl.dev/ontology/result/metrics/eirr.schema.yaml";
+    public static final String ENPV = "https://cfdl.dev/ontology/result/metrics/enpv.schema.yaml";
+
+    private SchemaTypes() {
+    }
+}
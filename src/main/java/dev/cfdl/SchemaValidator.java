@@ -2,6 +2,8 @@ package dev.cfdl;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
 import com.github.fge.jsonschema.core.report.ProcessingMessage;
@@ -10,24 +12,65 @@ import com.github.fge.jsonschema.main.JsonSchemaFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Validates CFDL AST nodes against their corresponding JSON schemas.
+ * 
+ * Safe for concurrent use: loaded JsonSchema instances are immutable and the
+ * cache can be shared by any number of worker threads.
+ * 
+ * Schemas come from a pre-resolved SchemaRegistry when one is available; anything
+ * it does not know is still loaded lazily on first use.
  */
 public class SchemaValidator {
     
-    private final Map<String, JsonSchema> schemaCache = new HashMap<>();
+    // Arrays holding nested entities
+    private static final String[] NESTED_FIELDS = {"assets", "components", "streams"};
+    
+    private final SchemaRegistry registry; // May be null
+    private final ConcurrentMap<String, JsonSchema> schemaCache = new ConcurrentHashMap<>();
     private final ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
     private final JsonSchemaFactory schemaFactory = JsonSchemaFactory.byDefault();
     
+    /**
+     * Create a validator backed by the default registry (spec.yaml or a snapshot), if available.
+     * The default registry is loaded once per JVM and shared by every such validator.
+     */
+    public SchemaValidator() {
+        this(DefaultRegistry.INSTANCE);
+    }
+    
+    public SchemaValidator(SchemaRegistry registry) {
+        this.registry = registry;
+    }
+    
+    /**
+     * Loads the default registry on first use of the no-argument constructor
+     */
+    private static final class DefaultRegistry {
+        static final SchemaRegistry INSTANCE = SchemaRegistry.loadDefault(); // May be null
+    }
+    
     /**
      * Validates JsonNode directly against schema URL - for YAML approach
      */
     public List<ValidationError> validateYamlNode(JsonNode nodeJson, String schemaUrl) {
+        return validate(nodeJson, schemaUrl, null);
+    }
+    
+    /**
+     * Validate a tree, recorded as a SchemaValidation event for the given entity
+     * (or for the tree's own id when entityId is null)
+     */
+    private List<ValidationError> validate(JsonNode nodeJson, String schemaUrl, String entityId) {
+        CompilerEvents.SchemaValidation event = new CompilerEvents.SchemaValidation();
+        event.begin();
+        long start = System.nanoTime();
         List<ValidationError> errors = new ArrayList<>();
         
         try {
@@ -43,77 +86,144 @@ public class SchemaValidator {
                     ? ValidationError.Severity.ERROR 
                     : ValidationError.Severity.WARNING;
                 
+                String pointer = message.asJson().path("instance").path("pointer").asText("");
                 errors.add(new ValidationError(
                     severity,
-                    message.getMessage()
+                    message.getMessage(),
+                    entityId,
+                    schemaUrl,
+                    pointer.isEmpty() ? null : pointer,
+                    -1, -1
                 ));
             }
         } catch (Exception e) {
             errors.add(new ValidationError(
                 ValidationError.Severity.ERROR,
-                "Schema validation failed: " + e.getMessage()
+                "Schema validation failed: " + e.getMessage(),
+                entityId, schemaUrl, null, -1, -1
             ));
         }
         
+        CompilerMetrics metrics = CompilerMetrics.global();
+        metrics.recordSince(CompilerMetrics.SCHEMA_VALIDATION, schemaUrl, start);
+        for (ValidationError error : errors) {
+            metrics.validationError(error.getSeverity());
+        }
+        
+        event.errorCount = errors.size();
+        CompilerEvents.commit(event, entityId != null ? entityId : nodeJson.path("id").asText(null),
+            schemaUrl, 1, nodeJson);
         return errors;
     }
     
     /**
-     * Validates an AST node against its corresponding schema.
+     * Validates an AST node's own fields against its corresponding schema.
+     * 
+     * Nodes built from YAML are validated against the subtree they came from;
+     * only programmatically built nodes are serialized with toJson() first.
+     * Nested asset, component and stream arrays are left out, as in streaming
+     * mode, since their entities are validated as nodes of their own. Errors
+     * carry the node's id and schema URL.
      */
     public List<ValidationError> validateNode(ASTNode node) {
-        List<ValidationError> errors = new ArrayList<>();
+        return validate(validationView(node), node.getSchemaType(), node.getId());
+    }
+    
+    /**
+     * The tree a node is validated as: its source subtree without nested entity
+     * arrays, with id and name supplied the way toJson() supplies them when the
+     * YAML omits them
+     */
+    static JsonNode validationView(ASTNode node) {
+        JsonNode source = node.getSource();
+        if (source == null || !source.isObject()) {
+            return node.toJson();
+        }
         
-        try {
-            // Get the schema for this node type
-            JsonSchema schema = getSchema(node.getSchemaType());
-            
-            // Convert AST node to JSON for validation
-            JsonNode nodeJson = node.toJson();
-            
-            // Perform validation
-            ProcessingReport report = schema.validate(nodeJson);
-            
-            // Convert processing messages to validation errors
-            for (ProcessingMessage message : report) {
-                ValidationError.Severity severity = message.getLogLevel().toString().equals("ERROR") 
-                    ? ValidationError.Severity.ERROR 
-                    : ValidationError.Severity.WARNING;
-                
-                ValidationError error = new ValidationError(
-                    severity,
-                    message.getMessage()
-                );
-                errors.add(error);
-            }
-            
-        } catch (Exception e) {
-            ValidationError error = new ValidationError(
-                ValidationError.Severity.ERROR,
-                "Schema validation failed: " + e.getMessage()
-            );
-            errors.add(error);
+        boolean needsId = !source.has("id");
+        boolean needsName = !source.path("name").isTextual();
+        boolean hasNested = hasNestedEntities(source);
+        if (!needsId && !needsName && !hasNested) {
+            return source;
         }
         
-        return errors;
+        // Shallow overlay - child subtrees are shared, not copied
+        ObjectNode view = JsonNodeFactory.instance.objectNode();
+        if (needsId) {
+            view.put("id", node.getId());
+        }
+        view.setAll((ObjectNode) source);
+        if (needsName) {
+            view.put("name", node.getName());
+        }
+        if (hasNested) {
+            for (String field : NESTED_FIELDS) {
+                if (view.path(field).isArray()) {
+                    view.remove(field);
+                }
+            }
+        }
+        return view;
+    }
+    
+    private static boolean hasNestedEntities(JsonNode source) {
+        for (String field : NESTED_FIELDS) {
+            if (source.path(field).isArray()) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
      * Gets or loads a JSON schema from the cache.
      */
     private JsonSchema getSchema(String schemaUrl) throws Exception {
+        if (registry != null) {
+            JsonSchema registered = registry.get(schemaUrl);
+            if (registered != null) {
+                CompilerMetrics.global().schemaCacheHit();
+                return registered;
+            }
+        }
+        
         JsonSchema schema = schemaCache.get(schemaUrl);
-        if (schema == null) {
+        if (schema != null) {
+            CompilerMetrics.global().schemaCacheHit();
+        } else {
+            CompilerMetrics.global().schemaCacheMiss();
+            // Racing first loads of the same schema are harmless - the first one stored wins
             schema = loadSchema(schemaUrl);
-            schemaCache.put(schemaUrl, schema);
+            JsonSchema existing = schemaCache.putIfAbsent(schemaUrl, schema);
+            if (existing != null) {
+                schema = existing;
+            }
         }
         return schema;
     }
     
+    /**
+     * Loads the given schemas up front so concurrent validations only read the cache.
+     * Returns the number of schemas available afterwards.
+     */
+    public int preload(Collection<String> schemaUrls) {
+        for (String schemaUrl : schemaUrls) {
+            try {
+                getSchema(schemaUrl);
+            } catch (Exception e) {
+                // Reported again on the first validation against this schema
+            }
+        }
+        return schemaCache.size() + (registry != null ? registry.size() : 0);
+    }
+    
     /**
      * Loads a JSON schema from the ontology directory.
      */
     private JsonSchema loadSchema(String schemaUrl) throws Exception {
+        CompilerEvents.SchemaLoad event = new CompilerEvents.SchemaLoad();
+        event.begin();
+        
         // Convert schema URL to file path
         String schemaPath = convertUrlToPath(schemaUrl);
         
@@ -121,7 +231,9 @@ public class SchemaValidator {
         JsonNode schemaNode = loadSchemaFile(schemaPath);
         
         // Create and return the schema
-        return schemaFactory.getJsonSchema(schemaNode);
+        JsonSchema schema = schemaFactory.getJsonSchema(schemaNode);
+        CompilerEvents.commit(event, schemaUrl, schemaUrl, 1, schemaNode);
+        return schema;
     }
     
     /**
@@ -184,13 +296,10 @@ public class SchemaValidator {
      */
     public void shutdown() {
         try {
-            // Clear schema cache to release references
+            // Clear schema cache to release references; JsonSchemaFactory holds no
+            // threads or files, so there is nothing else to close
             schemaCache.clear();
             
-            // Note: JsonSchemaFactory doesn't provide a direct shutdown method,
-            // but clearing references helps with garbage collection
-            System.gc(); // Suggest garbage collection to clean up resources
-            
         } catch (Exception e) {
             // Log but don't throw - this is cleanup
             System.err.println("Warning: Error during SchemaValidator shutdown: " + e.getMessage());
@@ -0,0 +1,325 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming AST Reader
+ *
+ * Walks a CFDL document token by token and emits each ASTNode as soon as its
+ * subtree closes. Only the entity currently being read is held in memory, so
+ * peak memory scales with the largest single entity rather than the whole deal.
+ *
+ * Nested assets, components and streams are emitted before their parent and are
+ * referenced from it only through the assetIds / componentIds / streamIds lists;
+ * unlike ASTBuilder the raw nested bodies are not copied onto the parent, nor
+ * included in the parent's source subtree.
+ */
+public class StreamingASTReader implements Iterator<ASTNode>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingASTReader.class);
+
+    // Nested entity array field -> wrapper key of each item
+    private static final Map<String, String> NESTED_KINDS = new HashMap<>();
+
+    static {
+        NESTED_KINDS.put("assets", "asset");
+        NESTED_KINDS.put("components", "component");
+        NESTED_KINDS.put("streams", "stream");
+    }
+
+    /**
+     * An entity whose body is still being read
+     */
+    private static class EntityFrame {
+        final ASTNode node;
+        final ObjectNode source; // The entity's own fields, shared with its properties' subtrees
+        final int wrapperDepth;  // Enclosing wrapper objects to close once the entity ends
+        boolean bodyClosed;      // Entity data was not an object, nothing left to read
+        String nestedField;      // Nested entity array currently being read, if any
+        List<String> nestedIds;
+
+        EntityFrame(ASTNode node, ObjectNode source, int wrapperDepth) {
+            this.node = node;
+            this.source = source;
+            this.wrapperDepth = wrapperDepth;
+        }
+    }
+
+    private final JsonParser parser;
+    private final ObjectMapper mapper;
+    private final SymbolTable symbols; // May be null
+    private final Deque<EntityFrame> stack = new ArrayDeque<>();
+    private final PropertyShape shapes = PropertyShape.root(); // Property keys interned for this document
+
+    private boolean started;
+    private boolean finished;
+    private String rootArrayType; // Definition type while inside a top-level array
+    private ASTNode next;
+
+    public StreamingASTReader(JsonParser parser, ObjectMapper mapper) {
+        this(parser, mapper, null);
+    }
+
+    /**
+     * Create a reader that registers every emitted node and nesting edge in the given symbol table
+     */
+    public StreamingASTReader(JsonParser parser, ObjectMapper mapper, SymbolTable symbols) {
+        this.parser = parser;
+        this.mapper = mapper;
+        this.symbols = symbols;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (next == null) {
+                finished = true;
+                closeQuietly();
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public ASTNode next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ASTNode node = next;
+        next = null;
+        return node;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        parser.close();
+    }
+
+    /**
+     * Read tokens until the next entity closes; null at end of document
+     */
+    private ASTNode advance() throws IOException {
+        if (!started) {
+            started = true;
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+        }
+
+        while (true) {
+            if (stack.isEmpty()) {
+                if (!openNextDefinition()) {
+                    return null;
+                }
+                continue;
+            }
+
+            EntityFrame frame = stack.peek();
+            ASTNode emitted = frame.nestedField != null ? readNestedItem(frame) : readEntityField(frame);
+            if (emitted != null) {
+                return emitted;
+            }
+        }
+    }
+
+    /**
+     * Position the reader inside the next top-level definition; false at end of document
+     */
+    private boolean openNextDefinition() throws IOException {
+        while (true) {
+            if (rootArrayType != null) {
+                // Handle both single definitions and arrays
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_ARRAY) {
+                    rootArrayType = null;
+                } else if (token == JsonToken.START_OBJECT) {
+                    if (openDefinition(rootArrayType)) {
+                        return true;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+                continue;
+            }
+
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.FIELD_NAME) {
+                return false; // End of root object or end of input
+            }
+
+            String definitionType = parser.getCurrentName();
+            token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                rootArrayType = definitionType;
+            } else if (token == JsonToken.START_OBJECT) {
+                if (openDefinition(definitionType)) {
+                    return true;
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Open a top-level definition object of the form { entityId: { ... } }
+     */
+    private boolean openDefinition(String definitionType) throws IOException {
+        String schemaUrl = ASTBuilder.schemaUrlFor(definitionType);
+        if (schemaUrl == null) {
+            log.warn("Unknown definition type: {}", definitionType);
+            parser.skipChildren();
+            return false;
+        }
+        return openEntity(schemaUrl, 1);
+    }
+
+    /**
+     * Positioned on the innermost wrapper object; pushes a frame for the entity it holds.
+     * The entity identifier is the first field name, any further fields are ignored.
+     */
+    private boolean openEntity(String schemaUrl, int wrapperDepth) throws IOException {
+        if (parser.nextToken() != JsonToken.FIELD_NAME) {
+            // Empty wrapper - the innermost one is already closed
+            closeWrappers(wrapperDepth - 1);
+            return false;
+        }
+
+        String entityId = parser.getCurrentName();
+        EntityFrame frame = new EntityFrame(new ASTNode(entityId, entityId, schemaUrl, shapes), mapper.createObjectNode(), wrapperDepth);
+        CompilerMetrics.global().nodeBuilt(schemaUrl);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            frame.bodyClosed = true;
+        }
+        stack.push(frame);
+        return true;
+    }
+
+    /**
+     * Read one field of the current entity, emitting the entity when its object closes
+     */
+    private ASTNode readEntityField(EntityFrame frame) throws IOException {
+        JsonToken token = frame.bodyClosed ? JsonToken.END_OBJECT : parser.nextToken();
+        if (token == JsonToken.END_OBJECT) {
+            stack.pop();
+            closeWrappers(frame.wrapperDepth);
+            if (!frame.bodyClosed) {
+                frame.node.setSource(frame.source);
+            }
+            if (symbols != null) {
+                symbols.define(frame.node);
+                if (!stack.isEmpty()) {
+                    symbols.addChild(stack.peek().node.getId(), frame.node.getId());
+                }
+            }
+            return frame.node;
+        }
+
+        String key = parser.getCurrentName();
+        token = parser.nextToken();
+
+        // Handle nested entities (assets, components, streams) without materializing them
+        if (token == JsonToken.START_ARRAY && NESTED_KINDS.containsKey(key)) {
+            frame.nestedField = key;
+            frame.nestedIds = new ArrayList<>();
+            return null;
+        }
+
+        // Plain properties are small enough to read as a subtree
+        JsonNode value = mapper.readTree(parser);
+        frame.source.set(key, value);
+        if (key.equals("name")) {
+            if (value != null && value.isTextual()) {
+                frame.node.setName(value.asText());
+            }
+        } else {
+            frame.node.setProperty(key, value != null ? ASTBuilder.toPropertyValue(value) : null);
+        }
+        return null;
+    }
+
+    /**
+     * Read one item of a nested entity array, pushing a frame if the item defines an entity
+     */
+    private ASTNode readNestedItem(EntityFrame frame) throws IOException {
+        JsonToken token = parser.nextToken();
+        String kind = NESTED_KINDS.get(frame.nestedField);
+
+        if (token == JsonToken.END_ARRAY) {
+            frame.node.setProperty(kind + "Ids", frame.nestedIds);
+            frame.nestedField = null;
+            frame.nestedIds = null;
+        } else if (token == JsonToken.VALUE_STRING) {
+            String childId = parser.getText();
+            frame.nestedIds.add(childId);
+            if (symbols != null) {
+                symbols.addChild(frame.node.getId(), childId);
+                symbols.addReference(frame.node.getId(), frame.nestedField, childId, ASTBuilder.schemaUrlFor(kind));
+            }
+        } else if (token == JsonToken.START_OBJECT) {
+            // Item of the form { asset: { AssetId: { ... } } }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && key.equals(kind)) {
+                    if (openEntity(ASTBuilder.schemaUrlFor(kind), 2)) {
+                        frame.nestedIds.add(stack.peek().node.getId());
+                    }
+                    return null;
+                }
+                parser.skipChildren();
+            }
+        } else {
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    /**
+     * Skip the remainder of the given number of enclosing objects
+     */
+    private void closeWrappers(int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                parser.nextToken();
+                parser.skipChildren();
+            }
+            if (token == null) {
+                return;
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            // Nothing more to read - ignore
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package dev.cfdl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Symbol Table
+ *
+ * Indexes AST nodes by entity id and schema type, records the parent/child
+ * edges of nested entities (deal → asset → component → stream) and the
+ * cross-references between entities (dealId, assetId, inputs, partyId).
+ * Filled once while the AST is built so later lookups are O(1).
+ */
+public class SymbolTable {
+
+    /**
+     * A reference from one entity to another through a named field
+     */
+    public static class Reference {
+        private final String sourceId;
+        private final String field;
+        private final String targetId;
+        private final String expectedSchemaType; // null when any entity kind may be referenced
+
+        public Reference(String sourceId, String field, String targetId, String expectedSchemaType) {
+            this.sourceId = sourceId;
+            this.field = field;
+            this.targetId = targetId;
+            this.expectedSchemaType = expectedSchemaType;
+        }
+
+        public String getSourceId() { return sourceId; }
+        public String getField() { return field; }
+        public String getTargetId() { return targetId; }
+        public String getExpectedSchemaType() { return expectedSchemaType; }
+
+        @Override
+        public String toString() {
+            return sourceId + "." + field + " -> " + targetId;
+        }
+    }
+
+    // Reference fields and the schema type their target must have
+    private static final Map<String, String> REFERENCE_FIELDS = new HashMap<>();
+
+    static {
+        REFERENCE_FIELDS.put("dealId", SchemaTypes.DEAL);
+        REFERENCE_FIELDS.put("assetId", SchemaTypes.ASSET);
+        REFERENCE_FIELDS.put("partyId", SchemaTypes.PARTY);
+        REFERENCE_FIELDS.put("inputs", null);
+    }
+
+    // Raw nested entity bodies - indexed through their own nodes, not their parent
+    private static final String[] NESTED_FIELDS = {"assets", "components", "streams"};
+
+    private final Map<String, ASTNode> byId = new HashMap<>();
+    private final Map<String, ASTNode> byAlias = new HashMap<>(); // the optional "id" property, e.g. a URI
+    private final Map<String, Map<String, ASTNode>> bySchemaType = new HashMap<>();
+    private final Map<String, List<String>> children = new HashMap<>();
+    private final Map<String, String> parents = new HashMap<>();
+    private final List<Reference> references = new ArrayList<>();
+    private final List<String> duplicateIds = new ArrayList<>();
+
+    /**
+     * Build a table from already constructed nodes in one linear pass.
+     * Parent/child edges are recovered from the assetIds / componentIds / streamIds lists,
+     * and entities listed by id in the raw assets / components / streams lists become
+     * references, as when the table is filled while building.
+     */
+    public static SymbolTable of(Collection<ASTNode> nodes) {
+        SymbolTable table = new SymbolTable();
+        for (ASTNode node : nodes) {
+            table.define(node);
+        }
+        for (ASTNode node : nodes) {
+            table.linkNestedIds(node);
+        }
+        return table;
+    }
+
+    /**
+     * Register a node and the cross-references held in its properties
+     */
+    public void define(ASTNode node) {
+        ASTNode previous = byId.put(node.getId(), node);
+        if (previous != null && previous != node) {
+            duplicateIds.add(node.getId());
+        }
+
+        Object alias = node.getProperty("id");
+        if (alias instanceof String && !alias.equals(node.getId())) {
+            byAlias.put((String) alias, node);
+        }
+
+        bySchemaType.computeIfAbsent(node.getSchemaType(), k -> new LinkedHashMap<>()).put(node.getId(), node);
+
+        for (Map.Entry<String, Object> property : node.getProperties().entrySet()) {
+            if (!isNestedField(property.getKey())) {
+                collectReferences(node.getId(), property.getKey(), property.getValue());
+            }
+        }
+    }
+
+    /**
+     * Record that childId is nested inside parentId
+     */
+    public void addChild(String parentId, String childId) {
+        children.computeIfAbsent(parentId, k -> new ArrayList<>()).add(childId);
+        parents.put(childId, parentId);
+    }
+
+    /**
+     * Record a reference that is not held in a reference field, e.g. a textual entry in an assets list
+     */
+    public void addReference(String sourceId, String field, String targetId, String expectedSchemaType) {
+        references.add(new Reference(sourceId, field, targetId, expectedSchemaType));
+    }
+
+    /**
+     * Merge another table into this one, e.g. to resolve references across files
+     */
+    public void merge(SymbolTable other) {
+        for (ASTNode node : other.byId.values()) {
+            ASTNode previous = byId.put(node.getId(), node);
+            if (previous != null && previous != node) {
+                duplicateIds.add(node.getId());
+            }
+            bySchemaType.computeIfAbsent(node.getSchemaType(), k -> new LinkedHashMap<>()).put(node.getId(), node);
+        }
+        byAlias.putAll(other.byAlias);
+        other.children.forEach((parent, ids) -> children.computeIfAbsent(parent, k -> new ArrayList<>()).addAll(ids));
+        parents.putAll(other.parents);
+        references.addAll(other.references);
+        duplicateIds.addAll(other.duplicateIds);
+    }
+
+    // Lookups
+
+    /**
+     * Find an entity by its key or by its "id" property
+     */
+    public ASTNode lookup(String id) {
+        ASTNode node = byId.get(id);
+        return node != null ? node : byAlias.get(id);
+    }
+
+    /**
+     * Find an entity of the given schema type by its key or by its "id" property, or null if
+     * neither is of that type; an entity of another type does not hide a matching alias
+     */
+    public ASTNode lookup(String id, String schemaType) {
+        if (schemaType == null) {
+            return lookup(id);
+        }
+        ASTNode node = byId.get(id);
+        if (node != null && schemaType.equals(node.getSchemaType())) {
+            return node;
+        }
+        node = byAlias.get(id);
+        return node != null && schemaType.equals(node.getSchemaType()) ? node : null;
+    }
+
+    public boolean contains(String id, String schemaType) {
+        return lookup(id, schemaType) != null;
+    }
+
+    /**
+     * All entities of a schema type, in definition order
+     */
+    public Collection<ASTNode> getBySchemaType(String schemaType) {
+        Map<String, ASTNode> nodes = bySchemaType.get(schemaType);
+        return nodes != null ? Collections.unmodifiableCollection(nodes.values()) : Collections.emptyList();
+    }
+
+    public List<String> getChildren(String parentId) {
+        List<String> ids = children.get(parentId);
+        return ids != null ? Collections.unmodifiableList(ids) : Collections.emptyList();
+    }
+
+    public String getParent(String childId) {
+        return parents.get(childId);
+    }
+
+    public List<Reference> getReferences() {
+        return Collections.unmodifiableList(references);
+    }
+
+    public List<String> getDuplicateIds() {
+        return Collections.unmodifiableList(duplicateIds);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * References whose target is missing or has the wrong schema type, in one linear pass
+     */
+    public List<Reference> unresolvedReferences() {
+        List<Reference> unresolved = new ArrayList<>();
+        for (Reference reference : references) {
+            if (!contains(reference.getTargetId(), reference.getExpectedSchemaType())) {
+                unresolved.add(reference);
+            }
+        }
+        return unresolved;
+    }
+
+    // Helper methods
+
+    private static boolean isNestedField(String key) {
+        for (String nested : NESTED_FIELDS) {
+            if (nested.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walk a property value and record every reference field found in it
+     */
+    private void collectReferences(String sourceId, String key, Object value) {
+        if (REFERENCE_FIELDS.containsKey(key)) {
+            String expected = REFERENCE_FIELDS.get(key);
+            if (value instanceof String) {
+                references.add(new Reference(sourceId, key, (String) value, expected));
+                return;
+            }
+            if (value instanceof List) {
+                for (Object item : (List<?>) value) {
+                    if (item instanceof String) {
+                        references.add(new Reference(sourceId, key, (String) item, expected));
+                    }
+                }
+                return;
+            }
+        }
+
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                collectReferences(sourceId, String.valueOf(entry.getKey()), entry.getValue());
+            }
+        } else if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                collectReferences(sourceId, key, item);
+            }
+        }
+    }
+
+    /**
+     * Recover parent/child edges from a node's nested id lists, and references from the
+     * textual entries of its raw nested lists
+     */
+    private void linkNestedIds(ASTNode node) {
+        for (String nested : NESTED_FIELDS) {
+            String kind = nested.substring(0, nested.length() - 1);
+            Object ids = node.getProperty(kind + "Ids");
+            if (ids instanceof List) {
+                for (Object childId : (List<?>) ids) {
+                    if (childId instanceof String) {
+                        addChild(node.getId(), (String) childId);
+                    }
+                }
+            }
+            Object items = node.getProperty(nested);
+            if (items instanceof List) {
+                for (Object item : (List<?>) items) {
+                    if (item instanceof String) {
+                        addReference(node.getId(), nested, (String) item, ASTBuilder.schemaUrlFor(kind));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package dev.cfdl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Temporal grid of a deal: the periods cash flows are allocated onto
+ *
+ * Same rules as engine/src/temporal_grid.jl. Periods run from the analysis start
+ * (analysisStart, else entryDate) to the exitDate at the calendar frequency; each
+ * period's start and end are adjusted by the business day convention, and its
+ * business days, calendar days and year fraction are computed from the adjusted
+ * dates. All per-period values are kept in primitive arrays indexed from 0.
+ *
+ * Business days come from the shared BusinessCalendar of the holiday calendar. Grids
+ * are immutable, so identical ones are built once: of() keeps the last MAX_CACHED_GRIDS
+ * grids by start, end, frequency, convention, day count and holiday calendar, and
+ * deals with the same calendar block and dates share one grid and its year fractions.
+ */
+public final class TemporalGrid {
+
+    private static final Logger log = LoggerFactory.getLogger(TemporalGrid.class);
+
+    static final int MAX_PERIODS = 10_000;
+    static final int MAX_CACHED_GRIDS = 1024;
+
+    private static final LocalDate DEFAULT_START = LocalDate.of(2024, 1, 1);
+    private static final LocalDate DEFAULT_END = LocalDate.of(2029, 1, 1);
+
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+        DateTimeFormatter.ISO_LOCAL_DATE,
+        DateTimeFormatter.ofPattern("MM/dd/yyyy"),
+        DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+        DateTimeFormatter.ofPattern("yyyy/MM/dd")
+    };
+
+    // Least recently used grids by their key
+    private static final Map<String, TemporalGrid> GRIDS = new LinkedHashMap<String, TemporalGrid>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TemporalGrid> eldest) {
+            return size() > MAX_CACHED_GRIDS;
+        }
+    };
+
+    private final String frequency;
+    private final String businessDayConvention;
+    private final String dayCount;
+    private final String holidayCalendar;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+
+    private final int size;
+    private final long[] nominalStarts; // Unadjusted, contiguous; used to look periods up by date
+    private final long[] periodStarts;  // Adjusted, epoch days
+    private final long[] periodEnds;
+    private final int[] businessDays;
+    private final int[] calendarDays;
+    private final double[] yearFractions;
+
+    private TemporalGrid(String frequency, String businessDayConvention, String dayCount, String holidayCalendar,
+                         LocalDate startDate, LocalDate endDate) {
+        this.frequency = frequency;
+        this.businessDayConvention = businessDayConvention;
+        this.dayCount = dayCount;
+        this.holidayCalendar = holidayCalendar;
+        this.startDate = startDate;
+        this.endDate = endDate;
+
+        BusinessCalendar calendar = BusinessCalendar.of(holidayCalendar);
+        int convention = BusinessCalendar.conventionOf(businessDayConvention);
+        long[] nominal = new long[16];
+        long[] starts = new long[16];
+        long[] ends = new long[16];
+        int count = 0;
+
+        LocalDate current = startDate;
+        while (current.isBefore(endDate)) {
+            if (count == MAX_PERIODS) {
+                log.warn("Period generation exceeded {} periods, stopping", MAX_PERIODS);
+                break;
+            }
+            LocalDate periodEnd = periodEnd(current, frequency);
+            if (periodEnd.isAfter(endDate)) {
+                periodEnd = endDate;
+            }
+            if (count == starts.length) {
+                nominal = Arrays.copyOf(nominal, count * 2);
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            nominal[count] = current.toEpochDay();
+            starts[count] = calendar.adjust(current.toEpochDay(), convention);
+            ends[count] = calendar.adjust(periodEnd.toEpochDay(), convention);
+            count++;
+            current = periodEnd.plusDays(1);
+        }
+
+        this.size = count;
+        this.nominalStarts = Arrays.copyOf(nominal, count);
+        this.periodStarts = Arrays.copyOf(starts, count);
+        this.periodEnds = Arrays.copyOf(ends, count);
+        this.businessDays = new int[count];
+        this.calendarDays = new int[count];
+        this.yearFractions = new double[count];
+        for (int p = 0; p < count; p++) {
+            businessDays[p] = calendar.countBusinessDays(periodStarts[p], periodEnds[p]);
+            calendarDays[p] = (int) (periodEnds[p] - periodStarts[p]) + 1;
+            yearFractions[p] = yearFraction(LocalDate.ofEpochDay(periodStarts[p]), LocalDate.ofEpochDay(periodEnds[p]), dayCount);
+        }
+    }
+
+    /**
+     * Grid between two dates; conventions as in the deal calendar, null for the defaults.
+     * Identical grids are shared.
+     */
+    public static TemporalGrid of(LocalDate startDate, LocalDate endDate, String frequency,
+                                  String businessDayConvention, String dayCount, String holidayCalendar) {
+        String resolvedFrequency = frequency != null ? frequency : "monthly";
+        String resolvedConvention = businessDayConvention != null ? businessDayConvention : "following";
+        String resolvedDayCount = dayCount != null ? dayCount : "actual/365";
+        String resolvedCalendar = holidayCalendar != null ? holidayCalendar : "US";
+        String key = startDate + "|" + endDate + "|" + resolvedFrequency + "|" + resolvedConvention
+            + "|" + resolvedDayCount + "|" + resolvedCalendar;
+
+        TemporalGrid grid;
+        synchronized (GRIDS) {
+            grid = GRIDS.get(key);
+        }
+        if (grid == null) {
+            // Built outside the lock; a grid built twice by racing callers is equal either way
+            grid = new TemporalGrid(resolvedFrequency, resolvedConvention, resolvedDayCount, resolvedCalendar,
+                startDate, endDate);
+            synchronized (GRIDS) {
+                GRIDS.put(key, grid);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Grid of a deal from its calendar, analysisStart / entryDate and exitDate
+     */
+    public static TemporalGrid forDeal(IRNode deal) {
+        Object calendarValue = deal.getProperty("calendar");
+        Map<?, ?> calendar = calendarValue instanceof Map ? (Map<?, ?>) calendarValue : Collections.emptyMap();
+
+        Object start = deal.getProperty("analysisStart");
+        if (start == null) {
+            start = deal.getProperty("entryDate");
+        }
+        Object end = deal.getProperty("exitDate");
+
+        return of(
+            start != null ? parseDate(start.toString()) : DEFAULT_START,
+            end != null ? parseDate(end.toString()) : DEFAULT_END,
+            stringValue(calendar.get("frequency")),
+            stringValue(calendar.get("businessDayConvention")),
+            stringValue(calendar.get("dayCount")),
+            stringValue(calendar.get("holidayCalendar")));
+    }
+
+    // Getters
+    public int size() { return size; }
+    public String getFrequency() { return frequency; }
+    public String getBusinessDayConvention() { return businessDayConvention; }
+    public String getDayCount() { return dayCount; }
+    public String getHolidayCalendar() { return holidayCalendar; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getEndDate() { return endDate; }
+
+    public LocalDate getPeriodStart(int period) { return LocalDate.ofEpochDay(periodStarts[period]); }
+    public LocalDate getPeriodEnd(int period) { return LocalDate.ofEpochDay(periodEnds[period]); }
+    public int getBusinessDays(int period) { return businessDays[period]; }
+    public int getCalendarDays(int period) { return calendarDays[period]; }
+    public double getYearFraction(int period) { return yearFractions[period]; }
+
+    /**
+     * Index of the period a date falls in, by unadjusted period bounds; -1 outside the grid
+     */
+    public int periodOf(LocalDate date) {
+        long day = date.toEpochDay();
+        if (size == 0 || day < nominalStarts[0] || date.isAfter(endDate)) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(nominalStarts, day);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Periods per year of a frequency name: 365 daily, 52 weekly, 12 monthly, 4 quarterly, 1 annual
+     */
+    public static double periodsPerYear(String frequency) {
+        switch (frequency.toLowerCase()) {
+            case "daily":
+                return 365;
+            case "weekly":
+                return 52;
+            case "quarterly":
+                return 4;
+            case "annual":
+            case "yearly":
+                return 1;
+            default:
+                return 12;
+        }
+    }
+
+    /**
+     * Parse a date as yyyy-MM-dd, MM/dd/yyyy, dd/MM/yyyy or yyyy/MM/dd; a time part is ignored
+     */
+    public static LocalDate parseDate(String text) {
+        String date = text.length() > 10 && text.charAt(10) == 'T' ? text.substring(0, 10) : text.trim();
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(date, format);
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        throw new IllegalArgumentException("Unable to parse date string '" + text + "'");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TemporalGrid{%s, %s..%s, %d periods}", frequency, startDate, endDate, size);
+    }
+
+    // Helper methods
+
+    private static LocalDate periodEnd(LocalDate start, String frequency) {
+        switch (frequency.toLowerCase()) {
+            case "daily":
+                return start;
+            case "weekly":
+                return start.plusWeeks(1).minusDays(1);
+            case "monthly":
+                return start.plusMonths(1).minusDays(1);
+            case "quarterly":
+                return start.plusMonths(3).minusDays(1);
+            case "annual":
+            case "yearly":
+                return start.plusYears(1).minusDays(1);
+            default:
+                log.warn("Unknown frequency '{}', defaulting to monthly", frequency);
+                return start.plusMonths(1).minusDays(1);
+        }
+    }
+
+    static double yearFraction(LocalDate start, LocalDate end, String convention) {
+        long days = end.toEpochDay() - start.toEpochDay() + 1;
+        switch (convention.toLowerCase().replace('/', '_')) {
+            case "actual_365":
+            case "act_365":
+                return days / 365.0;
+            case "actual_360":
+            case "act_360":
+                return days / 360.0;
+            case "30_360":
+            case "30e_360":
+                return thirty360(start, end);
+            case "actual_actual":
+            case "act_act":
+                return actualActual(start, end);
+            default:
+                log.warn("Unknown day count convention '{}', using Actual/365", convention);
+                return days / 365.0;
+        }
+    }
+
+    private static double thirty360(LocalDate start, LocalDate end) {
+        int d1 = start.getDayOfMonth();
+        int d2 = end.getDayOfMonth();
+        if (d1 == 31) {
+            d1 = 30;
+        }
+        if (d2 == 31 && d1 >= 30) {
+            d2 = 30;
+        }
+        int days = 360 * (end.getYear() - start.getYear())
+            + 30 * (end.getMonthValue() - start.getMonthValue())
+            + (d2 - d1);
+        return days / 360.0;
+    }
+
+    private static double actualActual(LocalDate start, LocalDate end) {
+        double fraction = 0;
+        for (int year = start.getYear(); year <= end.getYear(); year++) {
+            LocalDate from = year == start.getYear() ? start : LocalDate.of(year, 1, 1);
+            LocalDate to = year == end.getYear() ? end : LocalDate.of(year, 12, 31);
+            if (!from.isAfter(to)) {
+                fraction += (double) (to.toEpochDay() - from.toEpochDay() + 1) / from.lengthOfYear();
+            }
+        }
+        return fraction;
+    }
+
+    private static String stringValue(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
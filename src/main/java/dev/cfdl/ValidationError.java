@@ -10,6 +10,7 @@ public class ValidationError {
     
     private final Severity severity;
     private final String message;
+    private final String entityId;
     private final String schemaPath;
     private final String instancePath;
     private final int lineNumber;
@@ -17,8 +18,17 @@ public class ValidationError {
     
     public ValidationError(Severity severity, String message, String schemaPath, 
                           String instancePath, int lineNumber, int columnNumber) {
+        this(severity, message, null, schemaPath, instancePath, lineNumber, columnNumber);
+    }
+    
+    /**
+     * An error located in an entity, e.g. by schema validation of that entity
+     */
+    public ValidationError(Severity severity, String message, String entityId, String schemaPath,
+                          String instancePath, int lineNumber, int columnNumber) {
         this.severity = severity;
         this.message = message;
+        this.entityId = entityId;
         this.schemaPath = schemaPath;
         this.instancePath = instancePath;
         this.lineNumber = lineNumber;
@@ -32,6 +42,7 @@ public class ValidationError {
     // Getters
     public Severity getSeverity() { return severity; }
     public String getMessage() { return message; }
+    public String getEntityId() { return entityId; }
     public String getSchemaPath() { return schemaPath; }
     public String getInstancePath() { return instancePath; }
     public int getLineNumber() { return lineNumber; }
@@ -39,8 +50,18 @@ public class ValidationError {
     
     @Override
     public String toString() {
+        return severity.name() + ": " + message + getLocation();
+    }
+    
+    /**
+     * Where the error was found, e.g. " [entity: Rent] [schema: ...]", empty if unknown
+     */
+    public String getLocation() {
         StringBuilder sb = new StringBuilder();
-        sb.append(severity.name()).append(": ").append(message);
+        
+        if (entityId != null) {
+            sb.append(" [entity: ").append(entityId).append("]");
+        }
         
         if (lineNumber > 0) {
             sb.append(" (line ").append(lineNumber);
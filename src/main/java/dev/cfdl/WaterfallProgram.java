@@ -0,0 +1,342 @@
+package dev.cfdl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A distribution waterfall compiled to a flat tier program
+ *
+ * Each tier of ontology/result/waterfall.schema.yaml becomes one of a few kinds with
+ * one parameter, and its distribute list becomes (recipient slot, share) pairs:
+ *
+ *   RESIDUAL   everything left                        remainingCapital > 0, true
+ *   CAP        up to X distributed in total           totalDistributed < X
+ *   HURDLE     until the tier's recipients reach      prefRate: r, IRR < r
+ *              an IRR of r (capital plus preferred return)
+ *   CATCH_UP   until the tier's recipients hold       catchUp < p
+ *              share p of all profit distributed
+ *
+ * Any other condition is reported as a warning and the tier never pays, as the Julia
+ * engine does with expressions it cannot evaluate. Unlike the engine, totals are
+ * cumulative over the deal's life rather than reset every period.
+ *
+ * Hurdles are evaluated incrementally. Every HURDLE tier keeps a hurdle account: it
+ * starts at the capital its recipients contributed, grows by (1 + r)^yearFraction each
+ * period and falls by whatever those recipients receive from any tier. The recipients'
+ * IRR has reached r exactly when the account is no longer positive, so no IRR is ever
+ * recomputed from period 0. Growth factors are computed once per grid at compile time.
+ *
+ * Only positive net deal cash is distributed. Run reads and writes caller-owned arrays
+ * and keeps its state in a scratch array, so it does not allocate.
+ */
+final class WaterfallProgram {
+
+    static final int RESIDUAL = 0;
+    static final int CAP = 1;
+    static final int HURDLE = 2;
+    static final int CATCH_UP = 3;
+    static final int SKIP = 4;
+
+    private static final Pattern COMPARISON = Pattern.compile("^\\s*([A-Za-z_]+)\\s*(<=|>=|<|>)\\s*(-?[0-9.]+(?:[eE][-+]?[0-9]+)?)\\s*$");
+
+    final String waterfallId;
+    final TemporalGrid grid;
+    final String[] tierIds;
+    final String[] recipientIds;
+    final int[] kinds;
+    final double[] limits;      // CAP amount, HURDLE rate, CATCH_UP share
+    final int[] splitStart;     // Splits of tier t are splitStart[t] until splitStart[t + 1]
+    final int[] splitRecipient;
+    final double[] splitShare;
+    final double[] tracked;     // tiers x recipients: 1 where a HURDLE or CATCH_UP tier follows the recipient
+    final double[] accrual;     // tiers x periods: HURDLE account growth per period
+    final double[] initialBalance; // HURDLE account at the start, CATCH_UP recipients' capital
+    final double contributedCapital;
+
+    private WaterfallProgram(String waterfallId, TemporalGrid grid, String[] tierIds, String[] recipientIds,
+                             int[] kinds, double[] limits, int[] splitStart, int[] splitRecipient, double[] splitShare,
+                             double[] tracked, double[] accrual, double[] initialBalance, double contributedCapital) {
+        this.waterfallId = waterfallId;
+        this.grid = grid;
+        this.tierIds = tierIds;
+        this.recipientIds = recipientIds;
+        this.kinds = kinds;
+        this.limits = limits;
+        this.splitStart = splitStart;
+        this.splitRecipient = splitRecipient;
+        this.splitShare = splitShare;
+        this.tracked = tracked;
+        this.accrual = accrual;
+        this.initialBalance = initialBalance;
+        this.contributedCapital = contributedCapital;
+    }
+
+    int tierCount() {
+        return tierIds.length;
+    }
+
+    int recipientCount() {
+        return recipientIds.length;
+    }
+
+    /**
+     * Size of the scratch array run needs: hurdle accounts, per-recipient totals and the running total
+     */
+    int scratchSize() {
+        return tierIds.length + recipientIds.length + 1;
+    }
+
+    /**
+     * Distribute every period's net deal cash into recipients x periods and tiers x periods
+     * rows; undistributed gets each period's net cash that no tier took
+     */
+    void run(double[] dealFlows, double[] recipientFlows, double[] tierFlows, double[] undistributed, double[] scratch) {
+        int periods = grid.size();
+        int tiers = tierIds.length;
+        int recipients = recipientIds.length;
+        int received = tiers;                 // scratch: per-recipient totals
+        int total = tiers + recipients;       // scratch: total distributed
+        Arrays.fill(recipientFlows, 0);
+        Arrays.fill(tierFlows, 0);
+        System.arraycopy(initialBalance, 0, scratch, 0, tiers);
+        Arrays.fill(scratch, received, total + 1, 0);
+
+        for (int p = 0; p < periods; p++) {
+            for (int t = 0; t < tiers; t++) {
+                if (kinds[t] == HURDLE) {
+                    scratch[t] *= accrual[t * periods + p];
+                }
+            }
+
+            double remaining = Math.max(0, dealFlows[p]);
+            for (int t = 0; t < tiers && remaining > 0; t++) {
+                double due;
+                switch (kinds[t]) {
+                    case RESIDUAL:
+                        due = remaining;
+                        break;
+                    case CAP:
+                        due = limits[t] - scratch[total];
+                        break;
+                    case HURDLE:
+                        due = scratch[t];
+                        break;
+                    case CATCH_UP:
+                        due = catchUpDue(t, scratch, received, total);
+                        break;
+                    default:
+                        due = 0;
+                        break;
+                }
+                double pay = Math.min(remaining, due);
+                if (pay <= 0) {
+                    continue;
+                }
+
+                for (int s = splitStart[t]; s < splitStart[t + 1]; s++) {
+                    int r = splitRecipient[s];
+                    double amount = pay * splitShare[s];
+                    recipientFlows[r * periods + p] += amount;
+                    scratch[received + r] += amount;
+                    for (int h = 0; h < tiers; h++) {
+                        if (kinds[h] == HURDLE) {
+                            scratch[h] -= tracked[h * recipients + r] * amount;
+                        }
+                    }
+                }
+                tierFlows[t * periods + p] += pay;
+                scratch[total] += pay;
+                remaining -= pay;
+            }
+            undistributed[p] = dealFlows[p] - (Math.max(0, dealFlows[p]) - remaining);
+        }
+    }
+
+    /**
+     * Compile a waterfall's tiers against the capital-stack participants ({partyId, amount} maps)
+     */
+    static WaterfallProgram compile(String waterfallId, List<?> tiers, List<?> participants,
+                                    TemporalGrid grid, List<String> warnings) {
+        int tierCount = tiers.size();
+        String[] tierIds = new String[tierCount];
+        int[] kinds = new int[tierCount];
+        double[] limits = new double[tierCount];
+        int[] splitStart = new int[tierCount + 1];
+        List<String> recipients = new ArrayList<>();
+        List<Integer> splitRecipients = new ArrayList<>();
+        List<Double> splitShares = new ArrayList<>();
+
+        // Capital of each participant by party id, in stack order
+        List<String> partyIds = new ArrayList<>();
+        List<Double> partyAmounts = new ArrayList<>();
+        double contributed = 0;
+        for (Object participant : participants) {
+            if (participant instanceof Map && ((Map<?, ?>) participant).get("partyId") != null) {
+                Map<?, ?> party = (Map<?, ?>) participant;
+                partyIds.add(party.get("partyId").toString());
+                partyAmounts.add(Distributions.number(party.get("amount"), 0));
+                contributed += partyAmounts.get(partyAmounts.size() - 1);
+            }
+        }
+
+        for (int t = 0; t < tierCount; t++) {
+            Map<?, ?> tier = tiers.get(t) instanceof Map ? (Map<?, ?>) tiers.get(t) : Collections.emptyMap();
+            tierIds[t] = tier.get("id") != null ? tier.get("id").toString() : "tier_" + (t + 1);
+            compileCondition(tier, t, kinds, limits, waterfallId, warnings);
+
+            // Splits, normalized to sum to 1 like the engine
+            splitStart[t] = splitShares.size();
+            Object distribute = tier.get("distribute");
+            for (Object instruction : distribute instanceof List ? (List<?>) distribute : Collections.emptyList()) {
+                if (!(instruction instanceof Map)) {
+                    continue;
+                }
+                Map<?, ?> split = (Map<?, ?>) instruction;
+                if (Boolean.TRUE.equals(split.get("fromCapitalStack"))) {
+                    for (int i = 0; i < partyIds.size() && contributed > 0; i++) {
+                        splitRecipients.add(slot(recipients, partyIds.get(i)));
+                        splitShares.add(partyAmounts.get(i) / contributed);
+                    }
+                } else if (split.get("recipient") != null) {
+                    Object recipient = split.get("recipient");
+                    if (recipient instanceof Integer && (Integer) recipient >= 0 && (Integer) recipient < partyIds.size()) {
+                        recipient = partyIds.get((Integer) recipient);
+                    }
+                    splitRecipients.add(slot(recipients, recipient.toString()));
+                    splitShares.add(Distributions.number(split.get("percentage"), 0));
+                }
+            }
+            double shares = 0;
+            for (int s = splitStart[t]; s < splitShares.size(); s++) {
+                shares += splitShares.get(s);
+            }
+            if (shares <= 0) {
+                warnings.add("Waterfall " + waterfallId + " tier " + tierIds[t] + " has no recipients, it pays nothing");
+                kinds[t] = SKIP;
+            } else if (Math.abs(shares - 1) > 1e-6) {
+                warnings.add("Waterfall " + waterfallId + " tier " + tierIds[t] + " splits sum to " + shares + ", normalizing");
+                for (int s = splitStart[t]; s < splitShares.size(); s++) {
+                    splitShares.set(s, splitShares.get(s) / shares);
+                }
+            }
+        }
+        splitStart[tierCount] = splitShares.size();
+
+        int recipientCount = recipients.size();
+        int periods = grid.size();
+        int[] splitRecipient = new int[splitRecipients.size()];
+        double[] splitShare = new double[splitShares.size()];
+        for (int s = 0; s < splitRecipient.length; s++) {
+            splitRecipient[s] = splitRecipients.get(s);
+            splitShare[s] = splitShares.get(s);
+        }
+
+        // Hurdle and catch-up tiers follow their own recipients
+        double[] tracked = new double[tierCount * recipientCount];
+        double[] accrual = new double[tierCount * periods];
+        double[] initialBalance = new double[tierCount];
+        for (int t = 0; t < tierCount; t++) {
+            if (kinds[t] != HURDLE && kinds[t] != CATCH_UP) {
+                continue;
+            }
+            double capital = 0;
+            for (int s = splitStart[t]; s < splitStart[t + 1]; s++) {
+                int r = splitRecipient[s];
+                if (tracked[t * recipientCount + r] == 0) {
+                    tracked[t * recipientCount + r] = 1;
+                    int party = partyIds.indexOf(recipients.get(r));
+                    capital += party >= 0 ? partyAmounts.get(party) : 0;
+                }
+            }
+            initialBalance[t] = capital;
+            if (kinds[t] == HURDLE) {
+                // Named groups outside the capital stack stand for all contributed capital
+                initialBalance[t] = capital > 0 ? capital : contributed;
+                for (int p = 0; p < periods; p++) {
+                    accrual[t * periods + p] = Math.pow(1 + limits[t], grid.getYearFraction(p));
+                }
+            }
+        }
+
+        return new WaterfallProgram(waterfallId, grid, tierIds, recipients.toArray(new String[0]), kinds, limits,
+            splitStart, splitRecipient, splitShare, tracked, accrual, initialBalance, contributed);
+    }
+
+    // Helper methods
+
+    /**
+     * Catch-up X such that the tracked recipients end up with share p of all profit:
+     * (S + X) = p (P + X), with P the profit distributed so far and S their part of it,
+     * what they received beyond their own capital
+     */
+    private double catchUpDue(int t, double[] scratch, int received, int total) {
+        double share = limits[t];
+        double profit = scratch[total] - contributedCapital;
+        double caughtUp = -initialBalance[t];
+        int recipients = recipientIds.length;
+        for (int r = 0; r < recipients; r++) {
+            caughtUp += tracked[t * recipients + r] * scratch[received + r];
+        }
+        return share < 1 ? (share * profit - caughtUp) / (1 - share) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Tier kind and parameter from prefRate, condition or until
+     */
+    private static void compileCondition(Map<?, ?> tier, int t, int[] kinds, double[] limits,
+                                         String waterfallId, List<String> warnings) {
+        if (tier.get("prefRate") instanceof Number) {
+            kinds[t] = HURDLE;
+            limits[t] = ((Number) tier.get("prefRate")).doubleValue();
+            return;
+        }
+        Object condition = tier.get("condition") != null ? tier.get("condition") : tier.get("until");
+        if (condition == null || "true".equals(condition.toString().trim())) {
+            kinds[t] = RESIDUAL;
+            return;
+        }
+
+        Matcher matcher = COMPARISON.matcher(condition.toString());
+        if (matcher.matches()) {
+            String variable = matcher.group(1);
+            boolean below = matcher.group(2).startsWith("<");
+            double value = Double.parseDouble(matcher.group(3));
+            if (below && "totalDistributed".equals(variable)) {
+                kinds[t] = CAP;
+                limits[t] = value;
+                return;
+            }
+            if (below && ("IRR".equalsIgnoreCase(variable) || "currentIRR".equals(variable) || "current_irr".equals(variable))) {
+                kinds[t] = HURDLE;
+                limits[t] = value;
+                return;
+            }
+            if (below && ("catchUp".equals(variable) || "catchUpShare".equals(variable)) && value > 0) {
+                kinds[t] = CATCH_UP;
+                limits[t] = Math.min(value, 1);
+                return;
+            }
+            if (!below && value == 0 && ("remainingCapital".equals(variable) || "availableCash".equals(variable))) {
+                kinds[t] = RESIDUAL;
+                return;
+            }
+        }
+        warnings.add("Waterfall " + waterfallId + " tier " + tier.get("id") + " has an unsupported condition ("
+            + condition + "), it pays nothing");
+        kinds[t] = SKIP;
+    }
+
+    private static int slot(List<String> recipients, String recipient) {
+        int slot = recipients.indexOf(recipient);
+        if (slot < 0) {
+            slot = recipients.size();
+            recipients.add(recipient);
+        }
+        return slot;
+    }
+}
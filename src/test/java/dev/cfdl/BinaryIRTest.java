@@ -0,0 +1,52 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryIRTest {
+
+    private static SchemaValidator validator;
+
+    @BeforeAll
+    static void loadSchemas() {
+        validator = new SchemaValidator();
+    }
+
+    static Stream<Path> examples() throws IOException {
+        return Files.list(Paths.get("examples")).filter(path -> path.toString().endsWith(".cfdl")).sorted();
+    }
+
+    @ParameterizedTest
+    @MethodSource("examples")
+    void jsonWrittenFromBinaryIrMatchesJsonWrittenDirectly(Path example, @TempDir Path dir) throws Exception {
+        CompileResult compiled = new Parser(validator).compile(example);
+        assertTrue(compiled.isSuccessful(), compiled::summary);
+
+        Path binary = dir.resolve("ir.cfdlir");
+        new BinaryIRWriter().write(compiled.getIrResult(), binary);
+        BinaryIRReader reader = BinaryIRReader.open(binary);
+
+        assertEquals(compiled.getIrResult().getIrNodes().size(), reader.getEntityCount());
+        assertEquals(json(compiled.getIrResult()), json(reader.toBuildResult()));
+    }
+
+    private static JsonNode json(IRBuildResult result) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new IRWriter().write(result, out);
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
+}
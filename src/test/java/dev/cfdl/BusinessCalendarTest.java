@@ -0,0 +1,104 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BusinessCalendarTest {
+
+    private static final int[] CONVENTIONS = {
+        BusinessCalendar.UNADJUSTED, BusinessCalendar.FOLLOWING, BusinessCalendar.PRECEDING,
+        BusinessCalendar.MODIFIED_FOLLOWING
+    };
+
+    // Days checked on either side of a table horizon, answered by the rules alone
+    private static final int MARGIN = 45;
+
+    @ParameterizedTest
+    @CsvSource({
+        // Horizons starting and ending on weekends, and on holidays next to weekends
+        "US,   2024-06-01, 2024-08-31",
+        "US,   2023-12-30, 2025-01-01",
+        "UK,   2024-06-01, 2024-08-31",
+        "UK,   2023-12-24, 2024-12-26",
+        "none, 2024-06-01, 2024-08-31",
+        "none, 2023-12-30, 2025-01-01"
+    })
+    void tableLookupsMatchTheRulesInsideAndOutsideTheHorizon(String name, LocalDate from, LocalDate to) {
+        BusinessCalendar table = BusinessCalendar.build(name, from, to);
+        // An empty horizon answers everything by scanning the rules day by day
+        BusinessCalendar rules = BusinessCalendar.build(name, LocalDate.of(2000, 1, 1), LocalDate.of(1999, 12, 31));
+
+        long first = from.toEpochDay() - MARGIN;
+        long last = to.toEpochDay() + MARGIN;
+        for (long day = first; day <= last; day++) {
+            String context = name + " " + LocalDate.ofEpochDay(day);
+            assertEquals(rules.isBusinessDay(day), table.isBusinessDay(day), context);
+            for (int convention : CONVENTIONS) {
+                assertEquals(rules.adjust(day, convention), table.adjust(day, convention), context + " convention " + convention);
+            }
+            for (long end = day - 1; end <= Math.min(last, day + 40); end += 3) {
+                assertEquals(rules.countBusinessDays(day, end), table.countBusinessDays(day, end),
+                    context + ".." + LocalDate.ofEpochDay(end));
+            }
+        }
+    }
+
+    @Test
+    void usHolidaysAndConventions() {
+        BusinessCalendar us = BusinessCalendar.of("US");
+
+        assertFalse(us.isBusinessDay(LocalDate.of(2024, 7, 4).toEpochDay()));
+        assertFalse(us.isBusinessDay(LocalDate.of(2024, 11, 28).toEpochDay()));  // Thanksgiving
+        assertTrue(us.isBusinessDay(LocalDate.of(2024, 11, 29).toEpochDay()));
+
+        // 2024-08-31 is a Saturday and 2024-09-02 Labor Day
+        long saturday = LocalDate.of(2024, 8, 31).toEpochDay();
+        assertEquals(LocalDate.of(2024, 9, 3), adjusted(us, saturday, BusinessCalendar.FOLLOWING));
+        assertEquals(LocalDate.of(2024, 8, 30), adjusted(us, saturday, BusinessCalendar.PRECEDING));
+        assertEquals(LocalDate.of(2024, 8, 30), adjusted(us, saturday, BusinessCalendar.MODIFIED_FOLLOWING));
+        assertEquals(LocalDate.of(2024, 8, 31), adjusted(us, saturday, BusinessCalendar.UNADJUSTED));
+
+        // July 2024: 23 weekdays less Independence Day
+        assertEquals(22, us.countBusinessDays(LocalDate.of(2024, 7, 1).toEpochDay(), LocalDate.of(2024, 7, 31).toEpochDay()));
+        assertEquals(0, us.countBusinessDays(LocalDate.of(2024, 7, 31).toEpochDay(), LocalDate.of(2024, 7, 1).toEpochDay()));
+    }
+
+    @Test
+    void calendarsAreSharedByRuleSet() {
+        assertSame(BusinessCalendar.of("US"), BusinessCalendar.of("united_states"));
+        assertSame(BusinessCalendar.of("none"), BusinessCalendar.of("target"));
+        assertEquals("UK", BusinessCalendar.of("United_Kingdom").getName());
+        assertEquals("weekends", BusinessCalendar.of("unknown").getName());
+        assertEquals(LocalDate.of(1990, 1, 1), BusinessCalendar.of("US").getFrom());
+        assertEquals(LocalDate.of(2100, 12, 31), BusinessCalendar.of("US").getTo());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "none,               0",
+        "unadjusted,         0",
+        "following,          1",
+        "preceding,          2",
+        "previous,           2",
+        "modified_following, 3",
+        "modifiedFollowing,  3",
+        "sideways,           1"
+    })
+    void conventionCodes(String name, int code) {
+        assertEquals(code, BusinessCalendar.conventionOf(name));
+    }
+
+    // Helper methods
+
+    private static LocalDate adjusted(BusinessCalendar calendar, long day, int convention) {
+        return LocalDate.ofEpochDay(calendar.adjust(day, convention));
+    }
+}
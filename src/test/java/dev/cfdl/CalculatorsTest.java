@@ -0,0 +1,85 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.DoubleBuffer;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CalculatorsTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "12000000, 0.065, 300",
+        "100000,   0.06,  360",
+        "50000,    0.12,  10",
+        "24000,    0,     24"
+    })
+    void loanPrincipalRowsRepayThePrincipal(double principal, double rate, int months) {
+        double[][] rows = fill(Calculators.LOAN_PAYMENT, principal, rate, months, months, 3);
+        double payment = Calculators.monthlyLoanPayment(principal, rate, months);
+        double monthlyRate = rate / 12;
+
+        double repaid = 0;
+        for (int m = 0; m < months; m++) {
+            assertEquals(payment, rows[0][m], 0.0);
+            assertEquals(payment, rows[1][m] + rows[2][m], 1e-9 * principal);
+            repaid += rows[2][m];
+        }
+        assertEquals(principal, repaid, 1e-9 * principal);
+        // The last month's interest is only on the last principal installment, payment / (1 + r)
+        assertEquals(payment * monthlyRate / (1 + monthlyRate), rows[1][months - 1], 1e-9 * principal);
+        assertEquals(payment * months - principal, sum(rows[1]), 1e-9 * principal);
+    }
+
+    @Test
+    void depreciationSchedulesEndAtTheirBookValue() {
+        // 1000 less 100 salvage over 4 periods: 225 a period
+        double[][] straight = fill(Calculators.STRAIGHT_LINE, 1000, 100, 4, 4, 2);
+        assertEquals(225, straight[0][3], 1e-12);
+        assertEquals(100, straight[1][3], 1e-12);
+
+        // 20% of the remaining book each period: 200, 160, 128
+        double[][] declining = fill(Calculators.DECLINING_BALANCE, 1000, 0.2, 0, 3, 2);
+        assertEquals(128, declining[0][2], 1e-12);
+        assertEquals(512, declining[1][2], 1e-12);
+
+        // 121 discounted two periods at 10%
+        assertEquals(100, fill(Calculators.PRESENT_VALUE, 121, 0.1, 2, 1, 1)[0][0], 1e-12);
+    }
+
+    @Test
+    void compileReadsFlatOrNestedParameters() {
+        double[] params = new double[3];
+        assertEquals(300, Calculators.compile(Calculators.LOAN_PAYMENT,
+            Map.of("principal", 1000, "rate", 0.05, "termMonths", 300), 60, params));
+        assertEquals(1000, params[0], 0.0);
+        assertEquals(12, Calculators.compile(Calculators.DECLINING_BALANCE,
+            Map.of("parameters", Map.of("cost", 1000, "rate", 0.2)), 12, params));
+        assertEquals(-1, Calculators.compile(Calculators.STRAIGHT_LINE, Map.of("cost", 1000), 12, params));
+    }
+
+    // Helper methods
+
+    private static double[][] fill(int kind, double p1, double p2, double p3, int length, int rowCount) {
+        DoubleBuffer schedule = DoubleBuffer.allocate(rowCount * length);
+        Calculators.fill(kind, p1, p2, p3, length, schedule, 0);
+        double[][] rows = new double[rowCount][length];
+        for (int row = 0; row < rowCount; row++) {
+            schedule.position(row * length);
+            schedule.get(rows[row]);
+        }
+        return rows;
+    }
+
+    private static double sum(double[] values) {
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,170 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CashFlowExecutorTest {
+
+    private static SchemaValidator validator;
+
+    @BeforeAll
+    static void loadSchemas() {
+        validator = new SchemaValidator();
+    }
+
+    static IRBuildResult compile(String example) {
+        CompileResult compiled = new Parser(validator).compile(Paths.get("examples", example));
+        assertTrue(compiled.isSuccessful(), compiled::summary);
+        return compiled.getIrResult();
+    }
+
+    @Test
+    void officeBuildingDealFlowsPerPeriod() {
+        CashFlowResult result = new CashFlowExecutor().execute(compile("office-building-deal.cfdl"));
+        CashFlowResult.DealFlows deal = result.getDeal("OfficeBuilding123");
+
+        assertTrue(result.getWarnings().isEmpty(), result.getWarnings()::toString);
+        // 2024-01-01 to 2029-01-15: 60 full months and a last period cut at the exit date
+        assertEquals(61, deal.getPeriodCount());
+        assertEquals(LocalDate.of(2029, 1, 2), deal.getGrid().getPeriodStart(60));
+
+        double[] rent = deal.getStreamFlows("RentalIncome");
+        double[] management = deal.getStreamFlows("PropertyMgmt");
+        double[] debt = deal.getStreamFlows("DebtService");
+        double[] exit = deal.getStreamFlows("ExitProceeds");
+        double[] asset = deal.getAssetFlows("OfficeBuilding");
+        double[] total = deal.getDealFlows();
+
+        // Level payment on 12,000,000 at 6.5% over 300 months
+        double payment = 81024.859361717;
+
+        // Period 1: 750,000 rent less 45,000 management, then debt service
+        assertEquals(750000, rent[0], 1e-6);
+        assertEquals(45000, management[0], 1e-6);
+        assertEquals(payment, debt[0], 1e-6);
+        assertEquals(705000, asset[0], 1e-6);
+        assertEquals(623975.140638283, total[0], 1e-6);
+
+        // Period 2: both grow once, by 2.5% and 3%
+        assertEquals(768750, rent[1], 1e-6);
+        assertEquals(46350, management[1], 1e-6);
+        assertEquals(722400, asset[1], 1e-6);
+        assertEquals(641375.140638283, total[1], 1e-6);
+
+        // Period 13: twelve growth steps
+        assertEquals(1008666.6181847228, rent[12], 1e-6);
+        assertEquals(64159.23990807807, management[12], 1e-6);
+        assertEquals(944507.3782766447, asset[12], 1e-6);
+        assertEquals(863482.5189149277, total[12], 1e-6);
+
+        // Period 61 holds the 22,000,000 exit on 2029-01-15
+        assertEquals(22000000, exit[60], 1e-6);
+        assertEquals(3034720.1719292095, asset[60], 1e-6);
+        assertEquals(24953695.31256749, total[60], 1e-6);
+
+        for (int p = 0; p < deal.getPeriodCount(); p++) {
+            assertEquals(750000 * Math.pow(1.025, p), rent[p], 1e-6, "rent " + p);
+            assertEquals(45000 * Math.pow(1.03, p), management[p], 1e-6, "management " + p);
+            assertEquals(payment, debt[p], 1e-6, "debt " + p);
+            assertEquals(p == 60 ? 22000000 : 0, exit[p], 0, "exit " + p);
+            assertEquals(rent[p] - management[p], asset[p], 1e-6, "asset " + p);
+            assertEquals(asset[p] - debt[p] + exit[p], total[p], 1e-6, "deal " + p);
+        }
+    }
+
+    @Test
+    void monthlyLoanOnAQuarterlyGridEndsWithAPartialQuarter(@TempDir Path dir) throws Exception {
+        // The office deal on a quarterly calendar, its loan cut to ten months
+        String source = new String(Files.readAllBytes(Paths.get("examples/office-building-deal.cfdl")), StandardCharsets.UTF_8)
+            .replaceFirst("frequency: monthly", "frequency: quarterly")
+            .replaceFirst("termMonths: 300", "termMonths: 10");
+        Path file = dir.resolve("quarterly.cfdl");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        CompileResult compiled = new Parser(validator).compile(file);
+        assertTrue(compiled.isSuccessful(), compiled::summary);
+
+        ScheduleCache cache = new ScheduleCache(1024);
+        CashFlowResult.DealFlows deal = new CashFlowExecutor(cache).execute(compiled.getIrResult()).getDeal("OfficeBuilding123");
+        double[] debt = deal.getStreamFlows("DebtService");
+
+        // Three monthly payments a quarter, then the tenth month alone
+        double payment = Calculators.monthlyLoanPayment(12000000, 0.065, 10);
+        assertEquals("quarterly", deal.getGrid().getFrequency());
+        assertEquals(3 * payment, debt[0], 1e-6);
+        assertEquals(3 * payment, debt[1], 1e-6);
+        assertEquals(3 * payment, debt[2], 1e-6);
+        assertEquals(payment, debt[3], 1e-6);
+        for (int p = 4; p < debt.length; p++) {
+            assertEquals(0, debt[p], 0.0, "debt " + p);
+        }
+        assertEquals(1, cache.getMisses());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "office-building-deal.cfdl",
+        "multi-asset-portfolio.cfdl",
+        "renewable-energy-project.cfdl",
+        "atomic-cash-flows-commercial-real-estate.cfdl"
+    })
+    void poolExecutionMatchesSequentialBitForBit(String example) {
+        IRBuildResult ir = compile(example);
+        CashFlowExecutor executor = new CashFlowExecutor();
+        CashFlowResult sequential = executor.execute(ir);
+
+        for (int parallelism : new int[] {1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                CashFlowResult parallel = executor.execute(ir, pool);
+                assertEquals(sequential.getWarnings(), parallel.getWarnings());
+                assertEquals(sequential.getDeals().size(), parallel.getDeals().size());
+                for (int d = 0; d < sequential.getDeals().size(); d++) {
+                    assertSameFlows(sequential.getDeals().get(d), parallel.getDeals().get(d), example + " x" + parallelism);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Helper methods
+
+    private static void assertSameFlows(CashFlowResult.DealFlows expected, CashFlowResult.DealFlows actual, String context) {
+        String deal = context + " " + expected.getDealId();
+        assertEquals(expected.getDealId(), actual.getDealId(), context);
+        assertEquals(expected.getStreamIds(), actual.getStreamIds(), deal);
+        assertEquals(expected.getAssetIds(), actual.getAssetIds(), deal);
+        assertEquals(expected.getRecipientIds(), actual.getRecipientIds(), deal);
+        assertEquals(expected.getTierIds(), actual.getTierIds(), deal);
+
+        // assertArrayEquals compares doubles by their bits
+        for (String stream : expected.getStreamIds()) {
+            assertArrayEquals(expected.getStreamFlows(stream), actual.getStreamFlows(stream), deal + " " + stream);
+        }
+        for (String asset : expected.getAssetIds()) {
+            assertArrayEquals(expected.getAssetFlows(asset), actual.getAssetFlows(asset), deal + " " + asset);
+        }
+        for (String recipient : expected.getRecipientIds()) {
+            assertArrayEquals(expected.getRecipientFlows(recipient), actual.getRecipientFlows(recipient), deal + " " + recipient);
+        }
+        for (String tier : expected.getTierIds()) {
+            assertArrayEquals(expected.getTierFlows(tier), actual.getTierFlows(tier), deal + " " + tier);
+        }
+        assertArrayEquals(expected.getDealFlows(), actual.getDealFlows(), deal);
+        assertArrayEquals(expected.getUndistributedFlows(), actual.getUndistributedFlows(), deal);
+    }
+}
@@ -0,0 +1,103 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CfdlGeneratorTest {
+
+    private static SchemaValidator validator;
+
+    @BeforeAll
+    static void loadSchemas() {
+        validator = new SchemaValidator();
+    }
+
+    @Test
+    void sameSeedGivesTheSameBytes() throws Exception {
+        CfdlGenerator.Options options = small().seed(7).deals(2);
+
+        assertArrayEquals(generate(options), generate(options));
+        assertFalse(Arrays.equals(generate(options), generate(small().seed(8).deals(2))));
+    }
+
+    @Test
+    void aDealDoesNotDependOnTheDealsAroundIt() throws Exception {
+        String alone = new String(generate(small().deals(1)), StandardCharsets.UTF_8);
+        String inPortfolio = new String(generate(small().deals(3)), StandardCharsets.UTF_8);
+
+        // Only a portfolio's deals carry the shared portfolioId
+        List<String> portfolioDeal = dealLines(inPortfolio, 0);
+        assertTrue(portfolioDeal.removeIf(line -> line.trim().equals("metadata:") || line.contains("portfolioId:")));
+        assertEquals(dealLines(alone, 0), portfolioDeal);
+        assertFalse(dealLines(inPortfolio, 1).isEmpty());
+    }
+
+    @Test
+    void generatedDocumentsCompileWithoutErrors(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("synthetic.cfdl");
+        CfdlGenerator.Options options = small().deals(2).logicBlocks(2).waterfalls(1);
+        long entities = new CfdlGenerator(options).generate(file);
+
+        CompileResult result = new Parser(validator).compile(file);
+
+        assertEquals(List.of(), result.getParseResult().getValidationErrors().stream()
+            .filter(error -> error.getSeverity() == ValidationError.Severity.ERROR)
+            .map(ValidationError::toString).collect(Collectors.toList()));
+        assertEquals(List.of(), result.getValidationReport().getMissingProperties());
+        assertEquals(entities, result.getParseResult().getAstNodes().size());
+        // Logic blocks and waterfalls pass the required-properties check and reach the IR
+        assertNotNull(result.getIrResult().getIrNodes());
+        assertEquals(List.of(), result.getIrResult().getErrors());
+        assertEquals(2, count(result, SchemaTypes.LOGIC_BLOCK));
+        assertEquals(1, count(result, SchemaTypes.WATERFALL));
+        assertEquals(options.totalStreams(), count(result, SchemaTypes.STREAM));
+    }
+
+    // Helper methods
+
+    private static CfdlGenerator.Options small() {
+        return new CfdlGenerator.Options().assetsPerDeal(2).componentsPerAsset(1).streamsPerEntity(2);
+    }
+
+    private static byte[] generate(CfdlGenerator.Options options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CfdlGenerator(options).generate(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Non-blank lines of one deal, from its list entry up to the next deal or top-level key
+     */
+    private static List<String> dealLines(String document, int deal) {
+        List<String> lines = new ArrayList<>();
+        boolean inDeal = false;
+        for (String line : document.split("\n")) {
+            if (line.startsWith("  - Deal_") || line.matches("\\S.*")) {
+                inDeal = line.equals("  - Deal_" + deal + ":");
+            }
+            if (inDeal && !line.trim().isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static long count(CompileResult result, String schemaType) {
+        return result.getIrResult().getIrNodes().stream().filter(node -> schemaType.equals(node.getSchemaType())).count();
+    }
+}
@@ -0,0 +1,115 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class CompileDaemonTest {
+
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    // Generous bound for the watcher to notice a change and compile it
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    void recompilesOncePerBurstAndServesClients(@TempDir Path dir) throws Exception {
+        Path root = Files.createDirectories(dir.resolve("deals"));
+        Path out = dir.resolve("ir");
+        Path file = root.resolve("office-building-deal.cfdl");
+        String source = new String(Files.readAllBytes(Paths.get("examples/office-building-deal.cfdl")), StandardCharsets.UTF_8);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+
+        CompileDaemon daemon = new CompileDaemon(root, out, 0);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread server = new Thread(() -> {
+            try {
+                daemon.run();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "cfdl-daemon-test");
+        server.start();
+
+        try {
+            // Port 0 binds an ephemeral port, known once the warm-up compile is done
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (daemon.getPort() == 0 && failure.get() == null) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("daemon did not start listening");
+                }
+                Thread.sleep(20);
+            }
+            assertNull(failure.get());
+            CompileClient client = new CompileClient(daemon.getPort());
+            Path ir = out.resolve("office-building-deal.ir.json");
+            assertTrue(Files.isRegularFile(ir), "warm-up wrote no IR");
+            assertEquals(1, status(client).get("compiles").asLong());
+
+            // Three saves well inside the debounce interval
+            for (int amount : new int[] {22100000, 22200000, 23000000}) {
+                String edited = source.replaceFirst("amount: 22000000", "amount: " + amount);
+                Files.write(file, edited.getBytes(StandardCharsets.UTF_8));
+                Thread.sleep(20);
+            }
+
+            deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (status(client).get("compiles").asLong() < 2) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("the burst was not recompiled");
+                }
+                Thread.sleep(20);
+            }
+            // Well past the debounce interval nothing else is compiled
+            Thread.sleep(1000);
+            assertEquals(2, status(client).get("compiles").asLong());
+            assertEquals(expectedIr(file), jsonMapper.readTree(ir.toFile()));
+
+            List<String> responses = client.compile(Collections.singletonList(file.toString()));
+            assertEquals(1, responses.size());
+            JsonNode compiled = jsonMapper.readTree(responses.get(0));
+            assertEquals(file.toAbsolutePath().normalize().toString(), compiled.get("file").asText());
+            assertTrue(compiled.get("successful").asBoolean(), compiled.toString());
+            assertEquals(0, compiled.get("errors").size());
+            assertTrue(compiled.get("irNodes").size() > 0);
+            assertEquals(3, status(client).get("compiles").asLong());
+
+            assertTrue(jsonMapper.readTree(client.send(Collections.singletonList("shutdown")).get(0)).get("shutdown").asBoolean());
+            server.join(TIMEOUT_MILLIS);
+            assertFalse(server.isAlive(), "daemon did not stop");
+            assertNull(failure.get());
+        } finally {
+            daemon.stop();
+        }
+    }
+
+    // Helper methods
+
+    private static JsonNode status(CompileClient client) throws Exception {
+        return jsonMapper.readTree(client.send(Collections.singletonList("status")).get(0));
+    }
+
+    /**
+     * IR of a full compile of the file as it is now, in the daemon's output format
+     */
+    private static JsonNode expectedIr(Path file) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new IRWriter(false, true).write(new Parser(new SchemaValidator()).compile(file).getIrResult(), bytes);
+        return jsonMapper.readTree(bytes.toByteArray());
+    }
+}
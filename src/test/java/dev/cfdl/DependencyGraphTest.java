@@ -0,0 +1,133 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DependencyGraphTest {
+
+    @Test
+    void levelsFollowStreamAssumptionLogicAndRuleInputs() {
+        List<IRNode> nodes = new ArrayList<>();
+        nodes.add(node("rent", SchemaTypes.STREAM));
+        nodes.add(node("growth", SchemaTypes.ASSUMPTION, "id", "https://x/growth"));
+        nodes.add(node("fee", SchemaTypes.STREAM, "amountReferences", Arrays.asList("rent", "feeRate")));
+        nodes.add(node("feeRate", SchemaTypes.ASSUMPTION, "valueReferences", Arrays.asList("growth")));
+        nodes.add(node("lb1", SchemaTypes.LOGIC_BLOCK, "inputs", Arrays.asList("https://x/growth"),
+            "outputs", Arrays.asList("derived"), "scope", "deal", "executionOrder", 2));
+        nodes.add(node("lb0", SchemaTypes.LOGIC_BLOCK, "scope", "deal", "executionOrder", 1));
+        nodes.add(node("derived", SchemaTypes.STREAM));
+        nodes.add(node("rule", SchemaTypes.RULE_BLOCK, "condition", "fee > 100 && rule",
+            "action", Arrays.asList("derived = derived * 2")));
+
+        DependencyGraph graph = DependencyGraph.of(nodes);
+
+        assertFalse(graph.hasCycles());
+        assertEquals(4, graph.getLevelCount());
+        assertEquals(Arrays.asList("rent", "growth", "lb0"), ids(graph, graph.getLevelNodes(0)));
+        // lb1 reads growth by its id property and follows lb0, the peer with the next lower executionOrder
+        assertEquals(Arrays.asList("feeRate", "lb1"), ids(graph, graph.getLevelNodes(1)));
+        assertEquals(Arrays.asList("fee", "derived"), ids(graph, graph.getLevelNodes(2)));
+        // The rule reads fee and derived but not itself
+        assertEquals(Arrays.asList("rule"), ids(graph, graph.getLevelNodes(3)));
+        assertEquals(Arrays.asList("rent", "growth", "lb0", "feeRate", "lb1", "fee", "derived", "rule"), graph.getOrder());
+        assertEquals(graph.indexOf("growth"), graph.indexOf("https://x/growth"));
+    }
+
+    @Test
+    void peersOfAScopeRunInExecutionOrderGroups() {
+        List<IRNode> nodes = new ArrayList<>();
+        nodes.add(node("late", SchemaTypes.LOGIC_BLOCK, "scope", "deal", "executionOrder", 3));
+        nodes.add(node("middleA", SchemaTypes.LOGIC_BLOCK, "scope", "deal", "executionOrder", 2));
+        nodes.add(node("middleB", SchemaTypes.LOGIC_BLOCK, "scope", "deal", "executionOrder", 2));
+        nodes.add(node("first", SchemaTypes.LOGIC_BLOCK, "scope", "deal", "executionOrder", 1));
+        nodes.add(node("otherScope", SchemaTypes.LOGIC_BLOCK, "scope", "asset", "executionOrder", 5));
+        nodes.add(node("unordered", SchemaTypes.LOGIC_BLOCK, "scope", "deal"));
+
+        DependencyGraph graph = DependencyGraph.of(nodes);
+
+        // Edges only between consecutive groups: first -> both middles -> late
+        assertEquals(4, graph.getEdgeCount());
+        assertEquals(Arrays.asList("middleA", "middleB"), ids(graph, graph.getDependents(graph.indexOf("first"))));
+        assertEquals(Arrays.asList("late"), ids(graph, graph.getDependents(graph.indexOf("middleA"))));
+        assertEquals(Arrays.asList("late"), ids(graph, graph.getDependents(graph.indexOf("middleB"))));
+        assertEquals(Arrays.asList("first", "otherScope", "unordered"), ids(graph, graph.getLevelNodes(0)));
+        assertEquals(1, graph.getLevel(graph.indexOf("middleB")));
+        assertEquals(2, graph.getLevel(graph.indexOf("late")));
+    }
+
+    @Test
+    void cyclesAreReportedOnceInDependencyOrder() {
+        List<IRNode> nodes = new ArrayList<>();
+        nodes.add(node("rent", SchemaTypes.STREAM));
+        nodes.add(node("c1", SchemaTypes.STREAM, "amountReferences", Arrays.asList("c2")));
+        nodes.add(node("c2", SchemaTypes.STREAM, "amountReferences", Arrays.asList("c3", "rent")));
+        nodes.add(node("c3", SchemaTypes.STREAM, "growthReferences", Arrays.asList("c1")));
+        nodes.add(node("behind", SchemaTypes.STREAM, "amountReferences", Arrays.asList("c3")));
+        nodes.add(node("self", SchemaTypes.STREAM, "amountReferences", Arrays.asList("self")));
+
+        DependencyGraph graph = DependencyGraph.of(nodes);
+
+        assertEquals(Arrays.asList(Arrays.asList("c3", "c2", "c1", "c3"), Arrays.asList("self", "self")),
+            graph.getCycles());
+        assertEquals(-1, graph.getLevel(graph.indexOf("behind")));
+        assertEquals(-1, graph.getPosition(graph.indexOf("c1")));
+        assertEquals(Arrays.asList("rent"), graph.getOrder());
+    }
+
+    @Test
+    void longChainsBehindACycleAreWalkedOnce() {
+        // 20000 streams each reading the next, the last two reading each other
+        int size = 20_000;
+        List<IRNode> nodes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String input = i < size - 1 ? "s" + (i + 1) : "s" + (size - 2);
+            nodes.add(node("s" + i, SchemaTypes.STREAM, "amountReferences", Collections.singletonList(input)));
+        }
+
+        DependencyGraph graph = DependencyGraph.of(nodes);
+
+        assertEquals(Collections.singletonList(Arrays.asList("s19999", "s19998", "s19999")), graph.getCycles());
+        assertTrue(graph.getOrder().isEmpty());
+    }
+
+    @Test
+    void builderReportsEachCycleAsAnError() {
+        List<IRNode> nodes = new ArrayList<>();
+        nodes.add(node("B", SchemaTypes.STREAM, "amountReferences", Arrays.asList("A")));
+        nodes.add(node("A", SchemaTypes.STREAM, "amountReferences", Arrays.asList("B")));
+        nodes.add(node("C", SchemaTypes.STREAM));
+        List<String> errors = new ArrayList<>();
+
+        new IRBuilder().orderDependencies(nodes, errors);
+
+        assertEquals(Collections.singletonList("Dependency cycle: A -> B -> A"), errors);
+        assertEquals(-1, nodes.get(0).getProperty("executionOrder"));
+        assertEquals(0, nodes.get(2).getProperty("executionOrder"));
+    }
+
+    // Helper methods
+
+    private static IRNode node(String id, String schemaType, Object... properties) {
+        IRNode node = new IRNode(id, id, schemaType);
+        for (int i = 0; i < properties.length; i += 2) {
+            node.setProperty((String) properties[i], properties[i + 1]);
+        }
+        return node;
+    }
+
+    private static List<String> ids(DependencyGraph graph, int[] nodes) {
+        List<String> ids = new ArrayList<>();
+        for (int node : nodes) {
+            ids.add(graph.getId(node));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,119 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FormulaTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        // Precedence: unary minus binds looser than ^, so -2^2 is -(2^2)
+        "-2^2            | -4",
+        "(-2)^2          | 4",
+        "2^-1            | 0.5",
+        "-2*3            | -6",
+        "1 + 2 * 3       | 7",
+        "(1 + 2) * 3     | 9",
+        "10 - 4 - 3      | 3",
+        "12 / 3 / 2      | 2",
+        "7 % 4 * 2       | 6",
+        "1 + 2 < 4       | 1",
+        "2 * 3 >= 7      | 0",
+        "1 == 1 + 0      | 1",
+        "1 != 2          | 1",
+        // Power is right-associative: 2^(3^2), not (2^3)^2
+        "2^3^2           | 512",
+        "(2^3)^2         | 64",
+        "-2^-2           | -0.25",
+        // Functions
+        "min(3, 1, 2)    | 1",
+        "max(3, 1, 2)    | 3",
+        "pow(2, 10)      | 1024",
+        "if(0, 1, 2)     | 2",
+        "if(2 > 1, 1, 2) | 1",
+        "round(2.5)      | 2",
+        "abs(-1.5e2)     | 150",
+        "sqrt(.25)       | 0.5"
+    })
+    void evaluatesConstantFormulas(String text, double expected) {
+        Formula formula = Formula.parse(text);
+        assertTrue(formula.isConstant(), text);
+        assertEquals(expected, evaluate(formula), 0.0, text);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        // Every subtree without names folds; one name keeps the whole tree unfolded
+        "2 * (3 + 4)           | true",
+        "max(1, 2) ^ 2         | true",
+        "-(1 + 1)              | true",
+        "rate * (1 + 2)        | false",
+        "if(1, 2, base)        | false",
+        "-rate                 | false"
+    })
+    void foldsSubtreesWithoutNames(String text, boolean constant) {
+        assertEquals(constant, Formula.parse(text).isConstant(), text);
+    }
+
+    @Test
+    void bindsNamesToSlotsAndRows() {
+        Formula formula = Formula.parse("base * (1 + growth) ^ 2 - Rent.Stream + base");
+        assertEquals(List.of("base", "growth", "Rent.Stream"), formula.getReferences());
+
+        Formula.Node node = formula.bind(Map.of("base", 0, "growth", 1), Map.of("Rent.Stream", 1), 2);
+        double[] slots = {100, 0.1};
+        double[] rows = {0, 0, 5, 7}; // Rent.Stream is row 1 of 2 x 2
+        assertEquals(100 * 1.21 - 5 + 100, node.evaluate(slots, rows, 0), 1e-12);
+        assertEquals(100 * 1.21 - 7 + 100, node.evaluate(slots, rows, 1), 1e-12);
+    }
+
+    @Test
+    void unknownNamesFailWhenBound() {
+        Formula formula = Formula.parse("missing + 1");
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> formula.bind(Collections.emptyMap(), Collections.emptyMap(), 1));
+        assertEquals("Unknown name 'missing' in formula: missing + 1", error.getMessage());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        "1 +         | Unexpected end of formula at 3 in formula: 1 +",
+        "(1 + 2      | Expected ')' but found end of formula at 6 in formula: (1 + 2",
+        "1 $ 2       | Unexpected character '$' at 2 in formula: 1 $ 2",
+        "2 ** 3      | Unexpected '*' at 3 in formula: 2 ** 3",
+        "1 2         | Unexpected '2' at 2 in formula: 1 2",
+        "a + )       | Unexpected ')' at 4 in formula: a + )",
+        "1 + foo(2)  | Unknown function 'foo' at 4 in formula: 1 + foo(2)",
+        "pow(2)      | Function 'pow' takes 2 arguments, got 1 in formula: pow(2)",
+        "min()       | Function 'min' takes at least 1 arguments, got 0 in formula: min()",
+        "1.2.3       | Malformed number '1.2.3' at 0 in formula: 1.2.3"
+    })
+    void reportsSyntaxErrorsWithTheirPosition(String text, String message) {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> Formula.parse(text));
+        assertEquals(message, error.getMessage());
+    }
+
+    @Test
+    void referencesAreDistinctInOrderOfFirstUse() {
+        Formula formula = Formula.parse("b + a * b - max(a, c)");
+        assertEquals(Arrays.asList("b", "a", "c"), formula.getReferences());
+        assertFalse(formula.isConstant());
+    }
+
+    // Helper methods
+
+    private static double evaluate(Formula formula) {
+        return formula.bind(Collections.emptyMap(), Collections.emptyMap(), 0).evaluate(null, null, 0);
+    }
+}
@@ -0,0 +1,172 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IRTableTest {
+
+    private static SchemaValidator validator;
+
+    @BeforeAll
+    static void loadSchemas() {
+        validator = new SchemaValidator();
+    }
+
+    @Test
+    void primitiveValuesLiveInTypedColumns() {
+        IRTable table = new IRTable(SchemaTypes.STREAM);
+        table.addRow("a", "A").setProperty("amount", 1.5);
+        table.addRow("b", "B").setProperty("amount", -2.0);
+        table.set(0, "order", 3);
+        table.set(1, "order", 7);
+        table.set(0, "active", true);
+        table.set(1, "active", false);
+
+        IRTable.DoubleColumn amount = assertInstanceOf(IRTable.DoubleColumn.class, table.getColumn("amount"));
+        assertArrayEquals(new double[] {1.5, -2.0}, Arrays.copyOf(amount.values(), table.size()));
+        IRTable.IntColumn order = assertInstanceOf(IRTable.IntColumn.class, table.getColumn("order"));
+        assertArrayEquals(new int[] {3, 7}, Arrays.copyOf(order.values(), table.size()));
+        IRTable.BooleanColumn active = assertInstanceOf(IRTable.BooleanColumn.class, table.getColumn("active"));
+        assertTrue(active.getBoolean(0));
+        assertFalse(active.getBoolean(1));
+
+        // Boxed reads give back the original types
+        assertEquals(-2.0, table.row(1).getProperty("amount"));
+        assertEquals(7, table.row(1).getProperty("order"));
+        assertEquals(Boolean.FALSE, table.row(1).getProperty("active"));
+        assertEquals(Arrays.asList("amount", "order", "active"), List.copyOf(table.getColumnNames()));
+    }
+
+    @Test
+    void stringsAreDictionaryEncoded() {
+        IRTable table = new IRTable(SchemaTypes.STREAM);
+        for (String scope : new String[] {"deal", "asset", "deal", "deal", "asset"}) {
+            table.addRow(scope, scope).setProperty("scope", scope);
+        }
+
+        IRTable.DictionaryColumn scope = assertInstanceOf(IRTable.DictionaryColumn.class, table.getColumn("scope"));
+        assertEquals(Arrays.asList("deal", "asset"), scope.getDictionary());
+        int[] codes = new int[table.size()];
+        for (int row = 0; row < codes.length; row++) {
+            codes[row] = scope.getCode(row);
+        }
+        assertArrayEquals(new int[] {0, 1, 0, 0, 1}, codes);
+        assertEquals("asset", scope.decode(scope.getCode(4)));
+        assertEquals("asset", table.get(4, "scope"));
+    }
+
+    @Test
+    void aLaterValueOfAnotherTypePromotesTheColumn() {
+        IRTable table = new IRTable(SchemaTypes.STREAM);
+        table.addRow("a", "A").setProperty("rate", 0.05);
+        table.addRow("b", "B");
+        table.addRow("c", "C").setProperty("rate", null);
+        table.addRow("d", "D").setProperty("rate", "5%");
+
+        assertInstanceOf(IRTable.ObjectColumn.class, table.getColumn("rate"));
+        assertEquals(0.05, table.get(0, "rate"));
+        assertEquals("5%", table.get(3, "rate"));
+        // Presence and nulls survive the copy
+        assertFalse(table.getColumn("rate").isPresent(1));
+        assertTrue(table.getColumn("rate").isPresent(2));
+        assertTrue(table.getColumn("rate").isNull(2));
+
+        // Integers stay in an int column until something else arrives
+        table.set(0, "order", 1);
+        table.set(1, "order", 2.5);
+        assertInstanceOf(IRTable.ObjectColumn.class, table.getColumn("order"));
+        assertEquals(1, table.get(0, "order"));
+        assertEquals(2.5, table.get(1, "order"));
+    }
+
+    @Test
+    void missingAndNullCellsAreDistinct() {
+        IRTable table = new IRTable(SchemaTypes.STREAM);
+        IRNode withNull = table.addRow("a", "A");
+        IRNode without = table.addRow("b", "B");
+        withNull.setProperty("amount", null);
+        without.setProperty("name", "B");
+
+        assertTrue(withNull.getProperties().containsKey("amount"));
+        assertNull(withNull.getProperty("amount"));
+        assertFalse(without.getProperties().containsKey("amount"));
+        assertNull(without.getProperty("amount"));
+        assertEquals(1, withNull.getProperties().size());
+        assertEquals(1, without.getProperties().size());
+
+        // Removing a key makes the cell missing again
+        assertNull(withNull.getProperties().remove("amount"));
+        assertFalse(withNull.getProperties().containsKey("amount"));
+        assertTrue(withNull.getProperties().isEmpty());
+    }
+
+    @Test
+    void rowViewBehavesLikeAHashMapBackedNode() {
+        IRNode plain = new IRNode("s", "S", SchemaTypes.STREAM);
+        IRNode row = new IRTable(SchemaTypes.STREAM).addRow("s", "S");
+        Map<String, Object> expected = plain.getProperties();
+        Map<String, Object> actual = row.getProperties();
+
+        Object[][] puts = {
+            {"amount", 100.0}, {"scope", "deal"}, {"order", 2}, {"active", true},
+            {"tags", Arrays.asList("GAAP")}, {"note", null}, {"amount", 120.0}, {"order", "late"}
+        };
+        for (Object[] put : puts) {
+            assertEquals(expected.put((String) put[0], put[1]), actual.put((String) put[0], put[1]), put[0].toString());
+            assertEquals(expected, actual);
+        }
+        for (String key : new String[] {"amount", "scope", "order", "active", "tags", "note", "missing"}) {
+            assertEquals(expected.get(key), actual.get(key), key);
+            assertEquals(expected.containsKey(key), actual.containsKey(key), key);
+        }
+        assertEquals(expected.entrySet(), actual.entrySet());
+        assertEquals(expected.hashCode(), actual.hashCode());
+
+        assertEquals(expected.remove("scope"), actual.remove("scope"));
+        assertEquals(expected.remove("missing"), actual.remove("missing"));
+        for (Iterator<Map.Entry<String, Object>> it = actual.entrySet().iterator(); it.hasNext();) {
+            if (it.next().getKey().equals("tags")) {
+                it.remove();
+            }
+        }
+        expected.remove("tags");
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), actual.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "atomic-cash-flows-commercial-real-estate.cfdl",
+        "multi-asset-portfolio.cfdl",
+        "office-building-deal.cfdl",
+        "renewable-energy-project.cfdl"
+    })
+    void tablesHoldTheExampleIR(String example) {
+        List<IRNode> nodes = new Parser(validator).compile(Paths.get("examples", example)).getIrResult().getIrNodes();
+        assertFalse(nodes.isEmpty());
+        Map<String, IRTable> tables = IRTable.of(nodes);
+
+        assertEquals(nodes.size(), tables.values().stream().mapToInt(IRTable::size).sum());
+        for (IRNode node : nodes) {
+            IRTable table = tables.get(node.getSchemaType());
+            IRNode row = table.row(table.indexOf(node.getId()));
+            assertEquals(node.getName(), row.getName());
+            assertEquals(node.getProperties(), row.getProperties(), node.getId());
+        }
+    }
+}
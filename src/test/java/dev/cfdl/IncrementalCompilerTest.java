@@ -0,0 +1,102 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalCompilerTest {
+
+    private static SchemaValidator validator;
+
+    @BeforeAll
+    static void loadSchemas() {
+        validator = new SchemaValidator();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "'amount: 45000  # Monthly operating expenses', 'amount: 47500  # Monthly operating expenses'",
+        "'category: real_estate', 'category: 42'",
+        "'frequency: monthly', 'frequency: quarterly'"
+    })
+    void recompileAfterOneLineEditMatchesFullCompile(String line, String edited, @TempDir Path dir) throws Exception {
+        Path file = dir.resolve("office-building-deal.cfdl");
+        String source = new String(Files.readAllBytes(Paths.get("examples/office-building-deal.cfdl")), StandardCharsets.UTF_8);
+        assertTrue(source.contains(line), line);
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+
+        IncrementalCompiler incremental = new IncrementalCompiler(validator);
+        incremental.compile(file);
+        Files.write(file, source.replaceFirst(line, edited).getBytes(StandardCharsets.UTF_8));
+
+        CompileResult recompiled = incremental.compile(file);
+        CompileResult full = new Parser(validator).compile(file);
+
+        assertTrue(incremental.getLastReused() > 0, "nothing was reused");
+        assertEquals(errors(full), errors(recompiled));
+        assertEquals(full.getValidationReport().getMissingProperties(), recompiled.getValidationReport().getMissingProperties());
+        assertEquals(full.getIrResult().getErrors(), recompiled.getIrResult().getErrors());
+        assertEquals(json(full), json(recompiled));
+    }
+
+    @Test
+    void recompileLeavesEarlierResultsUntouched(@TempDir Path dir) throws Exception {
+        // ExitProceeds reads PropertyMgmt, which the edit makes read DebtService in turn
+        Path file = dir.resolve("office-building-deal.cfdl");
+        String source = new String(Files.readAllBytes(Paths.get("examples/office-building-deal.cfdl")), StandardCharsets.UTF_8)
+            .replaceFirst("amount: 22000000", "amount: \"PropertyMgmt * 0 + 22000000\"");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+
+        IncrementalCompiler incremental = new IncrementalCompiler(validator);
+        CompileResult first = incremental.compile(file);
+        JsonNode before = json(first);
+        assertEquals(1, executionOrder(first, "ExitProceeds"));
+
+        Files.write(file, source.replaceFirst("amount: 45000", "amount: \"DebtService * 0 + 45000\"")
+            .getBytes(StandardCharsets.UTF_8));
+        CompileResult second = incremental.compile(file);
+
+        // ExitProceeds itself is unchanged and reused, but now sits one level deeper
+        assertTrue(incremental.getLastReused() > 0, "nothing was reused");
+        assertEquals(2, executionOrder(second, "ExitProceeds"));
+        assertEquals(1, executionOrder(first, "ExitProceeds"));
+        assertEquals(before, json(first));
+    }
+
+    // Helper methods
+
+    private static Object executionOrder(CompileResult result, String id) {
+        return result.getIrResult().getIrNodes().stream()
+            .filter(node -> id.equals(node.getId())).findFirst().orElseThrow().getProperty("executionOrder");
+    }
+
+    private static List<String> errors(CompileResult result) {
+        return result.getParseResult().getValidationErrors().stream()
+            .map(ValidationError::toString).sorted().collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Written IR as a tree, so that field order does not matter
+     */
+    private static JsonNode json(CompileResult result) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new IRWriter().write(result.getIrResult(), out);
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
+}
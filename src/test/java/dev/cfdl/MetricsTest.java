@@ -0,0 +1,173 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cases of engine/test/test_metrics.jl, plus the batched kernels and the bisection fallback
+ */
+class MetricsTest {
+
+    private static final double EPS = 1e-10;
+
+    @Test
+    void npvDiscountsEachFlowFromThePeriodAfterTheInvestment() {
+        double[] flows = {100.0, 100.0, 100.0};
+        assertEquals(100 / 1.1 + 100 / (1.1 * 1.1) + 100 / (1.1 * 1.1 * 1.1) - 200,
+            Metrics.npv(flows, 0.10, 200.0), EPS);
+        assertEquals(100.0, Metrics.npv(flows, 0.0, 200.0), 0.0);
+        assertEquals(-100.0, Metrics.npv(new double[0], 0.10, 100.0), 0.0);
+
+        double[] negative = {-50.0, 200.0, 150.0};
+        assertEquals(-50 / 1.1 + 200 / (1.1 * 1.1) + 150 / (1.1 * 1.1 * 1.1) - 100,
+            Metrics.npv(negative, 0.10, 100.0), EPS);
+    }
+
+    @Test
+    void npvSkipsNonFiniteFlowsAndMovesLaterFlowsUp() {
+        double[] problematic = {100.0, Double.POSITIVE_INFINITY, Double.NaN, 100.0};
+        double[] clean = {100.0, 100.0};
+        assertEquals(Metrics.npv(clean, 0.10, 200.0), Metrics.npv(problematic, 0.10, 200.0), EPS);
+        assertTrue(Double.isFinite(Metrics.npv(new double[] {1e10, 1e10, 1e10}, 0.10, 1e9)));
+        assertTrue(Double.isFinite(Metrics.npv(new double[] {1e-10, 1e-10, 1e-10}, 0.10, 1e-9)));
+    }
+
+    @Test
+    void irrIsTheRateWhereNpvIsZero() {
+        assertEquals(0.10, Metrics.irr(new double[] {110.0}, 100.0), 1e-6);
+
+        double[] flows = {50.0, 60.0, 70.0};
+        double irr = Metrics.irr(flows, 150.0);
+        assertTrue(irr > 0);
+        assertEquals(0.0, Metrics.npv(flows, irr, 150.0), 1e-6);
+
+        double normal = Metrics.irr(new double[] {100.0, 110.0, 121.0}, 300.0);
+        assertTrue(normal > Metrics.MIN_RATE && normal < Metrics.MAX_RATE);
+    }
+
+    @Test
+    void irrIsNaNWhenTheFlowsNeverRepayTheInvestment() {
+        assertTrue(Double.isNaN(Metrics.irr(new double[] {10.0, 20.0, 30.0}, 100.0)));
+        assertTrue(Double.isNaN(Metrics.irr(new double[0], 100.0)));
+        assertTrue(Double.isNaN(Metrics.irr(new double[] {Double.NaN, Double.NaN}, 100.0)));
+    }
+
+    @Test
+    void irrReachesRatesNearTheUpperBound() {
+        // 900% in one period, the "extreme" case of the Julia tests
+        assertEquals(9.0, Metrics.irr(new double[] {1000.0}, 100.0), 1e-6);
+    }
+
+    @Test
+    void irrFallsBackToBisectionWhereJuliaReturnsNaN() {
+        // 100 returned 50-fold after 120 periods: the payback guess (50 - 1) / 120 discounts the
+        // exit flow by 1.41^120, so the derivative vanishes and calculate_irr_custom gives up with NaN.
+        // Bisection still finds the root 50^(1/120) - 1.
+        double[] flows = new double[120];
+        flows[119] = 5000.0;
+        assertEquals(Math.pow(50, 1.0 / 120) - 1, Metrics.irr(flows, 100.0), 1e-6);
+    }
+
+    @Test
+    void batchedIrrWarmStartsFromThePreviousTrialAndCountsFailures() {
+        double[] flows = {
+            110.0, 0.0,
+            50.0, 70.0,
+            10.0, 20.0
+        };
+        double[] out = new double[3];
+        assertEquals(1, Metrics.irr(flows, 3, 2, 100.0, out));
+        assertEquals(Metrics.irr(new double[] {110.0, 0.0}, 100.0), out[0], 1e-6);
+        assertEquals(Metrics.irr(new double[] {50.0, 70.0}, 100.0), out[1], 1e-6);
+        assertTrue(Double.isNaN(out[2]));
+
+        // eirr averages the two finite roots
+        assertEquals((out[0] + out[1]) / 2, Metrics.eirr(flows, 3, 2, 100.0), 1e-12);
+    }
+
+    @Test
+    void dscrDividesOperatingFlowsByDebtServicePerPeriod() {
+        double[] operating = {120.0, 130.0, 140.0};
+        double[] debt = {100.0, 100.0, 100.0};
+        double[] out = new double[3];
+
+        Metrics.dscr(operating, debt, out);
+        assertEquals(1.2, out[0], 0.0);
+        assertEquals(1.3, out[1], 0.0);
+        assertEquals(1.4, out[2], 0.0);
+
+        Metrics.dscr(operating, new double[3], out);
+        for (double value : out) {
+            assertEquals(Double.POSITIVE_INFINITY, value, 0.0);
+        }
+
+        Metrics.dscr(new double[] {-50.0, 100.0, 150.0}, debt, out);
+        assertEquals(-0.5, out[0], 0.0);
+        assertEquals(1.0, out[1], 0.0);
+        assertEquals(1.5, out[2], 0.0);
+
+        // Periods without debt service are left out of the average
+        assertEquals((1.2 + 1.4) / 2, Metrics.averageDscr(operating, new double[] {100.0, 0.0, 100.0}), EPS);
+    }
+
+    @Test
+    void dscrRejectsMismatchedLengthsAndShortOutput() {
+        IllegalArgumentException mismatched = assertThrows(IllegalArgumentException.class,
+            () -> Metrics.dscr(new double[] {100.0}, new double[] {100.0, 200.0}, new double[2]));
+        assertEquals("Operating cash flows and debt service must have the same length", mismatched.getMessage());
+
+        IllegalArgumentException shortOut = assertThrows(IllegalArgumentException.class,
+            () -> Metrics.dscr(new double[] {100.0, 100.0}, new double[] {100.0, 100.0}, new double[1]));
+        assertEquals("Output holds fewer than 2 periods", shortOut.getMessage());
+    }
+
+    @Test
+    void moicIsDistributionsOverInvestment() {
+        assertEquals(2.5, Metrics.moic(250.0, 100.0), 0.0);
+        assertTrue(Double.isNaN(Metrics.moic(100.0, 0.0)));
+        assertEquals(0.5, Metrics.moic(50.0, 100.0), 0.0);
+        assertEquals(1.0, Metrics.moic(100.0, 100.0), 0.0);
+    }
+
+    @Test
+    void moicOfASeriesSkipsNonFiniteFlows() {
+        double[] flows = {100.0, Double.NaN, 150.0, Double.POSITIVE_INFINITY};
+        assertEquals(2.5, Metrics.moic(flows, 0, flows.length, 100.0), 0.0);
+
+        double[] out = new double[2];
+        Metrics.moic(flows, 2, 2, 100.0, out);
+        assertEquals(1.0, out[0], 0.0);
+        assertEquals(1.5, out[1], 0.0);
+    }
+
+    @Test
+    void paybackIsFractionalWithinTheRecoveringPeriod() {
+        assertEquals(1.0 + 50.0 / 60.0, Metrics.payback(new double[] {50.0, 60.0, 40.0}, 100.0), EPS);
+        assertEquals(2.0, Metrics.payback(new double[] {50.0, 50.0, 50.0}, 100.0), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, Metrics.payback(new double[] {10.0, 10.0, 10.0}, 100.0), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, Metrics.payback(new double[0], 100.0), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, Metrics.payback(new double[] {100.0}, 0.0), 0.0);
+        assertEquals(2.0 / 3.0, Metrics.payback(new double[] {150.0, 50.0}, 100.0), EPS);
+    }
+
+    @Test
+    void realEstateScenarioHasReasonableMetrics() {
+        double[] flows = {125000.0, 135000.0, 145000.0, 155000.0, 165000.0 + 2000000.0};
+        double investment = 1500000.0;
+
+        double expectedPv = 0;
+        for (int t = 1; t <= flows.length; t++) {
+            expectedPv += flows[t - 1] / Math.pow(1.08, t);
+        }
+        assertEquals(expectedPv - investment, Metrics.npv(flows, 0.08, investment), 1e-6);
+
+        double irr = Metrics.irr(flows, investment);
+        assertTrue(irr > 0.05 && irr < 0.50);
+        assertTrue(Metrics.moic(flows, 0, flows.length, investment) > 1.0);
+        assertTrue(Metrics.payback(flows, investment) < 10.0);
+        assertTrue(Metrics.averageDscr(flows, new double[] {80000.0, 80000.0, 80000.0, 80000.0, 80000.0}) > 1.0);
+    }
+}
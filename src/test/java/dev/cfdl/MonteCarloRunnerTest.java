@@ -0,0 +1,98 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonteCarloRunnerTest {
+
+    // REC_Revenue has normal distribution growth; the IRR is evaluated on every trial
+    private static final String METRICS = String.join("\n",
+        "",
+        "irr:",
+        "  - SolarIRR:",
+        "      name: Solar IRR",
+        "      cashFlowSeriesId: SolarFarm_Nevada",
+        "      irr: 0",
+        "      value: 0",
+        "      metadata:",
+        "        initialInvestment: 150000000",
+        "");
+
+    private static MonteCarloRunner runner;
+
+    @BeforeAll
+    static void compile(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("solar.cfdl");
+        String source = new String(Files.readAllBytes(Paths.get("examples/renewable-energy-project.cfdl")), StandardCharsets.UTF_8);
+        Files.write(file, (source + METRICS).getBytes(StandardCharsets.UTF_8));
+        CompileResult compiled = new Parser().compile(file);
+        assertTrue(compiled.isSuccessful(), compiled::summary);
+        runner = new MonteCarloRunner(compiled.getIrResult());
+    }
+
+    @Test
+    void resultIsBitIdenticalAcrossParallelism() {
+        // Not a multiple of TRIALS_PER_TASK, so the last chunk is partial
+        int trials = 10 * MonteCarloRunner.TRIALS_PER_TASK + 17;
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            MonteCarloResult sequential = runner.run(trials, 42, single);
+            MonteCarloResult parallel = runner.run(trials, 42, many);
+
+            assertEquals(trials, sequential.getTrials());
+            assertEquals(1, sequential.getMetrics().size());
+            assertSame(sequential, parallel);
+            assertSame(sequential, runner.run(trials, 42, single));
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+
+    @Test
+    void seedsChangeTheStochasticFlows() {
+        MonteCarloResult.Summary first = runner.run(256, 1).getDeals().get(0).getNetTotal();
+        MonteCarloResult.Summary second = runner.run(256, 2).getDeals().get(0).getNetTotal();
+
+        assertTrue(first.getStd() > 0);
+        assertNotEquals(first.getMean(), second.getMean());
+    }
+
+    private static void assertSame(MonteCarloResult expected, MonteCarloResult actual) {
+        assertEquals(expected.getDeals().size(), actual.getDeals().size());
+        for (int d = 0; d < expected.getDeals().size(); d++) {
+            MonteCarloResult.DealSummary deal = expected.getDeals().get(d);
+            MonteCarloResult.DealSummary other = actual.getDeals().get(d);
+            assertEquals(deal.getDealId(), other.getDealId());
+            assertArrayEquals(deal.getNetTotal().toBytes(), other.getNetTotal().toBytes(), deal.getDealId());
+            assertArrayEquals(deal.getMeanFlows(), other.getMeanFlows(), 0, deal.getDealId());
+        }
+        assertSameSummaries(expected.getAssumptions(), actual.getAssumptions());
+        assertSameSummaries(expected.getMetrics(), actual.getMetrics());
+        assertEquals(expected.getWarnings(), actual.getWarnings());
+    }
+
+    private static void assertSameSummaries(Map<String, MonteCarloResult.Summary> expected,
+                                            Map<String, MonteCarloResult.Summary> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, MonteCarloResult.Summary> summary : expected.entrySet()) {
+            assertFalse(summary.getValue().getCount() == 0, summary.getKey());
+            assertArrayEquals(summary.getValue().toBytes(), actual.get(summary.getKey()).toBytes(), summary.getKey());
+        }
+    }
+}
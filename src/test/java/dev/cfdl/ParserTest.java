@@ -0,0 +1,67 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParserTest {
+
+    @Test
+    void parallelBatchMatchesSequentialParsePerFile() throws Exception {
+        List<Path> examples;
+        try (Stream<Path> list = Files.list(Paths.get("examples"))) {
+            examples = list.filter(path -> path.toString().endsWith(".cfdl")).sorted().collect(Collectors.toList());
+        }
+        assertFalse(examples.isEmpty());
+        // Every example several times, so workers validate the same schemas at once
+        List<Path> files = new ArrayList<>();
+        for (int round = 0; round < 4; round++) {
+            files.addAll(examples);
+        }
+
+        // A fresh validator, so its cache is filled while the batch runs
+        SchemaValidator shared = new SchemaValidator();
+        List<CompileResult> batch = new Parser(shared).parseFiles(files, 4);
+
+        Parser sequential = new Parser(new SchemaValidator());
+        assertEquals(files.size(), batch.size());
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            CompileResult parallel = batch.get(i);
+
+            assertEquals(file, parallel.getFile());
+            assertTrue(parallel.isSuccessful(), parallel::summary);
+            assertEquals(errors(sequential.parseFile(file.toString()).getValidationErrors()),
+                errors(parallel.getParseResult().getValidationErrors()), file.toString());
+            assertEquals(json(sequential.compile(file)), json(parallel), file.toString());
+        }
+    }
+
+    // Helper methods
+
+    private static List<String> errors(List<ValidationError> errors) {
+        return errors.stream().map(ValidationError::toString).sorted().collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Written IR as a tree, so that field order does not matter
+     */
+    private static JsonNode json(CompileResult result) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new IRWriter().write(result.getIrResult(), out);
+        return new ObjectMapper().readTree(out.toByteArray());
+    }
+}
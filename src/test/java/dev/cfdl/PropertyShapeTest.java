@@ -0,0 +1,142 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PropertyShapeTest {
+
+    @Test
+    void nodesWithTheSameKeysShareOneShape() {
+        PropertyShape root = PropertyShape.root();
+        ASTNode first = node(root, "scope", "deal", "amount", 100.0, "category", "Revenue");
+        ASTNode second = node(root, "scope", "asset", "amount", 5, "category", "Expense");
+
+        assertSame(first.getShape(), second.getShape());
+        assertEquals(3, first.getShape().size());
+        // Keys are interned once per tree
+        assertSame(first.getShape().key(2), second.getShape().key(2));
+
+        // Another order is another layout; another tree shares nothing
+        assertNotSame(first.getShape(), node(root, "amount", 1.0, "scope", "deal", "category", "Revenue").getShape());
+        assertNotSame(first.getShape(), node(PropertyShape.root(), "scope", "deal", "amount", 1.0, "category", "x").getShape());
+    }
+
+    @Test
+    void parsedEntitiesShareShapesByKeyLayout() throws Exception {
+        Parser.ParseResult result = new Parser(new SchemaValidator()).parseFile("examples/multi-asset-portfolio.cfdl");
+
+        Map<List<String>, PropertyShape> byKeys = new HashMap<>();
+        Set<PropertyShape> shapes = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ASTNode node : result.getAstNodes()) {
+            PropertyShape shape = node.getShape();
+            PropertyShape known = byKeys.putIfAbsent(new ArrayList<>(node.getProperties().keySet()), shape);
+            assertSame(known != null ? known : shape, shape, node.getId());
+            shapes.add(shape);
+        }
+        assertEquals(byKeys.size(), shapes.size());
+        assertTrue(shapes.size() < result.getAstNodes().size(), "no two entities share a shape");
+    }
+
+    @Test
+    void addingAKeyMovesOnlyThatNode() {
+        PropertyShape root = PropertyShape.root();
+        ASTNode moved = node(root, "scope", "deal", "amount", 100.0);
+        ASTNode sibling = node(root, "scope", "asset", "amount", 200.0);
+        PropertyShape before = sibling.getShape();
+
+        moved.setProperty("growth", 0.03);
+
+        assertNotSame(before, moved.getShape());
+        assertSame(before, sibling.getShape());
+        assertEquals(map("scope", "asset", "amount", 200.0), sibling.getProperties());
+        assertFalse(sibling.hasProperty("growth"));
+        assertEquals(0.03, moved.getProperty("growth"));
+
+        // Overwriting keeps the shape, and the same transition is taken again by the sibling
+        moved.setProperty("amount", 150.0);
+        sibling.setProperty("growth", 0.05);
+        assertSame(moved.getShape(), sibling.getShape());
+        assertEquals(150.0, moved.getProperty("amount"));
+        assertEquals(0.05, sibling.getProperty("growth"));
+    }
+
+    @Test
+    void removingAKeyReturnsToTheSharedShape() {
+        PropertyShape root = PropertyShape.root();
+        ASTNode trimmed = node(root, "scope", "deal", "amount", 100.0, "growth", 0.03);
+        ASTNode plain = node(root, "scope", "deal", "growth", 0.03);
+
+        assertEquals(100.0, trimmed.getProperties().remove("amount"));
+
+        assertSame(plain.getShape(), trimmed.getShape());
+        assertEquals(Arrays.asList("scope", "growth"), new ArrayList<>(trimmed.getProperties().keySet()));
+        assertEquals(0.03, trimmed.getProperty("growth"));
+        assertNull(trimmed.getProperties().remove("amount"));
+    }
+
+    @Test
+    void propertiesKeepInsertionOrderAndMatchAHashMap() {
+        ASTNode node = new ASTNode("n", "N", SchemaTypes.STREAM);
+        Map<String, Object> hashed = new HashMap<>();
+        Map<String, Object> ordered = new LinkedHashMap<>();
+
+        // Twelve keys, past the size where shapes switch from a linear scan to a hash index
+        for (int i = 0; i < 12; i++) {
+            put(node, hashed, ordered, "key" + (11 - i), i);
+        }
+        put(node, hashed, ordered, "key3", "again");
+        put(node, hashed, ordered, "nothing", null);
+        node.getProperties().remove("key7");
+        hashed.remove("key7");
+        ordered.remove("key7");
+
+        assertEquals(hashed, node.getProperties());
+        assertEquals(node.getProperties(), hashed);
+        assertEquals(hashed.hashCode(), node.getProperties().hashCode());
+        assertEquals(new ArrayList<>(ordered.keySet()), new ArrayList<>(node.getProperties().keySet()));
+        assertEquals(new ArrayList<>(ordered.values()), new ArrayList<>(node.getProperties().values()));
+        assertTrue(node.hasProperty("nothing"));
+        assertNull(node.getProperty("nothing"));
+        assertNull(node.getProperty("key7"));
+    }
+
+    // Helper methods
+
+    private static ASTNode node(PropertyShape root, Object... properties) {
+        ASTNode node = new ASTNode("n", "N", SchemaTypes.STREAM, root);
+        for (int i = 0; i < properties.length; i += 2) {
+            node.setProperty((String) properties[i], properties[i + 1]);
+        }
+        return node;
+    }
+
+    private static Map<String, Object> map(Object... properties) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < properties.length; i += 2) {
+            map.put((String) properties[i], properties[i + 1]);
+        }
+        return map;
+    }
+
+    private static void put(ASTNode node, Map<String, Object> hashed, Map<String, Object> ordered, String key, Object value) {
+        node.setProperty(key, value);
+        hashed.put(key, value);
+        ordered.put(key, value);
+    }
+}
@@ -0,0 +1,187 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0.01, 0.05, 0.5, 0.95, 0.99};
+
+    // Allowed distance in rank between an estimate and the exact quantile
+    private static final double RANK_TOLERANCE = 5e-4;
+
+    private static final int SIZE = 100_000;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"uniform", "normal", "lognormal"})
+    void quantilesAreWithinTheRankTolerance(String distribution) {
+        double[] values = sample(distribution, SIZE, 1);
+        QuantileSketch sketch = sketchOf(values, 0, values.length);
+        double[] sorted = sorted(values);
+
+        assertEquals(SIZE, sketch.getCount());
+        assertEquals(sorted[0], sketch.getMin());
+        assertEquals(sorted[SIZE - 1], sketch.getMax());
+        for (double q : QUANTILES) {
+            assertRank(sorted, q, sketch.quantile(q), distribution);
+        }
+    }
+
+    @Test
+    void mergingSplitStreamsInEitherOrderMatchesOneSketch() {
+        double[] values = sample("lognormal", SIZE, 2);
+        double[] sorted = sorted(values);
+        int split = SIZE / 3;
+
+        QuantileSketch single = sketchOf(values, 0, SIZE);
+        QuantileSketch leftFirst = sketchOf(values, 0, split);
+        leftFirst.merge(sketchOf(values, split, SIZE));
+        QuantileSketch rightFirst = sketchOf(values, split, SIZE);
+        rightFirst.merge(sketchOf(values, 0, split));
+
+        for (QuantileSketch merged : new QuantileSketch[] {leftFirst, rightFirst}) {
+            assertEquals(single.getCount(), merged.getCount());
+            assertEquals(single.getMin(), merged.getMin());
+            assertEquals(single.getMax(), merged.getMax());
+            for (double q : QUANTILES) {
+                assertRank(sorted, q, merged.quantile(q), "merged");
+            }
+        }
+    }
+
+    @Test
+    void roundTripKeepsEveryQuantile() {
+        double[] values = sample("normal", 10_000, 3);
+        QuantileSketch sketch = sketchOf(values, 0, values.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(sketch.serializedSize());
+        sketch.writeTo(buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        QuantileSketch copy = QuantileSketch.readFrom(buffer);
+
+        assertEquals(sketch.getCount(), copy.getCount());
+        assertEquals(sketch.getMin(), copy.getMin());
+        assertEquals(sketch.getMax(), copy.getMax());
+        for (double q = 0; q <= 1; q += 0.01) {
+            assertEquals(sketch.quantile(q), copy.quantile(q), 0.0, "q " + q);
+            assertEquals(sketch.lowerTailMean(q), copy.lowerTailMean(q), 0.0, "q " + q);
+        }
+    }
+
+    @Test
+    void emptyAndSingleValueSketches() {
+        QuantileSketch empty = new QuantileSketch();
+        empty.add(Double.NaN);
+        assertEquals(0, empty.getCount());
+        assertTrue(Double.isNaN(empty.quantile(0.5)));
+        assertTrue(Double.isNaN(empty.lowerTailMean(0.05)));
+        assertTrue(Double.isNaN(empty.getMin()));
+
+        QuantileSketch single = new QuantileSketch();
+        single.add(42.5);
+        for (double q : new double[] {0, 0.01, 0.5, 0.99, 1}) {
+            assertEquals(42.5, single.quantile(q), 0.0, "q " + q);
+        }
+        assertEquals(42.5, single.lowerTailMean(0.05), 0.0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.01, 0.05, 0.25})
+    void lowerTailMeanMatchesTheExactTailMean(double q) {
+        double[] sorted = sorted(sample("normal", SIZE, 4));
+        QuantileSketch sketch = sketchOf(sorted, 0, SIZE);
+
+        // Mean of the lowest q of values; the normal's tail spreads over about one unit
+        assertEquals(tailMean(sorted, q), sketch.lowerTailMean(q), 0.01, "q " + q);
+    }
+
+    @Test
+    void summaryQuantilesAndRiskMeasuresComeFromTheSketch() {
+        double[] values = sample("lognormal", SIZE, 5);
+        double[] sorted = sorted(values);
+        MonteCarloResult.Summary summary = new MonteCarloResult.Summary();
+        for (double value : values) {
+            summary.add(value);
+        }
+        summary.add(Double.NaN); // An undefined trial stays out of the quantiles
+
+        assertRank(sorted, 0.05, summary.quantile(0.05), "P5");
+        assertRank(sorted, 0.5, summary.quantile(0.5), "P50");
+        assertRank(sorted, 0.95, summary.quantile(0.95), "P95");
+        // VaR95 is the P5 outcome, CVaR95 the mean of the worst 5%; 1 - 0.95 is a hair above 0.05
+        assertEquals(summary.quantile(0.05), summary.getValueAtRisk(0.95), summary.quantile(0.05) * 1e-12);
+        // The centroid straddling the 5% boundary is counted at its mean, so allow half a percent
+        double exact = tailMean(sorted, 0.05);
+        assertEquals(exact, summary.getConditionalValueAtRisk(0.95), Math.abs(exact) * 5e-3);
+        assertTrue(summary.getConditionalValueAtRisk(0.95) <= summary.getValueAtRisk(0.95));
+        assertEquals(1, summary.getUndefinedCount());
+
+        MonteCarloResult.Summary copy = MonteCarloResult.Summary.fromBytes(summary.toBytes());
+        assertEquals(summary.getValueAtRisk(0.95), copy.getValueAtRisk(0.95), 0.0);
+        assertEquals(summary.getConditionalValueAtRisk(0.95), copy.getConditionalValueAtRisk(0.95), 0.0);
+        assertEquals(summary.toString(), copy.toString());
+    }
+
+    // Helper methods
+
+    private static double[] sample(String distribution, int size, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            switch (distribution) {
+                case "uniform":
+                    values[i] = random.nextDouble() * 1000;
+                    break;
+                case "normal":
+                    values[i] = random.nextGaussian();
+                    break;
+                default:
+                    values[i] = Math.exp(random.nextGaussian()) * 1_000_000;
+                    break;
+            }
+        }
+        return values;
+    }
+
+    private static QuantileSketch sketchOf(double[] values, int from, int to) {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = from; i < to; i++) {
+            sketch.add(values[i]);
+        }
+        return sketch;
+    }
+
+    private static double[] sorted(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * The estimate must fall between the exact quantiles q - tolerance and q + tolerance
+     */
+    private static void assertRank(double[] sorted, double q, double estimate, String context) {
+        int low = (int) Math.floor((q - RANK_TOLERANCE) * sorted.length);
+        int high = (int) Math.ceil((q + RANK_TOLERANCE) * sorted.length);
+        assertTrue(estimate >= sorted[Math.max(0, low)] && estimate <= sorted[Math.min(sorted.length - 1, high)],
+            context + " q " + q + ": " + estimate + " outside " + sorted[Math.max(0, low)] + ".." + sorted[Math.min(sorted.length - 1, high)]);
+    }
+
+    private static double tailMean(double[] sorted, double q) {
+        int count = (int) Math.round(q * sorted.length);
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += sorted[i];
+        }
+        return sum / count;
+    }
+}
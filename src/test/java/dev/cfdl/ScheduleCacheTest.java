@@ -0,0 +1,100 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.DoubleBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScheduleCacheTest {
+
+    // Straight-line schedules have two rows, so a schedule of length n takes 2n doubles
+    private static final int KIND = Calculators.STRAIGHT_LINE;
+
+    @Test
+    void evictsLeastRecentlyUsedAndCoalescesFreedRanges() {
+        ScheduleCache cache = new ScheduleCache(100);
+
+        double[] a = row(cache, 1000, 20, 0);  // [0, 40)
+        double[] b = row(cache, 2000, 15, 0);  // [40, 70)
+        row(cache, 3000, 10, 1);               // [70, 90), leaving [90, 100) free
+        assertArrayEquals(expected(1000, 20, 0), a);
+        assertArrayEquals(a, row(cache, 1000, 20, 0));
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(90, cache.getUsed());
+
+        // 50 doubles: evicting b alone frees 30, evicting c too joins [40, 70), [70, 90) and [90, 100)
+        row(cache, 4000, 25, 0);
+        assertEquals(2, cache.getEvictions());
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(90, cache.getUsed());
+
+        // a is still cached; b was evicted and is computed again, unchanged
+        assertArrayEquals(a, row(cache, 1000, 20, 0));
+        assertArrayEquals(b, row(cache, 2000, 15, 0));
+        assertEquals(3, cache.getEvictions());
+        assertEquals(2, cache.getHits());
+        assertEquals(5, cache.getMisses());
+        assertEquals(2.0 / 7, cache.getHitRate(), 1e-15);
+
+        // The whole buffer only fits once every entry is gone and all ranges have merged back
+        assertArrayEquals(expected(5000, 50, 1), row(cache, 5000, 50, 1));
+        assertEquals(5, cache.getEvictions());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(100, cache.getUsed());
+    }
+
+    @Test
+    void schedulesLargerThanTheCacheAreComputedButNotCached() {
+        ScheduleCache cache = new ScheduleCache(100);
+        row(cache, 1000, 20, 0);
+
+        // 2 x 60 doubles do not fit in 100
+        assertArrayEquals(expected(7000, 60, 1), row(cache, 7000, 60, 1));
+        assertArrayEquals(expected(7000, 60, 0), row(cache, 7000, 60, 0));
+
+        assertEquals(3, cache.getMisses());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getEvictions());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(40, cache.getUsed());
+    }
+
+    @Test
+    void rowsAreCopiesAndClearResetsTheCounts() {
+        ScheduleCache cache = new ScheduleCache(100);
+        assertTrue(Double.isNaN(cache.getHitRate()));
+
+        double[] first = row(cache, 1000, 20, 0);
+        first[0] = -1;
+        assertArrayEquals(expected(1000, 20, 0), row(cache, 1000, 20, 0));
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+
+        cache.clear();
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getUsed());
+        assertTrue(Double.isNaN(cache.getHitRate()));
+        assertThrows(IllegalArgumentException.class, () -> new ScheduleCache(0));
+    }
+
+    // Helper methods
+
+    /**
+     * One row of a straight-line schedule for cost over length periods, salvage 0
+     */
+    private static double[] row(ScheduleCache cache, double cost, int length, int row) {
+        return cache.row(KIND, cost, 0, length, length, row);
+    }
+
+    private static double[] expected(double cost, int length, int row) {
+        DoubleBuffer schedule = DoubleBuffer.allocate(2 * length);
+        Calculators.fill(KIND, cost, 0, length, length, schedule, 0);
+        double[] values = new double[length];
+        schedule.position(row * length);
+        schedule.get(values);
+        return values;
+    }
+}
@@ -0,0 +1,102 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class SchemaValidatorTest {
+
+    private static SchemaValidator validator;
+
+    @BeforeAll
+    static void loadSchemas() {
+        validator = new SchemaValidator();
+    }
+
+    static Stream<Path> examples() throws IOException {
+        return Files.list(Paths.get("examples")).filter(path -> path.toString().endsWith(".cfdl")).sorted();
+    }
+
+    @ParameterizedTest
+    @MethodSource("examples")
+    void batchStreamingAndIncrementalReportTheSameErrors(Path example) throws Exception {
+        Parser parser = new Parser(validator);
+        List<ValidationError> batch = parser.parseFile(example.toString()).getValidationErrors();
+        List<ValidationError> streaming = parser.parseFileStreaming(example.toString(), node -> { });
+        List<ValidationError> incremental = new IncrementalCompiler(validator).compile(example)
+            .getParseResult().getValidationErrors();
+
+        assertEquals(describe(batch), describe(streaming));
+        assertEquals(describe(batch), describe(incremental));
+    }
+
+    @ParameterizedTest
+    @MethodSource("examples")
+    void errorsNameTheirEntityAndSchemaButNotNestedEntities(Path example) throws Exception {
+        for (ValidationError error : new Parser(validator).parseFile(example.toString()).getValidationErrors()) {
+            assertNotNull(error.getEntityId(), error::toString);
+            assertNotNull(error.getSchemaPath(), error::toString);
+            String instance = String.valueOf(error.getInstancePath());
+            assertFalse(instance.startsWith("/assets") || instance.startsWith("/components")
+                || instance.startsWith("/streams"), error::toString);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("examples")
+    void examplesHaveNoSchemaErrors(Path example) throws Exception {
+        List<ValidationError> errors = new Parser(validator).parseFile(example.toString()).getValidationErrors();
+        assertEquals("[]", describe(errors.stream()
+            .filter(error -> error.getSeverity() == ValidationError.Severity.ERROR)
+            .collect(Collectors.toList())).toString());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        "750000 | true",
+        "'\"RentalIncome * 0.05\"' | true",
+        "{\"principal\": 1000, \"rate\": 0.05, \"termMonths\": 12} | true",
+        "{\"loanPayment\": {\"principal\": 1000, \"rate\": 0.05, \"termMonths\": 12}} | true",
+        "{\"straightLineDepreciation\": {\"cost\": 100, \"salvage\": 10, \"lifePeriods\": 5}} | true",
+        "{\"presentValue\": {\"amount\": 100, \"rate\": 0.05, \"periods\": 2}} | true",
+        "{\"calculator\": \"Loan\", \"output\": \"interest\"} | true",
+        "{\"calculator\": \"Loan\"} | true",
+        "{\"loanPayment\": {\"principal\": 1000}} | false",
+        "{\"loanPayment\": {\"principal\": 1000, \"rate\": 0.05, \"termMonths\": 12}, \"calculator\": \"Loan\"} | false",
+        "{\"npv\": {\"rate\": 0.05, \"cashFlows\": [1, 2]}} | false",
+        "{} | false",
+        "true | false"
+    })
+    void streamAmountMatchesExactlyOneForm(String amount, boolean valid) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode stream = (ObjectNode) mapper.readTree("{\"id\": \"https://example.com/streams/s\", \"name\": \"S\","
+            + " \"scope\": \"deal\", \"category\": \"Revenue\","
+            + " \"schedule\": {\"type\": \"oneTime\", \"date\": \"2024-01-15\"}}");
+        stream.set("amount", mapper.readTree(amount));
+
+        List<ValidationError> errors = validator.validateYamlNode(stream, SchemaTypes.STREAM).stream()
+            .filter(error -> error.getSeverity() == ValidationError.Severity.ERROR)
+            .collect(Collectors.toList());
+        assertEquals(valid, errors.isEmpty(), errors::toString);
+    }
+
+    private static List<String> describe(List<ValidationError> errors) {
+        return errors.stream().map(ValidationError::toString).sorted().collect(Collectors.toCollection(ArrayList::new));
+    }
+}
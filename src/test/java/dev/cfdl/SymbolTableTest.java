@@ -0,0 +1,75 @@
+package dev.cfdl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SymbolTableTest {
+
+    private static final String DOCUMENT = String.join("\n",
+        "deal:",
+        "  - Harbor:",
+        "      name: Harbor Deal",
+        "      assets:",
+        "        - Tower",
+        "        - asset:",
+        "            Annex:",
+        "              name: Annex",
+        "              dealId: Harbor",
+        "              streams:",
+        "                - Rent",
+        "                - Missing",
+        "asset:",
+        "  - Tower:",
+        "      name: Tower",
+        "      dealId: Harbor",
+        "stream:",
+        "  - Rent:",
+        "      name: Rent",
+        "");
+
+    @Test
+    void ofRecordsTheSameReferencesAsTheBuildTimeTable() throws Exception {
+        SymbolTable built = new SymbolTable();
+        List<ASTNode> nodes = new ASTBuilder(built)
+            .buildDocument(new ObjectMapper(new YAMLFactory()).readTree(DOCUMENT), new ArrayList<>());
+
+        SymbolTable recovered = SymbolTable.of(nodes);
+
+        assertEquals(describe(built.getReferences()), describe(recovered.getReferences()));
+        assertEquals(describe(built.unresolvedReferences()), describe(recovered.unresolvedReferences()));
+        assertEquals("[Annex.streams -> Missing]", recovered.unresolvedReferences().toString());
+        assertEquals(built.getChildren("Harbor"), recovered.getChildren("Harbor"));
+        assertEquals(built.getChildren("Annex"), recovered.getChildren("Annex"));
+    }
+
+    @Test
+    void typedLookupFindsAnAliasHiddenByAnEntityOfAnotherType() {
+        ASTNode deal = new ASTNode("Tower", "Tower Deal", SchemaTypes.DEAL);
+        ASTNode asset = new ASTNode("OfficeTower", "Office Tower", SchemaTypes.ASSET);
+        asset.setProperty("id", "Tower");
+        SymbolTable table = SymbolTable.of(List.of(deal, asset));
+
+        assertSame(deal, table.lookup("Tower"));
+        assertSame(deal, table.lookup("Tower", SchemaTypes.DEAL));
+        assertSame(asset, table.lookup("Tower", SchemaTypes.ASSET));
+        assertNull(table.lookup("Tower", SchemaTypes.STREAM));
+        assertSame(deal, table.lookup("Tower", null));
+    }
+
+    private static List<String> describe(List<SymbolTable.Reference> references) {
+        List<String> described = new ArrayList<>();
+        for (SymbolTable.Reference reference : references) {
+            described.add(reference + " " + reference.getExpectedSchemaType());
+        }
+        described.sort(null);
+        return described;
+    }
+}
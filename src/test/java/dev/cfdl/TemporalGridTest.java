@@ -0,0 +1,110 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TemporalGridTest {
+
+    private static final double EPS = 1e-12;
+
+    @Test
+    void monthlyUsGridAdjustsBoundsToFollowingBusinessDays() {
+        TemporalGrid grid = TemporalGrid.of(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31),
+            "monthly", "following", "actual/365", "US");
+
+        assertEquals(12, grid.size());
+        // 2024-01-01 is New Year's Day; January has 23 weekdays less New Year's and MLK Day (15th)
+        assertEquals(LocalDate.of(2024, 1, 2), grid.getPeriodStart(0));
+        assertEquals(LocalDate.of(2024, 1, 31), grid.getPeriodEnd(0));
+        assertEquals(30, grid.getCalendarDays(0));
+        assertEquals(21, grid.getBusinessDays(0));
+        assertEquals(30 / 365.0, grid.getYearFraction(0), EPS);
+
+        // June 1 is a Saturday and June 30 a Sunday: June 3 to July 1
+        assertEquals(LocalDate.of(2024, 6, 3), grid.getPeriodStart(5));
+        assertEquals(LocalDate.of(2024, 7, 1), grid.getPeriodEnd(5));
+        assertEquals(29, grid.getCalendarDays(5));
+        assertEquals(21, grid.getBusinessDays(5));
+
+        // July 4 is a Thursday
+        assertEquals(LocalDate.of(2024, 7, 1), grid.getPeriodStart(6));
+        assertEquals(22, grid.getBusinessDays(6));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "following,          2024-06-03, 2024-07-01, 21",
+        "preceding,          2024-05-31, 2024-06-28, 21",
+        "modified_following, 2024-06-03, 2024-06-28, 20",
+        "unadjusted,         2024-06-01, 2024-06-30, 20"
+    })
+    void conventionsMoveWeekendBounds(String convention, String start, String end, int businessDays) {
+        TemporalGrid grid = TemporalGrid.of(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31),
+            "monthly", convention, "actual/365", "US");
+
+        assertEquals(LocalDate.parse(start), grid.getPeriodStart(5));
+        assertEquals(LocalDate.parse(end), grid.getPeriodEnd(5));
+        assertEquals(businessDays, grid.getBusinessDays(5));
+    }
+
+    @Test
+    void quarterlyGridWithoutHolidaysCountsWeekdays() {
+        TemporalGrid grid = TemporalGrid.of(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31),
+            "quarterly", "unadjusted", "30/360", "none");
+
+        assertEquals(4, grid.size());
+        assertEquals(LocalDate.of(2024, 4, 1), grid.getPeriodStart(1));
+        assertEquals(LocalDate.of(2024, 6, 30), grid.getPeriodEnd(1));
+        assertEquals(91, grid.getCalendarDays(1));
+        assertEquals(22 + 23 + 20, grid.getBusinessDays(1));
+        // 30/360 from April 1 to June 30: 2 months and 29 days
+        assertEquals(89 / 360.0, grid.getYearFraction(1), EPS);
+    }
+
+    @Test
+    void lastPeriodIsCutAtTheEndDate() {
+        TemporalGrid grid = TemporalGrid.of(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 3, 15),
+            "monthly", "unadjusted", "actual/360", "none");
+
+        assertEquals(3, grid.size());
+        assertEquals(LocalDate.of(2024, 3, 1), grid.getPeriodStart(2));
+        assertEquals(LocalDate.of(2024, 3, 15), grid.getPeriodEnd(2));
+        assertEquals(15 / 360.0, grid.getYearFraction(2), EPS);
+        assertEquals(1, grid.periodOf(LocalDate.of(2024, 2, 29)));
+        assertEquals(2, grid.periodOf(LocalDate.of(2024, 3, 15)));
+        assertEquals(-1, grid.periodOf(LocalDate.of(2023, 12, 31)));
+        assertEquals(-1, grid.periodOf(LocalDate.of(2024, 3, 16)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        // Actual days count both ends
+        "actual/365,    2024-01-01, 2024-12-31, 1.0027397260273974",
+        "act_365,       2024-01-01, 2024-12-31, 1.0027397260273974",
+        "actual/360,    2024-01-01, 2024-12-31, 1.0166666666666666",
+        // 30/360: the 31st counts as the 30th, 60 days
+        "30/360,        2024-01-31, 2024-03-31, 0.16666666666666666",
+        "30E/360,       2024-02-15, 2024-05-15, 0.25",
+        // 184 days of 2023 over 365 plus 182 days of 2024 over 366
+        "actual/actual, 2023-07-01, 2024-06-30, 1.0013773486039375",
+        // Unknown conventions fall back to Actual/365
+        "business/252,  2024-01-01, 2024-01-31, 0.08493150684931507"
+    })
+    void dayCounts(String convention, String start, String end, double expected) {
+        assertEquals(expected, TemporalGrid.yearFraction(LocalDate.parse(start), LocalDate.parse(end), convention), EPS);
+    }
+
+    @Test
+    void identicalGridsAreShared() {
+        TemporalGrid grid = TemporalGrid.of(LocalDate.of(2030, 1, 1), LocalDate.of(2031, 1, 1), null, null, null, null);
+
+        assertSame(grid, TemporalGrid.of(LocalDate.of(2030, 1, 1), LocalDate.of(2031, 1, 1),
+            "monthly", "following", "actual/365", "US"));
+    }
+}
@@ -0,0 +1,120 @@
+package dev.cfdl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WaterfallProgramTest {
+
+    private static final double EPS = 1e-9;
+
+    // Three unadjusted annual periods, each exactly one year under 30/360
+    private static final TemporalGrid GRID = TemporalGrid.of(LocalDate.of(2024, 1, 1), LocalDate.of(2026, 12, 31),
+        "annual", "unadjusted", "30/360", "US");
+
+    private static final List<Map<String, Object>> PARTICIPANTS = List.of(
+        Map.of("partyId", "LP", "amount", 900),
+        Map.of("partyId", "GP", "amount", 100));
+
+    @Test
+    void prefReturnThenCatchUpThenResidualSplit() {
+        List<String> warnings = new ArrayList<>();
+        WaterfallProgram program = WaterfallProgram.compile("W", List.of(
+            Map.of("id", "pref", "prefRate", 0.08,
+                "distribute", List.of(Map.of("fromCapitalStack", true))),
+            Map.of("id", "catch_up", "until", "catchUp < 0.2",
+                "distribute", List.of(Map.of("recipient", "GP", "percentage", 1.0))),
+            Map.of("id", "residual", "condition", "remainingCapital > 0",
+                "distribute", List.of(
+                    Map.of("recipient", "LP", "percentage", 0.8),
+                    Map.of("recipient", "GP", "percentage", 0.2)))),
+            PARTICIPANTS, GRID, warnings);
+
+        assertTrue(warnings.isEmpty(), warnings.toString());
+        assertArrayEquals(new String[] {"LP", "GP"}, program.recipientIds);
+        assertEquals(WaterfallProgram.HURDLE, program.kinds[0]);
+        assertEquals(WaterfallProgram.CATCH_UP, program.kinds[1]);
+        assertEquals(WaterfallProgram.RESIDUAL, program.kinds[2]);
+
+        double[] recipientFlows = new double[2 * 3];
+        double[] tierFlows = new double[3 * 3];
+        double[] undistributed = new double[3];
+        program.run(new double[] {-50, 500, 1500}, recipientFlows, tierFlows, undistributed,
+            new double[program.scratchSize()]);
+
+        // Period 0: a loss is not distributed; the hurdle account grows 1000 -> 1080.
+        // Period 1: the account grows to 1166.4 and takes all 500, 9:1 by capital, leaving 666.4.
+        // Period 2: the account grows to 719.712 and is paid off, 647.7408 / 71.9712. Profit is then
+        //   219.712 with GP holding 21.9712 of it; the catch-up X solves 21.9712 + X = 0.2 (219.712 + X),
+        //   X = 27.464. The residual 752.824 splits 80/20 into 602.2592 / 150.5648.
+        assertArrayEquals(new double[] {0, 450, 1250}, row(recipientFlows, 0), EPS);
+        assertArrayEquals(new double[] {0, 50, 250}, row(recipientFlows, 1), EPS);
+        assertArrayEquals(new double[] {0, 500, 719.712}, row(tierFlows, 0), EPS);
+        assertArrayEquals(new double[] {0, 0, 27.464}, row(tierFlows, 1), EPS);
+        assertArrayEquals(new double[] {0, 0, 752.824}, row(tierFlows, 2), EPS);
+        assertArrayEquals(new double[] {-50, 0, 0}, undistributed, EPS);
+    }
+
+    @Test
+    void cashNoTierTakesIsUndistributed() {
+        List<String> warnings = new ArrayList<>();
+        WaterfallProgram program = WaterfallProgram.compile("W", List.of(
+            Map.of("id", "capped", "until", "totalDistributed < 300",
+                "distribute", List.of(Map.of("recipient", 0, "percentage", 1.0))),
+            Map.of("id", "unknown", "condition", "moonPhase > 0",
+                "distribute", List.of(Map.of("recipient", "GP", "percentage", 1.0)))),
+            PARTICIPANTS, GRID, warnings);
+
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0).contains("unsupported condition"), warnings.get(0));
+
+        double[] recipientFlows = new double[program.recipientCount() * 3];
+        double[] tierFlows = new double[2 * 3];
+        double[] undistributed = new double[3];
+        program.run(new double[] {200, 200, 200}, recipientFlows, tierFlows, undistributed,
+            new double[program.scratchSize()]);
+
+        // The cap pays 200 then the last 100 of its 300; the skipped tier pays nothing
+        assertArrayEquals(new double[] {200, 100, 0}, row(recipientFlows, 0), EPS);
+        assertArrayEquals(new double[] {0, 0, 0}, row(tierFlows, 1), EPS);
+        assertArrayEquals(new double[] {0, 100, 200}, undistributed, EPS);
+    }
+
+    @Test
+    void hurdleIsMetExactlyWhenRecipientsReachThePrefRate() {
+        WaterfallProgram program = WaterfallProgram.compile("W", List.of(
+            Map.of("id", "pref", "until", "IRR < 0.1",
+                "distribute", List.of(Map.of("fromCapitalStack", true))),
+            Map.of("id", "residual", "condition", "true",
+                "distribute", List.of(Map.of("recipient", "GP", "percentage", 1.0)))),
+            PARTICIPANTS, GRID, new ArrayList<>());
+
+        double[] recipientFlows = new double[2 * 3];
+        double[] tierFlows = new double[2 * 3];
+        double[] undistributed = new double[3];
+        program.run(new double[] {0, 0, 2000}, recipientFlows, tierFlows, undistributed,
+            new double[program.scratchSize()]);
+
+        // 1000 at 10% for three years is 1331; the remaining 669 goes to the residual tier
+        assertArrayEquals(new double[] {0, 0, 1331}, row(tierFlows, 0), EPS);
+        assertArrayEquals(new double[] {0, 0, 669}, row(tierFlows, 1), EPS);
+        assertArrayEquals(new double[] {0, 0, 1197.9}, row(recipientFlows, 0), EPS);
+        assertArrayEquals(new double[] {0, 0, 133.1 + 669}, row(recipientFlows, 1), EPS);
+    }
+
+    // Helper methods
+
+    private static double[] row(double[] matrix, int index) {
+        int periods = GRID.size();
+        double[] row = new double[periods];
+        System.arraycopy(matrix, index * periods, row, 0, periods);
+        return row;
+    }
+}